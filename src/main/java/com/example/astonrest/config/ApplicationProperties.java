@@ -0,0 +1,50 @@
+package com.example.astonrest.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Настройки приложения из {@code application.properties}.
+ * Файл необязателен: при его отсутствии или отсутствии ключа используется значение по умолчанию.
+ */
+public class ApplicationProperties {
+    private static final Properties properties = load();
+
+    private ApplicationProperties() {}
+
+    public static String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        return Long.parseLong(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        return Double.parseDouble(getString(key, String.valueOf(defaultValue)));
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+
+    private static Properties load() {
+        Properties prop = new Properties();
+        try (InputStream input = ApplicationProperties.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                prop.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            System.out.println("WARN: Не удалось загрузить application.properties: " + e.getMessage());
+        }
+        return prop;
+    }
+}
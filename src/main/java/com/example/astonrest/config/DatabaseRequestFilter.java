@@ -0,0 +1,29 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.util.DatabaseUtil;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Фильтр, задающий границы HTTP-запроса для {@link DatabaseUtil}.
+ * Признак «запрос уже писал в базу» живёт только внутри запроса и не переходит
+ * к следующему запросу того же потока.
+ */
+public class DatabaseRequestFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        DatabaseUtil.beginRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DatabaseUtil.endRequest();
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.util.DatabaseUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Применение версионных миграций схемы при запуске.
+ * <p>
+ * Скрипты {@code V<версия>__<описание>.sql} перечислены в {@code database/migrations/index.txt}
+ * и применяются по возрастанию версии. Применённые версии записываются в таблицу {@code schema_history}
+ * вместе с контрольной суммой скрипта. Обычный скрипт выполняется в одной транзакции вместе с записью
+ * в историю. Скрипт с {@code CONCURRENTLY} выполняется вне транзакции, потому что PostgreSQL
+ * не строит индекс без блокировки записи внутри транзакции. Прерванное построение оставляет индекс
+ * с признаком INVALID, который {@code IF NOT EXISTS} не перестраивает: такой индекс удаляется перед
+ * повторным запуском скрипта, а версия записывается в историю только если все индексы скрипта исправны.
+ * <p>
+ * Несколько экземпляров приложения не применяют миграции одновременно: на время работы берётся
+ * advisory-блокировка. Её ждут опросом {@code pg_try_advisory_lock}, а не блокирующим вызовом:
+ * ожидающий запрос держал бы снимок данных, а {@code CREATE INDEX CONCURRENTLY} ждёт завершения
+ * всех более старых снимков, и два экземпляра заблокировали бы друг друга.
+ * Срок ожидания — {@code migrations.lockTimeoutMs}. Выключается ключом {@code migrations.enabled}.
+ */
+public class MigrationRunner {
+    private static final String MIGRATIONS_DIR = "database/migrations/";
+    private static final String INDEX_FILE = MIGRATIONS_DIR + "index.txt";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern CONCURRENTLY = Pattern.compile("\\bCONCURRENTLY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONCURRENT_INDEX = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOLLAR_TAG = Pattern.compile("\\$([A-Za-z_][A-Za-z_0-9]*)?\\$");
+
+    // Произвольный ключ advisory-блокировки миграций
+    private static final long LOCK_KEY = 20_240_417L;
+    // Как часто повторяется попытка взять блокировку, пока миграции применяет другой экземпляр
+    private static final long LOCK_POLL_MS = 1_000;
+
+    private static final String SQL_CREATE_HISTORY =
+            "CREATE TABLE IF NOT EXISTS schema_history (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum VARCHAR(64) NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL DEFAULT now())";
+    private static final String SQL_SELECT_HISTORY = "SELECT version, checksum FROM schema_history";
+    private static final String SQL_INSERT_HISTORY =
+            "INSERT INTO schema_history (version, description, checksum) VALUES (?, ?, ?)";
+    private static final String SQL_TRY_LOCK = "SELECT pg_try_advisory_lock(?)";
+    private static final String SQL_UNLOCK = "SELECT pg_advisory_unlock(?)";
+    private static final String SQL_SELECT_INVALID_INDEXES =
+            "SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                    "WHERE NOT i.indisvalid AND c.relname = ANY(?) AND pg_table_is_visible(c.oid)";
+
+    private final boolean enabled;
+    private final long lockTimeoutMs;
+
+    public MigrationRunner() {
+        this(ApplicationProperties.getBoolean("migrations.enabled", true),
+                ApplicationProperties.getLong("migrations.lockTimeoutMs", 600_000));
+    }
+
+    MigrationRunner(boolean enabled, long lockTimeoutMs) {
+        this.enabled = enabled;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    /**
+     * Применяет недостающие миграции. Код приложения рассчитывает на актуальную схему,
+     * поэтому ошибка останавливает запуск: следующая миграция не применяется, а исключение
+     * выходит из {@link ServletConfig#contextInitialized} и контейнер не разворачивает приложение.
+     *
+     * @throws IllegalStateException если миграцию не удалось применить
+     */
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Migration> migrations = loadMigrations();
+            int applied = applyPending(migrations);
+            System.out.println("INFO: Миграции схемы: применено " + applied + " из " + migrations.size());
+        } catch (Exception e) {
+            System.out.println("ERROR: Миграции схемы не применены: " + e.getMessage());
+            throw new IllegalStateException("Миграции схемы не применены", e);
+        }
+    }
+
+    private int applyPending(List<Migration> migrations) throws SQLException {
+        try (Connection connection = DatabaseUtil.getConnection()) {
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(SQL_CREATE_HISTORY);
+            }
+
+            acquireLock(connection);
+            try {
+                Map<Integer, String> history = loadHistory(connection);
+                int applied = 0;
+                for (Migration migration : migrations) {
+                    String checksum = history.get(migration.version);
+                    if (checksum == null) {
+                        apply(connection, migration);
+                        applied++;
+                    } else if (!checksum.equals(migration.checksum)) {
+                        System.out.println("WARN: Скрипт миграции V" + migration.version
+                                + " изменён после применения, изменения не будут применены");
+                    }
+                }
+                return applied;
+            } finally {
+                releaseLock(connection);
+            }
+        }
+    }
+
+    /**
+     * Выполняет скрипт и записывает версию в историю.
+     * Если нетранзакционный скрипт упал на середине, выполненные команды остаются;
+     * скрипты с {@code CONCURRENTLY} поэтому пишутся через {@code IF NOT EXISTS}.
+     */
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        boolean transactional = !CONCURRENTLY.matcher(migration.script).find();
+        List<String> indexes = concurrentIndexNames(migration.script);
+        connection.setAutoCommit(!transactional);
+        try {
+            dropInvalidIndexes(connection, indexes);
+            for (String sql : splitStatements(migration.script)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(sql);
+                }
+            }
+            List<String> invalid = findInvalidIndexes(connection, indexes);
+            if (!invalid.isEmpty()) {
+                throw new SQLException("индексы " + invalid + " не построены (INVALID)");
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_INSERT_HISTORY)) {
+                preparedStatement.setInt(1, migration.version);
+                preparedStatement.setString(2, migration.description);
+                preparedStatement.setString(3, migration.checksum);
+                preparedStatement.executeUpdate();
+            }
+            if (transactional) {
+                connection.commit();
+            }
+            System.out.println("INFO: Применена миграция V" + migration.version + " " + migration.description);
+        } catch (SQLException e) {
+            if (transactional) {
+                connection.rollback();
+            }
+            throw new SQLException("Ошибка миграции V" + migration.version + ": " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Удаляет индексы скрипта, оставшиеся INVALID после прерванного построения,
+     * чтобы {@code CREATE INDEX CONCURRENTLY IF NOT EXISTS} построил их заново.
+     */
+    private void dropInvalidIndexes(Connection connection, List<String> indexes) throws SQLException {
+        for (String index : findInvalidIndexes(connection, indexes)) {
+            System.out.println("WARN: Индекс " + index + " остался INVALID после прерванного построения, удаляется");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            }
+        }
+    }
+
+    private List<String> findInvalidIndexes(Connection connection, List<String> indexes) throws SQLException {
+        List<String> invalid = new ArrayList<>();
+        if (indexes.isEmpty()) {
+            return invalid;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_INVALID_INDEXES)) {
+            preparedStatement.setArray(1, connection.createArrayOf("text", indexes.toArray()));
+            ResultSet resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                invalid.add(resultSet.getString("relname"));
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Имена индексов, которые скрипт строит через {@code CREATE INDEX CONCURRENTLY}.
+     */
+    static List<String> concurrentIndexNames(String script) {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = CONCURRENT_INDEX.matcher(script);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
+    private Map<Integer, String> loadHistory(Connection connection) throws SQLException {
+        Map<Integer, String> history = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_HISTORY)) {
+            ResultSet resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                history.put(resultSet.getInt("version"), resultSet.getString("checksum"));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Берёт advisory-блокировку миграций, повторяя попытку раз в секунду.
+     * Между попытками соединение не держит открытой транзакции и снимка данных.
+     *
+     * @throws SQLException если блокировка не получена за {@code migrations.lockTimeoutMs}
+     */
+    private void acquireLock(Connection connection) throws SQLException {
+        long deadline = System.currentTimeMillis() + lockTimeoutMs;
+        boolean reported = false;
+        while (!tryLock(connection)) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new SQLException("Блокировка миграций не получена за " + lockTimeoutMs
+                        + " мс: миграции применяет другой экземпляр");
+            }
+            if (!reported) {
+                System.out.println("INFO: Миграции применяет другой экземпляр, ожидание блокировки");
+                reported = true;
+            }
+            try {
+                Thread.sleep(Math.min(LOCK_POLL_MS, Math.max(1, deadline - System.currentTimeMillis())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Ожидание блокировки миграций прервано", e);
+            }
+        }
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_TRY_LOCK)) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    private void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_UNLOCK)) {
+            preparedStatement.setLong(1, LOCK_KEY);
+            preparedStatement.execute();
+        }
+    }
+
+    /**
+     * Читает скрипты из списка миграций и проверяет, что версии идут по возрастанию без повторов.
+     */
+    static List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (String line : readResource(INDEX_FILE).split("\n")) {
+            String fileName = line.trim();
+            if (fileName.isEmpty() || fileName.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = FILE_NAME.matcher(fileName);
+            if (!matcher.matches()) {
+                throw new IOException("Некорректное имя файла миграции: " + fileName);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (!migrations.isEmpty() && version <= migrations.get(migrations.size() - 1).version) {
+                throw new IOException("Версии миграций должны возрастать: " + fileName);
+            }
+            String script = readResource(MIGRATIONS_DIR + fileName);
+            migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), script, checksum(script)));
+        }
+        return migrations;
+    }
+
+    /**
+     * Делит скрипт на отдельные команды по {@code ;}.
+     * Точка с запятой внутри строк, идентификаторов в кавычках, комментариев
+     * и тел в долларовых кавычках ({@code $$ ... $$}, {@code $tag$ ... $tag$}) разделителем не считается.
+     * Комментарии из команд удаляются.
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : '\0';
+
+            if (c == '-' && next == '-') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"') {
+                int end = closingQuote(script, i, c);
+                current.append(script, i, end);
+                i = end;
+            } else if (c == '$' && dollarTagAt(script, i) != null) {
+                String tag = dollarTagAt(script, i);
+                int close = script.indexOf(tag, i + tag.length());
+                int end = close < 0 ? length : close + tag.length();
+                current.append(script, i, end);
+                i = end;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static String dollarTagAt(String script, int index) {
+        Matcher matcher = DOLLAR_TAG.matcher(script).region(index, script.length());
+        return matcher.lookingAt() ? matcher.group() : null;
+    }
+
+    /**
+     * Позиция сразу за закрывающей кавычкой. Удвоенная кавычка внутри — экранирование.
+     */
+    private static int closingQuote(String script, int start, char quote) {
+        int i = start + 1;
+        while (i < script.length()) {
+            if (script.charAt(i) == quote) {
+                if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return script.length();
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream input = MigrationRunner.class.getClassLoader().getResourceAsStream(name);
+        if (input == null) {
+            throw new IOException("Не найден ресурс " + name);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    private static String checksum(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Скрипт миграции из ресурсов.
+     */
+    static class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final String checksum;
+
+        Migration(int version, String description, String script, String checksum) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = checksum;
+        }
+    }
+}
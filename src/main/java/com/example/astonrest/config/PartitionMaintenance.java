@@ -0,0 +1,63 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.repository.WorkoutPartitionRepository;
+import com.example.astonrest.service.WorkoutPartitionService;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодическое создание месячных партиций тренировок наперёд.
+ * <p>
+ * Запускается сразу после старта и затем раз в {@code partitions.checkIntervalHours} часов,
+ * чтобы вставки нового месяца не уходили в партицию по умолчанию. Ошибка пишется в лог
+ * и не мешает следующему запуску. Выключается ключом {@code partitions.maintenance.enabled}.
+ */
+public class PartitionMaintenance {
+    private final boolean enabled;
+    private final long intervalHours;
+    private ScheduledExecutorService scheduler;
+
+    public PartitionMaintenance() {
+        this.enabled = ApplicationProperties.getBoolean("partitions.maintenance.enabled", true);
+        this.intervalHours = Math.max(1, ApplicationProperties.getLong("partitions.checkIntervalHours", 24));
+    }
+
+    /**
+     * Запускает обслуживание в фоновом потоке.
+     */
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        WorkoutPartitionService partitionService = new WorkoutPartitionService(new WorkoutPartitionRepository());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> ensurePartitions(partitionService), 0, intervalHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * Останавливает обслуживание при остановке приложения.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void ensurePartitions(WorkoutPartitionService partitionService) {
+        try {
+            int created = partitionService.ensurePartitions();
+            if (created > 0) {
+                System.out.println("INFO: Создано партиций тренировок: " + created);
+            }
+        } catch (Exception e) {
+            System.out.println("WARN: Партиции тренировок не созданы: " + e.getMessage());
+        }
+    }
+}
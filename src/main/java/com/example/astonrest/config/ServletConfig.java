@@ -1,42 +1,101 @@
 package com.example.astonrest.config;
 
+import com.example.astonrest.controller.AdminServlet;
+import com.example.astonrest.controller.HealthServlet;
 import com.example.astonrest.controller.MealServlet;
 import com.example.astonrest.controller.UserServlet;
 import com.example.astonrest.controller.WorkoutServlet;
+import com.example.astonrest.repository.MealRepository;
+import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.service.CalorieLeaderboard;
+import com.example.astonrest.service.MealSearchIndex;
+import com.example.astonrest.service.WorkoutIngestQueue;
+import com.example.astonrest.util.DatabaseUtil;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterRegistration;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.ServletRegistration;
 import jakarta.servlet.annotation.WebListener;
 
+import java.util.EnumSet;
+
 /**
  * Конфигурационный класс для регистрации сервлетов в контексте приложения.
  * Автоматически выполняет регистрацию сервлетов при запуске веб-приложения.
  */
 @WebListener
 public class ServletConfig implements ServletContextListener {
+    private final WarmupRunner warmupRunner = new WarmupRunner();
+    private final PartitionMaintenance partitionMaintenance = new PartitionMaintenance();
+    private final CalorieLeaderboard leaderboard = new CalorieLeaderboard(new UserRepository());
+    private final WorkoutIngestQueue workoutIngestQueue = new WorkoutIngestQueue(new WorkoutRepository(), leaderboard);
+    private final MealSearchIndex mealSearchIndex = new MealSearchIndex(new MealRepository());
 
     /**
      * Вызывается при инициализации контекста сервлетов.
-     * Регистрирует сервлеты пользователей, приемов пищи и тренировок.
+     * Сначала применяет недостающие миграции схемы, строит рейтинг по калориям
+     * и поисковый индекс приёмов пищи, запускает создание партиций тренировок,
+     * затем регистрирует сервлеты пользователей, приемов пищи, тренировок и служебных операций,
+     * а также фильтр, очищающий состояние базы данных после каждого запроса.
+     * Если миграцию не удалось применить, запуск прерывается исключением.
+     * Запускает очередь отложенной записи тренировок, если она включена,
+     * и прогрев приложения; до его окончания {@code /health/ready} отвечает 503.
      *
      * @param servletContextEvent событие инициализации контекста сервлетов
      */
     @Override
     public void contextInitialized(ServletContextEvent servletContextEvent) {
+        new MigrationRunner().migrate();
+        leaderboard.rebuild();
+        mealSearchIndex.rebuild();
+        partitionMaintenance.start();
+        workoutIngestQueue.start();
+
         ServletContext servletContext = servletContextEvent.getServletContext();
 
-        ServletRegistration.Dynamic userServlet = servletContext.addServlet("UserServlet", new UserServlet());
+        FilterRegistration.Dynamic databaseFilter =
+                servletContext.addFilter("DatabaseRequestFilter", new DatabaseRequestFilter());
+        databaseFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+
+        ServletRegistration.Dynamic userServlet = servletContext.addServlet("UserServlet", new UserServlet(leaderboard));
         userServlet.addMapping("/users/*");
         userServlet.setLoadOnStartup(1);
 
-        ServletRegistration.Dynamic mealServlet = servletContext.addServlet("MealServlet", new MealServlet());
+        ServletRegistration.Dynamic mealServlet = servletContext.addServlet("MealServlet", new MealServlet(mealSearchIndex));
         mealServlet.addMapping("/meals/*");
         mealServlet.setLoadOnStartup(1);
 
-        ServletRegistration.Dynamic workoutServlet = servletContext.addServlet("WorkoutServlet", new WorkoutServlet());
+        ServletRegistration.Dynamic workoutServlet = servletContext.addServlet("WorkoutServlet", new WorkoutServlet(workoutIngestQueue, leaderboard));
         workoutServlet.addMapping("/workouts/*");
         workoutServlet.setLoadOnStartup(1);
+
+        ServletRegistration.Dynamic adminServlet = servletContext.addServlet("AdminServlet", new AdminServlet(leaderboard, mealSearchIndex));
+        adminServlet.addMapping("/admin/*");
+        adminServlet.setLoadOnStartup(1);
+
+        ServletRegistration.Dynamic healthServlet = servletContext.addServlet("HealthServlet", new HealthServlet(warmupRunner, workoutIngestQueue));
+        healthServlet.addMapping("/health/*");
+        healthServlet.setLoadOnStartup(1);
+
+        warmupRunner.start();
+    }
+
+    /**
+     * Вызывается при остановке веб-приложения.
+     * Останавливает прогрев и обслуживание партиций, дописывает очередь тренировок
+     * и только после этого закрывает пул соединений с базой данных.
+     *
+     * @param servletContextEvent событие уничтожения контекста сервлетов
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        warmupRunner.stop();
+        partitionMaintenance.stop();
+        workoutIngestQueue.stop();
+        DatabaseUtil.shutdown();
     }
 }
 
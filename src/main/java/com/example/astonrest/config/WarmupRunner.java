@@ -0,0 +1,217 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.controller.MealServlet;
+import com.example.astonrest.controller.UserServlet;
+import com.example.astonrest.controller.WorkoutServlet;
+import com.example.astonrest.dto.LeaderboardDTO;
+import com.example.astonrest.dto.LeaderboardEntryDTO;
+import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.dto.MealStatsDTO;
+import com.example.astonrest.dto.MessageResponseDTO;
+import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
+import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
+import com.example.astonrest.dto.WorkoutStatsSummaryDTO;
+import com.example.astonrest.repository.MealRepository;
+import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.util.DatabaseUtil;
+import com.google.gson.Gson;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Прогрев приложения после запуска.
+ * <p>
+ * В фоновом потоке открывает соединения пула и заранее готовит запросы репозиториев,
+ * прогревает адаптеры Gson для DTO и прогоняет синтетические GET-запросы через сервлеты,
+ * пока среднее время раунда не перестанет заметно меняться. До окончания прогрева
+ * {@link #isReady()} возвращает false. Настройки — ключи {@code warmup.*} в {@code application.properties}.
+ */
+public class WarmupRunner {
+    private static final Map<String, List<String>> SYNTHETIC_PATHS = Map.of(
+            "users", List.of("/", "/1", "/1/workouts", "/1/meals", "/1/profile", "/1/stats"),
+            "meals", List.of("/", "/1"),
+            "workouts", List.of("/", "/1", "/users/1", "/leaderboard")
+    );
+
+    private final boolean enabled;
+    private final int minRounds;
+    private final int maxRounds;
+    private final int windowSize;
+    private final double stabilityThreshold;
+    private final long timeoutMs;
+    private volatile boolean ready;
+    private Thread thread;
+
+    public WarmupRunner() {
+        this.enabled = ApplicationProperties.getBoolean("warmup.enabled", false);
+        this.minRounds = ApplicationProperties.getInt("warmup.minRounds", 50);
+        this.maxRounds = ApplicationProperties.getInt("warmup.maxRounds", 2000);
+        this.windowSize = Math.max(1, ApplicationProperties.getInt("warmup.windowSize", 25));
+        this.stabilityThreshold = ApplicationProperties.getDouble("warmup.stabilityThreshold", 0.10);
+        this.timeoutMs = ApplicationProperties.getLong("warmup.timeoutMs", 60_000);
+    }
+
+    /**
+     * Запускает прогрев в фоновом потоке. Если прогрев выключен, приложение сразу считается готовым.
+     */
+    public synchronized void start() {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        thread = new Thread(this::run, "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Прерывает прогрев при остановке приложения.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Готово ли приложение принимать трафик.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void run() {
+        long started = System.currentTimeMillis();
+        try {
+            List<String> statements = new ArrayList<>();
+            statements.addAll(UserRepository.WARMUP_STATEMENTS);
+            statements.addAll(MealRepository.WARMUP_STATEMENTS);
+            statements.addAll(WorkoutRepository.WARMUP_STATEMENTS);
+            DatabaseUtil.warmUp(statements);
+
+            primeGson();
+            int rounds = runSyntheticTraffic(started + timeoutMs);
+
+            System.out.println("INFO: Прогрев завершён за " + (System.currentTimeMillis() - started)
+                    + " мс, раундов синтетических запросов: " + rounds);
+        } catch (Exception e) {
+            System.out.println("WARN: Прогрев прерван: " + e.getMessage());
+        } finally {
+            ready = true;
+        }
+    }
+
+    /**
+     * Заставляет Gson построить адаптеры для всех DTO, которые отдают сервлеты.
+     */
+    private void primeGson() {
+        Gson gson = new Gson();
+        gson.fromJson(gson.toJson(new UserDTO("Warmup", 30, 70.0, 175.0)), UserDTO.class);
+        gson.fromJson(gson.toJson(new MealDTO("Warmup", 100)), MealDTO.class);
+        gson.fromJson(gson.toJson(new WorkoutDTO("running", 30, 360, 1, "2024-01-31T10:15:30Z")), WorkoutDTO.class);
+        gson.toJson(new UserProfileDTO("Warmup", 30, 70.0, 175.0, List.of(), List.of()));
+        gson.toJson(new UserStatsDTO(1, 360, 500, List.of(new WorkoutStatsDTO("running", 1, 30, 360, 30, 360)),
+                new MealStatsDTO(1, 500, 500)));
+        gson.toJson(new WorkoutStatsSummaryDTO(new WorkoutStatsDTO(null, 1, 30, 360, 30, 360), List.of()));
+        gson.toJson(new LeaderboardDTO(List.of(new LeaderboardEntryDTO(1, 1, 360)), null));
+        gson.toJson(List.of(new MealSearchResultDTO(1, "Warmup", 100, 1.0)));
+        gson.toJson(new MessageResponseDTO("Warmup"));
+    }
+
+    /**
+     * Прогоняет раунды GET-запросов через отдельные экземпляры сервлетов,
+     * пока среднее время раунда в двух соседних окнах не совпадёт с точностью до порога.
+     *
+     * @return количество выполненных раундов
+     */
+    private int runSyntheticTraffic(long deadline) throws ServletException, IOException {
+        Map<String, HttpServlet> servlets = Map.of(
+                "users", new UserServlet(),
+                "meals", new MealServlet(),
+                "workouts", new WorkoutServlet()
+        );
+        for (HttpServlet servlet : servlets.values()) {
+            servlet.init();
+        }
+
+        HttpServletResponse response = discardingResponse();
+        double previousWindowAverage = -1;
+        long windowTotal = 0;
+        int rounds = 0;
+
+        while (rounds < maxRounds && System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+            long roundStart = System.nanoTime();
+            for (Map.Entry<String, List<String>> entry : SYNTHETIC_PATHS.entrySet()) {
+                HttpServlet servlet = servlets.get(entry.getKey());
+                for (String path : entry.getValue()) {
+                    servlet.service(syntheticGet(path), response);
+                }
+            }
+            windowTotal += System.nanoTime() - roundStart;
+            rounds++;
+
+            if (rounds % windowSize == 0) {
+                double windowAverage = (double) windowTotal / windowSize;
+                windowTotal = 0;
+                boolean stable = previousWindowAverage > 0
+                        && Math.abs(windowAverage - previousWindowAverage) / previousWindowAverage < stabilityThreshold;
+                if (stable && rounds >= minRounds) {
+                    break;
+                }
+                previousWindowAverage = windowAverage;
+            }
+        }
+        return rounds;
+    }
+
+    private static HttpServletRequest syntheticGet(String pathInfo) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return "GET";
+                        case "getPathInfo":
+                            return pathInfo;
+                        case "getDateHeader":
+                            return -1L;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static HttpServletResponse discardingResponse() {
+        PrintWriter writer = new PrintWriter(Writer.nullWriter());
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) ->
+                        "getWriter".equals(method.getName()) ? writer : defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -6,6 +6,7 @@ public class ApiConstants {
 
     public static final String CONTENT_TYPE = "application/json";
     public static final String CHARACTER_ENCODING = "UTF-8";
+    public static final String CSV_CONTENT_TYPE = "text/csv";
 
     // Пути
     public static final String ROOT_PATH = "/";
@@ -14,7 +15,51 @@ public class ApiConstants {
     public static final String USER_PATH_WITH_SLASH = "/user/";
     public static final String MEALS_PATH = "meals";
     public static final String WORKOUTS_PATH = "workouts";
+    public static final String PROFILE_PATH = "profile";
+    public static final String STATS_PATH = "stats";
     public static final String WORKOUTS_USERS_PATH_WITH_SLASH = "/workouts/users/";
+    public static final String HEALTH_READY_PATH = "/ready";
+    public static final String HEALTH_INGEST_PATH = "/ingest";
+    public static final String WORKOUT_STATS_PATH = "/stats";
+    public static final String LEADERBOARD_PATH = "/leaderboard";
+    public static final String MEAL_SEARCH_PATH = "/search";
+    public static final String BATCH_PATH = "batch";
+    public static final String IMPORT_PATH = "import";
+    public static final String EXPORT_TABLE_PATH = "export";
+    public static final String PARTITIONS_PATH = "partitions";
+    public static final String ARCHIVE_PATH = "archive";
+
+    // Таблицы для массового импорта и выгрузки
+    public static final String TABLE_USERS = "users";
+    public static final String TABLE_WORKOUTS = "workouts";
+    public static final String TABLE_MEALS = "meals";
+    public static final String TABLE_USER_MEALS = "user_meals";
+
+    // Параметры запроса
+    public static final String PARAM_AFTER = "after";
+    public static final String PARAM_LIMIT = "limit";
+    public static final String PARAM_IDS = "ids";
+    public static final String PARAM_HEADER = "header";
+    public static final String PARAM_FROM_USER_ID = "fromUserId";
+    public static final String PARAM_TO_USER_ID = "toUserId";
+    public static final String PARAM_FROM = "from";
+    public static final String PARAM_TO = "to";
+    public static final String PARAM_BEFORE = "before";
+    public static final String PARAM_GROUP_BY = "groupBy";
+    public static final String PARAM_USER_ID = "userId";
+    public static final String PARAM_QUERY = "q";
+    public static final String PARAM_FORMAT = "format";
+    public static final String FORMAT_JSON = "json";
+
+    // Значения параметра groupBy
+    public static final String GROUP_BY_TYPE = "type";
+
+    // Заголовки
+    public static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    // Состояние приложения
+    public static final String STATUS_UP = "UP";
+    public static final String STATUS_WARMING_UP = "WARMING_UP";
 
     // Сообщения об успешном создании/обновлении/удалении
     public static final String USER_CREATED_SUCCESSFULLY = "User created successfully";
@@ -28,6 +73,8 @@ public class ApiConstants {
     public static final String WORKOUT_CREATED_SUCCESSFULLY = "Workout created successfully";
     public static final String WORKOUT_UPDATED_SUCCESSFULLY = "Workout updated successfully";
     public static final String WORKOUT_DELETED_SUCCESSFULLY = "Workout deleted successfully";
+    public static final String WORKOUT_NOT_SAVED = "Workout could not be saved";
+    public static final String WORKOUT_ACCEPTED = "Workout accepted for processing";
 
 
     // Сообщения об ошибках
@@ -39,13 +86,42 @@ public class ApiConstants {
     public static final String WORKOUT_ID_IS_REQUIRED = "Workout ID is required";
     public static final String INVALID_WORKOUT_REQUEST_FORMAT =
             "Invalid request format. Use /users/{id}/workouts or /workouts/users/{id}";
+    public static final String WORKOUT_BATCH_IS_EMPTY = "Workout batch must contain at least one workout";
+    public static final String WORKOUT_BATCH_IS_TOO_LARGE = "Workout batch is too large, maximum is %d workouts";
+    public static final String WORKOUT_IS_REQUIRED = "Workout cannot be null";
+    public static final String WORKOUT_PERFORMED_IN_FUTURE = "Workout performedAt cannot be in the future";
+    public static final String INVALID_USER_PAYLOAD =
+            "Request body must be a JSON user object with name, age, weight and height";
+    public static final String MEAL_IDS_ARE_REQUIRED = "Request body must be a non-empty array of positive meal IDs";
+    public static final String MEAL_IDS_ARE_TOO_MANY = "No more than %d meal IDs per request";
+    public static final String MEAL_LINKS_NOT_SAVED = "Meal links were not saved";
 
 
     public static final String INVALID_USER_ID = "Invalid user ID format";
     public static final String INVALID_MEAL_ID = "Invalid meal ID format";
     public static final String INVALID_WORKOUT_ID = "Invalid workout ID format";
 
+    public static final String INVALID_PAGE_CURSOR = "Invalid page cursor";
+    public static final String INVALID_ID_LIST = "Parameter ids must be a comma-separated list of positive IDs";
+    public static final String ID_LIST_IS_TOO_LARGE = "No more than %d IDs per request";
+    public static final String INVALID_PAGE_LIMIT = "Page limit must be a positive number";
+    public static final String INVALID_DATE = "Dates must be ISO-8601, e.g. 2024-01-31 or 2024-01-31T10:15:30Z";
+    public static final String INVALID_DATE_RANGE = "Parameter 'from' must be before 'to'";
+    public static final String INVALID_GROUP_BY = "Parameter 'groupBy' supports only 'type'";
+    public static final String SEARCH_QUERY_IS_REQUIRED = "Parameter 'q' is required";
+    public static final String INVALID_ARCHIVE_BEFORE =
+            "Parameter 'before' must be the first day of a month no later than the current month";
+
+    public static final String INVALID_CSV_LINE = "Invalid CSV at line %d: %s";
+    public static final String IMPORT_REJECTED = "Import into %s rejected: %s";
+    public static final String IMPORT_READ_FAILED = "Failed to read import data";
+    public static final String UNKNOWN_TABLE = "Unknown table";
+    public static final String INVALID_USER_ID_RANGE = "Invalid user ID range";
+    public static final String ADMIN_DISABLED = "Admin endpoints are disabled";
+    public static final String ADMIN_FORBIDDEN = "Invalid admin token";
+
     public static final String INVALID_REQUEST = "Invalid request format";
     public static final String INTERNAL_SERVER_ERROR = "Internal server error";
+    public static final String SERVICE_UNAVAILABLE = "Service is temporarily overloaded, retry later";
 
 }
@@ -0,0 +1,320 @@
+package com.example.astonrest.controller;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.ImportResultDTO;
+import com.example.astonrest.dto.PartitionArchiveDTO;
+import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.exception.CustomException;
+import com.example.astonrest.exception.ExceptionHandler;
+import com.example.astonrest.exception.NotFoundException;
+import com.example.astonrest.exception.ServiceUnavailableException;
+import com.example.astonrest.repository.CopyRepository;
+import com.example.astonrest.repository.WorkoutPartitionRepository;
+import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.service.BulkDataService;
+import com.example.astonrest.service.CalorieLeaderboard;
+import com.example.astonrest.service.MealSearchIndex;
+import com.example.astonrest.service.WorkoutPartitionService;
+import com.example.astonrest.service.WorkoutService;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Сервлет служебных операций с данными.
+ * Обрабатывает массовый импорт CSV через {@code COPY} для таблиц workouts, meals и user_meals,
+ * выгрузку CSV для таблиц workouts, users и user_meals и потоковую выгрузку всех тренировок в JSON,
+ * а также архивацию старых партиций тренировок.
+ * <p>
+ * Доступен только если задан {@code admin.token} в {@code application.properties};
+ * токен передаётся в заголовке {@code X-Admin-Token}.
+ */
+public class AdminServlet extends HttpServlet {
+    private final Gson gson = new Gson();
+    private BulkDataService bulkDataService;
+    private WorkoutPartitionService partitionService;
+    private WorkoutService workoutService;
+    private String adminToken;
+    private final CalorieLeaderboard leaderboard;
+    private final MealSearchIndex mealSearchIndex;
+
+    public AdminServlet() {
+        this(null, null);
+    }
+
+    /**
+     * @param leaderboard     рейтинг по калориям, который строится заново после импорта тренировок
+     *                        и архивации партиций; может быть {@code null}
+     * @param mealSearchIndex поисковый индекс, который строится заново после импорта приёмов пищи; может быть {@code null}
+     */
+    public AdminServlet(CalorieLeaderboard leaderboard, MealSearchIndex mealSearchIndex) {
+        this.leaderboard = leaderboard;
+        this.mealSearchIndex = mealSearchIndex;
+    }
+
+    @Override
+    public void init() {
+        this.bulkDataService = new BulkDataService(new CopyRepository(), leaderboard, mealSearchIndex);
+        this.partitionService = new WorkoutPartitionService(new WorkoutPartitionRepository(), leaderboard);
+        this.workoutService = new WorkoutService(new WorkoutRepository());
+        this.adminToken = ApplicationProperties.getString("admin.token", "");
+    }
+
+    /**
+     * Выгружает таблицу в CSV (GET /admin/export/{table}).
+     * Параметры `?fromUserId=&toUserId=` ограничивают выгрузку диапазоном ID пользователя.
+     * Байты от {@code COPY ... TO STDOUT} пишутся прямо в поток ответа.
+     * GET /admin/export/workouts?format=json отдаёт все тренировки JSON-массивом.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        setupResponse(response);
+
+        if (!isAuthorized(request, response)) {
+            return;
+        }
+
+        String pathInfo = request.getPathInfo();
+        String[] pathParts = pathInfo == null ? new String[0] : pathInfo.split("/");
+
+        if (pathParts.length != 3 || !ApiConstants.EXPORT_TABLE_PATH.equals(pathParts[1])) {
+            ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_REQUEST),
+                    HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            String table = pathParts[2];
+            if (ApiConstants.TABLE_WORKOUTS.equals(table)
+                    && ApiConstants.FORMAT_JSON.equals(request.getParameter(ApiConstants.PARAM_FORMAT))) {
+                exportWorkoutsJson(response);
+                return;
+            }
+            int fromUserId = parseUserId(request.getParameter(ApiConstants.PARAM_FROM_USER_ID), 0);
+            int toUserId = parseUserId(request.getParameter(ApiConstants.PARAM_TO_USER_ID), Integer.MAX_VALUE);
+
+            response.setContentType(ApiConstants.CSV_CONTENT_TYPE);
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + table + ".csv\"");
+            response.setStatus(HttpServletResponse.SC_OK);
+
+            OutputStream out = response.getOutputStream();
+            exportTable(table, fromUserId, toUserId, out);
+            out.flush();
+
+        } catch (Exception e) {
+            handleExportError(response, e);
+        }
+    }
+
+    /**
+     * Импортирует CSV из тела запроса в таблицу (POST /admin/import/{table}).
+     * Параметр `?header=true` пропускает первую строку с заголовками.
+     * <p>
+     * POST /admin/partitions/archive?before=YYYY-MM-01 отсоединяет партиции тренировок
+     * за месяцы раньше {@code before} и переносит их в схему {@code workouts_archive}.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        setupResponse(response);
+
+        if (!isAuthorized(request, response)) {
+            return;
+        }
+
+        PrintWriter out = response.getWriter();
+        String pathInfo = request.getPathInfo();
+        String[] pathParts = pathInfo == null ? new String[0] : pathInfo.split("/");
+
+        if (isArchivePath(pathParts)) {
+            archivePartitions(request, response, out);
+            return;
+        }
+
+        if (pathParts.length != 3 || !ApiConstants.IMPORT_PATH.equals(pathParts[1])) {
+            ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_REQUEST),
+                    HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            if (request.getCharacterEncoding() == null) {
+                request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            }
+            boolean header = Boolean.parseBoolean(request.getParameter(ApiConstants.PARAM_HEADER));
+
+            ImportResultDTO result = importTable(pathParts[2], request.getReader(), header);
+            response.setStatus(HttpServletResponse.SC_OK);
+            out.print(gson.toJson(result));
+
+        } catch (BadRequestException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
+        } catch (Exception e) {
+            ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        out.flush();
+    }
+
+    // Вспомогательные методы для разгрузки сервлетов (Они не должны находиться в классе Servlet)
+
+    /**
+     * Проверяет, является ли путь архивацией партиций (/partitions/archive).
+     */
+    private boolean isArchivePath(String[] pathParts) {
+        return pathParts.length == 3 && ApiConstants.PARTITIONS_PATH.equals(pathParts[1])
+                && ApiConstants.ARCHIVE_PATH.equals(pathParts[2]);
+    }
+
+    /**
+     * Архивирует старые партиции тренировок и отвечает списком заархивированных.
+     */
+    private void archivePartitions(HttpServletRequest request, HttpServletResponse response, PrintWriter out)
+            throws IOException {
+        try {
+            PartitionArchiveDTO result = partitionService.archivePartitionsBefore(request.getParameter(ApiConstants.PARAM_BEFORE));
+            response.setStatus(HttpServletResponse.SC_OK);
+            out.print(gson.toJson(result));
+        } catch (BadRequestException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
+        } catch (Exception e) {
+            ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Выбирает импорт по имени таблицы.
+     */
+    private ImportResultDTO importTable(String table, Reader csv, boolean header) {
+        switch (table) {
+            case ApiConstants.TABLE_WORKOUTS:
+                return bulkDataService.importWorkouts(csv, header);
+            case ApiConstants.TABLE_MEALS:
+                return bulkDataService.importMeals(csv, header);
+            case ApiConstants.TABLE_USER_MEALS:
+                return bulkDataService.importUserMeals(csv, header);
+            default:
+                throw new NotFoundException(ApiConstants.UNKNOWN_TABLE);
+        }
+    }
+
+    /**
+     * Выбирает выгрузку по имени таблицы.
+     */
+    private void exportTable(String table, int fromUserId, int toUserId, OutputStream out) {
+        switch (table) {
+            case ApiConstants.TABLE_WORKOUTS:
+                bulkDataService.exportWorkouts(fromUserId, toUserId, out);
+                break;
+            case ApiConstants.TABLE_USERS:
+                bulkDataService.exportUsers(fromUserId, toUserId, out);
+                break;
+            case ApiConstants.TABLE_USER_MEALS:
+                bulkDataService.exportUserMeals(fromUserId, toUserId, out);
+                break;
+            default:
+                throw new NotFoundException(ApiConstants.UNKNOWN_TABLE);
+        }
+    }
+
+    /**
+     * Потоково выгружает все тренировки JSON-массивом. Строки читаются курсором
+     * и каждая сразу пишется через {@link JsonWriter} в поток ответа, поэтому память не зависит от размера таблицы.
+     */
+    private void exportWorkoutsJson(HttpServletResponse response) throws IOException {
+        response.setHeader("Content-Disposition", "attachment; filename=\"workouts.json\"");
+        response.setStatus(HttpServletResponse.SC_OK);
+
+        JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        jsonWriter.beginArray();
+        workoutService.exportWorkouts(workout -> gson.toJson(workout, WorkoutDTO.class, jsonWriter));
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Разбирает границу диапазона ID пользователя; без параметра используется значение по умолчанию.
+     */
+    private int parseUserId(String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(ApiConstants.INVALID_USER_ID_RANGE);
+        }
+    }
+
+    /**
+     * Обрабатывает ошибку выгрузки. Пока ответ не отправлен, он сбрасывается целиком
+     * вместе с заголовками CSV и выбранным потоком, и клиент получает JSON с ошибкой.
+     * Если часть CSV уже ушла клиенту, выгрузка просто обрывается.
+     */
+    private void handleExportError(HttpServletResponse response, Exception e) throws IOException {
+        if (response.isCommitted()) {
+            System.out.println("ERROR: Выгрузка CSV прервана: " + e.getMessage());
+            return;
+        }
+        response.reset();
+        setupResponse(response);
+        if (e instanceof BadRequestException) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } else if (e instanceof NotFoundException) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } else if (e instanceof ServiceUnavailableException) {
+            ExceptionHandler.handleServiceUnavailable(response, (ServiceUnavailableException) e);
+        } else {
+            ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Проверяет токен администратора. Если токен не настроен, служебные операции выключены.
+     */
+    private boolean isAuthorized(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (adminToken.isEmpty()) {
+            ExceptionHandler.handleException(response, new CustomException(ApiConstants.ADMIN_DISABLED),
+                    HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+        String token = request.getHeader(ApiConstants.ADMIN_TOKEN_HEADER);
+        if (token == null || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            ExceptionHandler.handleException(response, new CustomException(ApiConstants.ADMIN_FORBIDDEN),
+                    HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Устанавливает заголовки ответа.
+     */
+    private void setupResponse(HttpServletResponse response) {
+        response.setContentType(ApiConstants.CONTENT_TYPE);
+        response.setCharacterEncoding(ApiConstants.CHARACTER_ENCODING);
+    }
+}
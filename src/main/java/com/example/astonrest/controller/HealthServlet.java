@@ -0,0 +1,52 @@
+package com.example.astonrest.controller;
+
+import com.example.astonrest.config.WarmupRunner;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.MessageResponseDTO;
+import com.example.astonrest.service.WorkoutIngestQueue;
+import com.google.gson.Gson;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Сервлет проверок состояния для балансировщика и оркестратора.
+ * {@code GET /health/live} отвечает 200, пока приложение запущено,
+ * {@code GET /health/ready} — только после окончания прогрева, до этого 503.
+ * {@code GET /health/ingest} отдаёт глубину и счётчики очереди отложенной записи тренировок.
+ */
+public class HealthServlet extends HttpServlet {
+    private final Gson gson = new Gson();
+    private final WarmupRunner warmupRunner;
+    private final WorkoutIngestQueue ingestQueue;
+
+    public HealthServlet(WarmupRunner warmupRunner, WorkoutIngestQueue ingestQueue) {
+        this.warmupRunner = warmupRunner;
+        this.ingestQueue = ingestQueue;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(ApiConstants.CONTENT_TYPE);
+        response.setCharacterEncoding(ApiConstants.CHARACTER_ENCODING);
+
+        PrintWriter out = response.getWriter();
+        String pathInfo = request.getPathInfo();
+
+        if (ApiConstants.HEALTH_INGEST_PATH.equals(pathInfo)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            out.print(gson.toJson(ingestQueue.getStats()));
+        } else if (ApiConstants.HEALTH_READY_PATH.equals(pathInfo) && !warmupRunner.isReady()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            out.print(new MessageResponseDTO(ApiConstants.STATUS_WARMING_UP).toJson());
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+            out.print(new MessageResponseDTO(ApiConstants.STATUS_UP).toJson());
+        }
+        out.flush();
+    }
+}
@@ -3,12 +3,19 @@ package com.example.astonrest.controller;
 import com.example.astonrest.constants.ApiConstants;
 import com.example.astonrest.dto.MealDTO;
 import com.example.astonrest.dto.MessageResponseDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.exception.BadRequestException;
 import com.example.astonrest.exception.CustomException;
 import com.example.astonrest.exception.ExceptionHandler;
 import com.example.astonrest.exception.NotFoundException;
+import com.example.astonrest.exception.ServiceUnavailableException;
 import com.example.astonrest.repository.MealRepository;
+import com.example.astonrest.service.MealSearchIndex;
 import com.example.astonrest.service.MealService;
+import com.example.astonrest.util.ETags;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,7 +24,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
 
 /**
  * Сервлет для управления приёмами пищи.
@@ -26,14 +32,31 @@ import java.util.List;
 public class MealServlet extends HttpServlet {
     private final Gson gson = new Gson();
     private MealService mealService;
+    private final MealSearchIndex searchIndex;
+
+    public MealServlet() {
+        this(null);
+    }
+
+    /**
+     * @param searchIndex поисковый индекс по названиям приёмов пищи; может быть {@code null}
+     */
+    public MealServlet(MealSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
 
     @Override
     public void init() {
-        this.mealService = new MealService(new MealRepository());
+        this.mealService = new MealService(new MealRepository(), searchIndex);
     }
 
     /**
-     * Получает список всех приёмов пищи или один приём пищи по `id`
+     * Получает страницу приёмов пищи или один приём пищи по `id`.
+     * Списки постраничные: `?after={cursor}&limit={n}`.
+     * С параметром `?ids=1,2,3` возвращает приёмы пищи с перечисленными ID.
+     * `GET /meals/search?q={строка}&limit={n}` ищет по названию с учётом опечаток.
+     * Список отдаётся с `ETag` по счётчику изменений каталога; при совпадении `If-None-Match` — 304 без тела.
+     * ETag ответа 200 строится по версии, прочитанной вместе со списком, и ставится только после успешного чтения.
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -43,7 +66,23 @@ public class MealServlet extends HttpServlet {
         String pathInfo = request.getPathInfo();
 
         try {
-            Object responseBody = isRootPath(pathInfo) ? getAllMeals() : processMealRequest(pathInfo);
+            PageRequest page = PageRequest.of(request.getParameter(ApiConstants.PARAM_AFTER),
+                    request.getParameter(ApiConstants.PARAM_LIMIT));
+            Object responseBody;
+
+            if (ApiConstants.MEAL_SEARCH_PATH.equals(pathInfo)) {
+                responseBody = mealService.searchMeals(request.getParameter(ApiConstants.PARAM_QUERY), page.getLimit());
+            } else if (isRootPath(pathInfo)) {
+                if (ETags.notModified(request, response, mealService::getMealsETag)) {
+                    return;
+                }
+                String ids = request.getParameter(ApiConstants.PARAM_IDS);
+                Versioned<?> meals = ids != null ? mealService.getVersionedMealsByIds(IdListRequest.of(ids)) : getMeals(page);
+                responseBody = meals.getValue();
+                ETags.set(response, MealService.mealsETag(meals.getVersion()));
+            } else {
+                responseBody = processMealRequest(pathInfo, page);
+            }
 
             out.print(gson.toJson(responseBody));
             response.setStatus(HttpServletResponse.SC_OK);
@@ -51,8 +90,12 @@ public class MealServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_MEAL_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
+        } catch (BadRequestException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
         } catch (NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -79,6 +122,8 @@ public class MealServlet extends HttpServlet {
 
         } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -114,8 +159,12 @@ public class MealServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_MEAL_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
-        } catch (NotFoundException | BadRequestException e) {
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -150,6 +199,8 @@ public class MealServlet extends HttpServlet {
                     HttpServletResponse.SC_BAD_REQUEST);
         } catch (NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -170,27 +221,27 @@ public class MealServlet extends HttpServlet {
     /**
      * Обрабатывает запрос на получение конкретного приёма пищи или списка приёмов пользователя.
      */
-    private Object processMealRequest(String pathInfo) {
+    private Object processMealRequest(String pathInfo, PageRequest page) {
         if(pathInfo.startsWith(ApiConstants.USER_PATH_WITH_SLASH)) {
-            return getMealsByUserId(pathInfo.substring(ApiConstants.USER_PATH_WITH_SLASH.length()));
+            return getMealsByUserId(pathInfo.substring(ApiConstants.USER_PATH_WITH_SLASH.length()), page);
         } else {
             return getMealById(pathInfo.substring(1));
         }
     }
 
     /**
-     * Получает список всех приёмов пищи.
+     * Получает страницу приёмов пищи вместе с версией каталога.
      */
-    private List<MealDTO> getAllMeals() {
-        return mealService.getAllMeals();
+    private Versioned<PageDTO<MealDTO>> getMeals(PageRequest page) {
+        return mealService.getVersionedMeals(page);
     }
 
     /**
-     * Получает приёмы пищи пользователя по id.
+     * Получает страницу приёмов пищи пользователя по id.
      */
-    private List<MealDTO> getMealsByUserId(String userIdStr) {
+    private PageDTO<MealDTO> getMealsByUserId(String userIdStr, PageRequest page) {
         int userId = Integer.parseInt(userIdStr);
-        return mealService.getMealsByUserId(userId);
+        return mealService.getMealsByUserId(userId, page);
     }
 
     /**
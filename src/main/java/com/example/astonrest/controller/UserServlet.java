@@ -2,18 +2,31 @@ package com.example.astonrest.controller;
 
 import com.example.astonrest.constants.ApiConstants;
 import com.example.astonrest.dto.MessageResponseDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserMealLinkResultDTO;
+import com.example.astonrest.dto.UserMealUnlinkResultDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
 import com.example.astonrest.exception.BadRequestException;
 import com.example.astonrest.exception.CustomException;
 import com.example.astonrest.exception.ExceptionHandler;
 import com.example.astonrest.exception.NotFoundException;
+import com.example.astonrest.exception.ServiceUnavailableException;
 import com.example.astonrest.repository.MealRepository;
 import com.example.astonrest.repository.UserRepository;
 import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.service.CalorieLeaderboard;
 import com.example.astonrest.service.MealService;
 import com.example.astonrest.service.UserService;
 import com.example.astonrest.service.WorkoutService;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.ETags;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -21,28 +34,46 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Сервлет для управления пользователями.
  * Обрабатывает HTTP-запросы для получения, создания, обновления и удаления пользователей.
- * Также поддерживает получение тренировок и приёмов пищи пользователя.
+ * Также поддерживает получение тренировок и приёмов пищи пользователя
+ * его профиля целиком (GET /users/{id}/profile) и сводки по калориям (GET /users/{id}/stats).
  */
 public class UserServlet extends HttpServlet {
     private final Gson gson = new Gson();
     private UserService userService;
     private WorkoutService workoutService;
     private MealService mealService;
+    private final CalorieLeaderboard leaderboard;
+
+    public UserServlet() {
+        this(null);
+    }
+
+    /**
+     * @param leaderboard рейтинг по калориям, из которого убираются удалённые пользователи; может быть {@code null}
+     */
+    public UserServlet(CalorieLeaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
 
     @Override
     public void init() {
-        this.userService = new UserService(new UserRepository());
-        this.workoutService = new WorkoutService(new WorkoutRepository(), new UserRepository());
+        this.userService = new UserService(new UserRepository(), leaderboard);
+        this.workoutService = new WorkoutService(new WorkoutRepository());
         this.mealService = new MealService(new MealRepository());
     }
 
     /**
-     * Получает список всех пользователей или одного пользователя по `id`
+     * Получает страницу пользователей или одного пользователя по `id`.
+     * Списки постраничные: `?after={cursor}&limit={n}`.
+     * Тренировки пользователя можно ограничить периодом: `?from=2024-01-01&to=2024-02-01`.
+     * С параметром `?ids=1,2,3` возвращает пользователей с перечисленными ID.
+     * Пользователь и его тренировки отдаются с `ETag`; при совпадении `If-None-Match` — 304 без тела.
+     * ETag ответа 200 строится по версии, прочитанной вместе с телом, и ставится только после успешного чтения.
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -52,12 +83,20 @@ public class UserServlet extends HttpServlet {
         String pathInfo = request.getPathInfo();
 
         try {
+            PageRequest page = PageRequest.of(request.getParameter(ApiConstants.PARAM_AFTER),
+                    request.getParameter(ApiConstants.PARAM_LIMIT));
+            if (ETags.notModified(request, response, () -> getETag(pathInfo, request))) {
+                return;
+            }
             Object responseBody;
 
             if (isRootPath(pathInfo)) {
-                responseBody = getAllUsers();
+                String ids = request.getParameter(ApiConstants.PARAM_IDS);
+                responseBody = ids != null ? userService.getUsersByIds(IdListRequest.of(ids)) : getUsers(page);
             } else {
-                responseBody = processUserRequest(pathInfo);
+                Versioned<?> result = processUserRequest(pathInfo, page, request);
+                responseBody = result.getValue();
+                ETags.set(response, getETag(pathInfo, result.getVersion()));
             }
             out.print(gson.toJson(responseBody));
             response.setStatus(HttpServletResponse.SC_OK);
@@ -65,8 +104,12 @@ public class UserServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_USER_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
+        } catch (BadRequestException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
         } catch (NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -76,20 +119,41 @@ public class UserServlet extends HttpServlet {
 
     /**
      * Создаёт нового пользователя (POST /users)
+     * или привязывает к пользователю приёмы пищи из JSON-массива ID (POST /users/{id}/meals).
      */
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
         setupResponse(response);
 
         PrintWriter out = response.getWriter();
+        String pathInfo = request.getPathInfo();
         try {
             BufferedReader reader = request.getReader();
-            UserDTO userDTO = gson.fromJson(reader, UserDTO.class);
 
-            userService.createUser(userDTO);
-            response.setStatus(HttpServletResponse.SC_CREATED);
-            out.print(new MessageResponseDTO(ApiConstants.USER_CREATED_SUCCESSFULLY).toJson());
+            if (isUserMealsPath(pathInfo)) {
+                int userId = Integer.parseInt(pathInfo.split("/")[1]);
+                Integer[] mealIds = parseBody(reader, Integer[].class, ApiConstants.MEAL_IDS_ARE_REQUIRED);
+                UserMealLinkResultDTO result = mealService.linkMealsToUser(userId,
+                        mealIds == null ? null : Arrays.asList(mealIds));
+                response.setStatus(HttpServletResponse.SC_OK);
+                out.print(gson.toJson(result));
+            } else if (isRootPath(pathInfo)) {
+                UserDTO userDTO = parseBody(reader, UserDTO.class, ApiConstants.INVALID_USER_PAYLOAD);
+
+                userService.createUser(userDTO);
+                response.setStatus(HttpServletResponse.SC_CREATED);
+                out.print(new MessageResponseDTO(ApiConstants.USER_CREATED_SUCCESSFULLY).toJson());
+            } else {
+                throw new BadRequestException(ApiConstants.INVALID_REQUEST);
+            }
+        } catch (NumberFormatException e) {
+            ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_USER_ID),
+                    HttpServletResponse.SC_BAD_REQUEST);
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
         } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -124,8 +188,12 @@ public class UserServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_USER_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
-        } catch (NotFoundException | BadRequestException e) {
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -136,6 +204,7 @@ public class UserServlet extends HttpServlet {
 
     /**
      * Удаляет пользователя по ID (DELETE /users/{id})
+     * или отвязывает от него приёмы пищи (DELETE /users/{id}/meals?ids=1,2,3).
      */
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -151,16 +220,32 @@ public class UserServlet extends HttpServlet {
         }
 
         try {
-            int id = Integer.parseInt(pathInfo.substring(1));
-            userService.deleteUser(id);
+            if (isUserMealsPath(pathInfo)) {
+                int userId = Integer.parseInt(pathInfo.split("/")[1]);
+                String ids = request.getParameter(ApiConstants.PARAM_IDS);
+                if (ids == null) {
+                    throw new BadRequestException(ApiConstants.INVALID_ID_LIST);
+                }
+                UserMealUnlinkResultDTO result = mealService.unlinkMealsFromUser(userId,
+                        IdListRequest.parseIds(ids));
+                response.setStatus(HttpServletResponse.SC_OK);
+                out.print(gson.toJson(result));
+            } else {
+                int id = Integer.parseInt(pathInfo.substring(1));
+                userService.deleteUser(id);
 
-            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
-            out.print(new MessageResponseDTO(ApiConstants.USER_DELETED_SUCCESSFULLY).toJson());
+                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+                out.print(new MessageResponseDTO(ApiConstants.USER_DELETED_SUCCESSFULLY).toJson());
+            }
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_USER_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
-        } catch (NotFoundException | BadRequestException e) {
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -171,6 +256,18 @@ public class UserServlet extends HttpServlet {
 
     // Вспомогательные методы для разгрузки сервлетов (Они не должны находиться в классе Servlet)
 
+    /**
+     * Разбирает JSON-тело запроса; синтаксическая ошибка становится 400 с сообщением
+     * о формате именно этого тела, а не соседнего пути того же метода.
+     */
+    private <T> T parseBody(BufferedReader reader, Class<T> type, String errorMessage) {
+        try {
+            return gson.fromJson(reader, type);
+        } catch (JsonSyntaxException e) {
+            throw new BadRequestException(errorMessage);
+        }
+    }
+
     /**
      * Проверяет, является ли путь корневым.
      */
@@ -178,51 +275,134 @@ public class UserServlet extends HttpServlet {
         return pathInfo == null || pathInfo.equals(ApiConstants.ROOT_PATH);
     }
 
+    /**
+     * ETag текущей версии пользователя (/{id}) и его тренировок (/{id}/workouts) для проверки {@code If-None-Match}.
+     * Для остальных путей условный запрос не поддерживается.
+     */
+    private String getETag(String pathInfo, HttpServletRequest request) {
+        if (isRootPath(pathInfo)) {
+            return null;
+        }
+        String[] pathParts = pathInfo.split("/");
+        if (pathParts.length == 2) {
+            return userService.getUserETag(Integer.parseInt(pathParts[1]));
+        }
+        if (pathParts.length == 3 && ApiConstants.WORKOUTS_PATH.equals(pathParts[2])) {
+            // Период проверяется до чтения версии, чтобы неверные параметры давали 400, а не 304
+            DateRange.of(request.getParameter(ApiConstants.PARAM_FROM), request.getParameter(ApiConstants.PARAM_TO));
+            return workoutService.getUserWorkoutsETag(Integer.parseInt(pathParts[1]));
+        }
+        return null;
+    }
+
+    /**
+     * ETag ответа по версии, прочитанной вместе с его телом.
+     */
+    private String getETag(String pathInfo, Long version) {
+        String[] pathParts = pathInfo.split("/");
+        if (pathParts.length == 2) {
+            return UserService.userETag(Integer.parseInt(pathParts[1]), version);
+        }
+        if (pathParts.length == 3 && ApiConstants.WORKOUTS_PATH.equals(pathParts[2])) {
+            return WorkoutService.userWorkoutsETag(Integer.parseInt(pathParts[1]), version);
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, относится ли путь к приёмам пищи пользователя (/{id}/meals).
+     */
+    private boolean isUserMealsPath(String pathInfo) {
+        if (pathInfo == null) {
+            return false;
+        }
+        String[] pathParts = pathInfo.split("/");
+        return pathParts.length == 3 && ApiConstants.MEALS_PATH.equals(pathParts[2]);
+    }
+
     /**
      * Обрабатывает запрос пользователя по id, а также его тренировок и приемов пищи.
+     *
+     * @return тело ответа и версия для ETag, если представление её поддерживает
      */
-    private Object processUserRequest(String pathInfo) {
+    private Versioned<?> processUserRequest(String pathInfo, PageRequest page, HttpServletRequest request) {
         String[] pathParts = pathInfo.split("/");
 
         if (pathParts.length == 2) {
             return getUserById(pathParts[1]);
         } else if (pathParts.length == 3) {
-            return getUserRelatedData(pathParts[1], pathParts[2]);
+            return getUserRelatedData(pathParts[1], pathParts[2], page, request);
         } else {
             throw new BadRequestException(ApiConstants.INVALID_REQUEST);
         }
     }
 
     /**
-     * Получает список всех пользователей.
+     * Получает страницу пользователей.
      */
-    private List<UserDTO> getAllUsers() {
-        return userService.getAllUsers();
+    private PageDTO<UserDTO> getUsers(PageRequest page) {
+        return userService.getUsers(page);
     }
 
     /**
-     * Получает пользователя по ID.
+     * Получает пользователя по ID вместе с версией его строки.
      */
-    private UserDTO getUserById(String userIdStr) {
+    private Versioned<UserDTO> getUserById(String userIdStr) {
         int userId = Integer.parseInt(userIdStr);
-        UserDTO user = userService.getUserById(userId);
+        Versioned<UserDTO> user = userService.getVersionedUserById(userId);
         if (user == null) {
             throw new NotFoundException(ApiConstants.USER_NOT_FOUND);
         }
         return user;
     }
 
-    private Object getUserRelatedData(String userIdStr, String type) {
+    private Versioned<?> getUserRelatedData(String userIdStr, String type, PageRequest page, HttpServletRequest request) {
         int userId = Integer.parseInt(userIdStr);
-        if (ApiConstants.WORKOUTS_PATH.equals(type)) {
-            return workoutService.getWorkoutsByUserId(userId);
+        if (ApiConstants.PROFILE_PATH.equals(type)) {
+            return Versioned.unversioned(getUserProfile(userId));
+        } else if (ApiConstants.STATS_PATH.equals(type)) {
+            return Versioned.unversioned(getUserStats(userId, request.getParameter(ApiConstants.PARAM_GROUP_BY)));
+        } else if (ApiConstants.WORKOUTS_PATH.equals(type)) {
+            DateRange range = DateRange.of(request.getParameter(ApiConstants.PARAM_FROM),
+                    request.getParameter(ApiConstants.PARAM_TO));
+            return workoutService.getVersionedWorkoutsByUserId(userId, range, page);
         } else if (ApiConstants.MEALS_PATH.equals(type)) {
-            return mealService.getMealsByUserId(userId);
+            return Versioned.unversioned(mealService.getMealsByUserId(userId, page));
         } else {
             throw new BadRequestException(ApiConstants.INVALID_REQUEST);
         }
     }
 
+    /**
+     * Получает профиль пользователя с тренировками и приёмами пищи.
+     */
+    private UserProfileDTO getUserProfile(int userId) {
+        UserProfileDTO profile = userService.getUserProfile(userId);
+        if (profile == null) {
+            throw new NotFoundException(ApiConstants.USER_NOT_FOUND);
+        }
+        return profile;
+    }
+
+    /**
+     * Получает сводку по пользователю: количество тренировок и суммы калорий.
+     * С {@code ?groupBy=type} добавляет разбивку тренировок по типам и агрегаты по приёмам пищи.
+     * Сводка и разбивка считаются по одним и тем же тренировкам рабочей таблицы: при архивации партиции
+     * её тренировки вычитаются из сводки (миграция {@code V7__archive_updates_user_stats.sql}).
+     */
+    private UserStatsDTO getUserStats(int userId, String groupBy) {
+        boolean byType = WorkoutService.isGroupByType(groupBy);
+        UserStatsDTO stats = userService.getUserStats(userId);
+        if (stats == null) {
+            throw new NotFoundException(ApiConstants.USER_NOT_FOUND);
+        }
+        if (byType) {
+            stats.setWorkoutsByType(workoutService.getWorkoutStatsByUserId(userId));
+            stats.setMeals(mealService.getMealStatsByUserId(userId));
+        }
+        return stats;
+    }
+
     /**
      * Устанавливает заголовки ответа.
      */
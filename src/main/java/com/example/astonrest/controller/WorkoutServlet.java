@@ -1,16 +1,25 @@
 package com.example.astonrest.controller;
 
 import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.BatchItemResultDTO;
 import com.example.astonrest.dto.MessageResponseDTO;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.dto.WorkoutAcceptedDTO;
 import com.example.astonrest.dto.WorkoutDTO;
 import com.example.astonrest.exception.BadRequestException;
 import com.example.astonrest.exception.CustomException;
 import com.example.astonrest.exception.ExceptionHandler;
 import com.example.astonrest.exception.NotFoundException;
-import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.exception.ServiceUnavailableException;
 import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.service.CalorieLeaderboard;
+import com.example.astonrest.service.WorkoutIngestQueue;
 import com.example.astonrest.service.WorkoutService;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -18,6 +27,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -27,15 +37,36 @@ import java.util.List;
  */
 public class WorkoutServlet extends HttpServlet {
     private final Gson gson = new Gson();
+    private final WorkoutIngestQueue ingestQueue;
+    private final CalorieLeaderboard leaderboard;
     private WorkoutService workoutService;
 
+    public WorkoutServlet() {
+        this(null, null);
+    }
+
+    /**
+     * @param ingestQueue очередь отложенной записи одиночных тренировок; {@code null} — только синхронная запись
+     * @param leaderboard рейтинг по калориям; {@code null} — рейтинг всегда пуст
+     */
+    public WorkoutServlet(WorkoutIngestQueue ingestQueue, CalorieLeaderboard leaderboard) {
+        this.ingestQueue = ingestQueue;
+        this.leaderboard = leaderboard;
+    }
+
     @Override
     public void init() {
-        this.workoutService = new WorkoutService(new WorkoutRepository(), new UserRepository());
+        this.workoutService = new WorkoutService(new WorkoutRepository(), ingestQueue, leaderboard);
     }
 
     /**
-     * Получает список всех тренировок или одну тренировку по `id`
+     * Получает страницу тренировок или одну тренировку по `id`.
+     * Списки постраничные: `?after={cursor}&limit={n}`.
+     * Тренировки пользователя можно ограничить периодом: `?from=2024-01-01&to=2024-02-01`.
+     * С параметром `?ids=1,2,3` возвращает тренировки с перечисленными ID.
+     * Количество, суммы и средние считаются в базе через `/stats` (`?groupBy=type` — с разбивкой по типам,
+     * `?from=&to=` — за период).
+     * Рейтинг по сожжённым калориям — `/leaderboard?limit={k}`, с `&userId={id}` — вместе с местом пользователя.
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -45,7 +76,23 @@ public class WorkoutServlet extends HttpServlet {
         String pathInfo = request.getPathInfo();
 
         try {
-            Object responseBody = isRootPath(pathInfo) ? getAllWorkouts() : processWorkoutRequest(pathInfo);
+            PageRequest page = PageRequest.of(request.getParameter(ApiConstants.PARAM_AFTER),
+                    request.getParameter(ApiConstants.PARAM_LIMIT));
+            Object responseBody;
+
+            if (ApiConstants.LEADERBOARD_PATH.equals(pathInfo)) {
+                responseBody = workoutService.getLeaderboard(page.getLimit(),
+                        parseUserId(request.getParameter(ApiConstants.PARAM_USER_ID)));
+            } else if (ApiConstants.WORKOUT_STATS_PATH.equals(pathInfo)) {
+                DateRange range = DateRange.of(request.getParameter(ApiConstants.PARAM_FROM),
+                        request.getParameter(ApiConstants.PARAM_TO));
+                responseBody = workoutService.getWorkoutStats(range, request.getParameter(ApiConstants.PARAM_GROUP_BY));
+            } else if (isRootPath(pathInfo)) {
+                String ids = request.getParameter(ApiConstants.PARAM_IDS);
+                responseBody = ids != null ? workoutService.getWorkoutsByIds(IdListRequest.of(ids)) : getWorkouts(page);
+            } else {
+                responseBody = processWorkoutRequest(pathInfo, page, request);
+            }
 
             out.print(gson.toJson(responseBody));
             response.setStatus(HttpServletResponse.SC_OK);
@@ -53,8 +100,12 @@ public class WorkoutServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_WORKOUT_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
+        } catch (BadRequestException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
         } catch (NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -63,7 +114,10 @@ public class WorkoutServlet extends HttpServlet {
     }
 
     /**
-     * Создаёт новую тренировку (POST /workouts)
+     * Создаёт новую тренировку (POST /workouts/users/{id})
+     * или пачку тренировок из JSON-массива (POST /workouts/users/{id}/batch).
+     * В асинхронном режиме одиночная тренировка после проверки ставится в очередь записи,
+     * и ответ 202 содержит номер отслеживания; при заполненной очереди — 503.
      */
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -81,17 +135,39 @@ public class WorkoutServlet extends HttpServlet {
         try {
             int userId = extractUserId(pathInfo);
             BufferedReader reader = request.getReader();
-            WorkoutDTO workoutDTO = gson.fromJson(reader, WorkoutDTO.class);
 
-            workoutService.createWorkoutForUser(workoutDTO, userId);
-            response.setStatus(HttpServletResponse.SC_CREATED);
-            out.print(new MessageResponseDTO(ApiConstants.WORKOUT_CREATED_SUCCESSFULLY).toJson());
+            if (isBatchPath(pathInfo)) {
+                WorkoutDTO[] workoutDTOs = gson.fromJson(reader, WorkoutDTO[].class);
+                List<BatchItemResultDTO> results = workoutService.createWorkoutsForUser(
+                        workoutDTOs == null ? null : Arrays.asList(workoutDTOs), userId);
+
+                boolean anyCreated = results.stream().anyMatch(result -> result.getId() != null);
+                response.setStatus(anyCreated ? HttpServletResponse.SC_CREATED : HttpServletResponse.SC_BAD_REQUEST);
+                out.print(gson.toJson(results));
+            } else {
+                WorkoutDTO workoutDTO = gson.fromJson(reader, WorkoutDTO.class);
+
+                if (workoutService.isAsyncIngestEnabled()) {
+                    String trackingId = workoutService.enqueueWorkoutForUser(workoutDTO, userId);
+                    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                    out.print(gson.toJson(new WorkoutAcceptedDTO(ApiConstants.WORKOUT_ACCEPTED, trackingId)));
+                } else {
+                    workoutService.createWorkoutForUser(workoutDTO, userId);
+                    response.setStatus(HttpServletResponse.SC_CREATED);
+                    out.print(new MessageResponseDTO(ApiConstants.WORKOUT_CREATED_SUCCESSFULLY).toJson());
+                }
+            }
 
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_USER_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
+        } catch (JsonSyntaxException e) {
+            ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_REQUEST),
+                    HttpServletResponse.SC_BAD_REQUEST);
         } catch (BadRequestException | NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -127,8 +203,12 @@ public class WorkoutServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             ExceptionHandler.handleException(response, new BadRequestException(ApiConstants.INVALID_WORKOUT_ID),
                     HttpServletResponse.SC_BAD_REQUEST);
-        } catch (NotFoundException | BadRequestException e) {
+        } catch (NotFoundException e) {
+            ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (BadRequestException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -164,6 +244,8 @@ public class WorkoutServlet extends HttpServlet {
                     HttpServletResponse.SC_BAD_REQUEST);
         } catch (NotFoundException e) {
             ExceptionHandler.handleException(response, e, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ServiceUnavailableException e) {
+            ExceptionHandler.handleServiceUnavailable(response, e);
         } catch (Exception e) {
             ExceptionHandler.handleException(response, new CustomException(ApiConstants.INTERNAL_SERVER_ERROR),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -192,31 +274,56 @@ public class WorkoutServlet extends HttpServlet {
     /**
      * Обрабатывает запрос на получение конкретной тренировки или списка тренировок пользователя.
      */
-    private Object processWorkoutRequest(String pathInfo) {
+    private Object processWorkoutRequest(String pathInfo, PageRequest page, HttpServletRequest request) {
         String[] pathParts = pathInfo.split("/");
 
         if(pathParts.length == 2) {
             return getWorkoutById(pathParts[1]);
         } else if (pathParts.length == 3 && ApiConstants.USERS_PATH.equals(pathParts[1])) {
-            return getWorkoutsByUserId(pathParts[2]);
+            DateRange range = DateRange.of(request.getParameter(ApiConstants.PARAM_FROM),
+                    request.getParameter(ApiConstants.PARAM_TO));
+            return getWorkoutsByUserId(pathParts[2], range, page);
         } else {
             throw new BadRequestException(ApiConstants.INVALID_REQUEST);
         }
     }
 
     /**
-     * Получает список всех тренировок.
+     * Получает страницу тренировок.
      */
-    private List<WorkoutDTO> getAllWorkouts() {
-        return workoutService.getAllWorkouts();
+    private PageDTO<WorkoutDTO> getWorkouts(PageRequest page) {
+        return workoutService.getWorkouts(page);
     }
 
     /**
-     * Получает тренировки пользователя по id.
+     * Получает страницу тренировок пользователя по id за период.
      */
-    private List<WorkoutDTO> getWorkoutsByUserId(String userIdStr) {
+    private PageDTO<WorkoutDTO> getWorkoutsByUserId(String userIdStr, DateRange range, PageRequest page) {
         int userId = Integer.parseInt(userIdStr);
-        return workoutService.getWorkoutsByUserId(userId);
+        return workoutService.getWorkoutsByUserId(userId, range, page);
+    }
+
+    /**
+     * Проверяет, является ли путь пакетным созданием тренировок (/users/{id}/batch).
+     */
+    private boolean isBatchPath(String pathInfo) {
+        String[] pathParts = pathInfo.split("/");
+        return pathParts.length == 4 && ApiConstants.USERS_PATH.equals(pathParts[1])
+                && ApiConstants.BATCH_PATH.equals(pathParts[3]);
+    }
+
+    /**
+     * Разбирает необязательный параметр {@code userId}.
+     */
+    private Integer parseUserId(String userIdStr) {
+        if (userIdStr == null || userIdStr.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(userIdStr);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(ApiConstants.INVALID_USER_ID);
+        }
     }
 
     /**
@@ -224,7 +331,7 @@ public class WorkoutServlet extends HttpServlet {
      */
     private int extractUserId(String pathInfo) {
         String[] pathParts = pathInfo.split("/");
-        if (pathParts.length == 3 && ApiConstants.USERS_PATH.equals(pathParts[1])) {
+        if ((pathParts.length == 3 || isBatchPath(pathInfo)) && ApiConstants.USERS_PATH.equals(pathParts[1])) {
             return Integer.parseInt(pathParts[2]);
         }
         throw new BadRequestException(ApiConstants.INVALID_WORKOUT_REQUEST_FORMAT);
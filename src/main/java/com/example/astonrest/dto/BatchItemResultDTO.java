@@ -0,0 +1,28 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс с результатом обработки одного элемента пакетного запроса.
+ * <p>
+ * {@code index} — позиция элемента в присланном массиве. При успехе заполнен {@code id}
+ * созданной записи, при ошибке — {@code error}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResultDTO {
+    private int index;
+    private Integer id;
+    private String error;
+
+    public static BatchItemResultDTO created(int index, int id) {
+        return new BatchItemResultDTO(index, id, null);
+    }
+
+    public static BatchItemResultDTO failed(int index, String error) {
+        return new BatchItemResultDTO(index, null, error);
+    }
+}
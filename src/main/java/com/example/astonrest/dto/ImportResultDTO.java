@@ -0,0 +1,16 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс с результатом массового импорта: таблица и количество загруженных строк.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResultDTO {
+    private String table;
+    private long rows;
+}
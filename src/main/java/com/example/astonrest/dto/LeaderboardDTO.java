@@ -0,0 +1,19 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс ответа {@code GET /workouts/leaderboard}: первые места рейтинга
+ * и, если запрошен {@code ?userId=}, место этого пользователя.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardDTO {
+    private List<LeaderboardEntryDTO> top;
+    private LeaderboardEntryDTO user;
+}
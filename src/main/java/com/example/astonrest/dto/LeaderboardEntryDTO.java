@@ -0,0 +1,17 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс строки рейтинга: место пользователя и сожжённые им калории.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardEntryDTO {
+    private int rank;
+    private int userId;
+    private long caloriesBurned;
+}
@@ -0,0 +1,21 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс найденного приёма пищи.
+ * <p>
+ * {@code score} — 1 для совпадения по началу названия, иначе доля общих триграмм
+ * запроса и названия (от 0 до 1).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MealSearchResultDTO {
+    private int id;
+    private String name;
+    private int calories;
+    private double score;
+}
@@ -0,0 +1,17 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс с агрегатами по приёмам пищи пользователя.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MealStatsDTO {
+    private long count;
+    private long totalCalories;
+    private double averageCalories;
+}
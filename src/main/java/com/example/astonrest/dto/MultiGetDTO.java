@@ -0,0 +1,22 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO-класс для ответа на выборку по списку ID.
+ * <p>
+ * {@code items} — найденные записи по ID в порядке запроса,
+ * {@code missingIds} — запрошенные ID, которых нет в базе.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MultiGetDTO<T> {
+    private Map<Integer, T> items;
+    private List<Integer> missingIds;
+}
@@ -0,0 +1,21 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс для передачи одной страницы списка.
+ * <p>
+ * {@code nextCursor} передаётся в параметре {@code after} для получения следующей страницы;
+ * на последней странице он отсутствует.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageDTO<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,17 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс с результатом архивации: имена партиций тренировок, перенесённых в схему {@code workouts_archive}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PartitionArchiveDTO {
+    private List<String> archivedPartitions;
+}
@@ -0,0 +1,22 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс результата привязки приёмов пищи к пользователю.
+ * <p>
+ * {@code linked} — сколько связей добавлено, {@code alreadyLinked} — сколько уже было,
+ * {@code missingMealIds} — ID приёмов пищи, которых нет в каталоге.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserMealLinkResultDTO {
+    private int linked;
+    private int alreadyLinked;
+    private List<Integer> missingMealIds;
+}
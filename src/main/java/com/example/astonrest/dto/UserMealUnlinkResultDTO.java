@@ -0,0 +1,17 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс результата отвязки приёмов пищи от пользователя:
+ * сколько связей удалено и сколько из запрошенных не существовало.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserMealUnlinkResultDTO {
+    private int unlinked;
+    private int notLinked;
+}
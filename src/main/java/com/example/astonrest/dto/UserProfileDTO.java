@@ -0,0 +1,23 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс профиля пользователя: данные пользователя вместе
+ * с его тренировками и приёмами пищи для экрана пользователя.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserProfileDTO {
+    private String name;
+    private int age;
+    private double weight;
+    private double height;
+    private List<WorkoutDTO> workouts;
+    private List<MealDTO> meals;
+}
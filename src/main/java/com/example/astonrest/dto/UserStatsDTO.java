@@ -0,0 +1,29 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс со сводкой по пользователю: количество тренировок,
+ * сожжённые и съеденные калории. Тренировки считаются по рабочей таблице, как и разбивка по типам:
+ * заархивированные партиции в сводку не входят.
+ * С {@code ?groupBy=type} дополнительно заполняются разбивка тренировок по типам
+ * и агрегаты по приёмам пищи; без него эти поля отсутствуют.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserStatsDTO {
+    private int workoutCount;
+    private long caloriesBurned;
+    private long caloriesEaten;
+    private List<WorkoutStatsDTO> workoutsByType;
+    private MealStatsDTO meals;
+
+    public UserStatsDTO(int workoutCount, long caloriesBurned, long caloriesEaten) {
+        this(workoutCount, caloriesBurned, caloriesEaten, null, null);
+    }
+}
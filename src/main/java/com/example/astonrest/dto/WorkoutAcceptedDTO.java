@@ -0,0 +1,17 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс ответа 202 на тренировку, принятую в очередь записи.
+ * По {@code trackingId} тренировку можно найти в логе, если она не сохранится.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkoutAcceptedDTO {
+    private String message;
+    private String trackingId;
+}
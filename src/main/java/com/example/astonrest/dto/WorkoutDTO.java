@@ -9,6 +9,9 @@ import lombok.NoArgsConstructor;
  * <p>
  * Мы НЕ передаём id
  * так как эти детали обрабатываются на сервере.
+ * <p>
+ * {@code performedAt} — момент тренировки в ISO-8601 ({@code 2024-01-31T10:15:30Z});
+ * если при создании не указан, используется текущее время.
  */
 @Data
 @AllArgsConstructor
@@ -18,4 +21,5 @@ public class WorkoutDTO {
     private int duration;
     private int caloriesBurned;
     private int userId;
+    private String performedAt;
 }
@@ -0,0 +1,32 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс с состоянием очереди отложенной записи тренировок.
+ * <p>
+ * {@code rejected} — запросы, получившие 503 из-за заполненной очереди,
+ * {@code dropped} — принятые тренировки, которые не удалось сохранить,
+ * {@code pendingRetry} — тренировки недописанной пачки, ожидающие повтора, пока база недоступна,
+ * {@code retries} — неудачные попытки записи, после которых пачка повторялась.
+ * Время записи пачки — в миллисекундах.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkoutIngestStatsDTO {
+    private boolean enabled;
+    private int queueDepth;
+    private int queueCapacity;
+    private int pendingRetry;
+    private long accepted;
+    private long rejected;
+    private long flushed;
+    private long dropped;
+    private long flushes;
+    private long retries;
+    private long lastFlushMillis;
+    private long maxFlushMillis;
+}
@@ -0,0 +1,21 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO-класс с агрегатами по тренировкам: количество, суммы и средние длительности и калорий.
+ * {@code type} заполнен в разбивке по типам и отсутствует в общем итоге.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkoutStatsDTO {
+    private String type;
+    private long count;
+    private long totalDuration;
+    private long totalCaloriesBurned;
+    private double averageDuration;
+    private double averageCaloriesBurned;
+}
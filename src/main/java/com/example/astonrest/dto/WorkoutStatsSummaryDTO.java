@@ -0,0 +1,18 @@
+package com.example.astonrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO-класс ответа {@code GET /workouts/stats}: общий итог и, при {@code ?groupBy=type}, разбивка по типам.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkoutStatsSummaryDTO {
+    private WorkoutStatsDTO total;
+    private List<WorkoutStatsDTO> byType;
+}
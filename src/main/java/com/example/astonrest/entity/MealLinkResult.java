@@ -0,0 +1,16 @@
+package com.example.astonrest.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MealLinkResult {
+    private boolean userFound;
+    private int linked;                   // Сколько новых связей добавлено
+    private List<Integer> missingMealIds; // ID, которых нет в таблице meals
+}
@@ -0,0 +1,14 @@
+package com.example.astonrest.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MealStats {
+    private long count;          // Сколько приёмов пищи привязано к пользователю
+    private long totalCalories;
+    private double averageCalories;
+}
@@ -0,0 +1,13 @@
+package com.example.astonrest.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MealUnlinkResult {
+    private boolean userFound;
+    private int unlinked; // Сколько связей удалено
+}
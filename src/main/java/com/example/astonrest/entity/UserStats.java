@@ -0,0 +1,15 @@
+package com.example.astonrest.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserStats {
+    private int userId;
+    private int workoutCount;
+    private long caloriesBurned; // Сумма калорий всех тренировок пользователя
+    private long caloriesEaten;  // Сумма калорий всех приёмов пищи пользователя
+}
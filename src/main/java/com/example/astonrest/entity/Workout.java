@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -13,4 +15,5 @@ public class Workout {
     private int duration;       // Время тренировки (минуты)
     private int caloriesBurned; // Сколько калорий было сожжено на тренировке
     private int userId;
+    private Instant performedAt; // Когда тренировка была выполнена; ключ партиционирования таблицы
 }
@@ -0,0 +1,17 @@
+package com.example.astonrest.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkoutStats {
+    private String type;                // Тип тренировки; null — итог по всем типам
+    private long count;
+    private long totalDuration;         // Сумма длительностей (минуты)
+    private long totalCaloriesBurned;
+    private double averageDuration;
+    private double averageCaloriesBurned;
+}
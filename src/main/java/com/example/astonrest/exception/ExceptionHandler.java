@@ -23,6 +23,15 @@ public class ExceptionHandler {
         response.getWriter().write(gson.toJson(new ErrorResponse(e.getMessage())));
     }
 
+    /**
+     * Обрабатывает перегрузку сервиса: возвращает 503 и заголовок {@code Retry-After},
+     * чтобы клиент или балансировщик повторили запрос позже.
+     */
+    public static void handleServiceUnavailable(HttpServletResponse response, ServiceUnavailableException e) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        handleException(response, e, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
     /**
      * Внутренний класс, представляющий JSON-объект для возврата ошибки.
      */
@@ -0,0 +1,21 @@
+package com.example.astonrest.exception;
+
+/**
+ * Исключение, выбрасываемое, когда сервис временно перегружен
+ * (например, в пуле нет свободных соединений с базой данных).
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, int retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Через сколько секунд клиенту стоит повторить запрос.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.astonrest.mapper;
 
 import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealStatsDTO;
 import com.example.astonrest.entity.Meal;
+import com.example.astonrest.entity.MealStats;
 
 public class MealMapper {
 
@@ -25,4 +27,14 @@ public class MealMapper {
     public static Meal toEntity(MealDTO mealDTO) {
         return new Meal(0,mealDTO.getName(),mealDTO.getCalories(), null);
     }
+
+    /**
+     * Преобразует агрегаты по приёмам пищи в DTO.
+     *
+     * @param stats объект MealStats
+     * @return объект MealStatsDTO
+     */
+    public static MealStatsDTO toStatsDTO(MealStats stats) {
+        return new MealStatsDTO(stats.getCount(), stats.getTotalCalories(), stats.getAverageCalories());
+    }
 }
@@ -1,7 +1,12 @@
 package com.example.astonrest.mapper;
 
 import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
 import com.example.astonrest.entity.User;
+import com.example.astonrest.entity.UserStats;
+
+import java.util.stream.Collectors;
 
 public class UserMapper {
     /**
@@ -14,6 +19,28 @@ public class UserMapper {
         return new UserDTO(user.getName(), user.getAge(), user.getWeight(), user.getHeight());
     }
 
+    /**
+     * Преобразует сущность User с загруженными тренировками и приёмами пищи в DTO профиля.
+     *
+     * @param user объект User
+     * @return объект UserProfileDTO
+     */
+    public static UserProfileDTO toProfileDTO(User user) {
+        return new UserProfileDTO(user.getName(), user.getAge(), user.getWeight(), user.getHeight(),
+                user.getWorkouts().stream().map(WorkoutMapper::toDTO).collect(Collectors.toList()),
+                user.getMeals().stream().map(MealMapper::toDTO).collect(Collectors.toList()));
+    }
+
+    /**
+     * Преобразует сводку по пользователю в DTO.
+     *
+     * @param stats объект UserStats
+     * @return объект UserStatsDTO без ID пользователя
+     */
+    public static UserStatsDTO toStatsDTO(UserStats stats) {
+        return new UserStatsDTO(stats.getWorkoutCount(), stats.getCaloriesBurned(), stats.getCaloriesEaten());
+    }
+
     /**
      * Преобразует DTO в сущность User.
      * ID устанавливается на 0, так как он будет сгенерирован в базе данных.
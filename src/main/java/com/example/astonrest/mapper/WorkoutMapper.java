@@ -1,27 +1,44 @@
 package com.example.astonrest.mapper;
 
 import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
 import com.example.astonrest.entity.Workout;
+import com.example.astonrest.entity.WorkoutStats;
+import com.example.astonrest.util.DateRange;
 
 public class WorkoutMapper {
     /**
      * Преобразует сущность Workout в DTO.
      *
      * @param workout объект Workout
-     * @return объект WorkoutDTO без ID и userId
+     * @return объект WorkoutDTO без ID
      */
     public static WorkoutDTO toDTO(Workout workout) {
-        return new WorkoutDTO(workout.getType(), workout.getDuration(), workout.getCaloriesBurned(), workout.getUserId());
+        String performedAt = workout.getPerformedAt() != null ? workout.getPerformedAt().toString() : null;
+        return new WorkoutDTO(workout.getType(), workout.getDuration(), workout.getCaloriesBurned(), workout.getUserId(),
+                performedAt);
     }
 
     /**
      * Преобразует DTO в сущность Workout.
-     * ID и userId устанавливаются на 0, так как они задаются в базе.
+     * ID устанавливается на 0, так как он задаётся в базе.
      *
      * @param workoutDTO объект WorkoutDTO
      * @return объект Workout
      */
     public static Workout toEntity(WorkoutDTO workoutDTO) {
-        return new Workout(0, workoutDTO.getType(), workoutDTO.getDuration(), workoutDTO.getCaloriesBurned(), workoutDTO.getUserId());
+        return new Workout(0, workoutDTO.getType(), workoutDTO.getDuration(), workoutDTO.getCaloriesBurned(), workoutDTO.getUserId(),
+                workoutDTO.getPerformedAt() != null ? DateRange.parseInstant(workoutDTO.getPerformedAt()) : null);
+    }
+
+    /**
+     * Преобразует агрегаты по тренировкам в DTO.
+     *
+     * @param stats объект WorkoutStats
+     * @return объект WorkoutStatsDTO
+     */
+    public static WorkoutStatsDTO toStatsDTO(WorkoutStats stats) {
+        return new WorkoutStatsDTO(stats.getType(), stats.getCount(), stats.getTotalDuration(),
+                stats.getTotalCaloriesBurned(), stats.getAverageDuration(), stats.getAverageCaloriesBurned());
     }
 }
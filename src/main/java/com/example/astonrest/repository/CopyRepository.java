@@ -0,0 +1,105 @@
+package com.example.astonrest.repository;
+
+import com.example.astonrest.util.DatabaseUtil;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Массовая загрузка и выгрузка данных через {@code COPY} драйвера PostgreSQL.
+ * <p>
+ * При загрузке ({@code FROM STDIN}) данные читаются из переданного потока CSV и уходят в базу по мере чтения,
+ * без промежуточного буфера. Каждый вызов — одна команда COPY, поэтому при ошибке в любой строке не сохраняется ничего.
+ * При выгрузке ({@code TO STDOUT}) байты CSV от сервера пишутся в поток как есть, без преобразования в объекты.
+ * Ошибки не глотаются: вызывающий код должен сообщить клиенту, что операция не выполнена.
+ */
+public class CopyRepository {
+
+    // Константы для SQL запросов
+    private static final String SQL_COPY_WORKOUTS_IN =
+            "COPY workouts (type, duration, calories_burned, user_id, performed_at) FROM STDIN WITH (FORMAT csv)";
+    private static final String SQL_COPY_MEALS_IN = "COPY meals (name, calories) FROM STDIN WITH (FORMAT csv)";
+    private static final String SQL_COPY_USER_MEALS_IN = "COPY user_meals (user_id, meal_id) FROM STDIN WITH (FORMAT csv)";
+
+    // COPY не поддерживает параметры запроса, поэтому границы подставляются как числа через %d
+    private static final String SQL_COPY_WORKOUTS_OUT =
+            "COPY (SELECT id, type, duration, calories_burned, user_id, performed_at FROM workouts " +
+                    "WHERE user_id BETWEEN %d AND %d ORDER BY id) TO STDOUT WITH (FORMAT csv, HEADER)";
+    private static final String SQL_COPY_USERS_OUT =
+            "COPY (SELECT id, name, age, weight, height FROM users " +
+                    "WHERE id BETWEEN %d AND %d ORDER BY id) TO STDOUT WITH (FORMAT csv, HEADER)";
+    private static final String SQL_COPY_USER_MEALS_OUT =
+            "COPY (SELECT user_id, meal_id FROM user_meals " +
+                    "WHERE user_id BETWEEN %d AND %d ORDER BY user_id, meal_id) TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    /**
+     * Загружает тренировки. Строки CSV: {@code type,duration,calories_burned,user_id,performed_at}.
+     * Время тренировки определяет её месячную партицию, поэтому передаётся в каждой строке.
+     *
+     * @return количество загруженных строк
+     */
+    public long copyWorkoutsIn(Reader csv) throws SQLException, IOException {
+        return copyIn(SQL_COPY_WORKOUTS_IN, csv);
+    }
+
+    /**
+     * Загружает приёмы пищи. Строки CSV: {@code name,calories}.
+     *
+     * @return количество загруженных строк
+     */
+    public long copyMealsIn(Reader csv) throws SQLException, IOException {
+        return copyIn(SQL_COPY_MEALS_IN, csv);
+    }
+
+    /**
+     * Загружает связи пользователей с приёмами пищи. Строки CSV: {@code user_id,meal_id}.
+     *
+     * @return количество загруженных строк
+     */
+    public long copyUserMealsIn(Reader csv) throws SQLException, IOException {
+        return copyIn(SQL_COPY_USER_MEALS_IN, csv);
+    }
+
+    /**
+     * Выгружает тренировки пользователей с ID в диапазоне {@code [fromUserId, toUserId]}.
+     *
+     * @return количество выгруженных строк
+     */
+    public long copyWorkoutsOut(int fromUserId, int toUserId, OutputStream out) throws SQLException, IOException {
+        return copyOut(String.format(SQL_COPY_WORKOUTS_OUT, fromUserId, toUserId), out);
+    }
+
+    /**
+     * Выгружает пользователей с ID в диапазоне {@code [fromUserId, toUserId]}.
+     *
+     * @return количество выгруженных строк
+     */
+    public long copyUsersOut(int fromUserId, int toUserId, OutputStream out) throws SQLException, IOException {
+        return copyOut(String.format(SQL_COPY_USERS_OUT, fromUserId, toUserId), out);
+    }
+
+    /**
+     * Выгружает связи с приёмами пищи пользователей с ID в диапазоне {@code [fromUserId, toUserId]}.
+     *
+     * @return количество выгруженных строк
+     */
+    public long copyUserMealsOut(int fromUserId, int toUserId, OutputStream out) throws SQLException, IOException {
+        return copyOut(String.format(SQL_COPY_USER_MEALS_OUT, fromUserId, toUserId), out);
+    }
+
+    private long copyOut(String sql, OutputStream out) throws SQLException, IOException {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+        }
+    }
+
+    private long copyIn(String sql, Reader csv) throws SQLException, IOException {
+        try (Connection connection = DatabaseUtil.getConnection()) {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, csv);
+        }
+    }
+}
@@ -1,24 +1,65 @@
 package com.example.astonrest.repository;
 
+import com.example.astonrest.config.ApplicationProperties;
 import com.example.astonrest.entity.Meal;
+import com.example.astonrest.entity.MealLinkResult;
+import com.example.astonrest.entity.MealStats;
+import com.example.astonrest.entity.MealUnlinkResult;
 import com.example.astonrest.util.DatabaseUtil;
+import com.example.astonrest.util.Versioned;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MealRepository {
 
     // Константы для SQL запросов
     private static final String SQL_INSERT_MEAL = "INSERT INTO meals (name, calories) VALUES (?, ?)";
     private static final String SQL_SELECT_MEAL_BY_ID = "SELECT * FROM meals WHERE id = ?";
-    private static final String SQL_SELECT_ALL_MEALS = "SELECT * FROM meals";
-    private static final String SQL_UPDATE_MEAL = "UPDATE meals SET name = ?, calories = ? WHERE id = ?";
-    private static final String SQL_DELETE_MEAL = "DELETE FROM meals WHERE id = ?";
+    private static final String SQL_SELECT_MEALS_PAGE = "SELECT * FROM meals WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SQL_SELECT_MEALS_BY_IDS = "SELECT * FROM meals WHERE id = ANY(?)";
+    private static final String SQL_UPDATE_MEAL = "UPDATE meals SET name = ?, calories = ? WHERE id = ? RETURNING *";
+    private static final String SQL_DELETE_MEAL = "DELETE FROM meals WHERE id = ? RETURNING id";
+    // Привязка за один запрос: несуществующие приёмы пищи отсеиваются соединением с meals,
+    // а существование пользователя и отсеянные ID возвращаются в той же строке результата
+    private static final String SQL_LINK_MEALS_TO_USER =
+            "WITH requested AS (SELECT DISTINCT unnest(?::int[]) AS meal_id), " +
+                    "inserted AS (INSERT INTO user_meals (user_id, meal_id) " +
+                    "SELECT u.id, r.meal_id FROM users u CROSS JOIN requested r JOIN meals m ON m.id = r.meal_id " +
+                    "WHERE u.id = ? ON CONFLICT DO NOTHING RETURNING meal_id) " +
+                    "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_found, " +
+                    "(SELECT COUNT(*) FROM inserted) AS linked, " +
+                    "ARRAY(SELECT r.meal_id FROM requested r WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM meals m WHERE m.id = r.meal_id) ORDER BY r.meal_id) AS missing_meal_ids";
+    // Существование пользователя возвращается вместе с числом удалённых связей, как и при привязке
+    private static final String SQL_UNLINK_MEALS_FROM_USER =
+            "WITH deleted AS (DELETE FROM user_meals WHERE user_id = ? AND meal_id = ANY(?) RETURNING meal_id) " +
+                    "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_found, " +
+                    "(SELECT COUNT(*) FROM deleted) AS unlinked";
+    private static final String SQL_SELECT_MEALS_VERSION = "SELECT version FROM resource_versions WHERE name = 'meals'";
+    private static final String SQL_SELECT_ALL_MEAL_NAMES = "SELECT id, name, calories FROM meals ORDER BY id";
     private static final String SQL_SELECT_MEALS_BY_USER_ID =
             "SELECT m.* FROM meals m " +
                     "JOIN user_meals um ON m.id = um.meal_id " +
-                    "WHERE um.user_id = ?";
+                    "WHERE um.user_id = ? AND um.meal_id > ? " +
+                    "ORDER BY um.meal_id LIMIT ?";
+
+    // Агрегат без GROUP BY всегда возвращает одну строку, даже если приёмов пищи нет
+    private static final String SQL_SELECT_MEAL_STATS_BY_USER_ID =
+            "SELECT COUNT(*) AS meal_count, COALESCE(SUM(m.calories), 0) AS total_calories, " +
+                    "COALESCE(AVG(m.calories), 0) AS avg_calories " +
+                    "FROM user_meals um JOIN meals m ON m.id = um.meal_id WHERE um.user_id = ?";
+
+    /**
+     * Запросы на чтение, которые заранее готовятся при прогреве приложения.
+     */
+    public static final List<String> WARMUP_STATEMENTS = List.of(SQL_SELECT_MEAL_BY_ID, SQL_SELECT_MEALS_PAGE, SQL_SELECT_MEALS_BY_USER_ID,
+            SQL_SELECT_MEALS_BY_IDS, SQL_SELECT_MEAL_STATS_BY_USER_ID, SQL_SELECT_MEALS_VERSION);
+
+    private static final int INDEX_FETCH_SIZE = ApplicationProperties.getInt("export.fetchSize", 500);
 
     /**
      * Сохраняет новый приём пищи в базе данных.
@@ -46,7 +87,7 @@ public class MealRepository {
      * @return объект Meal или null, если не найден
      */
     public Meal findMealById(int id) {
-        try (Connection connection = DatabaseUtil.getConnection();
+        try (Connection connection = DatabaseUtil.getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEAL_BY_ID)) {
             preparedStatement.setInt(1, id);
             ResultSet resultSet = preparedStatement.executeQuery();
@@ -67,13 +108,97 @@ public class MealRepository {
     }
 
     /**
-     * Возвращает список всех приёмов пищи.
+     * Получает приёмы пищи по списку ID одним запросом.
+     * Порядок строк не гарантирован; отсутствующие ID просто не попадают в результат.
+     *
+     * @param ids список ID
+     * @return список Meal
+     */
+    public List<Meal> findMealsByIds(List<Integer> ids) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return readMealsByIds(connection, ids);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Получает приёмы пищи по списку ID вместе с версией каталога на одном соединении.
+     *
+     * @param ids список ID
+     * @return приёмы пищи и версия; версия null, если запрос не выполнился
+     * @see #findVersionedMeals(int, int)
+     */
+    public Versioned<List<Meal>> findVersionedMealsByIds(List<Integer> ids) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            Long version = readMealsVersion(connection);
+            return new Versioned<>(readMealsByIds(connection, ids), version);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Versioned.unversioned(new ArrayList<>());
+    }
+
+    /**
+     * Возвращает страницу приёмов пищи в порядке возрастания ID.
+     * @param afterId ID, после которого начинается страница
+     * @param limit максимальное количество записей
      * @return список Meal
      */
-    public List<Meal> findAllMeals() {
+    public List<Meal> findMeals(int afterId, int limit) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return readMeals(connection, afterId, limit);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Возвращает страницу приёмов пищи вместе с версией каталога на одном соединении.
+     * Версия читается первой: реплика применяет изменения по порядку, поэтому страница не старше версии,
+     * и под этим ETag устаревшие данные не окажутся.
+     *
+     * @param afterId ID, после которого начинается страница
+     * @param limit   максимальное количество записей
+     * @return страница и версия; версия null, если запрос не выполнился
+     */
+    public Versioned<List<Meal>> findVersionedMeals(int afterId, int limit) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            Long version = readMealsVersion(connection);
+            return new Versioned<>(readMeals(connection, afterId, limit), version);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Versioned.unversioned(new ArrayList<>());
+    }
+
+    private List<Meal> readMealsByIds(Connection connection, List<Integer> ids) throws SQLException {
         List<Meal> meals = new ArrayList<>();
-        try (Connection connection = DatabaseUtil.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_ALL_MEALS)) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEALS_BY_IDS)) {
+            Array idArray = connection.createArrayOf("integer", ids.toArray());
+            preparedStatement.setArray(1, idArray);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                meals.add(new Meal(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getInt("calories"),
+                        new ArrayList<>()
+                ));
+            }
+            idArray.free();
+        }
+        return meals;
+    }
+
+    private List<Meal> readMeals(Connection connection, int afterId, int limit) throws SQLException {
+        List<Meal> meals = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEALS_PAGE)) {
+            preparedStatement.setInt(1, afterId);
+            preparedStatement.setInt(2, limit);
             ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
@@ -84,8 +209,6 @@ public class MealRepository {
                         new ArrayList<>()
                 ));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return meals;
     }
@@ -93,45 +216,176 @@ public class MealRepository {
     /**
      * Обновляет информацию о приёме пищи.
      * @param meal объект Meal с обновлёнными данными
+     * @return приём пищи в том виде, в каком он сохранён, или null, если его нет
      */
-    public void update(Meal meal) {
+    public Meal update(Meal meal) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_UPDATE_MEAL)) {
             preparedStatement.setString(1, meal.getName());
             preparedStatement.setInt(2, meal.getCalories());
             preparedStatement.setInt(3, meal.getId());
+            ResultSet resultSet = preparedStatement.executeQuery();
 
-            preparedStatement.executeUpdate();
+            if (resultSet.next()) {
+                return new Meal(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getInt("calories"),
+                        new ArrayList<>()
+                );
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
      * Удаляет приём пищи по ID.
      * @param id ID приёма пищи
+     * @return true, если приём пищи был удалён
      */
-    public void delete(int id) {
+    public boolean delete(int id) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_DELETE_MEAL)) {
             preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+            return preparedStatement.executeQuery().next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Получает версию каталога приёмов пищи для ETag: счётчик изменений таблицы meals.
+     *
+     * @return версия или null, если запрос не выполнился
+     */
+    public Long findMealsVersion() {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return readMealsVersion(connection);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private Long readMealsVersion(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEALS_VERSION)) {
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return resultSet.getLong("version");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Привязывает приёмы пищи к пользователю одним запросом независимо от длины списка.
+     * Уже существующие связи пропускаются, несуществующие приёмы пищи не привязываются.
+     *
+     * @param userId  ID пользователя
+     * @param mealIds ID приёмов пищи без повторов
+     * @return результат привязки или null, если запрос не выполнился
+     */
+    public MealLinkResult linkMealsToUser(int userId, List<Integer> mealIds) {
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_LINK_MEALS_TO_USER)) {
+            Array idArray = connection.createArrayOf("integer", mealIds.toArray());
+            preparedStatement.setArray(1, idArray);
+            preparedStatement.setInt(2, userId);
+            preparedStatement.setInt(3, userId);
+            ResultSet resultSet = preparedStatement.executeQuery();
 
+            MealLinkResult result = null;
+            if (resultSet.next()) {
+                Array missing = resultSet.getArray("missing_meal_ids");
+                result = new MealLinkResult(
+                        resultSet.getBoolean("user_found"),
+                        resultSet.getInt("linked"),
+                        Arrays.asList((Integer[]) missing.getArray())
+                );
+                missing.free();
+            }
+            idArray.free();
+            return result;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
-     * Получает список приёмов пищи для конкретного пользователя.
+     * Отвязывает приёмы пищи от пользователя одним запросом.
+     *
+     * @param userId  ID пользователя
+     * @param mealIds ID приёмов пищи без повторов
+     * @return результат отвязки или null, если запрос не выполнился
+     */
+    public MealUnlinkResult unlinkMealsFromUser(int userId, List<Integer> mealIds) {
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_UNLINK_MEALS_FROM_USER)) {
+            Array idArray = connection.createArrayOf("integer", mealIds.toArray());
+            preparedStatement.setInt(1, userId);
+            preparedStatement.setArray(2, idArray);
+            preparedStatement.setInt(3, userId);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            MealUnlinkResult result = null;
+            if (resultSet.next()) {
+                result = new MealUnlinkResult(resultSet.getBoolean("user_found"), resultSet.getInt("unlinked"));
+            }
+            idArray.free();
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Передаёт все приёмы пищи в порядке возрастания ID для построения поискового индекса.
+     * Строки читаются серверным курсором порциями, поэтому каталог не собирается в памяти целиком.
+     * Ошибку не перехватывает: недочитанный каталог не должен подменить собой прежний индекс.
+     *
+     * @param consumer обработчик очередного приёма пищи; список пользователей у него пустой
+     */
+    public void streamAllMeals(Consumer<Meal> consumer) throws SQLException {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_ALL_MEAL_NAMES)) {
+                preparedStatement.setFetchSize(INDEX_FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new Meal(
+                                resultSet.getInt("id"),
+                                resultSet.getString("name"),
+                                resultSet.getInt("calories"),
+                                List.of()
+                        ));
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Получает страницу приёмов пищи конкретного пользователя в порядке возрастания ID.
      * @param userId ID пользователя
+     * @param afterId ID, после которого начинается страница
+     * @param limit максимальное количество записей
      * @return список Meal
      */
-    public List<Meal> findMealsByUserId(int userId) {
+    public List<Meal> findMealsByUserId(int userId, int afterId, int limit) {
         List<Meal> meals = new ArrayList<>();
-        try (Connection connection = DatabaseUtil.getConnection();
+        try (Connection connection = DatabaseUtil.getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEALS_BY_USER_ID)) {
             preparedStatement.setInt(1, userId);
+            preparedStatement.setInt(2, afterId);
+            preparedStatement.setInt(3, limit);
             ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
@@ -147,4 +401,27 @@ public class MealRepository {
         }
         return meals;
     }
+
+    /**
+     * Считает количество, сумму и среднее калорий приёмов пищи пользователя в базе.
+     * @param userId ID пользователя
+     * @return агрегаты или null при ошибке запроса
+     */
+    public MealStats findMealStatsByUserId(int userId) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_MEAL_STATS_BY_USER_ID)) {
+            preparedStatement.setInt(1, userId);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return new MealStats(
+                        resultSet.getLong("meal_count"),
+                        resultSet.getLong("total_calories"),
+                        resultSet.getDouble("avg_calories"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
 }
@@ -1,20 +1,65 @@
 package com.example.astonrest.repository;
 
+import com.example.astonrest.entity.Meal;
 import com.example.astonrest.entity.User;
+import com.example.astonrest.entity.UserStats;
+import com.example.astonrest.entity.Workout;
 import com.example.astonrest.util.DatabaseUtil;
+import com.example.astonrest.util.Versioned;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
 
 import java.sql.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UserRepository {
 
     // Константы для SQL запросов
     private static final String SQL_INSERT_USER = "INSERT INTO users (name, age, weight, height) VALUES (?,?,?,?)";
     private static final String SQL_SELECT_USER_BY_ID = "SELECT * FROM users WHERE id = ?";
-    private static final String SQL_SELECT_ALL_USERS = "SELECT * FROM users";
-    private static final String SQL_UPDATE_USER = "UPDATE users SET name = ?, age = ?, weight = ?, height = ? WHERE id = ?";
-    private static final String SQL_DELETE_USER = "DELETE FROM users WHERE id = ?";
+    private static final String SQL_SELECT_USERS_PAGE = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SQL_SELECT_USERS_BY_IDS = "SELECT * FROM users WHERE id = ANY(?)";
+    private static final String SQL_UPDATE_USER = "UPDATE users SET name = ?, age = ?, weight = ?, height = ? WHERE id = ? RETURNING *";
+    private static final String SQL_DELETE_USER = "DELETE FROM users WHERE id = ? RETURNING id";
+    private static final String SQL_COUNT_USERS_BY_ID = "SELECT COUNT(*) FROM users WHERE id = ?";
+    // Сводку поддерживают триггеры базы, чтение — поиск по первичному ключу
+    private static final String SQL_SELECT_USER_STATS = "SELECT * FROM user_stats WHERE user_id = ?";
+    private static final String SQL_SELECT_USER_VERSION = "SELECT version FROM users WHERE id = ?";
+    private static final String SQL_SELECT_CALORIES_BURNED =
+            "SELECT user_id, calories_burned FROM user_stats WHERE calories_burned > 0";
+    // Тренировки и приёмы пищи собираются в JSON-массивы на стороне базы; агрегат без GROUP BY
+    // всегда возвращает одну строку, поэтому у пользователя без данных приходит '[]'
+    private static final String SQL_SELECT_USER_PROFILE =
+            "SELECT u.*, w.workouts, m.meals FROM users u " +
+                    "LEFT JOIN LATERAL (" +
+                    "SELECT COALESCE(json_agg(json_build_object('id', wo.id, 'type', wo.type, 'duration', wo.duration, " +
+                    "'caloriesBurned', wo.calories_burned, 'userId', wo.user_id, 'performedAt', wo.performed_at) " +
+                    "ORDER BY wo.id), '[]') AS workouts " +
+                    "FROM workouts wo WHERE wo.user_id = u.id) w ON true " +
+                    "LEFT JOIN LATERAL (" +
+                    "SELECT COALESCE(json_agg(json_build_object('id', me.id, 'name', me.name, 'calories', me.calories) " +
+                    "ORDER BY me.id), '[]') AS meals " +
+                    "FROM user_meals um JOIN meals me ON me.id = um.meal_id WHERE um.user_id = u.id) m ON true " +
+                    "WHERE u.id = ?";
+
+    // Время тренировки приходит из json_build_object строкой ISO-8601 со смещением
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Instant.class, (JsonDeserializer<Instant>) (json, type, context) ->
+                    OffsetDateTime.parse(json.getAsString()).toInstant())
+            .create();
+
+    /**
+     * Запросы на чтение, которые заранее готовятся при прогреве приложения.
+     */
+    public static final List<String> WARMUP_STATEMENTS = List.of(SQL_SELECT_USER_BY_ID, SQL_SELECT_USERS_PAGE, SQL_COUNT_USERS_BY_ID,
+            SQL_SELECT_USER_PROFILE, SQL_SELECT_USERS_BY_IDS, SQL_SELECT_USER_STATS, SQL_SELECT_USER_VERSION);
 
     /**
      * Создаёт нового пользователя в базе данных.
@@ -46,13 +91,24 @@ public class UserRepository {
      * @return объект User или null, если не найден
      */
     public User findUserById(int id) {
-        try (Connection connection = DatabaseUtil.getConnection();
+        Versioned<User> user = findVersionedUserById(id);
+        return user != null ? user.getValue() : null;
+    }
+
+    /**
+     * Получает пользователя вместе с версией его строки из того же запроса.
+     *
+     * @param id ID пользователя
+     * @return пользователь и версия для ETag или null, если не найден
+     */
+    public Versioned<User> findVersionedUserById(int id) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_BY_ID)) {
             preparedStatement.setInt(1, id);
             ResultSet resultSet = preparedStatement.executeQuery();
 
             if (resultSet.next()) {
-                return new User(
+                return new Versioned<>(new User(
                         resultSet.getInt("id"),
                         resultSet.getString("name"),
                         resultSet.getInt("age"),
@@ -60,6 +116,36 @@ public class UserRepository {
                         resultSet.getDouble("height"),
                         new ArrayList<>(),
                         new ArrayList<>()
+                ), resultSet.getLong("version"));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Получает пользователя вместе с его тренировками и приёмами пищи одним запросом.
+     *
+     * @param id ID пользователя
+     * @return объект User с заполненными списками workouts и meals или null, если не найден
+     */
+    public User findUserProfileById(int id) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_PROFILE)) {
+            preparedStatement.setInt(1, id);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return new User(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getInt("age"),
+                        resultSet.getDouble("weight"),
+                        resultSet.getDouble("height"),
+                        new ArrayList<>(Arrays.asList(gson.fromJson(resultSet.getString("workouts"), Workout[].class))),
+                        new ArrayList<>(Arrays.asList(gson.fromJson(resultSet.getString("meals"), Meal[].class)))
                 );
             }
 
@@ -70,15 +156,117 @@ public class UserRepository {
     }
 
     /**
-     * Получает всех пользователей из базы данных.
+     * Получает сводку по пользователю: количество тренировок и суммы калорий.
      *
+     * @param id ID пользователя
+     * @return объект UserStats или null, если пользователь не найден
+     */
+    public UserStats findUserStatsById(int id) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_STATS)) {
+            preparedStatement.setInt(1, id);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return new UserStats(
+                        resultSet.getInt("user_id"),
+                        resultSet.getInt("workout_count"),
+                        resultSet.getLong("calories_burned"),
+                        resultSet.getLong("calories_eaten")
+                );
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Получает версию строки пользователя для ETag. Версию увеличивает триггер при каждом изменении.
+     *
+     * @param id ID пользователя
+     * @return версия или null, если пользователя нет или запрос не выполнился
+     */
+    public Long findUserVersion(int id) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_VERSION)) {
+            preparedStatement.setInt(1, id);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return resultSet.getLong("version");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Читает сожжённые калории всех пользователей, у которых они есть, для построения рейтинга.
+     * Ошибку не перехватывает, чтобы при сбое рейтинг остался прежним, а не пустым.
+     *
+     * @return сумма калорий по ID пользователя
+     */
+    public Map<Integer, Long> findAllCaloriesBurned() throws SQLException {
+        Map<Integer, Long> totals = new HashMap<>();
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_CALORIES_BURNED)) {
+            ResultSet resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                totals.put(resultSet.getInt("user_id"), resultSet.getLong("calories_burned"));
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Получает пользователей по списку ID одним запросом.
+     * Порядок строк не гарантирован; отсутствующие ID просто не попадают в результат.
+     *
+     * @param ids список ID
+     * @return список User
+     */
+    public List<User> findUsersByIds(List<Integer> ids) {
+        List<User> users = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USERS_BY_IDS)) {
+            Array idArray = connection.createArrayOf("integer", ids.toArray());
+            preparedStatement.setArray(1, idArray);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                users.add(new User(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getInt("age"),
+                        resultSet.getDouble("weight"),
+                        resultSet.getDouble("height"),
+                        new ArrayList<>(),
+                        new ArrayList<>()
+                ));
+            }
+            idArray.free();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return users;
+    }
+
+    /**
+     * Получает страницу пользователей в порядке возрастания ID.
+     *
+     * @param afterId ID, после которого начинается страница
+     * @param limit   максимальное количество записей
      * @return список пользователей
      */
-    public List<User> findAllUsers() {
+    public List<User> findUsers(int afterId, int limit) {
         List<User> users = new ArrayList<>();
-        try (Connection connection = DatabaseUtil.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_ALL_USERS);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USERS_PAGE)) {
+            preparedStatement.setInt(1, afterId);
+            preparedStatement.setInt(2, limit);
+            ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
                 users.add(new User(
@@ -102,8 +290,9 @@ public class UserRepository {
      * Обновляет данные пользователя.
      *
      * @param user объект User с обновлёнными данными
+     * @return пользователь в том виде, в каком он сохранён, или null, если его нет
      */
-    public void update(User user) {
+    public User update(User user) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_UPDATE_USER)) {
             preparedStatement.setString(1, user.getName());
@@ -111,35 +300,48 @@ public class UserRepository {
             preparedStatement.setDouble(3, user.getWeight());
             preparedStatement.setDouble(4, user.getHeight());
             preparedStatement.setInt(5, user.getId());
+            ResultSet resultSet = preparedStatement.executeQuery();
 
-            preparedStatement.executeUpdate();
+            if (resultSet.next()) {
+                return new User(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getInt("age"),
+                        resultSet.getDouble("weight"),
+                        resultSet.getDouble("height"),
+                        new ArrayList<>(),
+                        new ArrayList<>()
+                );
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
      * Удаляет пользователя по ID.
      *
      * @param id ID пользователя
+     * @return true, если пользователь был удалён
      */
-    public void delete(int id) {
+    public boolean delete(int id) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_DELETE_USER)) {
             preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+            return preparedStatement.executeQuery().next();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     /**
      * Проверяет, существует ли пользователь с данным ID.
      */
     public boolean doesUserExist(int userId) {
-        String sql = "SELECT COUNT(*) FROM users WHERE id = ?";
-        try(Connection connection = DatabaseUtil.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+        try(Connection connection = DatabaseUtil.getReadConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(SQL_COUNT_USERS_BY_ID)) {
             preparedStatement.setInt(1, userId);
             ResultSet resultSet = preparedStatement.executeQuery();
 
@@ -0,0 +1,60 @@
+package com.example.astonrest.repository;
+
+import com.example.astonrest.util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Обслуживание месячных партиций таблицы {@code workouts}.
+ * <p>
+ * Сама работа выполняется функциями базы из миграции V4: {@code ensure_workout_partitions}
+ * создаёт партиции наперёд, {@code archive_workout_partitions} отсоединяет старые и переносит
+ * их в схему {@code workouts_archive}. Ошибки не глотаются: это служебные операции,
+ * и о сбое должен узнать тот, кто их запустил.
+ */
+public class WorkoutPartitionRepository {
+
+    // Константы для SQL запросов
+    private static final String SQL_ENSURE_PARTITIONS = "SELECT ensure_workout_partitions(?)";
+    private static final String SQL_ARCHIVE_PARTITIONS = "SELECT archive_workout_partitions(?)";
+
+    /**
+     * Создаёт недостающие партиции с текущего месяца (UTC) на {@code monthsAhead} месяцев вперёд.
+     * Строки нового месяца, попавшие в партицию по умолчанию, переносятся в созданную партицию.
+     *
+     * @return количество созданных партиций
+     */
+    public int ensurePartitions(int monthsAhead) throws SQLException {
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_ENSURE_PARTITIONS)) {
+            preparedStatement.setInt(1, monthsAhead);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Отсоединяет партиции месяцев, целиком лежащих раньше {@code before}, и переносит их в архивную схему.
+     *
+     * @return имена заархивированных партиций
+     */
+    public List<String> archivePartitions(LocalDate before) throws SQLException {
+        List<String> archived = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_ARCHIVE_PARTITIONS)) {
+            preparedStatement.setObject(1, before);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                archived.add(resultSet.getString(1));
+            }
+        }
+        return archived;
+    }
+}
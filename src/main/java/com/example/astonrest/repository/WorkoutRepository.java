@@ -1,24 +1,78 @@
 package com.example.astonrest.repository;
 
+import com.example.astonrest.config.ApplicationProperties;
 import com.example.astonrest.entity.Workout;
+import com.example.astonrest.entity.WorkoutStats;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.util.DatabaseUtil;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.Versioned;
 
 import java.sql.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class WorkoutRepository {
 
     // Константы для SQL запросов
-    private static final String SQL_INSERT_WORKOUT = "INSERT INTO workouts (type, duration, calories_burned, user_id) VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_WORKOUT =
+            "INSERT INTO workouts (type, duration, calories_burned, user_id, performed_at) VALUES (?, ?, ?, ?, COALESCE(?, now()))";
+    // Многострочная вставка из массивов: текст запроса не зависит от размера пачки
+    private static final String SQL_INSERT_WORKOUTS_UNNEST =
+            "INSERT INTO workouts (type, duration, calories_burned, user_id, performed_at) " +
+                    "SELECT * FROM unnest(?::varchar[], ?::int[], ?::int[], ?::int[], ?::timestamptz[])";
     private static final String SQL_SELECT_WORKOUT_BY_ID = "SELECT * FROM workouts WHERE id = ?";
+    private static final String SQL_SELECT_WORKOUTS_PAGE = "SELECT * FROM workouts WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SQL_SELECT_WORKOUTS_BY_IDS = "SELECT * FROM workouts WHERE id = ANY(?)";
     private static final String SQL_SELECT_ALL_WORKOUTS = "SELECT * FROM workouts";
-    private static final String SQL_UPDATE_WORKOUT = "UPDATE workouts SET type = ?, duration = ?, calories_burned = ? WHERE id = ?";
-    private static final String SQL_DELETE_WORKOUT = "DELETE FROM workouts WHERE id = ?";
-    private static final String SQL_SELECT_WORKOUTS_BY_USER_ID = "SELECT * FROM workouts WHERE user_id = ?";
+    // Прежняя версия строки блокируется в CTE и возвращается, чтобы рейтинг изменился на разницу калорий
+    private static final String SQL_UPDATE_WORKOUT =
+            "WITH previous AS (SELECT * FROM workouts WHERE id = ? FOR UPDATE) " +
+                    "UPDATE workouts w SET type = ?, duration = ?, calories_burned = ?, " +
+                    "performed_at = COALESCE(?, w.performed_at) FROM previous " +
+                    "WHERE w.id = previous.id AND w.performed_at = previous.performed_at RETURNING previous.*";
+    private static final String SQL_DELETE_WORKOUT = "DELETE FROM workouts WHERE id = ? RETURNING *";
+    // Условие по performed_at отсекает лишние месячные партиции; открытая граница передаётся как ±infinity
+    private static final String SQL_SELECT_WORKOUTS_BY_USER_ID =
+            "SELECT * FROM workouts WHERE user_id = ? AND performed_at >= ? AND performed_at < ? AND id > ? ORDER BY id LIMIT ?";
+
+    // Агрегаты считаются в базе: клиенту уходит по строке на тип, а не список тренировок
+    private static final String WORKOUT_AGGREGATES =
+            "COUNT(*) AS workout_count, COALESCE(SUM(duration), 0) AS total_duration, " +
+                    "COALESCE(SUM(calories_burned), 0) AS total_calories, " +
+                    "COALESCE(AVG(duration), 0) AS avg_duration, COALESCE(AVG(calories_burned), 0) AS avg_calories";
+    private static final String SQL_SELECT_WORKOUT_TOTALS =
+            "SELECT NULL AS type, " + WORKOUT_AGGREGATES + " FROM workouts WHERE performed_at >= ? AND performed_at < ?";
+    // ROLLUP добавляет к строкам по типам строку общего итога с type = NULL; type в таблице NOT NULL, так что они не путаются
+    private static final String SQL_SELECT_WORKOUT_STATS_BY_TYPE =
+            "SELECT type, " + WORKOUT_AGGREGATES + " FROM workouts WHERE performed_at >= ? AND performed_at < ? " +
+                    "GROUP BY ROLLUP (type) ORDER BY type NULLS FIRST";
+    private static final String SQL_SELECT_USER_WORKOUT_STATS_BY_TYPE =
+            "SELECT type, " + WORKOUT_AGGREGATES + " FROM workouts WHERE user_id = ? GROUP BY type ORDER BY type";
+    // Версию тренировок пользователя ведут триггеры тренировок в его строке user_stats
+    private static final String SQL_SELECT_USER_WORKOUTS_VERSION = "SELECT workouts_version FROM user_stats WHERE user_id = ?";
+
+    /**
+     * Запросы на чтение, которые заранее готовятся при прогреве приложения.
+     */
+    public static final List<String> WARMUP_STATEMENTS = List.of(SQL_SELECT_WORKOUT_BY_ID, SQL_SELECT_WORKOUTS_PAGE, SQL_SELECT_WORKOUTS_BY_USER_ID,
+            SQL_SELECT_WORKOUTS_BY_IDS, SQL_SELECT_USER_WORKOUT_STATS_BY_TYPE, SQL_SELECT_USER_WORKOUTS_VERSION);
+
+    // SQLState нарушения внешнего ключа: user_id ссылается на несуществующего пользователя
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
+    // Сколько строк драйвер получает с сервера за одно обращение при выгрузке
+    private static final int EXPORT_FETCH_SIZE = ApplicationProperties.getInt("export.fetchSize", 500);
 
     /**
      * Сохраняет новую тренировку в базе данных.
+     * Существование пользователя проверяет внешний ключ {@code workouts.user_id}, отдельного запроса нет.
+     *
+     * @throws NotFoundException если пользователя с user_id нет
      */
     public void save(Workout workout) {
         try (Connection connection = DatabaseUtil.getConnection();
@@ -27,6 +81,7 @@ public class WorkoutRepository {
             preparedStatement.setInt(2, workout.getDuration());
             preparedStatement.setInt(3, workout.getCaloriesBurned());
             preparedStatement.setInt(4, workout.getUserId());
+            preparedStatement.setObject(5, toTimestamp(workout.getPerformedAt()), Types.TIMESTAMP_WITH_TIMEZONE);
 
             preparedStatement.executeUpdate();
 
@@ -36,11 +91,87 @@ public class WorkoutRepository {
             }
 
         } catch (SQLException e) {
+            if (isForeignKeyViolation(e)) {
+                throw new NotFoundException("User with ID " + workout.getUserId() + " does not exist.");
+            }
             e.printStackTrace();
         }
     }
 
 
+    /**
+     * Сохраняет несколько тренировок одним пакетом JDBC.
+     * Сгенерированные ID проставляются в переданные объекты в том же порядке.
+     * При ошибке ID остаются равными 0.
+     *
+     * @param workouts тренировки для сохранения
+     * @throws NotFoundException если пользователя с user_id нет
+     */
+    public void saveAll(List<Workout> workouts) {
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_INSERT_WORKOUT, Statement.RETURN_GENERATED_KEYS)) {
+            for (Workout workout : workouts) {
+                preparedStatement.setString(1, workout.getType());
+                preparedStatement.setInt(2, workout.getDuration());
+                preparedStatement.setInt(3, workout.getCaloriesBurned());
+                preparedStatement.setInt(4, workout.getUserId());
+                preparedStatement.setObject(5, toTimestamp(workout.getPerformedAt()), Types.TIMESTAMP_WITH_TIMEZONE);
+                preparedStatement.addBatch();
+            }
+
+            preparedStatement.executeBatch();
+
+            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+            for (Workout workout : workouts) {
+                if (!generatedKeys.next()) {
+                    break;
+                }
+                workout.setId(generatedKeys.getInt(1));
+            }
+
+        } catch (SQLException e) {
+            if (isForeignKeyViolation(e)) {
+                throw new NotFoundException("User with ID " + workouts.get(0).getUserId() + " does not exist.");
+            }
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Сохраняет тренировки одним многострочным INSERT из массивов столбцов.
+     * ID не возвращаются. В отличие от {@link #saveAll(List)}, ошибку не перехватывает:
+     * при нарушении внешнего ключа вся пачка не сохраняется, и вызывающий решает, что с ней делать.
+     *
+     * @param workouts тренировки с заполненным временем
+     * @return количество вставленных строк
+     */
+    public int insertAll(List<Workout> workouts) throws SQLException {
+        int size = workouts.size();
+        Object[] types = new Object[size];
+        Object[] durations = new Object[size];
+        Object[] calories = new Object[size];
+        Object[] userIds = new Object[size];
+        Object[] performedAt = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Workout workout = workouts.get(i);
+            types[i] = workout.getType();
+            durations[i] = workout.getDuration();
+            calories[i] = workout.getCaloriesBurned();
+            userIds[i] = workout.getUserId();
+            performedAt[i] = workout.getPerformedAt() != null ? workout.getPerformedAt().toString() : null;
+        }
+
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_INSERT_WORKOUTS_UNNEST)) {
+            preparedStatement.setArray(1, connection.createArrayOf("varchar", types));
+            preparedStatement.setArray(2, connection.createArrayOf("integer", durations));
+            preparedStatement.setArray(3, connection.createArrayOf("integer", calories));
+            preparedStatement.setArray(4, connection.createArrayOf("integer", userIds));
+            preparedStatement.setArray(5, connection.createArrayOf("text", performedAt));
+            return preparedStatement.executeUpdate();
+        }
+    }
+
     /**
      * Получает тренировку по ID.
      *
@@ -48,7 +179,7 @@ public class WorkoutRepository {
      * @return объект Workout или null, если не найден
      */
     public Workout findWorkoutById(int id) {
-        try (Connection connection = DatabaseUtil.getConnection();
+        try (Connection connection = DatabaseUtil.getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_WORKOUT_BY_ID)) {
             preparedStatement.setInt(1, id);
             ResultSet resultSet = preparedStatement.executeQuery();
@@ -59,7 +190,8 @@ public class WorkoutRepository {
                         resultSet.getString("type"),
                         resultSet.getInt("duration"),
                         resultSet.getInt("calories_burned"),
-                        resultSet.getInt("user_id")
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet)
                 );
             }
         } catch (SQLException e) {
@@ -69,14 +201,50 @@ public class WorkoutRepository {
     }
 
     /**
-     * Возвращает список всех тренировок.
+     * Получает тренировки по списку ID одним запросом.
+     * Порядок строк не гарантирован; отсутствующие ID просто не попадают в результат.
      *
+     * @param ids список ID
      * @return список Workout
      */
-    public List<Workout> findAllWorkouts() {
+    public List<Workout> findWorkoutsByIds(List<Integer> ids) {
         List<Workout> workouts = new ArrayList<>();
-        try (Connection connection = DatabaseUtil.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_ALL_WORKOUTS)) {
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_WORKOUTS_BY_IDS)) {
+            Array idArray = connection.createArrayOf("integer", ids.toArray());
+            preparedStatement.setArray(1, idArray);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                workouts.add(new Workout(
+                        resultSet.getInt("id"),
+                        resultSet.getString("type"),
+                        resultSet.getInt("duration"),
+                        resultSet.getInt("calories_burned"),
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet)
+                ));
+            }
+            idArray.free();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return workouts;
+    }
+
+    /**
+     * Возвращает страницу тренировок в порядке возрастания ID.
+     *
+     * @param afterId ID, после которого начинается страница
+     * @param limit   максимальное количество записей
+     * @return список Workout
+     */
+    public List<Workout> findWorkouts(int afterId, int limit) {
+        List<Workout> workouts = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_WORKOUTS_PAGE)) {
+            preparedStatement.setInt(1, afterId);
+            preparedStatement.setInt(2, limit);
             ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
@@ -85,7 +253,8 @@ public class WorkoutRepository {
                         resultSet.getString("type"),
                         resultSet.getInt("duration"),
                         resultSet.getInt("calories_burned"),
-                        resultSet.getInt("user_id")
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet)
                 ));
             }
         } catch (SQLException e) {
@@ -96,50 +265,150 @@ public class WorkoutRepository {
 
 
     /**
-     * Обновляет данные тренировки.
+     * Передаёт все тренировки по одной, не собирая их в список.
+     * <p>
+     * Запрос выполняется с выключенным автокоммитом и заданным fetch size,
+     * поэтому драйвер PostgreSQL читает строки через серверный курсор порциями
+     * и память не зависит от размера таблицы.
+     * В отличие от остальных методов ошибка базы не глотается: иначе выгрузка
+     * молча оборвалась бы на середине.
+     *
+     * @param consumer обработчик очередной тренировки
+     */
+    public void streamAllWorkouts(Consumer<Workout> consumer) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_ALL_WORKOUTS)) {
+                preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new Workout(
+                                resultSet.getInt("id"),
+                                resultSet.getString("type"),
+                                resultSet.getInt("duration"),
+                                resultSet.getInt("calories_burned"),
+                                resultSet.getInt("user_id"),
+                                performedAt(resultSet)
+                        ));
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка выгрузки тренировок", e);
+        }
+    }
+
+    /**
+     * Обновляет тип, длительность и калории тренировки одним запросом.
+     * Время тренировки меняется, только если оно задано; при смене месяца строка переезжает в другую партицию.
      *
      * @param workout объект Workout с обновлёнными данными
+     * @return тренировка в том виде, в каком она была до изменения, или null, если её нет
      */
-    public void update(Workout workout) {
+    public Workout update(Workout workout) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_UPDATE_WORKOUT)) {
-            preparedStatement.setString(1, workout.getType());
-            preparedStatement.setInt(2, workout.getDuration());
-            preparedStatement.setInt(3, workout.getCaloriesBurned());
-            preparedStatement.setInt(4, workout.getId());
+            preparedStatement.setInt(1, workout.getId());
+            preparedStatement.setString(2, workout.getType());
+            preparedStatement.setInt(3, workout.getDuration());
+            preparedStatement.setInt(4, workout.getCaloriesBurned());
+            preparedStatement.setObject(5, toTimestamp(workout.getPerformedAt()), Types.TIMESTAMP_WITH_TIMEZONE);
+            ResultSet resultSet = preparedStatement.executeQuery();
 
-            preparedStatement.executeUpdate();
+            if (resultSet.next()) {
+                return new Workout(
+                        resultSet.getInt("id"),
+                        resultSet.getString("type"),
+                        resultSet.getInt("duration"),
+                        resultSet.getInt("calories_burned"),
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet)
+                );
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
      * Удаляет тренировку по ID.
      *
      * @param id ID тренировки
+     * @return удалённая тренировка или null, если её не было
      */
-    public void delete(int id) {
+    public Workout delete(int id) {
         try (Connection connection = DatabaseUtil.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(SQL_DELETE_WORKOUT)) {
             preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return new Workout(
+                        resultSet.getInt("id"),
+                        resultSet.getString("type"),
+                        resultSet.getInt("duration"),
+                        resultSet.getInt("calories_burned"),
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet)
+                );
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
-     * Получает список тренировок для конкретного пользователя.
+     * Получает страницу тренировок конкретного пользователя за период в порядке возрастания ID.
      *
-     * @param userId ID пользователя
+     * @param userId  ID пользователя
+     * @param range   период по времени тренировки
+     * @param afterId ID, после которого начинается страница
+     * @param limit   максимальное количество записей
      * @return список Workout
      */
-    public List<Workout> findWorkoutsByUserId(int userId) {
+    public List<Workout> findWorkoutsByUserId(int userId, DateRange range, int afterId, int limit) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return readWorkoutsByUserId(connection, userId, range, afterId, limit);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Получает страницу тренировок пользователя вместе с версией для ETag на одном соединении.
+     * Версия читается первой: реплика применяет изменения по порядку, поэтому тело не старше версии,
+     * и под этим ETag устаревшая страница не окажется.
+     *
+     * @param userId  ID пользователя
+     * @param range   период по времени тренировки
+     * @param afterId ID, после которого начинается страница
+     * @param limit   максимальное количество записей
+     * @return страница и версия; версия null, если пользователя нет или запрос не выполнился
+     */
+    public Versioned<List<Workout>> findVersionedWorkoutsByUserId(int userId, DateRange range, int afterId, int limit) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            Long version = readWorkoutsVersion(connection, userId);
+            return new Versioned<>(readWorkoutsByUserId(connection, userId, range, afterId, limit), version);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Versioned.unversioned(new ArrayList<>());
+    }
+
+    private List<Workout> readWorkoutsByUserId(Connection connection, int userId, DateRange range,
+                                               int afterId, int limit) throws SQLException {
         List<Workout> workouts = new ArrayList<>();
-        try (Connection connection = DatabaseUtil.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_WORKOUTS_BY_USER_ID)) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_WORKOUTS_BY_USER_ID)) {
             preparedStatement.setInt(1, userId);
+            preparedStatement.setObject(2, range.getFrom() != null ? toTimestamp(range.getFrom()) : OffsetDateTime.MIN);
+            preparedStatement.setObject(3, range.getTo() != null ? toTimestamp(range.getTo()) : OffsetDateTime.MAX);
+            preparedStatement.setInt(4, afterId);
+            preparedStatement.setInt(5, limit);
             ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
@@ -148,12 +417,118 @@ public class WorkoutRepository {
                         resultSet.getString("type"),
                         resultSet.getInt("duration"),
                         resultSet.getInt("calories_burned"),
-                        resultSet.getInt("user_id"))
+                        resultSet.getInt("user_id"),
+                        performedAt(resultSet))
                 );
             }
+        }
+        return workouts;
+    }
+
+    /**
+     * Считает агрегаты по тренировкам за период одним запросом с {@code GROUP BY}.
+     *
+     * @param range  период по времени тренировки
+     * @param byType нужна ли разбивка по типам
+     * @return первой строкой общий итог ({@code type == null}), затем строки по типам в алфавитном порядке
+     */
+    public List<WorkoutStats> findWorkoutStats(DateRange range, boolean byType) {
+        List<WorkoutStats> stats = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     byType ? SQL_SELECT_WORKOUT_STATS_BY_TYPE : SQL_SELECT_WORKOUT_TOTALS)) {
+            preparedStatement.setObject(1, range.getFrom() != null ? toTimestamp(range.getFrom()) : OffsetDateTime.MIN);
+            preparedStatement.setObject(2, range.getTo() != null ? toTimestamp(range.getTo()) : OffsetDateTime.MAX);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                stats.add(toWorkoutStats(resultSet));
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return workouts;
+        return stats;
+    }
+
+    /**
+     * Получает версию тренировок пользователя для ETag. Версия увеличивается при любой вставке,
+     * изменении или удалении его тренировок, а также при архивации партиции с ними.
+     *
+     * @param userId ID пользователя
+     * @return версия или null, если пользователя нет или запрос не выполнился
+     */
+    public Long findWorkoutsVersionByUserId(int userId) {
+        try (Connection connection = DatabaseUtil.getReadConnection()) {
+            return readWorkoutsVersion(connection, userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private Long readWorkoutsVersion(Connection connection, int userId) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_WORKOUTS_VERSION)) {
+            preparedStatement.setInt(1, userId);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return resultSet.getLong("workouts_version");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Считает агрегаты по тренировкам пользователя в разбивке по типам.
+     *
+     * @param userId ID пользователя
+     * @return строки по типам в алфавитном порядке; пустой список, если тренировок нет
+     */
+    public List<WorkoutStats> findWorkoutStatsByUserId(int userId) {
+        List<WorkoutStats> stats = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getReadConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SQL_SELECT_USER_WORKOUT_STATS_BY_TYPE)) {
+            preparedStatement.setInt(1, userId);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                stats.add(toWorkoutStats(resultSet));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return stats;
+    }
+
+    private static WorkoutStats toWorkoutStats(ResultSet resultSet) throws SQLException {
+        return new WorkoutStats(
+                resultSet.getString("type"),
+                resultSet.getLong("workout_count"),
+                resultSet.getLong("total_duration"),
+                resultSet.getLong("total_calories"),
+                resultSet.getDouble("avg_duration"),
+                resultSet.getDouble("avg_calories"));
+    }
+
+    /**
+     * Проверяет, вызвана ли ошибка нарушением внешнего ключа.
+     * Для пакетной вставки драйвер кладёт исходную ошибку в цепочку {@link SQLException#getNextException()}.
+     */
+    private static boolean isForeignKeyViolation(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (FOREIGN_KEY_VIOLATION.equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return instant != null ? OffsetDateTime.ofInstant(instant, ZoneOffset.UTC) : null;
+    }
+
+    private static Instant performedAt(ResultSet resultSet) throws SQLException {
+        OffsetDateTime performedAt = resultSet.getObject("performed_at", OffsetDateTime.class);
+        return performedAt != null ? performedAt.toInstant() : null;
     }
 }
@@ -0,0 +1,290 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.ImportResultDTO;
+import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.repository.CopyRepository;
+import com.example.astonrest.util.CalorieCalculator;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.WorkoutValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Массовый импорт и выгрузка данных в обход построчного REST API.
+ * <p>
+ * CSV из тела запроса передаётся в {@code COPY} потоково. Для тренировок клиент присылает
+ * {@code type,duration,user_id} и, при необходимости, время тренировки {@code performed_at},
+ * а калории досчитываются на лету по тем же правилам, что и при создании тренировки через API.
+ * Выгрузка пишет CSV от {@code COPY ... TO STDOUT} прямо в поток ответа.
+ */
+public class BulkDataService {
+    private final CopyRepository copyRepository;
+    private final CalorieLeaderboard leaderboard;
+    private final MealSearchIndex mealSearchIndex;
+
+    public BulkDataService(CopyRepository copyRepository) {
+        this(copyRepository, null, null);
+    }
+
+    /**
+     * @param leaderboard     рейтинг по калориям, который строится заново после импорта тренировок; может быть {@code null}
+     * @param mealSearchIndex поисковый индекс, который строится заново после импорта приёмов пищи; может быть {@code null}
+     */
+    public BulkDataService(CopyRepository copyRepository, CalorieLeaderboard leaderboard,
+                           MealSearchIndex mealSearchIndex) {
+        this.copyRepository = copyRepository;
+        this.leaderboard = leaderboard;
+        this.mealSearchIndex = mealSearchIndex;
+    }
+
+    /**
+     * Импортирует тренировки из CSV {@code type,duration,user_id[,performed_at]}.
+     *
+     * @param csv    содержимое CSV
+     * @param header пропустить ли первую строку с заголовками
+     */
+    public ImportResultDTO importWorkouts(Reader csv, boolean header) {
+        ImportResultDTO result = runImport(ApiConstants.TABLE_WORKOUTS,
+                () -> copyRepository.copyWorkoutsIn(new WorkoutCsvReader(open(csv, header))));
+        // COPY идёт в обход WorkoutService, поэтому рейтинг перечитывается из базы
+        if (leaderboard != null) {
+            leaderboard.rebuild();
+        }
+        return result;
+    }
+
+    /**
+     * Импортирует приёмы пищи из CSV {@code name,calories}.
+     *
+     * @param csv    содержимое CSV
+     * @param header пропустить ли первую строку с заголовками
+     */
+    public ImportResultDTO importMeals(Reader csv, boolean header) {
+        ImportResultDTO result = runImport(ApiConstants.TABLE_MEALS, () -> copyRepository.copyMealsIn(open(csv, header)));
+        if (mealSearchIndex != null) {
+            mealSearchIndex.rebuild();
+        }
+        return result;
+    }
+
+    /**
+     * Импортирует связи пользователей с приёмами пищи из CSV {@code user_id,meal_id}.
+     *
+     * @param csv    содержимое CSV
+     * @param header пропустить ли первую строку с заголовками
+     */
+    public ImportResultDTO importUserMeals(Reader csv, boolean header) {
+        return runImport(ApiConstants.TABLE_USER_MEALS, () -> copyRepository.copyUserMealsIn(open(csv, header)));
+    }
+
+    /**
+     * Выгружает тренировки пользователей из диапазона ID в CSV с заголовком.
+     *
+     * @return количество выгруженных строк
+     */
+    public long exportWorkouts(int fromUserId, int toUserId, OutputStream out) {
+        return runExport(ApiConstants.TABLE_WORKOUTS, fromUserId, toUserId,
+                () -> copyRepository.copyWorkoutsOut(fromUserId, toUserId, out));
+    }
+
+    /**
+     * Выгружает пользователей из диапазона ID в CSV с заголовком.
+     *
+     * @return количество выгруженных строк
+     */
+    public long exportUsers(int fromUserId, int toUserId, OutputStream out) {
+        return runExport(ApiConstants.TABLE_USERS, fromUserId, toUserId,
+                () -> copyRepository.copyUsersOut(fromUserId, toUserId, out));
+    }
+
+    /**
+     * Выгружает связи пользователей из диапазона ID с приёмами пищи в CSV с заголовком.
+     *
+     * @return количество выгруженных строк
+     */
+    public long exportUserMeals(int fromUserId, int toUserId, OutputStream out) {
+        return runExport(ApiConstants.TABLE_USER_MEALS, fromUserId, toUserId,
+                () -> copyRepository.copyUserMealsOut(fromUserId, toUserId, out));
+    }
+
+    /**
+     * Проверяет диапазон и выполняет выгрузку. Ошибка посреди выгрузки не исправима для клиента,
+     * поэтому любые сбои COPY и записи в поток поднимаются как {@link RuntimeException}.
+     */
+    private long runExport(String table, int fromUserId, int toUserId, CopyAction action) {
+        if (fromUserId > toUserId) {
+            throw new BadRequestException(ApiConstants.INVALID_USER_ID_RANGE);
+        }
+        try {
+            return action.copy();
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Ошибка выгрузки таблицы " + table, e);
+        }
+    }
+
+    /**
+     * Выполняет импорт и переводит ошибки в данных в {@link BadRequestException}.
+     * Некорректные значения и нарушения ограничений (SQLState классов 22 и 23) — ошибка клиента,
+     * остальное — внутренняя ошибка.
+     */
+    private ImportResultDTO runImport(String table, CopyAction action) {
+        try {
+            return new ImportResultDTO(table, action.copy());
+        } catch (CsvFormatException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (SQLException e) {
+            String sqlState = e.getSQLState();
+            if (sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"))) {
+                throw new BadRequestException(String.format(ApiConstants.IMPORT_REJECTED, table, e.getMessage()));
+            }
+            throw new RuntimeException("Ошибка импорта в таблицу " + table, e);
+        } catch (IOException e) {
+            throw new BadRequestException(ApiConstants.IMPORT_READ_FAILED);
+        }
+    }
+
+    private static BufferedReader open(Reader csv, boolean header) throws IOException {
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        if (header) {
+            reader.readLine();
+        }
+        return reader;
+    }
+
+    @FunctionalInterface
+    private interface CopyAction {
+        long copy() throws SQLException, IOException;
+    }
+
+    /**
+     * Ошибка формата строки CSV.
+     */
+    private static class CsvFormatException extends IOException {
+        CsvFormatException(long lineNumber, String line) {
+            super(String.format(ApiConstants.INVALID_CSV_LINE, lineNumber, line));
+        }
+
+        CsvFormatException(long lineNumber, String line, String reason) {
+            super(String.format(ApiConstants.INVALID_CSV_LINE, lineNumber, line) + " (" + reason + ")");
+        }
+    }
+
+    /**
+     * Превращает строки {@code type,duration,user_id[,performed_at]} в
+     * {@code type,duration,calories_burned,user_id,performed_at} по одной строке за раз, не читая вход целиком.
+     * Тип, длительность и время тренировки проверяются {@link WorkoutValidator} так же, как при создании
+     * тренировки через API. Тип передаётся в COPY как есть, поэтому может быть в кавычках по правилам CSV.
+     * Время принимается датой или моментом ISO-8601 и передаётся в UTC; у строк без него — момент начала импорта,
+     * как у тренировок без времени, созданных через API.
+     */
+    private static class WorkoutCsvReader extends Reader {
+        private final BufferedReader source;
+        private final Instant importedAt = Instant.now();
+        private String pending = "";
+        private int position;
+        private long lineNumber;
+
+        WorkoutCsvReader(BufferedReader source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position >= pending.length()) {
+                String line = source.readLine();
+                if (line == null) {
+                    return -1;
+                }
+                lineNumber++;
+                if (!line.trim().isEmpty()) {
+                    pending = toCopyLine(line);
+                    position = 0;
+                }
+            }
+            int count = Math.min(length, pending.length() - position);
+            pending.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        private String toCopyLine(String line) throws CsvFormatException {
+            int typeEnd = endOfFirstField(line);
+            if (typeEnd <= 0) {
+                throw new CsvFormatException(lineNumber, line);
+            }
+            String type = line.substring(0, typeEnd);
+            String[] fields = line.substring(typeEnd + 1).split(",", -1);
+            if (fields.length != 2 && fields.length != 3) {
+                throw new CsvFormatException(lineNumber, line);
+            }
+
+            String userId = fields[1].trim();
+            String performedAt = fields.length == 3 && !fields[2].trim().isEmpty() ? fields[2].trim() : null;
+            int duration;
+            try {
+                duration = Integer.parseInt(fields[0].trim());
+            } catch (NumberFormatException e) {
+                throw new CsvFormatException(lineNumber, line);
+            }
+
+            Instant performedAtInstant;
+            try {
+                WorkoutValidator.validate(new WorkoutDTO(unquote(type), duration, 0, 0, performedAt));
+                performedAtInstant = performedAt != null ? DateRange.parseInstant(performedAt) : importedAt;
+            } catch (BadRequestException e) {
+                throw new CsvFormatException(lineNumber, line, e.getMessage());
+            }
+
+            int caloriesBurned = CalorieCalculator.calculate(unquote(type), duration);
+            return type + "," + duration + "," + caloriesBurned + "," + userId + "," + performedAtInstant + "\n";
+        }
+
+        /**
+         * Позиция запятой после первого поля с учётом кавычек CSV или -1, если её нет.
+         */
+        private static int endOfFirstField(String line) {
+            int start = 0;
+            while (start < line.length() && line.charAt(start) == ' ') {
+                start++;
+            }
+            if (start == line.length() || line.charAt(start) != '"') {
+                return line.indexOf(',');
+            }
+            int i = start + 1;
+            while (i < line.length()) {
+                if (line.charAt(i) == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        i += 2;
+                        continue;
+                    }
+                    return line.indexOf(',', i + 1);
+                }
+                i++;
+            }
+            return -1;
+        }
+
+        private static String unquote(String value) {
+            String trimmed = value.trim();
+            if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+                return trimmed.substring(1, trimmed.length() - 1).replace("\"\"", "\"");
+            }
+            return trimmed;
+        }
+    }
+}
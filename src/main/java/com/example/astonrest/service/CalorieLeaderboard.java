@@ -0,0 +1,238 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.dto.LeaderboardEntryDTO;
+import com.example.astonrest.repository.UserRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Рейтинг пользователей по сожжённым калориям, который хранится в памяти и обновляется на лету.
+ * <p>
+ * Суммы по пользователям лежат в {@link ConcurrentHashMap}, а упорядоченные строки рейтинга —
+ * в {@link ConcurrentSkipListSet} (больше калорий — выше, при равенстве — меньший ID).
+ * Кроме того, суммы разложены по корзинам шириной {@code leaderboard.bucketWidth} калорий,
+ * а число пользователей в корзинах хранит дерево Фенвика ({@code leaderboard.bucketCount} корзин,
+ * всё выше последней границы попадает в последнюю корзину).
+ * <p>
+ * Изменение суммы стоит O(log n + log B), первые k мест читаются за O(k). Место пользователя —
+ * O(log B + m): пользователи из более высоких корзин считаются префиксной суммой дерева,
+ * а перебираются только m соседей по своей корзине, стоящих выше. Стоимость не зависит от места
+ * и ограничена заполненностью одной корзины; на ширину корзины стоит смотреть, если в одну корзину
+ * (например, последнюю) попадает много пользователей.
+ * <p>
+ * При запуске рейтинг строится по {@code user_stats}, затем его изменяют создание, изменение
+ * и удаление тренировок через {@link WorkoutService}, запись из очереди {@link WorkoutIngestQueue}
+ * и удаление пользователя. После массового импорта тренировок рейтинг строится заново.
+ * Рейтинг у каждого экземпляра приложения свой и видит только прошедшие через него изменения.
+ */
+public class CalorieLeaderboard {
+    private static final int BUCKET_WIDTH = ApplicationProperties.getInt("leaderboard.bucketWidth", 100);
+    private static final int BUCKET_COUNT = ApplicationProperties.getInt("leaderboard.bucketCount", 65536);
+
+    private final UserRepository userRepository;
+    private final int bucketWidth;
+    private final int bucketCount;
+    private volatile Board board;
+
+    public CalorieLeaderboard(UserRepository userRepository) {
+        this(userRepository, BUCKET_WIDTH, BUCKET_COUNT);
+    }
+
+    /**
+     * @param bucketWidth сколько калорий охватывает одна корзина
+     * @param bucketCount сколько корзин; суммы выше последней границы попадают в последнюю
+     */
+    public CalorieLeaderboard(UserRepository userRepository, int bucketWidth, int bucketCount) {
+        if (bucketWidth <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Leaderboard bucket width and count must be positive");
+        }
+        this.userRepository = userRepository;
+        this.bucketWidth = bucketWidth;
+        this.bucketCount = bucketCount;
+        this.board = new Board();
+    }
+
+    /**
+     * Строит рейтинг заново по данным базы. При ошибке остаётся прежний рейтинг.
+     * Изменения, пришедшие во время чтения, в новый рейтинг могут не попасть.
+     */
+    public void rebuild() {
+        try {
+            Map<Integer, Long> totals = userRepository.findAllCaloriesBurned();
+            Board fresh = new Board();
+            totals.forEach(fresh::add);
+            board = fresh;
+            System.out.println("INFO: Рейтинг по калориям построен, пользователей: " + totals.size());
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("WARN: Рейтинг по калориям не построен: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Изменяет сумму калорий пользователя. Пользователь с нулевой суммой из рейтинга убирается.
+     *
+     * @param userId ID пользователя
+     * @param delta  на сколько изменились калории; отрицательное значение уменьшает сумму
+     */
+    public void add(int userId, long delta) {
+        if (delta != 0) {
+            board.add(userId, delta);
+        }
+    }
+
+    /**
+     * Убирает удалённого пользователя из рейтинга.
+     */
+    public void removeUser(int userId) {
+        board.remove(userId);
+    }
+
+    /**
+     * Первые места рейтинга.
+     *
+     * @param limit сколько мест вернуть
+     */
+    public List<LeaderboardEntryDTO> top(int limit) {
+        List<LeaderboardEntryDTO> top = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Entry> iterator = board.ranking.iterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            top.add(new LeaderboardEntryDTO(top.size() + 1, entry.userId, entry.total));
+        }
+        return top;
+    }
+
+    /**
+     * Место пользователя в рейтинге: пользователи из более высоких корзин плюс соседи по корзине выше него.
+     * Под одновременными изменениями место может отличаться от точного на число этих изменений.
+     *
+     * @return строка рейтинга или null, если пользователь ещё не сжёг ни одной калории
+     */
+    public LeaderboardEntryDTO rankOf(int userId) {
+        Board current = board;
+        Long total = current.totals.get(userId);
+        if (total == null) {
+            return null;
+        }
+        int bucket = bucketOf(total);
+        int above = current.counts.sum(bucketCount - 1) - current.counts.sum(bucket);
+        Entry bucketHead = new Entry(Integer.MIN_VALUE, bucketMaxTotal(bucket));
+        int aheadInBucket = current.ranking.subSet(bucketHead, true, new Entry(userId, total), false).size();
+        return new LeaderboardEntryDTO(above + aheadInBucket + 1, userId, total);
+    }
+
+    private int bucketOf(long total) {
+        return (int) Math.min(total / bucketWidth, bucketCount - 1);
+    }
+
+    private long bucketMaxTotal(int bucket) {
+        return bucket == bucketCount - 1 ? Long.MAX_VALUE : (long) (bucket + 1) * bucketWidth - 1;
+    }
+
+    /**
+     * Суммы, упорядоченные строки и число пользователей по корзинам. Перестроение заменяет объект целиком.
+     */
+    private class Board {
+        final ConcurrentHashMap<Integer, Long> totals = new ConcurrentHashMap<>();
+        final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+        final BucketCounts counts = new BucketCounts(bucketCount);
+
+        // compute выполняется атомарно для ключа, поэтому строка одного пользователя не раздваивается
+        void add(int userId, long delta) {
+            totals.compute(userId, (id, old) -> {
+                long updated = (old != null ? old : 0) + delta;
+                if (old != null) {
+                    ranking.remove(new Entry(id, old));
+                    counts.add(bucketOf(old), -1);
+                }
+                if (updated <= 0) {
+                    return null;
+                }
+                ranking.add(new Entry(id, updated));
+                counts.add(bucketOf(updated), 1);
+                return updated;
+            });
+        }
+
+        void remove(int userId) {
+            totals.computeIfPresent(userId, (id, old) -> {
+                ranking.remove(new Entry(id, old));
+                counts.add(bucketOf(old), -1);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Дерево Фенвика над числом пользователей в корзинах: изменение и префиксная сумма за O(log B).
+     * Ячейки изменяются атомарно, поэтому параллельные изменения разных пользователей не теряются.
+     */
+    private static final class BucketCounts {
+        private final AtomicIntegerArray tree;
+
+        BucketCounts(int size) {
+            tree = new AtomicIntegerArray(size + 1);
+        }
+
+        void add(int bucket, int delta) {
+            for (int i = bucket + 1; i < tree.length(); i += i & -i) {
+                tree.addAndGet(i, delta);
+            }
+        }
+
+        /**
+         * Сколько пользователей в корзинах с 0 по {@code bucket} включительно.
+         */
+        int sum(int bucket) {
+            int sum = 0;
+            for (int i = bucket + 1; i > 0; i -= i & -i) {
+                sum += tree.get(i);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Строка рейтинга. Сравнение: больше калорий — раньше, при равенстве — меньший ID.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final int userId;
+        final long total;
+
+        Entry(int userId, long total) {
+            this.userId = userId;
+            this.total = total;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTotal = Long.compare(other.total, total);
+            return byTotal != 0 ? byTotal : Integer.compare(userId, other.userId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return userId == entry.userId && total == entry.total;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userId + Long.hashCode(total);
+        }
+    }
+}
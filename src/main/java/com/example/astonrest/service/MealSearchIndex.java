@@ -0,0 +1,457 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.entity.Meal;
+import com.example.astonrest.repository.MealRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Поисковый индекс по названиям приёмов пищи, который хранится в памяти.
+ * <p>
+ * Названия приводятся к нижнему регистру и одиночным пробелам. Поиск по началу названия идёт
+ * по {@link ConcurrentSkipListMap} с ключом «название + ID»: первые k совпадений читаются за
+ * O(log n + k) в алфавитном порядке. Если таких меньше лимита, результат добирается поиском
+ * с опечатками по триграммам, как в {@code pg_trgm}: слово дополняется пробелами, похожесть —
+ * доля общих триграмм запроса и названия, порог — {@link #SIMILARITY_THRESHOLD}.
+ * <p>
+ * Списки ID по триграммам неизменяемы: отсортированный массив {@code int} и небольшие массивы
+ * добавленных и удалённых ID. Изменение копирует только добавки, которые сливаются с основным
+ * массивом, когда вырастают до корня из его длины, — частые триграммы не копируются целиком
+ * при каждом изменении приёма пищи.
+ * <p>
+ * Кандидатов для поиска с опечатками дают только самые короткие списки запроса: название
+ * с похожестью выше порога обязано встретиться хотя бы в одном из них. Просмотр этих списков
+ * ограничен {@link #MAX_SCANNED_POSTINGS} ID, число кандидатов — {@link #MAX_CANDIDATES}
+ * (остаются кандидаты с наибольшим числом общих триграмм), остальные триграммы проверяются
+ * двоичным поиском. Поэтому время ответа не зависит от размера каталога.
+ * <p>
+ * При запуске индекс строится по таблице {@code meals}, затем его обновляет {@link MealService}
+ * при создании, изменении и удалении приёма пищи. После импорта через COPY индекс строится заново.
+ * Индекс у каждого экземпляра приложения свой.
+ */
+public class MealSearchIndex {
+    static final double SIMILARITY_THRESHOLD = 0.3;
+    // Сколько ID из списков-источников кандидатов просматривается за один поиск
+    static final int MAX_SCANNED_POSTINGS = 50_000;
+    // Сколько кандидатов проверяется по всем триграммам запроса
+    static final int MAX_CANDIDATES = 2_000;
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final int[] NO_IDS = new int[0];
+
+    private final MealRepository mealRepository;
+    private volatile Index index = new Index();
+
+    public MealSearchIndex(MealRepository mealRepository) {
+        this.mealRepository = mealRepository;
+    }
+
+    /**
+     * Строит индекс заново по данным базы. При ошибке остаётся прежний индекс.
+     * Изменения, пришедшие во время чтения каталога, в новый индекс могут не попасть.
+     */
+    public void rebuild() {
+        try {
+            Map<String, IdList> postings = new HashMap<>();
+            Index fresh = new Index();
+            mealRepository.streamAllMeals(meal -> {
+                Entry entry = new Entry(meal.getId(), meal.getName(), meal.getCalories());
+                fresh.meals.put(entry.id, entry);
+                fresh.byName.put(entry.key(), entry);
+                for (String trigram : entry.trigrams) {
+                    postings.computeIfAbsent(trigram, t -> new IdList()).add(entry.id);
+                }
+            });
+            postings.forEach((trigram, ids) -> fresh.trigrams.put(trigram, new Postings(ids.toArray())));
+            index = fresh;
+            System.out.println("INFO: Поисковый индекс приёмов пищи построен, записей: " + fresh.meals.size()
+                    + ", триграмм: " + fresh.trigrams.size());
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("WARN: Поисковый индекс приёмов пищи не построен: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Добавляет приём пищи в индекс или заменяет прежнее название.
+     */
+    public void put(Meal meal) {
+        index.put(new Entry(meal.getId(), meal.getName(), meal.getCalories()));
+    }
+
+    /**
+     * Убирает приём пищи из индекса.
+     */
+    public void remove(int id) {
+        index.remove(id);
+    }
+
+    /**
+     * Ищет приёмы пищи: сначала по началу названия, затем с опечатками.
+     *
+     * @param query строка поиска
+     * @param limit сколько результатов вернуть
+     * @return найденные приёмы пищи, лучшие — первыми
+     */
+    public List<MealSearchResultDTO> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Index current = index;
+        Map<Integer, MealSearchResultDTO> results = new LinkedHashMap<>();
+
+        ConcurrentNavigableMap<String, Entry> prefixMatches =
+                current.byName.subMap(normalized, true, normalized + Character.MAX_VALUE, false);
+        for (Entry entry : prefixMatches.values()) {
+            if (results.size() >= limit) {
+                return new ArrayList<>(results.values());
+            }
+            results.put(entry.id, entry.toResult(1.0));
+        }
+
+        fuzzyMatches(current, trigrams(normalized), results.keySet(), limit - results.size())
+                .forEach(result -> results.put(result.getId(), result));
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Поиск с опечатками: собирает кандидатов из самых коротких списков запроса, считает для них
+     * общие триграммы и отбирает названия выше порога похожести.
+     */
+    private static List<MealSearchResultDTO> fuzzyMatches(Index current, Set<String> queryTrigrams,
+                                                          Set<Integer> exclude, int limit) {
+        if (limit <= 0 || queryTrigrams.isEmpty()) {
+            return List.of();
+        }
+        List<Postings> lists = new ArrayList<>(queryTrigrams.size());
+        for (String trigram : queryTrigrams) {
+            lists.add(current.trigrams.getOrDefault(trigram, Postings.EMPTY));
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+
+        // Похожесть c / (q + e - c) не выше c / q, поэтому у совпадения не меньше minShared общих триграмм
+        // и хотя бы одна из них лежит в одном из sources самых коротких списков
+        int queryCount = queryTrigrams.size();
+        int minShared = Math.max(1, (int) Math.ceil(SIMILARITY_THRESHOLD * queryCount - 1e-9));
+        int sources = queryCount - minShared + 1;
+
+        int[] scanned = new int[Math.min(MAX_SCANNED_POSTINGS, totalSize(lists, sources))];
+        int scannedCount = 0;
+        for (int i = 0; i < sources && scannedCount < scanned.length; i++) {
+            scannedCount = lists.get(i).copyTo(scanned, scannedCount);
+        }
+        Arrays.sort(scanned, 0, scannedCount);
+        int[] candidates = topCandidates(scanned, scannedCount);
+
+        List<MealSearchResultDTO> matches = new ArrayList<>();
+        for (int id : candidates) {
+            Entry entry = current.meals.get(id);
+            if (entry == null || exclude.contains(id)) {
+                continue;
+            }
+            int shared = 0;
+            for (Postings list : lists) {
+                if (list.contains(id)) {
+                    shared++;
+                }
+            }
+            double similarity = (double) shared / (queryCount + entry.trigrams.length - shared);
+            if (similarity >= SIMILARITY_THRESHOLD) {
+                matches.add(entry.toResult(similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(MealSearchResultDTO::getScore).reversed()
+                .thenComparing(MealSearchResultDTO::getName)
+                .thenComparingInt(MealSearchResultDTO::getId));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    private static int totalSize(List<Postings> lists, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += lists.get(i).size();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Различные ID из отсортированного буфера; если их больше {@link #MAX_CANDIDATES},
+     * остаются встреченные в наибольшем числе списков, при равенстве — с меньшим ID.
+     */
+    private static int[] topCandidates(int[] sorted, int length) {
+        int[] ids = new int[length];
+        int[] hits = new int[length];
+        int distinct = 0;
+        int maxHits = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinct > 0 && ids[distinct - 1] == sorted[i]) {
+                maxHits = Math.max(maxHits, ++hits[distinct - 1]);
+            } else {
+                ids[distinct] = sorted[i];
+                hits[distinct++] = 1;
+                maxHits = Math.max(maxHits, 1);
+            }
+        }
+        if (distinct <= MAX_CANDIDATES) {
+            return Arrays.copyOf(ids, distinct);
+        }
+
+        int[] perHits = new int[maxHits + 1];
+        for (int i = 0; i < distinct; i++) {
+            perHits[hits[i]]++;
+        }
+        int cutoff = maxHits;
+        int kept = perHits[cutoff];
+        while (kept < MAX_CANDIDATES) {
+            kept += perHits[--cutoff];
+        }
+        int fromCutoff = MAX_CANDIDATES - (kept - perHits[cutoff]);
+
+        int[] top = new int[MAX_CANDIDATES];
+        int size = 0;
+        for (int i = 0; i < distinct; i++) {
+            if (hits[i] > cutoff || (hits[i] == cutoff && fromCutoff-- > 0)) {
+                top[size++] = ids[i];
+            }
+        }
+        return top;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Триграммы названия: каждое слово дополняется двумя пробелами слева и одним справа.
+     */
+    static Set<String> trigrams(String normalized) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * Структуры индекса. Перестроение заменяет объект целиком.
+     * Изменения идут под блокировкой объекта, чтобы три структуры не расходились между собой;
+     * поиск читает их без блокировки.
+     */
+    private static class Index {
+        final ConcurrentHashMap<Integer, Entry> meals = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+        final ConcurrentHashMap<String, Postings> trigrams = new ConcurrentHashMap<>();
+
+        synchronized void put(Entry entry) {
+            remove(entry.id);
+            meals.put(entry.id, entry);
+            byName.put(entry.key(), entry);
+            for (String trigram : entry.trigrams) {
+                trigrams.compute(trigram, (t, ids) -> (ids != null ? ids : Postings.EMPTY).with(entry.id));
+            }
+        }
+
+        synchronized void remove(int id) {
+            Entry old = meals.remove(id);
+            if (old == null) {
+                return;
+            }
+            byName.remove(old.key());
+            for (String trigram : old.trigrams) {
+                trigrams.computeIfPresent(trigram, (t, ids) -> {
+                    Postings rest = ids.without(id);
+                    return rest.size() > 0 ? rest : null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Неизменяемый список ID по триграмме: отсортированный основной массив, добавленные ID, которых
+     * в нём нет, и удалённые ID из него. Читающий поток всегда видит целый список, а изменение
+     * копирует только добавки. Когда добавки вырастают до корня из длины основного массива,
+     * они сливаются с ним, так что изменение в среднем стоит O(√n), а не O(n).
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings(NO_IDS);
+        private static final int MIN_DELTA = 32;
+
+        private final int[] base;
+        private final int[] added;
+        private final int[] removed;
+
+        Postings(int[] base) {
+            this(base, NO_IDS, NO_IDS);
+        }
+
+        private Postings(int[] base, int[] added, int[] removed) {
+            this.base = base;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int size() {
+            return base.length - removed.length + added.length;
+        }
+
+        boolean contains(int id) {
+            if (Arrays.binarySearch(base, id) >= 0) {
+                return Arrays.binarySearch(removed, id) < 0;
+            }
+            return Arrays.binarySearch(added, id) >= 0;
+        }
+
+        Postings with(int id) {
+            if (contains(id)) {
+                return this;
+            }
+            if (Arrays.binarySearch(removed, id) >= 0) {
+                return compacted(base, added, withoutId(removed, id));
+            }
+            return compacted(base, withId(added, id), removed);
+        }
+
+        Postings without(int id) {
+            if (!contains(id)) {
+                return this;
+            }
+            if (Arrays.binarySearch(added, id) >= 0) {
+                return compacted(base, withoutId(added, id), removed);
+            }
+            return compacted(base, added, withId(removed, id));
+        }
+
+        /**
+         * Дописывает ID списка в буфер, пока в нём есть место.
+         *
+         * @return новая заполненность буфера
+         */
+        int copyTo(int[] buffer, int offset) {
+            for (int i = 0, r = 0; i < base.length && offset < buffer.length; i++) {
+                if (r < removed.length && removed[r] == base[i]) {
+                    r++;
+                } else {
+                    buffer[offset++] = base[i];
+                }
+            }
+            int count = Math.min(added.length, buffer.length - offset);
+            System.arraycopy(added, 0, buffer, offset, count);
+            return offset + count;
+        }
+
+        private static Postings compacted(int[] base, int[] added, int[] removed) {
+            int limit = Math.max(MIN_DELTA, (int) Math.sqrt(base.length));
+            if (added.length + removed.length <= limit) {
+                return new Postings(base, added, removed);
+            }
+            int[] merged = new int[base.length - removed.length + added.length];
+            int size = 0;
+            for (int i = 0, a = 0, r = 0; i < base.length || a < added.length; ) {
+                if (a < added.length && (i == base.length || added[a] < base[i])) {
+                    merged[size++] = added[a++];
+                } else if (r < removed.length && removed[r] == base[i]) {
+                    r++;
+                    i++;
+                } else {
+                    merged[size++] = base[i++];
+                }
+            }
+            return new Postings(merged);
+        }
+
+        // Копируются только короткие массивы добавок, основной массив остаётся общим у старого и нового списка
+        private static int[] withId(int[] ids, int id) {
+            int position = Arrays.binarySearch(ids, id);
+            if (position >= 0) {
+                return ids;
+            }
+            int insertAt = -position - 1;
+            int[] copy = new int[ids.length + 1];
+            System.arraycopy(ids, 0, copy, 0, insertAt);
+            copy[insertAt] = id;
+            System.arraycopy(ids, insertAt, copy, insertAt + 1, ids.length - insertAt);
+            return copy;
+        }
+
+        private static int[] withoutId(int[] ids, int id) {
+            int position = Arrays.binarySearch(ids, id);
+            if (position < 0) {
+                return ids;
+            }
+            int[] copy = new int[ids.length - 1];
+            System.arraycopy(ids, 0, copy, 0, position);
+            System.arraycopy(ids, position + 1, copy, position, ids.length - position - 1);
+            return copy;
+        }
+    }
+
+    /**
+     * Приём пищи в индексе вместе с нормализованным названием и его триграммами.
+     */
+    private static final class Entry {
+        final int id;
+        final String name;
+        final int calories;
+        final String normalized;
+        final String[] trigrams;
+
+        Entry(int id, String name, int calories) {
+            this.id = id;
+            this.name = name;
+            this.calories = calories;
+            this.normalized = normalize(name);
+            this.trigrams = MealSearchIndex.trigrams(normalized).toArray(new String[0]);
+        }
+
+        // ID в ключе различает одинаковые названия; разделитель меньше любого символа названия
+        String key() {
+            return normalized + KEY_SEPARATOR + id;
+        }
+
+        MealSearchResultDTO toResult(double score) {
+            return new MealSearchResultDTO(id, name, calories, score);
+        }
+    }
+
+    /**
+     * Растущий список ID для сборки индекса. Каталог читается по возрастанию ID,
+     * поэтому списки получаются отсортированными без дополнительной сортировки.
+     */
+    private static final class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -1,20 +1,51 @@
 package com.example.astonrest.service;
 
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
 import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.dto.MealStatsDTO;
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.dto.UserMealLinkResultDTO;
+import com.example.astonrest.dto.UserMealUnlinkResultDTO;
 import com.example.astonrest.entity.Meal;
+import com.example.astonrest.entity.MealLinkResult;
+import com.example.astonrest.entity.MealStats;
+import com.example.astonrest.entity.MealUnlinkResult;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.exception.CustomException;
 import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.mapper.MealMapper;
 import com.example.astonrest.repository.MealRepository;
+import com.example.astonrest.util.ETags;
+import com.example.astonrest.util.IdListRequest;
 import com.example.astonrest.util.MealValidator;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class MealService {
+    private static final int LINK_MAX_SIZE = ApplicationProperties.getInt("meal.linkMaxSize", 1000);
+
     private final MealRepository mealRepository;
+    private final MealSearchIndex searchIndex;
 
     public MealService(MealRepository mealRepository) {
+        this(mealRepository, null);
+    }
+
+    /**
+     * @param searchIndex поисковый индекс по названиям, который обновляется при изменении приёмов пищи;
+     *                    может быть {@code null}
+     */
+    public MealService(MealRepository mealRepository, MealSearchIndex searchIndex) {
         this.mealRepository = mealRepository;
+        this.searchIndex = searchIndex;
     }
 
     /**
@@ -25,6 +56,9 @@ public class MealService {
         MealValidator.validate(mealDTO);
         Meal meal = MealMapper.toEntity(mealDTO);
         mealRepository.save(meal);
+        if (searchIndex != null && meal.getId() > 0) {
+            searchIndex.put(meal);
+        }
     }
 
     /**
@@ -38,27 +72,80 @@ public class MealService {
     }
 
     /**
-     * Получает список всех приёмов пищи.
-     * @return список еды в формате DTO
+     * Получает приёмы пищи по списку ID одним запросом.
+     * @param ids список ID
+     * @return найденные приёмы пищи в порядке запроса и отсутствующие ID
+     */
+    public MultiGetDTO<MealDTO> getMealsByIds(IdListRequest ids) {
+        return ids.toResult(mealRepository.findMealsByIds(ids.getIds()), Meal::getId, MealMapper::toDTO);
+    }
+
+    /**
+     * Получает страницу приёмов пищи.
+     * @param page параметры страницы
+     * @return страница еды в формате DTO
+     */
+    public PageDTO<MealDTO> getMeals(PageRequest page) {
+        return page.toPage(mealRepository.findMeals(page.getAfterId(), page.getFetchSize()),
+                Meal::getId, MealMapper::toDTO);
+    }
+
+    /**
+     * Получает приёмы пищи по списку ID вместе с версией каталога, прочитанной на том же соединении.
+     * @param ids список ID
+     * @return найденные приёмы пищи и версия для ETag
+     * @see #mealsETag(Long)
+     */
+    public Versioned<MultiGetDTO<MealDTO>> getVersionedMealsByIds(IdListRequest ids) {
+        return mealRepository.findVersionedMealsByIds(ids.getIds())
+                .map(meals -> ids.toResult(meals, Meal::getId, MealMapper::toDTO));
+    }
+
+    /**
+     * Получает страницу приёмов пищи вместе с версией каталога, прочитанной на том же соединении.
+     * @param page параметры страницы
+     * @return страница еды и версия для ETag
+     * @see #mealsETag(Long)
+     */
+    public Versioned<PageDTO<MealDTO>> getVersionedMeals(PageRequest page) {
+        return mealRepository.findVersionedMeals(page.getAfterId(), page.getFetchSize())
+                .map(meals -> page.toPage(meals, Meal::getId, MealMapper::toDTO));
+    }
+
+    /**
+     * Получает ETag каталога приёмов пищи по счётчику изменений таблицы.
+     * @return ETag или null, если версию не удалось прочитать
      */
-    public List<MealDTO> getAllMeals() {
-        return mealRepository.findAllMeals()
-                .stream()
-                .map(MealMapper::toDTO)
-                .collect(Collectors.toList());
+    public String getMealsETag() {
+        return mealsETag(mealRepository.findMealsVersion());
+    }
+
+    /**
+     * ETag каталога приёмов пищи по счётчику изменений таблицы.
+     * @return ETag или null без версии
+     */
+    public static String mealsETag(Long version) {
+        return ETags.of("meals", version);
     }
 
     /**
      * Обновляет данные приёма пищи.
      * @param id ID еды
      * @param mealDTO Обновлённые данные
+     * @throws NotFoundException если записи с таким ID нет
      */
     public void updateMeal(int id, MealDTO mealDTO) {
-        Meal existingMeal = mealRepository.findMealById(id);
-        if (existingMeal != null) {
-            existingMeal.setName(mealDTO.getName());
-            existingMeal.setCalories(mealDTO.getCalories());
-            mealRepository.update(existingMeal);
+        Meal meal = new Meal();
+        meal.setId(id);
+        meal.setName(mealDTO.getName());
+        meal.setCalories(mealDTO.getCalories());
+
+        Meal updated = mealRepository.update(meal);
+        if (updated == null) {
+            throw new NotFoundException("Meal with ID " + id + " not found.");
+        }
+        if (searchIndex != null) {
+            searchIndex.put(updated);
         }
     }
 
@@ -67,22 +154,105 @@ public class MealService {
      * @param id ID еды
      */
     public void deleteMeal(int id) {
-        MealDTO meal = getMeal(id);
-        if(meal == null) {
+        if (!mealRepository.delete(id)) {
             throw new NotFoundException("Meal with ID " + id + " not found.");
         }
-        mealRepository.delete(id);
+        if (searchIndex != null) {
+            searchIndex.remove(id);
+        }
     }
 
     /**
-     * Получает все приёмы пищи для конкретного пользователя.
+     * Ищет приёмы пищи по названию: по началу названия и с опечатками.
+     * @param query строка поиска
+     * @param limit сколько результатов вернуть
+     * @return найденные приёмы пищи; пустой список, если индекс не подключён
+     * @throws BadRequestException если строка поиска пустая
+     */
+    public List<MealSearchResultDTO> searchMeals(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException(ApiConstants.SEARCH_QUERY_IS_REQUIRED);
+        }
+        return searchIndex != null ? searchIndex.search(query, limit) : List.of();
+    }
+
+    /**
+     * Получает страницу приёмов пищи конкретного пользователя.
      * @param userId ID пользователя
-     * @return список еды в формате DTO
+     * @param page параметры страницы
+     * @return страница еды в формате DTO
      */
-    public List<MealDTO> getMealsByUserId(int userId) {
-        return mealRepository.findMealsByUserId(userId)
-                .stream()
-                .map(MealMapper::toDTO)
-                .collect(Collectors.toList());
+    public PageDTO<MealDTO> getMealsByUserId(int userId, PageRequest page) {
+        return page.toPage(mealRepository.findMealsByUserId(userId, page.getAfterId(), page.getFetchSize()),
+                Meal::getId, MealMapper::toDTO);
+    }
+
+    /**
+     * Привязывает приёмы пищи к пользователю. Повторы в списке и уже существующие связи пропускаются.
+     * @param userId ID пользователя
+     * @param mealIds ID приёмов пищи из тела запроса
+     * @return сколько связей добавлено, сколько уже было и каких приёмов пищи нет
+     * @throws BadRequestException если список пуст, содержит не ID или длиннее {@code meal.linkMaxSize}
+     * @throws NotFoundException если пользователя нет
+     */
+    public UserMealLinkResultDTO linkMealsToUser(int userId, List<Integer> mealIds) {
+        List<Integer> ids = distinctMealIds(mealIds);
+        MealLinkResult result = mealRepository.linkMealsToUser(userId, ids);
+        if (result == null) {
+            throw new CustomException(ApiConstants.MEAL_LINKS_NOT_SAVED);
+        }
+        if (!result.isUserFound()) {
+            throw new NotFoundException(ApiConstants.USER_NOT_FOUND);
+        }
+        int alreadyLinked = ids.size() - result.getLinked() - result.getMissingMealIds().size();
+        return new UserMealLinkResultDTO(result.getLinked(), alreadyLinked, result.getMissingMealIds());
+    }
+
+    /**
+     * Отвязывает приёмы пищи от пользователя.
+     * Ограничение на длину списка и ответ на несуществующего пользователя — те же, что у привязки.
+     * @param userId ID пользователя
+     * @param mealIds ID приёмов пищи из параметра {@code ids}
+     * @return сколько связей удалено и сколько из запрошенных не существовало
+     * @throws BadRequestException если список пуст, содержит не ID или длиннее {@code meal.linkMaxSize}
+     * @throws NotFoundException если пользователя нет
+     */
+    public UserMealUnlinkResultDTO unlinkMealsFromUser(int userId, List<Integer> mealIds) {
+        List<Integer> ids = distinctMealIds(mealIds);
+        MealUnlinkResult result = mealRepository.unlinkMealsFromUser(userId, ids);
+        if (result == null) {
+            throw new CustomException(ApiConstants.MEAL_LINKS_NOT_SAVED);
+        }
+        if (!result.isUserFound()) {
+            throw new NotFoundException(ApiConstants.USER_NOT_FOUND);
+        }
+        return new UserMealUnlinkResultDTO(result.getUnlinked(), ids.size() - result.getUnlinked());
+    }
+
+    /**
+     * Получает количество, сумму и среднее калорий приёмов пищи пользователя.
+     * @param userId ID пользователя
+     * @return агрегаты в формате DTO или null, если их не удалось посчитать
+     */
+    public MealStatsDTO getMealStatsByUserId(int userId) {
+        MealStats stats = mealRepository.findMealStatsByUserId(userId);
+        return (stats != null) ? MealMapper.toStatsDTO(stats) : null;
+    }
+
+    private static List<Integer> distinctMealIds(List<Integer> mealIds) {
+        if (mealIds == null || mealIds.isEmpty()) {
+            throw new BadRequestException(ApiConstants.MEAL_IDS_ARE_REQUIRED);
+        }
+        Set<Integer> distinct = new LinkedHashSet<>();
+        for (Integer id : mealIds) {
+            if (id == null || id <= 0) {
+                throw new BadRequestException(ApiConstants.MEAL_IDS_ARE_REQUIRED);
+            }
+            distinct.add(id);
+        }
+        if (distinct.size() > LINK_MAX_SIZE) {
+            throw new BadRequestException(String.format(ApiConstants.MEAL_IDS_ARE_TOO_MANY, LINK_MAX_SIZE));
+        }
+        return new ArrayList<>(distinct);
     }
 }
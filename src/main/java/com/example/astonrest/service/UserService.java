@@ -1,20 +1,35 @@
 package com.example.astonrest.service;
 
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
 import com.example.astonrest.entity.User;
+import com.example.astonrest.entity.UserStats;
 import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.mapper.UserMapper;
 import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.util.ETags;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
 import com.example.astonrest.util.UserValidator;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.example.astonrest.util.Versioned;
 
 public class UserService {
     private final UserRepository userRepository;
+    private final CalorieLeaderboard leaderboard;
 
     public UserService(UserRepository userRepository) {
+        this(userRepository, null);
+    }
+
+    /**
+     * @param leaderboard рейтинг по калориям, из которого убираются удалённые пользователи; может быть {@code null}
+     */
+    public UserService(UserRepository userRepository, CalorieLeaderboard leaderboard) {
         this.userRepository = userRepository;
+        this.leaderboard = leaderboard;
     }
 
     /**
@@ -38,30 +53,89 @@ public class UserService {
     }
 
     /**
-     * Получает список всех пользователей.
-     * @return Список пользователей в формате DTO
+     * Получает пользователя вместе с версией его строки, прочитанной тем же запросом.
+     * @param id ID пользователя
+     * @return DTO пользователя и версия для ETag или null, если пользователь не найден
+     * @see #userETag(int, Long)
+     */
+    public Versioned<UserDTO> getVersionedUserById(int id) {
+        Versioned<User> user = userRepository.findVersionedUserById(id);
+        return (user != null) ? user.map(UserMapper::toDTO) : null;
+    }
+
+    /**
+     * Получает профиль пользователя: данные, тренировки и приёмы пищи одним запросом к базе.
+     * @param id ID пользователя
+     * @return DTO профиля или null, если пользователь не найден
+     */
+    public UserProfileDTO getUserProfile(int id) {
+        User user = userRepository.findUserProfileById(id);
+        return (user != null) ? UserMapper.toProfileDTO(user) : null;
+    }
+
+    /**
+     * Получает ETag пользователя по версии его строки, не читая самих данных.
+     * @param id ID пользователя
+     * @return ETag или null, если пользователя нет
+     */
+    public String getUserETag(int id) {
+        return userETag(id, userRepository.findUserVersion(id));
+    }
+
+    /**
+     * ETag пользователя по версии его строки.
+     * @return ETag или null без версии
+     */
+    public static String userETag(int id, Long version) {
+        return ETags.of("user-" + id, version);
+    }
+
+    /**
+     * Получает сводку по пользователю: количество тренировок, сожжённые и съеденные калории.
+     * Сводка хранится готовой, поэтому история тренировок и приёмов пищи не читается.
+     * @param id ID пользователя
+     * @return DTO сводки или null, если пользователь не найден
+     */
+    public UserStatsDTO getUserStats(int id) {
+        UserStats stats = userRepository.findUserStatsById(id);
+        return (stats != null) ? UserMapper.toStatsDTO(stats) : null;
+    }
+
+    /**
+     * Получает пользователей по списку ID одним запросом.
+     * @param ids список ID
+     * @return найденные пользователи в порядке запроса и отсутствующие ID
      */
-    public List<UserDTO> getAllUsers() {
-        return userRepository.findAllUsers()
-                .stream()
-                .map(UserMapper::toDTO)
-                .collect(Collectors.toList());
+    public MultiGetDTO<UserDTO> getUsersByIds(IdListRequest ids) {
+        return ids.toResult(userRepository.findUsersByIds(ids.getIds()), User::getId, UserMapper::toDTO);
+    }
+
+    /**
+     * Получает страницу пользователей.
+     * @param page параметры страницы
+     * @return Страница пользователей в формате DTO
+     */
+    public PageDTO<UserDTO> getUsers(PageRequest page) {
+        return page.toPage(userRepository.findUsers(page.getAfterId(), page.getFetchSize()),
+                User::getId, UserMapper::toDTO);
     }
 
     /**
      * Обновляет данные пользователя.
      * @param id ID пользователя
      * @param userDTO Обновлённые данные
+     * @throws NotFoundException если записи с таким ID нет
      */
     public void updateUser(int id, UserDTO userDTO) {
-        User existingUser = userRepository.findUserById(id);
-        if(existingUser != null) {
-            existingUser.setName(userDTO.getName());
-            existingUser.setAge(userDTO.getAge());
-            existingUser.setWeight(userDTO.getWeight());
-            existingUser.setHeight(userDTO.getHeight());
-
-            userRepository.update(existingUser);
+        User user = new User();
+        user.setId(id);
+        user.setName(userDTO.getName());
+        user.setAge(userDTO.getAge());
+        user.setWeight(userDTO.getWeight());
+        user.setHeight(userDTO.getHeight());
+
+        if (userRepository.update(user) == null) {
+            throw new NotFoundException("User with ID " + id + " not found.");
         }
     }
 
@@ -70,10 +144,11 @@ public class UserService {
      * @param id ID пользователя
      */
     public void deleteUser(int id) {
-        UserDTO user = getUserById(id);
-        if(user == null) {
+        if (!userRepository.delete(id)) {
             throw new NotFoundException("User with ID " + id + " not found.");
         }
-        userRepository.delete(id);
+        if (leaderboard != null) {
+            leaderboard.removeUser(id);
+        }
     }
 }
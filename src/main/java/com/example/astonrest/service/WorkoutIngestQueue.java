@@ -0,0 +1,346 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.WorkoutIngestStatsDTO;
+import com.example.astonrest.entity.Workout;
+import com.example.astonrest.exception.ServiceUnavailableException;
+import com.example.astonrest.repository.WorkoutRepository;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Очередь отложенной записи тренировок (write-behind).
+ * <p>
+ * В асинхронном режиме {@code POST /workouts/users/{id}} не ждёт вставки: проверенная тренировка
+ * кладётся в ограниченную очередь, а фоновый поток сохраняет накопленное многострочным INSERT,
+ * когда набралось {@code workout.ingest.batchSize} тренировок или с первой из них прошло
+ * {@code workout.ingest.flushIntervalMs} миллисекунд. Если очередь заполнена, запрос получает 503.
+ * <p>
+ * Пользователя проверяет внешний ключ уже при записи: если пачка не вставилась, тренировки
+ * сохраняются по одной, а отклонённые базой (например, 23503 — нет пользователя) считаются потерянными
+ * и пишутся в лог с номером отслеживания. Клиенту уже ответили 202, поэтому временная недоступность базы
+ * (пул перегружен, SQLState классов 08, 53, 57P, конфликт сериализации 40001 и взаимоблокировка 40P01)
+ * тренировки не теряет: недописанный остаток пачки повторяется с нарастающей паузой, а новые тренировки
+ * тем временем копятся в очереди, пока она не заполнится.
+ * При остановке приложения новые тренировки не принимаются, а очередь записывается до конца;
+ * то, что не удалось записать за {@code workout.ingest.shutdownTimeoutMs}, пишется в лог как потерянное.
+ * Режим включается ключом {@code workout.ingest.async.enabled}.
+ */
+public class WorkoutIngestQueue {
+    // Как часто ожидающий поток записи проверяет, не останавливается ли приложение
+    private static final long CLOSE_CHECK_MS = 50;
+    // Предел паузы между повторами записи, пока база недоступна
+    private static final long MAX_RETRY_BACKOFF_MS = 5_000;
+
+    private final WorkoutRepository workoutRepository;
+    private final CalorieLeaderboard leaderboard;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final BlockingQueue<QueuedWorkout> queue;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+
+    private volatile boolean closed;
+    private volatile int pendingRetry;
+    private Thread flusher;
+
+    public WorkoutIngestQueue(WorkoutRepository workoutRepository, CalorieLeaderboard leaderboard) {
+        this(workoutRepository, leaderboard,
+                ApplicationProperties.getBoolean("workout.ingest.async.enabled", false),
+                ApplicationProperties.getInt("workout.ingest.queueCapacity", 10_000),
+                ApplicationProperties.getInt("workout.ingest.batchSize", 500),
+                ApplicationProperties.getLong("workout.ingest.flushIntervalMs", 200),
+                ApplicationProperties.getLong("workout.ingest.shutdownTimeoutMs", 10_000));
+    }
+
+    WorkoutIngestQueue(WorkoutRepository workoutRepository, CalorieLeaderboard leaderboard, boolean enabled,
+                       int capacity, int batchSize, long flushIntervalMs, long shutdownTimeoutMs) {
+        this.workoutRepository = workoutRepository;
+        this.leaderboard = leaderboard;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+    }
+
+    /**
+     * Включён ли асинхронный режим.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Запускает фоновую запись. В синхронном режиме ничего не делает.
+     */
+    public synchronized void start() {
+        if (!enabled || flusher != null) {
+            return;
+        }
+        closed = false;
+        flusher = new Thread(this::runFlusher, "workout-ingest");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Перестаёт принимать тренировки и дожидается записи очереди, но не дольше
+     * {@code workout.ingest.shutdownTimeoutMs}. Остаток, который поток не успел забрать,
+     * записывается в текущем потоке.
+     */
+    public synchronized void stop() {
+        closed = true;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            System.out.println("WARN: Очередь тренировок не записана за " + shutdownTimeoutMs + " мс, поток прерван");
+            flusher.interrupt();
+            // Прерванный поток делает последнюю попытку записать свою пачку — ждём её итог
+            try {
+                flusher.join(shutdownTimeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flusher = null;
+
+        List<QueuedWorkout> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest, false);
+        }
+    }
+
+    /**
+     * Ставит проверенную тренировку в очередь записи.
+     *
+     * @param workout тренировка с рассчитанными калориями и временем
+     * @return номер отслеживания, под которым тренировка попадёт в лог, если не сохранится
+     * @throws ServiceUnavailableException если очередь заполнена или приложение останавливается
+     */
+    public String submit(Workout workout) {
+        String trackingId = UUID.randomUUID().toString();
+        if (closed || !queue.offer(new QueuedWorkout(trackingId, workout))) {
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException(ApiConstants.SERVICE_UNAVAILABLE, 1, null);
+        }
+        accepted.incrementAndGet();
+        return trackingId;
+    }
+
+    /**
+     * Текущее состояние очереди и счётчики с момента запуска.
+     */
+    public WorkoutIngestStatsDTO getStats() {
+        return new WorkoutIngestStatsDTO(enabled, queue.size(), capacity, pendingRetry, accepted.get(), rejected.get(),
+                flushed.get(), dropped.get(), flushes.get(), retries.get(), lastFlushMillis.get(), maxFlushMillis.get());
+    }
+
+    private void runFlusher() {
+        List<QueuedWorkout> batch = new ArrayList<>(batchSize);
+        long backoff = 0;
+        try {
+            while (!closed || !queue.isEmpty() || !batch.isEmpty()) {
+                if (batch.isEmpty()) {
+                    QueuedWorkout first = queue.poll(Math.min(flushIntervalMs, CLOSE_CHECK_MS), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    collectBatch(batch, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+                }
+                flush(batch, true);
+                pendingRetry = batch.size();
+                if (batch.isEmpty()) {
+                    backoff = 0;
+                } else {
+                    backoff = backoff == 0 ? flushIntervalMs : Math.min(backoff * 2, MAX_RETRY_BACKOFF_MS);
+                    Thread.sleep(backoff);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Уже собранная пачка из очереди изъята — последняя попытка записать её, чтобы не потерять
+            if (!batch.isEmpty()) {
+                flush(batch, false);
+            }
+            pendingRetry = 0;
+        }
+    }
+
+    /**
+     * Добирает пачку до {@code batchSize}, пока не наступил срок записи.
+     * При остановке приложения не ждёт: всё, что уже в очереди, пишется сразу.
+     */
+    private void collectBatch(List<QueuedWorkout> batch, long deadline) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || closed) {
+                return;
+            }
+            QueuedWorkout next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(CLOSE_CHECK_MS)),
+                    TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    /**
+     * Записывает пачку. Сохранённые и отклонённые базой тренировки убираются из пачки.
+     * Если база временно недоступна, остаток остаётся в пачке для повтора.
+     *
+     * @param batch     пачка; после вызова в ней остаются только тренировки для повтора
+     * @param retryable можно ли повторить остаток позже; если нет, он считается потерянным
+     */
+    private void flush(List<QueuedWorkout> batch, boolean retryable) {
+        long started = System.nanoTime();
+        int saved = 0;
+        int lost = 0;
+        try {
+            List<Workout> workouts = new ArrayList<>(batch.size());
+            for (QueuedWorkout queued : batch) {
+                workouts.add(queued.workout);
+            }
+            boolean batchSaved = false;
+            try {
+                saved = workoutRepository.insertAll(workouts);
+                batchSaved = true;
+                batch.clear();
+            } catch (SQLException | RuntimeException e) {
+                if (isTransient(e)) {
+                    System.out.println("WARN: База недоступна, пачка из " + batch.size() + " тренировок не записана: "
+                            + e.getMessage());
+                } else {
+                    System.out.println("WARN: Пачка из " + batch.size() + " тренировок не записана, запись по одной: "
+                            + e.getMessage());
+                    int[] result = flushOneByOne(batch);
+                    saved = result[0];
+                    lost = result[1];
+                }
+            }
+            if (batchSaved) {
+                workouts.forEach(this::addToLeaderboard);
+            }
+        } finally {
+            if (!batch.isEmpty()) {
+                if (retryable) {
+                    retries.incrementAndGet();
+                } else {
+                    for (QueuedWorkout queued : batch) {
+                        logLost(queued, "база недоступна");
+                    }
+                    lost += batch.size();
+                    batch.clear();
+                }
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            flushed.addAndGet(saved);
+            dropped.addAndGet(lost);
+            flushes.incrementAndGet();
+            lastFlushMillis.set(elapsedMillis);
+            maxFlushMillis.accumulateAndGet(elapsedMillis, Math::max);
+        }
+    }
+
+    /**
+     * Сохраняет тренировки пачки по одной. Отклонённые базой пишутся в лог и убираются из пачки;
+     * при временной недоступности базы запись останавливается, и остаток остаётся в пачке.
+     *
+     * @return количество сохранённых и потерянных тренировок
+     */
+    private int[] flushOneByOne(List<QueuedWorkout> batch) {
+        int saved = 0;
+        int lost = 0;
+        Iterator<QueuedWorkout> iterator = batch.iterator();
+        while (iterator.hasNext()) {
+            QueuedWorkout queued = iterator.next();
+            try {
+                saved += workoutRepository.insertAll(List.of(queued.workout));
+            } catch (SQLException | RuntimeException e) {
+                if (isTransient(e)) {
+                    System.out.println("WARN: База недоступна, запись по одной прервана: " + e.getMessage());
+                    break;
+                }
+                logLost(queued, e.getMessage());
+                lost++;
+                iterator.remove();
+                continue;
+            }
+            iterator.remove();
+            addToLeaderboard(queued.workout);
+        }
+        return new int[]{saved, lost};
+    }
+
+    private static void logLost(QueuedWorkout queued, String reason) {
+        System.out.println("ERROR: Тренировка " + queued.trackingId + " пользователя " + queued.workout.getUserId()
+                + " не сохранена: " + reason);
+    }
+
+    /**
+     * Временная ли ошибка: перегруженный пул или недоступная база, остановка сервера,
+     * конфликт сериализации и взаимоблокировка проходят сами, и запись стоит повторить.
+     */
+    static boolean isTransient(Exception e) {
+        if (e instanceof ServiceUnavailableException || e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        if (!(e instanceof SQLException)) {
+            return false;
+        }
+        String sqlState = ((SQLException) e).getSQLState();
+        return sqlState != null && (sqlState.startsWith("08") || sqlState.startsWith("53")
+                || sqlState.startsWith("57P") || sqlState.equals("40001") || sqlState.equals("40P01"));
+    }
+
+    private void addToLeaderboard(Workout workout) {
+        if (leaderboard != null) {
+            leaderboard.add(workout.getUserId(), workout.getCaloriesBurned());
+        }
+    }
+
+    /**
+     * Тренировка в очереди вместе с номером отслеживания.
+     */
+    private static class QueuedWorkout {
+        final String trackingId;
+        final Workout workout;
+
+        QueuedWorkout(String trackingId, Workout workout) {
+            this.trackingId = trackingId;
+            this.workout = workout;
+        }
+    }
+}
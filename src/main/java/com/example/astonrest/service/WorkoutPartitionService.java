@@ -0,0 +1,84 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.PartitionArchiveDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.repository.WorkoutPartitionRepository;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Управление месячными партициями тренировок: создание наперёд и архивация старых.
+ * <p>
+ * Сколько месяцев создавать наперёд, задаёт ключ {@code partitions.monthsAhead}.
+ */
+public class WorkoutPartitionService {
+    private static final int MONTHS_AHEAD = ApplicationProperties.getInt("partitions.monthsAhead", 3);
+
+    private final WorkoutPartitionRepository partitionRepository;
+    private final CalorieLeaderboard leaderboard;
+
+    public WorkoutPartitionService(WorkoutPartitionRepository partitionRepository) {
+        this(partitionRepository, null);
+    }
+
+    /**
+     * @param leaderboard рейтинг по калориям, который строится заново после архивации; может быть {@code null}
+     */
+    public WorkoutPartitionService(WorkoutPartitionRepository partitionRepository, CalorieLeaderboard leaderboard) {
+        this.partitionRepository = partitionRepository;
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Создаёт недостающие партиции на текущий и следующие месяцы.
+     *
+     * @return количество созданных партиций
+     */
+    public int ensurePartitions() {
+        try {
+            return partitionRepository.ensurePartitions(MONTHS_AHEAD);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка создания партиций тренировок", e);
+        }
+    }
+
+    /**
+     * Архивирует партиции месяцев раньше {@code before}.
+     * Граница — первое число месяца не позже текущего: текущий месяц архивировать нельзя.
+     * Тренировки архивированных партиций база вычитает из сводок пользователей,
+     * поэтому рейтинг по калориям после архивации перечитывается.
+     *
+     * @param before дата {@code YYYY-MM-01}
+     * @return имена заархивированных партиций
+     * @throws BadRequestException если граница не первое число месяца или позже текущего месяца
+     */
+    public PartitionArchiveDTO archivePartitionsBefore(String before) {
+        LocalDate boundary;
+        try {
+            boundary = before == null ? null : LocalDate.parse(before.trim());
+        } catch (DateTimeParseException e) {
+            boundary = null;
+        }
+        LocalDate currentMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        if (boundary == null || boundary.getDayOfMonth() != 1 || boundary.isAfter(currentMonth)) {
+            throw new BadRequestException(ApiConstants.INVALID_ARCHIVE_BEFORE);
+        }
+
+        List<String> archived;
+        try {
+            archived = partitionRepository.archivePartitions(boundary);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка архивации партиций тренировок", e);
+        }
+        if (leaderboard != null && !archived.isEmpty()) {
+            leaderboard.rebuild();
+        }
+        return new PartitionArchiveDTO(archived);
+    }
+}
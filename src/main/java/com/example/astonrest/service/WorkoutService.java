@@ -1,40 +1,147 @@
 package com.example.astonrest.service;
 
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.BatchItemResultDTO;
+import com.example.astonrest.dto.LeaderboardDTO;
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
+import com.example.astonrest.dto.WorkoutStatsSummaryDTO;
 import com.example.astonrest.entity.Workout;
+import com.example.astonrest.entity.WorkoutStats;
+import com.example.astonrest.exception.BadRequestException;
 import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.mapper.WorkoutMapper;
-import com.example.astonrest.repository.UserRepository;
 import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.util.CalorieCalculator;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.ETags;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import com.example.astonrest.util.WorkoutValidator;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class WorkoutService {
+    private static final int BATCH_MAX_SIZE = ApplicationProperties.getInt("workout.batchMaxSize", 500);
+
     private final WorkoutRepository workoutRepository;
-    private final UserRepository userRepository;
+    private final WorkoutIngestQueue ingestQueue;
+    private final CalorieLeaderboard leaderboard;
+
+    public WorkoutService(WorkoutRepository workoutRepository) {
+        this(workoutRepository, null, null);
+    }
 
-    public WorkoutService(WorkoutRepository workoutRepository, UserRepository userRepository) {
+    /**
+     * @param ingestQueue очередь отложенной записи; {@code null} — только синхронная запись
+     * @param leaderboard рейтинг по калориям, который обновляется при изменении тренировок; может быть {@code null}
+     */
+    public WorkoutService(WorkoutRepository workoutRepository, WorkoutIngestQueue ingestQueue,
+                          CalorieLeaderboard leaderboard) {
         this.workoutRepository = workoutRepository;
-        this.userRepository = userRepository;
+        this.ingestQueue = ingestQueue;
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Принимаются ли одиночные тренировки через очередь отложенной записи.
+     */
+    public boolean isAsyncIngestEnabled() {
+        return ingestQueue != null && ingestQueue.isEnabled();
     }
 
     /**
      * Создаёт новую тренировку, автоматически рассчитывая `caloriesBurned`.
+     * Одна вставка: несуществующего пользователя отсекает внешний ключ.
      *
      * @param workoutDTO DTO тренировки
      * @param userId     ID пользователя
      */
     public void createWorkoutForUser(WorkoutDTO workoutDTO, int userId) {
-        if(!userRepository.doesUserExist(userId)) {
-            throw new NotFoundException("User with ID " + userId + " does not exist.");
+        WorkoutValidator.validate(workoutDTO);
+        Workout workout = toNewWorkout(workoutDTO, userId);
+        workoutRepository.save(workout);
+        if (workout.getId() > 0) {
+            addToLeaderboard(userId, workout.getCaloriesBurned());
         }
+    }
+
+    /**
+     * Проверяет тренировку и ставит её в очередь отложенной записи.
+     * Время тренировки фиксируется в момент приёма, а не записи.
+     * Существование пользователя проверяется только при записи.
+     *
+     * @param workoutDTO DTO тренировки
+     * @param userId     ID пользователя
+     * @return номер отслеживания принятой тренировки
+     * @throws com.example.astonrest.exception.ServiceUnavailableException если очередь заполнена
+     */
+    public String enqueueWorkoutForUser(WorkoutDTO workoutDTO, int userId) {
         WorkoutValidator.validate(workoutDTO);
-        int caloriesBurned = calculateCalories(workoutDTO.getType(), workoutDTO.getDuration());
+        return ingestQueue.submit(toNewWorkout(workoutDTO, userId));
+    }
 
-        Workout workout = new Workout(0, workoutDTO.getType(), workoutDTO.getDuration(), caloriesBurned, userId);
-        workoutRepository.save(workout);
+    /**
+     * Создаёт пачку тренировок пользователя одним пакетным INSERT.
+     * Пользователя проверяет внешний ключ, калории считаются для каждой тренировки.
+     * Некорректные элементы не сохраняются и получают в ответе текст ошибки,
+     * остальные сохраняются.
+     *
+     * @param workoutDTOs DTO тренировок
+     * @param userId      ID пользователя
+     * @return результат по каждому элементу в порядке исходного списка
+     */
+    public List<BatchItemResultDTO> createWorkoutsForUser(List<WorkoutDTO> workoutDTOs, int userId) {
+        if (workoutDTOs == null || workoutDTOs.isEmpty()) {
+            throw new BadRequestException(ApiConstants.WORKOUT_BATCH_IS_EMPTY);
+        }
+        if (workoutDTOs.size() > BATCH_MAX_SIZE) {
+            throw new BadRequestException(String.format(ApiConstants.WORKOUT_BATCH_IS_TOO_LARGE, BATCH_MAX_SIZE));
+        }
+
+        BatchItemResultDTO[] results = new BatchItemResultDTO[workoutDTOs.size()];
+        List<Workout> validWorkouts = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < workoutDTOs.size(); i++) {
+            WorkoutDTO workoutDTO = workoutDTOs.get(i);
+            try {
+                if (workoutDTO == null) {
+                    throw new BadRequestException(ApiConstants.WORKOUT_IS_REQUIRED);
+                }
+                WorkoutValidator.validate(workoutDTO);
+                validWorkouts.add(toNewWorkout(workoutDTO, userId));
+                validIndexes.add(i);
+            } catch (BadRequestException e) {
+                results[i] = BatchItemResultDTO.failed(i, e.getMessage());
+            }
+        }
+
+        if (!validWorkouts.isEmpty()) {
+            workoutRepository.saveAll(validWorkouts);
+        }
+
+        long savedCalories = 0;
+        for (int i = 0; i < validWorkouts.size(); i++) {
+            int index = validIndexes.get(i);
+            Workout workout = validWorkouts.get(i);
+            if (workout.getId() > 0) {
+                savedCalories += workout.getCaloriesBurned();
+                results[index] = BatchItemResultDTO.created(index, workout.getId());
+            } else {
+                results[index] = BatchItemResultDTO.failed(index, ApiConstants.WORKOUT_NOT_SAVED);
+            }
+        }
+        addToLeaderboard(userId, savedCalories);
+        return Arrays.asList(results);
     }
 
     /**
@@ -49,32 +156,59 @@ public class WorkoutService {
     }
 
     /**
-     * Получает список всех тренировок.
+     * Получает тренировки по списку ID одним запросом.
      *
-     * @return список тренировок в формате DTO
+     * @param ids список ID
+     * @return найденные тренировки в порядке запроса и отсутствующие ID
      */
-    public List<WorkoutDTO> getAllWorkouts() {
-        return workoutRepository.findAllWorkouts()
-                .stream()
-                .map(WorkoutMapper::toDTO)
-                .collect(Collectors.toList());
+    public MultiGetDTO<WorkoutDTO> getWorkoutsByIds(IdListRequest ids) {
+        return ids.toResult(workoutRepository.findWorkoutsByIds(ids.getIds()), Workout::getId, WorkoutMapper::toDTO);
+    }
+
+    /**
+     * Получает страницу тренировок.
+     *
+     * @param page параметры страницы
+     * @return страница тренировок в формате DTO
+     */
+    public PageDTO<WorkoutDTO> getWorkouts(PageRequest page) {
+        return page.toPage(workoutRepository.findWorkouts(page.getAfterId(), page.getFetchSize()),
+                Workout::getId, WorkoutMapper::toDTO);
+    }
+
+    /**
+     * Передаёт все тренировки в формате DTO по одной, не собирая их в список.
+     *
+     * @param consumer обработчик очередной тренировки
+     */
+    public void exportWorkouts(Consumer<WorkoutDTO> consumer) {
+        workoutRepository.streamAllWorkouts(workout -> consumer.accept(WorkoutMapper.toDTO(workout)));
     }
 
     /**
      * Обновляет данные тренировки.
+     * Выполняется одним запросом {@code UPDATE ... RETURNING}, без предварительного чтения;
+     * прежние калории из ответа нужны, чтобы изменить рейтинг на разницу.
      *
      * @param id         ID тренировки
      * @param workoutDTO Обновлённые данные
+     * @throws NotFoundException если записи с таким ID нет
      */
     public void updateWorkout(int id, WorkoutDTO workoutDTO) {
-        Workout existingWorkout = workoutRepository.findWorkoutById(id);
-        if (existingWorkout != null) {
-            existingWorkout.setType(workoutDTO.getType());
-            existingWorkout.setDuration(workoutDTO.getDuration());
-            existingWorkout.setCaloriesBurned(calculateCalories(workoutDTO.getType(), workoutDTO.getDuration()));
+        Workout workout = new Workout();
+        workout.setId(id);
+        workout.setType(workoutDTO.getType());
+        workout.setDuration(workoutDTO.getDuration());
+        workout.setCaloriesBurned(CalorieCalculator.calculate(workoutDTO.getType(), workoutDTO.getDuration()));
+        if (workoutDTO.getPerformedAt() != null) {
+            workout.setPerformedAt(DateRange.parseInstant(workoutDTO.getPerformedAt()));
+        }
 
-            workoutRepository.update(existingWorkout);
+        Workout previous = workoutRepository.update(workout);
+        if (previous == null) {
+            throw new NotFoundException("Workout with ID " + id + " not found.");
         }
+        addToLeaderboard(previous.getUserId(), workout.getCaloriesBurned() - previous.getCaloriesBurned());
     }
 
     /**
@@ -83,45 +217,144 @@ public class WorkoutService {
      * @param id ID тренировки
      */
     public void deleteWorkout(int id) {
-        WorkoutDTO workout = getWorkoutById(id);
-        if(workout == null) {
+        Workout deleted = workoutRepository.delete(id);
+        if (deleted == null) {
             throw new NotFoundException("Workout with ID " + id + " not found.");
         }
-        workoutRepository.delete(id);
+        addToLeaderboard(deleted.getUserId(), -deleted.getCaloriesBurned());
     }
 
     /**
-     * Получает список тренировок для конкретного пользователя.
+     * Получает первые места рейтинга по сожжённым калориям и, если задан пользователь, его место.
+     *
+     * @param limit  сколько мест вернуть
+     * @param userId ID пользователя, чьё место нужно, или null
+     * @return рейтинг; место пользователя null, если он ещё не сжёг ни одной калории
+     */
+    public LeaderboardDTO getLeaderboard(int limit, Integer userId) {
+        if (leaderboard == null) {
+            return new LeaderboardDTO(List.of(), null);
+        }
+        return new LeaderboardDTO(leaderboard.top(limit), userId != null ? leaderboard.rankOf(userId) : null);
+    }
+
+    /**
+     * Получает ETag списка тренировок пользователя по версии из его сводки.
+     * Версия общая для всех страниц и периодов: ETag сравнивается только с ответом на тот же URL.
      *
      * @param userId ID пользователя
-     * @return список тренировок в формате DTO
+     * @return ETag или null, если пользователя нет
+     */
+    public String getUserWorkoutsETag(int userId) {
+        return userWorkoutsETag(userId, workoutRepository.findWorkoutsVersionByUserId(userId));
+    }
+
+    /**
+     * ETag списка тренировок пользователя по версии из его сводки.
+     *
+     * @return ETag или null без версии
      */
-    public List<WorkoutDTO> getWorkoutsByUserId(int userId) {
-        return workoutRepository.findWorkoutsByUserId(userId)
-                .stream()
-                .map(WorkoutMapper::toDTO)
+    public static String userWorkoutsETag(int userId, Long version) {
+        return ETags.of("user-" + userId + "-workouts", version);
+    }
+
+    /**
+     * Получает страницу тренировок конкретного пользователя за период.
+     *
+     * @param userId ID пользователя
+     * @param range  период по времени тренировки
+     * @param page   параметры страницы
+     * @return страница тренировок в формате DTO
+     */
+    public PageDTO<WorkoutDTO> getWorkoutsByUserId(int userId, DateRange range, PageRequest page) {
+        return page.toPage(workoutRepository.findWorkoutsByUserId(userId, range, page.getAfterId(), page.getFetchSize()),
+                Workout::getId, WorkoutMapper::toDTO);
+    }
+
+    /**
+     * Получает страницу тренировок пользователя за период вместе с версией, прочитанной на том же соединении.
+     *
+     * @param userId ID пользователя
+     * @param range  период по времени тренировки
+     * @param page   параметры страницы
+     * @return страница тренировок и версия для ETag
+     * @see #userWorkoutsETag(int, Long)
+     */
+    public Versioned<PageDTO<WorkoutDTO>> getVersionedWorkoutsByUserId(int userId, DateRange range, PageRequest page) {
+        return workoutRepository.findVersionedWorkoutsByUserId(userId, range, page.getAfterId(), page.getFetchSize())
+                .map(workouts -> page.toPage(workouts, Workout::getId, WorkoutMapper::toDTO));
+    }
+
+    /**
+     * Получает агрегаты по всем тренировкам за период, при {@code groupBy=type} — с разбивкой по типам.
+     * Всё считается в базе одним запросом.
+     *
+     * @param range   период по времени тренировки
+     * @param groupBy {@code null} или {@code type}
+     * @return общий итог и, если запрошена, разбивка по типам
+     * @throws BadRequestException если группировка не поддерживается
+     */
+    public WorkoutStatsSummaryDTO getWorkoutStats(DateRange range, String groupBy) {
+        boolean byType = isGroupByType(groupBy);
+        WorkoutStatsDTO total = new WorkoutStatsDTO(null, 0, 0, 0, 0, 0);
+        List<WorkoutStatsDTO> types = new ArrayList<>();
+        for (WorkoutStats stats : workoutRepository.findWorkoutStats(range, byType)) {
+            if (stats.getType() == null) {
+                total = WorkoutMapper.toStatsDTO(stats);
+            } else {
+                types.add(WorkoutMapper.toStatsDTO(stats));
+            }
+        }
+        return new WorkoutStatsSummaryDTO(total, byType ? types : null);
+    }
+
+    /**
+     * Получает агрегаты по тренировкам пользователя в разбивке по типам.
+     *
+     * @param userId ID пользователя
+     * @return строки по типам; пустой список, если тренировок нет
+     */
+    public List<WorkoutStatsDTO> getWorkoutStatsByUserId(int userId) {
+        return workoutRepository.findWorkoutStatsByUserId(userId).stream()
+                .map(WorkoutMapper::toStatsDTO)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Рассчитывает количество сожжённых калорий на основе типа тренировки и длительности.
+     * Разбирает параметр {@code groupBy}: без него агрегаты считаются только итогом.
      *
-     * @param type     Тип тренировки (бег, велосипед, плавание и т. д.)
-     * @param duration Длительность тренировки (в минутах)
-     * @return Количество сожжённых калорий
+     * @return true, если запрошена разбивка по типам тренировок
+     * @throws BadRequestException для любой другой группировки
      */
-    private int calculateCalories(String type, int duration) {
-        switch (type.toLowerCase()) {
-            case "running":
-                return duration * 12;  // Бег сжигает примерно 12 калорий/мин
-            case "cycling":
-                return duration * 7;   // Велосипед сжигает примерно - 7 калорий/мин
-            case "swimming":
-                return duration * 8;  // Плавание сжигает примерно - 8 калорий/мин
-            case "yoga":
-                return duration * 4;      // Йога сжигает примерно - 4 калории/мин
-            default:
-                return duration * 5;          // Остальные тренировки - примерно 5 калорий/мин
+    public static boolean isGroupByType(String groupBy) {
+        if (groupBy == null || groupBy.trim().isEmpty()) {
+            return false;
+        }
+        if (ApiConstants.GROUP_BY_TYPE.equals(groupBy.trim())) {
+            return true;
         }
+        throw new BadRequestException(ApiConstants.INVALID_GROUP_BY);
+    }
+
+    private void addToLeaderboard(int userId, long delta) {
+        if (leaderboard != null) {
+            leaderboard.add(userId, delta);
+        }
+    }
+
+    /**
+     * Новая тренировка пользователя с рассчитанными калориями.
+     */
+    private static Workout toNewWorkout(WorkoutDTO workoutDTO, int userId) {
+        int caloriesBurned = CalorieCalculator.calculate(workoutDTO.getType(), workoutDTO.getDuration());
+        return new Workout(0, workoutDTO.getType(), workoutDTO.getDuration(), caloriesBurned, userId,
+                performedAt(workoutDTO));
+    }
+
+    /**
+     * Время тренировки из DTO; если клиент его не указал — текущее.
+     */
+    private static Instant performedAt(WorkoutDTO workoutDTO) {
+        return workoutDTO.getPerformedAt() != null ? DateRange.parseInstant(workoutDTO.getPerformedAt()) : Instant.now();
     }
 }
@@ -0,0 +1,32 @@
+package com.example.astonrest.util;
+
+/**
+ * Расчёт сожжённых калорий по типу и длительности тренировки.
+ * Используется и при создании тренировок через API, и при массовом импорте.
+ */
+public class CalorieCalculator {
+
+    private CalorieCalculator() {}
+
+    /**
+     * Рассчитывает количество сожжённых калорий на основе типа тренировки и длительности.
+     *
+     * @param type     Тип тренировки (бег, велосипед, плавание и т. д.)
+     * @param duration Длительность тренировки (в минутах)
+     * @return Количество сожжённых калорий
+     */
+    public static int calculate(String type, int duration) {
+        switch (type.toLowerCase()) {
+            case "running":
+                return duration * 12;  // Бег сжигает примерно 12 калорий/мин
+            case "cycling":
+                return duration * 7;   // Велосипед сжигает примерно - 7 калорий/мин
+            case "swimming":
+                return duration * 8;  // Плавание сжигает примерно - 8 калорий/мин
+            case "yoga":
+                return duration * 4;      // Йога сжигает примерно - 4 калории/мин
+            default:
+                return duration * 5;          // Остальные тренировки - примерно 5 калорий/мин
+        }
+    }
+}
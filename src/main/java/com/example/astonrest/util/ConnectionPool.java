@@ -0,0 +1,496 @@
+package com.example.astonrest.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный пул JDBC-соединений.
+ * <p>
+ * Возвращает прокси над физическим соединением: вызов {@code close()} не закрывает соединение,
+ * а возвращает его в пул, поэтому код с try-with-resources работает без изменений.
+ * Фоновая задача удаляет простаивающие и устаревшие соединения, поддерживает минимальный
+ * размер пула и сообщает о соединениях, которые удерживаются дольше порога утечки.
+ * Каждое соединение хранит собственный {@link StatementCache} подготовленных запросов.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Источник физических соединений.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final PoolConfig config;
+    private final ConnectionFactory factory;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String name, PoolConfig config, ConnectionFactory factory) {
+        this.name = name;
+        this.config = config;
+        this.factory = factory;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        fillToMinimum();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, config.getHousekeepingIntervalMs(),
+                config.getHousekeepingIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдаёт соединение из пула, при необходимости открывая новое.
+     * Ждёт освобождения соединения не дольше {@code pool.connectionTimeoutMs};
+     * если ждущих потоков уже {@code pool.maxWaiters}, отказывает сразу.
+     *
+     * @return соединение, которое нужно закрыть после использования
+     * @throws SQLTransientConnectionException если очередь ожидания переполнена
+     * @throws SQLTimeoutException             если время ожидания истекло
+     * @throws SQLException                    если пул закрыт или соединение не удалось открыть
+     */
+    public Connection getConnection() throws SQLException {
+        return getConnection(config.getConnectionTimeoutMs());
+    }
+
+    /**
+     * Выдаёт соединение из пула, ожидая не дольше переданного времени.
+     * При нулевом времени не ждёт вовсе: если свободных соединений нет и пул заполнен, отказывает сразу.
+     *
+     * @param timeoutMs сколько миллисекунд ждать освобождения соединения
+     * @see #getConnection()
+     */
+    public Connection getConnection(long timeoutMs) throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений " + name + " закрыт");
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        if (!permits.tryAcquire()) {
+            awaitPermit(timeoutMs);
+        }
+
+        try {
+            PooledConnection pooled = takeConnection(deadline, timeoutMs);
+            pooled.markBorrowed(config.getLeakDetectionThresholdMs() > 0);
+            borrowed.add(pooled);
+            return new ConnectionHandle(pooled).proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Ждёт свободного места в пуле в ограниченной очереди.
+     */
+    private void awaitPermit(long timeoutMs) throws SQLException {
+        if (timeoutMs <= 0) {
+            throw timeoutError(timeoutMs);
+        }
+        if (waiters.incrementAndGet() > config.getMaxWaiters()) {
+            waiters.decrementAndGet();
+            throw new SQLTransientConnectionException("Очередь ожидания пула " + name + " переполнена");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw timeoutError(timeoutMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private SQLTimeoutException timeoutError(long timeoutMs) {
+        return new SQLTimeoutException("Не удалось получить соединение из пула " + name + " за " + timeoutMs + " мс");
+    }
+
+    /**
+     * Сколько {@link #getConnection()} ждёт освобождения соединения, в миллисекундах.
+     */
+    public long getConnectionTimeoutMs() {
+        return config.getConnectionTimeoutMs();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getWaitingThreads() {
+        return waiters.get();
+    }
+
+    /**
+     * Количество подготовленных запросов, выданных из кэша соединений.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * Количество подготовленных запросов, которые пришлось готовить заново.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Прогревает пул: открывает соединения до максимального размера и один раз выполняет
+     * на каждом из них переданные запросы со всеми параметрами NULL. Запросы с фильтром по параметру
+     * ничего не находят, но сервер разбирает и планирует их, а при {@code prepareThreshold=1}
+     * драйвер оставляет их подготовленными на сервере; сами запросы остаются в кэше соединения.
+     *
+     * @param statements тексты SQL-запросов только на чтение
+     */
+    public void warmUp(List<String> statements) {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < config.getMaxSize(); i++) {
+                connections.add(getConnection());
+            }
+        } catch (SQLException e) {
+            System.out.println("WARN: Пул " + name + " прогрет не полностью: " + e.getMessage());
+        }
+
+        for (Connection connection : connections) {
+            try (connection) {
+                for (String sql : statements) {
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        int parameterCount = statement.getParameterMetaData().getParameterCount();
+                        for (int i = 1; i <= parameterCount; i++) {
+                            statement.setNull(i, Types.OTHER);
+                        }
+                        statement.setQueryTimeout(5);
+                        statement.execute();
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("WARN: Ошибка подготовки запросов в пуле " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Закрывает пул: простаивающие соединения закрываются сразу,
+     * выданные — при возврате.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Берёт свободное соединение или открывает новое, если пул ещё не заполнен.
+     */
+    private PooledConnection takeConnection(long deadline, long timeoutMs) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null && reserveSlot()) {
+                return createConnection();
+            }
+            if (pooled == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                try {
+                    pooled = remaining > 0 ? idle.pollFirst(remaining, TimeUnit.MILLISECONDS) : null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Ожидание соединения прервано", e);
+                }
+                if (pooled == null) {
+                    throw timeoutError(timeoutMs);
+                }
+            }
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Резервирует место под новое соединение, не превышая максимальный размер пула.
+     */
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = totalConnections.get();
+            if (current >= config.getMaxSize()) {
+                return false;
+            }
+        } while (!totalConnections.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        try {
+            return new PooledConnection(factory.create());
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет соединение перед выдачей: не истёк ли срок жизни
+     * и отвечает ли база, если соединение долго простаивало.
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (pooled.isExpired(now)) {
+            return false;
+        }
+        if (now - pooled.lastUsedAt < config.getValidationIdleMs()) {
+            return true;
+        }
+        try (Statement statement = pooled.physical.createStatement()) {
+            statement.setQueryTimeout(5);
+            statement.execute(config.getValidationQuery());
+            return true;
+        } catch (SQLException e) {
+            System.out.println("WARN: Соединение пула " + name + " не прошло проверку: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул после логического закрытия.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (closed || pooled.isExpired(System.currentTimeMillis()) || !pooled.resetState()) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.out.println("WARN: Ошибка закрытия соединения пула " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Периодическое обслуживание пула: вытеснение простаивающих и устаревших соединений,
+     * поиск утечек и восполнение минимального размера.
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            List<PooledConnection> snapshot = new ArrayList<>(idle);
+            for (PooledConnection pooled : snapshot) {
+                boolean idleTooLong = config.getIdleTimeoutMs() > 0
+                        && now - pooled.lastUsedAt > config.getIdleTimeoutMs()
+                        && totalConnections.get() > config.getMinSize();
+                if ((pooled.isExpired(now) || idleTooLong) && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            long threshold = config.getLeakDetectionThresholdMs();
+            if (threshold > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > threshold) {
+                        pooled.leakReported = true;
+                        System.out.println("WARN: Возможная утечка соединения в пуле " + name
+                                + ": соединение удерживается дольше " + threshold + " мс");
+                        if (pooled.borrowTrace != null) {
+                            pooled.borrowTrace.printStackTrace();
+                        }
+                    }
+                }
+            }
+
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < config.getMinSize() && reserveSlot()) {
+            try {
+                idle.offerLast(createConnection());
+            } catch (SQLException e) {
+                System.out.println("WARN: Не удалось открыть соединение для пула " + name + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Физическое соединение и его служебное состояние в пуле.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+        private volatile long borrowedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = config.getStatementCacheSize() > 0
+                    ? new StatementCache(physical, config.getStatementCacheSize(), statementCacheHits, statementCacheMisses)
+                    : null;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        private void markBorrowed(boolean captureTrace) {
+            borrowedAt = System.currentTimeMillis();
+            borrowTrace = captureTrace ? new Exception("Соединение получено здесь") : null;
+            leakReported = false;
+        }
+
+        private boolean isExpired(long now) {
+            return config.getMaxLifetimeMs() > 0 && now - createdAt > config.getMaxLifetimeMs();
+        }
+
+        /**
+         * Откатывает незавершённую транзакцию и восстанавливает настройки по умолчанию.
+         *
+         * @return false, если соединение больше непригодно для использования
+         */
+        private boolean resetState() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Логическое соединение, выданное клиенту пула. Повторный {@code close()} игнорируется,
+     * а обращение после закрытия приводит к ошибке, даже если физическое соединение уже выдано другому.
+     */
+    private final class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private boolean logicallyClosed;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || pooled.physical.isClosed();
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "Pooled[" + name + "] " + pooled.physical;
+                default:
+                    break;
+            }
+
+            if (logicallyClosed) {
+                throw new SQLException("Соединение уже возвращено в пул");
+            }
+            if (pooled.statementCache != null && isCacheablePrepare(method)) {
+                int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                return pooled.statementCache.prepare((String) args[0], autoGeneratedKeys);
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Кэшируются только {@code prepareStatement(String)} и {@code prepareStatement(String, int)}.
+         */
+        private boolean isCacheablePrepare(Method method) {
+            if (!"prepareStatement".equals(method.getName())) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1
+                    || (parameterTypes.length == 2 && parameterTypes[1] == int.class);
+        }
+    }
+}
@@ -1,43 +1,222 @@
 package com.example.astonrest.util;
 
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.exception.ServiceUnavailableException;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 
+/**
+ * Точка доступа к базе данных.
+ * <p>
+ * Соединения выдаются из пула {@link ConnectionPool}, который создаётся при первом обращении
+ * по настройкам из {@code database.properties}. Закрытие соединения возвращает его в пул.
+ * <p>
+ * Если задан список реплик {@code db.replica.urls} (через запятую), читающие запросы
+ * через {@link #getReadConnection()} направляются на реплики, а запись остаётся на основной базе.
+ * Стратегия выбора реплики задаётся {@code db.replica.balancing}: {@code round-robin}
+ * или {@code least-outstanding}; если ни одна реплика не выдала соединение, чтение идёт на основную базу.
+ * Ожидание реплик и основной базы ограничено одним общим сроком {@code pool.connectionTimeoutMs}.
+ * При {@code db.readYourWrites=true} (по умолчанию) после записи все чтения того же HTTP-запроса
+ * идут на основную базу. Границы запроса задаёт {@link com.example.astonrest.config.DatabaseRequestFilter}
+ * вызовами {@link #beginRequest()} и {@link #endRequest()}; вне запроса (фоновые задачи, запуск)
+ * признак записи не запоминается и потоку ничего не остаётся.
+ * <p>
+ * Если пул перегружен или база недоступна, выбрасывается {@link ServiceUnavailableException},
+ * который сервлеты превращают в ответ 503 с заголовком {@code Retry-After}.
+ */
 public class DatabaseUtil {
-    private static final String driver;
-    private static final String url;
-    private static final String username;
-    private static final String password;
+    private static final ThreadLocal<RequestScope> REQUEST_SCOPE = new ThreadLocal<>();
 
-    static {
-        Properties prop = new Properties();
+    private static volatile ConnectionPool pool;
+    private static volatile ReplicaRouter replicas;
+    private static volatile boolean readYourWrites;
+    private static volatile int retryAfterSeconds = 1;
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                Objects.requireNonNull(DatabaseUtil.class.getClassLoader().getResourceAsStream("database.properties"))))) {
+    /**
+     * Выдаёт соединение с основной базой из пула.
+     *
+     * @return соединение, которое нужно закрыть после использования
+     */
+    public static Connection getConnection() {
+        try {
+            ConnectionPool primary = getPool();
+            RequestScope scope = REQUEST_SCOPE.get();
+            if (readYourWrites && scope != null) {
+                scope.writePerformed = true;
+            }
+            return primary.getConnection();
+        } catch (SQLException e) {
+            throw connectionError(e);
+        }
+    }
 
-            prop.load(reader);
+    /**
+     * Выдаёт соединение для запросов только на чтение: с реплики, если они настроены
+     * и текущий запрос ещё ничего не записывал, иначе с основной базы.
+     *
+     * @return соединение, которое нужно закрыть после использования
+     */
+    public static Connection getReadConnection() {
+        try {
+            ConnectionPool primary = getPool();
+            ReplicaRouter router = replicas;
+            RequestScope scope = REQUEST_SCOPE.get();
+            if (router == null || (scope != null && scope.writePerformed)) {
+                return primary.getConnection();
+            }
+            // Реплики и основная база делят один срок ожидания, чтобы перегрузка быстро давала 503
+            long deadline = System.currentTimeMillis() + primary.getConnectionTimeoutMs();
+            try {
+                return router.getConnection(primary.getConnectionTimeoutMs());
+            } catch (SQLException e) {
+                System.out.println("WARN: Реплики недоступны, чтение с основной базы: " + e.getMessage());
+                return primary.getConnection(Math.max(0, deadline - System.currentTimeMillis()));
+            }
+        } catch (SQLException e) {
+            throw connectionError(e);
+        }
+    }
 
-            driver = prop.getProperty("driver");
-            url = prop.getProperty("url");
-            username = prop.getProperty("db.username");
-            password = prop.getProperty("db.password");
+    /**
+     * Прогревает пулы основной базы и реплик: открывает соединения
+     * и заранее готовит на них переданные запросы.
+     *
+     * @param statements тексты SQL-запросов на чтение
+     */
+    public static void warmUp(List<String> statements) {
+        getPool().warmUp(statements);
+        ReplicaRouter router = replicas;
+        if (router != null) {
+            router.getReplicas().forEach(replica -> replica.warmUp(statements));
+        }
+    }
 
-            Class.forName(driver);
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException("Ошибка загрузки конфигурации базы данных");
+    /**
+     * Открывает область HTTP-запроса в текущем потоке: с этого момента запись запоминается
+     * и последующие чтения того же запроса идут на основную базу.
+     */
+    public static void beginRequest() {
+        REQUEST_SCOPE.set(new RequestScope());
+    }
+
+    /**
+     * Закрывает область HTTP-запроса и сбрасывает признак записи в текущем потоке.
+     */
+    public static void endRequest() {
+        REQUEST_SCOPE.remove();
+    }
+
+    /**
+     * Закрывает пулы соединений, если они были созданы.
+     */
+    public static synchronized void shutdown() {
+        if (replicas != null) {
+            replicas.close();
+            replicas = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
 
-    public static Connection getConnection() {
-        try {
-            return DriverManager.getConnection(url, username, password);
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка подключения к базе данных");
+    /**
+     * Состояние текущего HTTP-запроса: писал ли он уже в основную базу.
+     */
+    private static final class RequestScope {
+        boolean writePerformed;
+    }
+
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseUtil.class) {
+                current = pool;
+                if (current == null) {
+                    Properties prop = loadProperties();
+                    replicas = createReplicaRouter(prop);
+                    readYourWrites = Boolean.parseBoolean(prop.getProperty("db.readYourWrites", "true"));
+                    retryAfterSeconds = new PoolConfig(prop).getRetryAfterSeconds();
+                    current = createPool("primary", prop, prop.getProperty("url"));
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Переводит ошибку получения соединения в исключение для сервлетов.
+     * Переполненный пул, истёкшее ожидание, недоступная или перегруженная база
+     * (SQLState классов 08 и 53) считаются временной перегрузкой.
+     */
+    private static RuntimeException connectionError(SQLException e) {
+        if (e instanceof SQLTransientException || isConnectionFailure(e)) {
+            return new ServiceUnavailableException(ApiConstants.SERVICE_UNAVAILABLE, retryAfterSeconds, e);
+        }
+        return new RuntimeException("Ошибка подключения к базе данных", e);
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && (sqlState.startsWith("08") || sqlState.startsWith("53"));
+    }
+
+    /**
+     * Создаёт пул соединений с базой по адресу {@code url}.
+     * {@code db.prepareThreshold} (по умолчанию 1) передаётся драйверу PostgreSQL: после стольких выполнений
+     * запрос готовится на сервере, поэтому запросы из кэша соединения не разбираются заново.
+     */
+    private static ConnectionPool createPool(String name, Properties prop, String url) {
+        Properties connectionProperties = new Properties();
+        if (prop.getProperty("db.username") != null) {
+            connectionProperties.setProperty("user", prop.getProperty("db.username"));
+        }
+        if (prop.getProperty("db.password") != null) {
+            connectionProperties.setProperty("password", prop.getProperty("db.password"));
+        }
+        connectionProperties.setProperty("prepareThreshold", prop.getProperty("db.prepareThreshold", "1"));
+
+        return new ConnectionPool(name, new PoolConfig(prop),
+                () -> DriverManager.getConnection(url, connectionProperties));
+    }
+
+    private static ReplicaRouter createReplicaRouter(Properties prop) {
+        String urls = prop.getProperty("db.replica.urls", "");
+        List<ConnectionPool> replicaPools = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                replicaPools.add(createPool("replica-" + (replicaPools.size() + 1), prop, url.trim()));
+            }
+        }
+        if (replicaPools.isEmpty()) {
+            return null;
+        }
+        return new ReplicaRouter(replicaPools,
+                ReplicaRouter.Balancing.fromProperty(prop.getProperty("db.replica.balancing")));
+    }
+
+    private static Properties loadProperties() {
+        Properties prop = new Properties();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(DatabaseUtil.class.getClassLoader().getResourceAsStream("database.properties"))))) {
+
+            prop.load(reader);
+            Class.forName(prop.getProperty("driver"));
+        } catch (IOException | ClassNotFoundException | NullPointerException e) {
+            throw new RuntimeException("Ошибка загрузки конфигурации базы данных");
         }
+        return prop;
     }
 }
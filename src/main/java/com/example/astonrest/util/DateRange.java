@@ -0,0 +1,76 @@
+package com.example.astonrest.util;
+
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.exception.BadRequestException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Полуинтервал времени {@code [from, to)} для выборки тренировок ({@code ?from=&to=}).
+ * <p>
+ * Граница задаётся датой ({@code 2024-01-31}, начало суток UTC) или моментом
+ * в ISO-8601 со смещением ({@code 2024-01-31T10:15:30Z}). Отсутствующая граница — открытая.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class DateRange {
+    private static final DateRange UNBOUNDED = new DateRange(null, null);
+
+    private final Instant from;
+    private final Instant to;
+
+    public DateRange(Instant from, Instant to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Диапазон без ограничений.
+     */
+    public static DateRange unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Разбирает параметры запроса {@code from} и {@code to}.
+     *
+     * @throws BadRequestException если граница не разбирается или {@code from} не раньше {@code to}
+     */
+    public static DateRange of(String from, String to) {
+        Instant fromInstant = isBlank(from) ? null : parseInstant(from);
+        Instant toInstant = isBlank(to) ? null : parseInstant(to);
+        if (fromInstant != null && toInstant != null && !fromInstant.isBefore(toInstant)) {
+            throw new BadRequestException(ApiConstants.INVALID_DATE_RANGE);
+        }
+        return fromInstant == null && toInstant == null ? UNBOUNDED : new DateRange(fromInstant, toInstant);
+    }
+
+    /**
+     * Разбирает дату или момент времени в ISO-8601.
+     *
+     * @throws BadRequestException если строка не в ISO-8601
+     */
+    public static Instant parseInstant(String value) {
+        String trimmed = value.trim();
+        try {
+            if (trimmed.length() == 10) {
+                return LocalDate.parse(trimmed).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(trimmed).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(ApiConstants.INVALID_DATE);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
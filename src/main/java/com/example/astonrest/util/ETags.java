@@ -0,0 +1,88 @@
+package com.example.astonrest.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.function.Supplier;
+
+/**
+ * Условные GET-запросы по ETag.
+ * <p>
+ * ETag строится из имени ресурса и его версии, которую поддерживают триггеры базы
+ * (миграция {@code V6__resource_versions.sql}). Сервлет сверяет его с {@code If-None-Match}
+ * до основного запроса: при совпадении отвечает 304 без тела. Иначе ETag ответа берётся из версии,
+ * прочитанной на одном соединении с телом ({@link Versioned}), и ставится только после успешного чтения.
+ */
+public class ETags {
+    public static final String ETAG_HEADER = "ETag";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private ETags() {}
+
+    /**
+     * Строгий ETag ресурса, например {@code "meals-v42"}.
+     *
+     * @param resource имя ресурса, различающее представления с независимыми версиями
+     * @param version  версия из базы или null, если её не удалось прочитать
+     * @return ETag в кавычках или null без версии
+     */
+    public static String of(String resource, Long version) {
+        return version != null ? "\"" + resource + "-v" + version + "\"" : null;
+    }
+
+    /**
+     * Проверяет {@code If-None-Match} по текущей версии ресурса.
+     * Версия читается, только если клиент прислал заголовок. При совпадении ставит {@code ETag}
+     * и статус 304: сервлету остаётся только выйти. Иначе заголовок не ставится —
+     * его выставляет {@link #set} по версии, прочитанной вместе с телом ответа.
+     *
+     * @param etag ETag текущей версии; при null условный запрос не обрабатывается
+     * @return true, если клиенту отправлен 304
+     */
+    public static boolean notModified(HttpServletRequest request, HttpServletResponse response, Supplier<String> etag) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = etag.get();
+        if (current == null || !matches(ifNoneMatch, current)) {
+            return false;
+        }
+        response.setHeader(ETAG_HEADER, current);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Ставит заголовок {@code ETag}, если версия известна.
+     * Вызывается после того, как тело ответа успешно прочитано.
+     */
+    public static void set(HttpServletResponse response, String etag) {
+        if (etag != null) {
+            response.setHeader(ETAG_HEADER, etag);
+        }
+    }
+
+    /**
+     * Совпадает ли ETag с одним из перечисленных в {@code If-None-Match}.
+     * Сравнение слабое, как требует RFC 9110 для этого заголовка: префикс {@code W/} не учитывается.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.astonrest.util;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.exception.BadRequestException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Список ID для выборки нескольких записей одним запросом ({@code ?ids=1,2,3}).
+ * <p>
+ * Повторяющиеся ID отбрасываются с сохранением порядка запроса.
+ * Максимальное количество ID задаётся ключом {@code multiget.maxIds}.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class IdListRequest {
+    private static final int MAX_IDS = ApplicationProperties.getInt("multiget.maxIds", 100);
+
+    private final List<Integer> ids;
+
+    public IdListRequest(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Разбирает параметр запроса {@code ids}: положительные числа через запятую.
+     *
+     * @throws BadRequestException если список пуст, содержит не ID или длиннее {@code multiget.maxIds}
+     */
+    public static IdListRequest of(String ids) {
+        List<Integer> parsed = parseIds(ids);
+        if (parsed.size() > MAX_IDS) {
+            throw new BadRequestException(String.format(ApiConstants.ID_LIST_IS_TOO_LARGE, MAX_IDS));
+        }
+        return new IdListRequest(parsed);
+    }
+
+    /**
+     * Разбирает список ID без ограничения длины: его проверяет вызывающий код по своему лимиту.
+     *
+     * @throws BadRequestException если список пуст или содержит не ID
+     */
+    public static List<Integer> parseIds(String ids) {
+        Set<Integer> parsed = new LinkedHashSet<>();
+        for (String part : ids.split(",")) {
+            try {
+                int id = Integer.parseInt(part.trim());
+                if (id <= 0) {
+                    throw new BadRequestException(ApiConstants.INVALID_ID_LIST);
+                }
+                parsed.add(id);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(ApiConstants.INVALID_ID_LIST);
+            }
+        }
+        return new ArrayList<>(parsed);
+    }
+
+    /**
+     * Раскладывает найденные строки в порядке запроса и перечисляет ID, которых нет в базе.
+     *
+     * @param rows   строки в любом порядке
+     * @param idOf   ID строки
+     * @param mapper преобразование строки в DTO
+     */
+    public <E, D> MultiGetDTO<D> toResult(List<E> rows, ToIntFunction<E> idOf, Function<E, D> mapper) {
+        Map<Integer, E> rowsById = new HashMap<>();
+        for (E row : rows) {
+            rowsById.put(idOf.applyAsInt(row), row);
+        }
+
+        Map<Integer, D> items = new LinkedHashMap<>();
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : ids) {
+            E row = rowsById.get(id);
+            if (row != null) {
+                items.put(id, mapper.apply(row));
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new MultiGetDTO<>(items, missingIds);
+    }
+}
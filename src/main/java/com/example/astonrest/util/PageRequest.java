@@ -0,0 +1,108 @@
+package com.example.astonrest.util;
+
+import com.example.astonrest.config.ApplicationProperties;
+import com.example.astonrest.constants.ApiConstants;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.exception.BadRequestException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Параметры страницы для keyset-пагинации: записи с ID больше {@code afterId}, не более {@code limit} штук.
+ * <p>
+ * Курсор для клиента непрозрачен — это ID последней записи страницы в Base64.
+ * Размер страницы по умолчанию и максимальный задаются ключами {@code pagination.defaultLimit}
+ * и {@code pagination.maxLimit}; запрошенный размер больше максимального уменьшается до него.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class PageRequest {
+    private static final int DEFAULT_LIMIT = ApplicationProperties.getInt("pagination.defaultLimit", 20);
+    private static final int MAX_LIMIT = ApplicationProperties.getInt("pagination.maxLimit", 100);
+
+    private final int afterId;
+    private final int limit;
+
+    public PageRequest(int afterId, int limit) {
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * Первая страница размера по умолчанию.
+     */
+    public static PageRequest first() {
+        return new PageRequest(0, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Разбирает параметры запроса {@code after} и {@code limit}.
+     *
+     * @throws BadRequestException если курсор повреждён или размер страницы не положительное число
+     */
+    public static PageRequest of(String cursor, String limit) {
+        int afterId = cursor == null || cursor.isEmpty() ? 0 : decodeCursor(cursor);
+        if (limit == null || limit.isEmpty()) {
+            return new PageRequest(afterId, DEFAULT_LIMIT);
+        }
+
+        int pageSize;
+        try {
+            pageSize = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(ApiConstants.INVALID_PAGE_LIMIT);
+        }
+        if (pageSize <= 0) {
+            throw new BadRequestException(ApiConstants.INVALID_PAGE_LIMIT);
+        }
+        return new PageRequest(afterId, Math.min(pageSize, MAX_LIMIT));
+    }
+
+    /**
+     * Сколько строк запрашивать из базы: на одну больше размера страницы,
+     * чтобы без отдельного COUNT узнать, есть ли следующая страница.
+     */
+    public int getFetchSize() {
+        return limit + 1;
+    }
+
+    /**
+     * Собирает страницу из строк, полученных с лимитом {@link #getFetchSize()}.
+     *
+     * @param rows   строки, упорядоченные по ID
+     * @param idOf   ID строки
+     * @param mapper преобразование строки в DTO
+     */
+    public <E, D> PageDTO<D> toPage(List<E> rows, ToIntFunction<E> idOf, Function<E, D> mapper) {
+        boolean hasNext = rows.size() > limit;
+        List<E> pageRows = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = hasNext ? encodeCursor(idOf.applyAsInt(pageRows.get(limit - 1))) : null;
+
+        return new PageDTO<>(pageRows.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+
+    static String encodeCursor(int id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor) {
+        try {
+            int id = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (id < 0) {
+                throw new BadRequestException(ApiConstants.INVALID_PAGE_CURSOR);
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(ApiConstants.INVALID_PAGE_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.astonrest.util;
+
+import lombok.Getter;
+
+import java.util.Properties;
+
+/**
+ * Настройки пула соединений, читаемые из {@code database.properties}.
+ * <p>
+ * Все ключи необязательны, при их отсутствии используются значения по умолчанию:
+ * <pre>
+ * pool.minSize=2
+ * pool.maxSize=10
+ * pool.connectionTimeoutMs=5000
+ * pool.maxWaiters=50
+ * pool.retryAfterSeconds=1
+ * pool.idleTimeoutMs=600000
+ * pool.maxLifetimeMs=1800000
+ * pool.validationQuery=SELECT 1
+ * pool.validationIdleMs=5000
+ * pool.leakDetectionThresholdMs=60000
+ * pool.housekeepingIntervalMs=30000
+ * pool.statementCacheSize=50
+ * </pre>
+ * Значение {@code pool.statementCacheSize=0} отключает кэш подготовленных запросов.
+ */
+@Getter
+public class PoolConfig {
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeoutMs;
+    private final int maxWaiters;
+    private final int retryAfterSeconds;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final String validationQuery;
+    private final long validationIdleMs;
+    private final long leakDetectionThresholdMs;
+    private final long housekeepingIntervalMs;
+    private final int statementCacheSize;
+
+    public PoolConfig(Properties properties) {
+        this.maxSize = Math.max(1, getInt(properties, "pool.maxSize", 10));
+        this.minSize = Math.min(maxSize, Math.max(0, getInt(properties, "pool.minSize", 2)));
+        this.connectionTimeoutMs = getLong(properties, "pool.connectionTimeoutMs", 5_000);
+        this.maxWaiters = Math.max(0, getInt(properties, "pool.maxWaiters", 50));
+        this.retryAfterSeconds = Math.max(1, getInt(properties, "pool.retryAfterSeconds", 1));
+        this.idleTimeoutMs = getLong(properties, "pool.idleTimeoutMs", 600_000);
+        this.maxLifetimeMs = getLong(properties, "pool.maxLifetimeMs", 1_800_000);
+        this.validationQuery = properties.getProperty("pool.validationQuery", "SELECT 1");
+        this.validationIdleMs = getLong(properties, "pool.validationIdleMs", 5_000);
+        this.leakDetectionThresholdMs = getLong(properties, "pool.leakDetectionThresholdMs", 60_000);
+        this.housekeepingIntervalMs = Math.max(1_000, getLong(properties, "pool.housekeepingIntervalMs", 30_000));
+        this.statementCacheSize = Math.max(0, getInt(properties, "pool.statementCacheSize", 50));
+    }
+
+    static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
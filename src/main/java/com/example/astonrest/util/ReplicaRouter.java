@@ -0,0 +1,95 @@
+package com.example.astonrest.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Распределяет читающие запросы между пулами реплик.
+ * <p>
+ * Поддерживаются две стратегии: {@code round-robin} — по кругу,
+ * {@code least-outstanding} — в реплику с наименьшим числом выданных соединений.
+ * Если у выбранной реплики нет свободного соединения, остальные пробуются без ожидания,
+ * и только затем запрос ждёт выбранную реплику в пределах одного общего срока.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    /**
+     * Стратегия выбора реплики.
+     */
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING;
+
+        /**
+         * Разбирает значение настройки {@code db.replica.balancing}.
+         */
+        public static Balancing fromProperty(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return ROUND_ROBIN;
+            }
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final List<ConnectionPool> replicas;
+    private final Balancing balancing;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRouter(List<ConnectionPool> replicas, Balancing balancing) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Список реплик пуст");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.balancing = balancing;
+    }
+
+    /**
+     * Выдаёт соединение с одной из реплик, ожидая не дольше переданного времени суммарно по всем репликам.
+     *
+     * @param timeoutMs общий срок ожидания в миллисекундах
+     * @throws SQLException если ни одна реплика не выдала соединение
+     */
+    public Connection getConnection(long timeoutMs) throws SQLException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int first = selectReplica();
+        SQLException lastError = null;
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            ConnectionPool replica = replicas.get((first + attempt) % replicas.size());
+            try {
+                return replica.getConnection(0);
+            } catch (SQLException e) {
+                lastError = e;
+            }
+        }
+
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw lastError;
+        }
+        return replicas.get(first).getConnection(remaining);
+    }
+
+    public List<ConnectionPool> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(ConnectionPool::close);
+    }
+
+    private int selectReplica() {
+        if (balancing == Balancing.LEAST_OUTSTANDING) {
+            int selected = 0;
+            for (int i = 1; i < replicas.size(); i++) {
+                if (replicas.get(i).getActiveConnections() < replicas.get(selected).getActiveConnections()) {
+                    selected = i;
+                }
+            }
+            return selected;
+        }
+        return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+    }
+}
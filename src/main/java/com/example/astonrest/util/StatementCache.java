@@ -0,0 +1,188 @@
+package com.example.astonrest.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU-кэш подготовленных запросов одного физического соединения, ключ — текст SQL.
+ * <p>
+ * Закрытие выданного запроса не закрывает его, а возвращает в кэш, поэтому повторный
+ * {@code prepareStatement} с тем же SQL обходится без разбора и планирования на стороне базы.
+ * Соединение в каждый момент используется одним потоком, поэтому синхронизация не нужна.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final Map<String, CachedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Возвращает подготовленный запрос из кэша или готовит новый.
+     * Если запрос с тем же SQL уже выдан и не закрыт, новый запрос не кэшируется.
+     *
+     * @param sql               текст запроса
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} или {@link Statement#NO_GENERATED_KEYS}
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            return cached.lease();
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                ? connection.prepareStatement(sql, autoGeneratedKeys)
+                : connection.prepareStatement(sql);
+        if (cached != null) {
+            return statement;
+        }
+
+        cached = new CachedStatement(key, statement);
+        statements.put(key, cached);
+        return cached.lease();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Подготовленный запрос в кэше.
+     */
+    private final class CachedStatement {
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        /**
+         * Выдаёт запрос очередному клиенту. Каждая выдача получает собственный прокси,
+         * поэтому закрытый клиентом прокси не даёт доступа к запросу следующего клиента.
+         */
+        private PreparedStatement lease() {
+            inUse = true;
+            return new StatementHandle(this).proxy;
+        }
+
+        /**
+         * Вытесняет запрос из кэша: свободный закрывается сразу, выданный — при возврате.
+         */
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // соединение могло быть уже закрыто
+            }
+        }
+
+        private void returnToCache() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                statement.clearParameters();
+                statement.clearWarnings();
+            } catch (SQLException e) {
+                // Запрос в неизвестном состоянии: убираем его, следующий prepare подготовит новый
+                evicted = true;
+                statements.remove(key, this);
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Прокси одной выдачи запроса: {@code close()} возвращает запрос в кэш,
+     * а обращение после закрытия приводит к ошибке, даже если запрос уже выдан другому.
+     */
+    private static final class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final PreparedStatement proxy;
+        private boolean returned;
+
+        private StatementHandle(CachedStatement cached) {
+            this.cached = cached;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        cached.returnToCache();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || cached.statement.isClosed();
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "Cached " + cached.statement;
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Подготовленный запрос уже закрыт");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.astonrest.util;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.function.Function;
+
+/**
+ * Данные вместе с версией, прочитанной на том же соединении, что и они сами.
+ * <p>
+ * Из версии строится ETag ответа: если брать её отдельным запросом, она может прийти
+ * с другой реплики, чем тело, и под новым ETag окажутся устаревшие данные.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class Versioned<T> {
+    private final T value;
+    private final Long version;
+
+    public Versioned(T value, Long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    /**
+     * Данные без версии: ETag для них не отдаётся.
+     */
+    public static <T> Versioned<T> unversioned(T value) {
+        return new Versioned<>(value, null);
+    }
+
+    /**
+     * Преобразует данные, сохраняя версию.
+     */
+    public <R> Versioned<R> map(Function<? super T, ? extends R> mapper) {
+        return new Versioned<>(mapper.apply(value), version);
+    }
+}
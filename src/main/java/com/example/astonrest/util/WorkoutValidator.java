@@ -1,12 +1,17 @@
 package com.example.astonrest.util;
 
+import com.example.astonrest.constants.ApiConstants;
 import com.example.astonrest.dto.WorkoutDTO;
 import com.example.astonrest.exception.BadRequestException;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.regex.Pattern;
 
 public class WorkoutValidator {
     private static final Pattern NAME_PATTERN = Pattern.compile("^[A-Za-zА-Яа-яЁё\\s-]+$");
+    // Допустимое расхождение часов клиента и сервера
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
 
     /**
      * Валидирует поля тренировки перед сохранением в базе данных.
@@ -26,5 +31,10 @@ public class WorkoutValidator {
         if (workoutDTO.getDuration() <= 0) {
             throw new BadRequestException("Duration must be a positive number.");
         }
+
+        if (workoutDTO.getPerformedAt() != null
+                && DateRange.parseInstant(workoutDTO.getPerformedAt()).isAfter(Instant.now().plus(CLOCK_SKEW))) {
+            throw new BadRequestException(ApiConstants.WORKOUT_PERFORMED_IN_FUTURE);
+        }
     }
 }
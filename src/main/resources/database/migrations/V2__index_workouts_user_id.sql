@@ -0,0 +1,3 @@
+-- Тренировки пользователя (WHERE user_id = ? AND id > ? ORDER BY id) и ON DELETE CASCADE при удалении пользователя.
+-- CONCURRENTLY не блокирует запись в таблицу; такой скрипт выполняется вне транзакции
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_workouts_user_id_id ON workouts (user_id, id);
@@ -0,0 +1,3 @@
+-- Первичный ключ (user_id, meal_id) не помогает искать по meal_id:
+-- обратная сторона связи и ON DELETE CASCADE при удалении блюда
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_meals_meal_id ON user_meals (meal_id);
@@ -0,0 +1,107 @@
+-- Время тренировки и помесячное партиционирование workouts по нему.
+-- Первичный ключ партиционированной таблицы обязан включать ключ партиционирования,
+-- поэтому он становится (id, performed_at); id по-прежнему выдаётся одной последовательностью.
+
+-- Создаёт партицию за месяц month_start (границы по UTC), если её ещё нет.
+-- Строки этого месяца, уже попавшие в партицию по умолчанию, переносятся в новую партицию:
+-- иначе присоединение партиции завершилось бы ошибкой.
+CREATE OR REPLACE FUNCTION create_workout_partition(month_start DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    partition_name TEXT := 'workouts_' || to_char(month_start, 'YYYY_MM');
+    range_start TIMESTAMPTZ := month_start::timestamp AT TIME ZONE 'UTC';
+    range_end TIMESTAMPTZ := (month_start + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE workouts INCLUDING DEFAULTS)', partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM workouts_default WHERE performed_at >= %L AND performed_at < %L RETURNING *) '
+                       || 'INSERT INTO %I SELECT * FROM moved', range_start, range_end, partition_name);
+    EXECUTE format('ALTER TABLE workouts ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, range_start, range_end);
+    RETURN true;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Создаёт партиции с текущего месяца на months_ahead месяцев вперёд и возвращает число созданных.
+-- Блокировка транзакции не даёт нескольким экземплярам приложения создавать партиции одновременно.
+CREATE OR REPLACE FUNCTION ensure_workout_partitions(months_ahead INT) RETURNS INT AS $$
+DECLARE
+    first_month DATE := date_trunc('month', now() AT TIME ZONE 'UTC')::date;
+    created INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('workout_partitions'));
+    FOR i IN 0..months_ahead LOOP
+        IF create_workout_partition((first_month + make_interval(months => i))::date) THEN
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Отсоединяет партиции месяцев, закончившихся не позже before, и переносит их в схему workouts_archive.
+-- Оттуда их можно выгрузить через pg_dump и удалить, не трогая рабочую таблицу.
+CREATE SCHEMA IF NOT EXISTS workouts_archive;
+
+CREATE OR REPLACE FUNCTION archive_workout_partitions(before DATE) RETURNS SETOF TEXT AS $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('workout_partitions'));
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'workouts'::regclass
+          AND c.relname ~ '^workouts_[0-9]{4}_[0-9]{2}$'
+          AND to_date(substring(c.relname FROM 10), 'YYYY_MM') + INTERVAL '1 month' <= before
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE workouts DETACH PARTITION %I', partition_name);
+        EXECUTE format('ALTER TABLE %I SET SCHEMA workouts_archive', partition_name);
+        RETURN NEXT partition_name;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Перенос существующих данных. У старых тренировок времени нет, им проставляется момент миграции.
+-- Если таблица уже партиционирована (база создана из свежего schema.sql), перенос пропускается.
+-- Партиции месяцев создаются до копирования, чтобы строки сразу попали в свою партицию
+-- и не переписывались второй раз из партиции по умолчанию. Первичный ключ, внешний ключ и индекс
+-- строятся после загрузки одним проходом, а не обновляются на каждой вставленной строке.
+DO $$
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'workouts'::regclass) = 'p' THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE workouts RENAME TO workouts_legacy;
+    ALTER TABLE workouts_legacy RENAME CONSTRAINT workouts_pkey TO workouts_legacy_pkey;
+    ALTER INDEX IF EXISTS idx_workouts_user_id_id RENAME TO idx_workouts_legacy_user_id_id;
+    ALTER SEQUENCE workouts_id_seq OWNED BY NONE;
+
+    CREATE TABLE workouts (
+        id INT NOT NULL DEFAULT nextval('workouts_id_seq'),
+        type VARCHAR(50) NOT NULL,
+        duration INT NOT NULL,
+        calories_burned INT NOT NULL,
+        user_id INT NOT NULL,
+        performed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+    ) PARTITION BY RANGE (performed_at);
+    ALTER SEQUENCE workouts_id_seq OWNED BY workouts.id;
+
+    CREATE TABLE workouts_default PARTITION OF workouts DEFAULT;
+    PERFORM ensure_workout_partitions(3);
+
+    INSERT INTO workouts (id, type, duration, calories_burned, user_id, performed_at)
+    SELECT id, type, duration, calories_burned, user_id, now() FROM workouts_legacy;
+
+    DROP TABLE workouts_legacy;
+
+    ALTER TABLE workouts ADD PRIMARY KEY (id, performed_at);
+    ALTER TABLE workouts ADD FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+    CREATE INDEX idx_workouts_user_id_id ON workouts (user_id, id);
+END;
+$$;
+
+-- Для базы из schema.sql партиции создаются здесь; после переноса выше вызов ничего не делает
+SELECT ensure_workout_partitions(3);
@@ -0,0 +1,128 @@
+-- Сводка по пользователю: число тренировок, сожжённые и съеденные калории.
+-- Поддерживается триггерами в той же транзакции, что и изменение данных, поэтому её не обходят
+-- ни запись через API, ни импорт через COPY, ни каскадное удаление.
+CREATE TABLE IF NOT EXISTS user_stats (
+    user_id INT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    workout_count INT NOT NULL DEFAULT 0,
+    calories_burned BIGINT NOT NULL DEFAULT 0,
+    calories_eaten BIGINT NOT NULL DEFAULT 0
+);
+
+-- Строка сводки создаётся вместе с пользователем. Остальные триггеры только обновляют её:
+-- вставка при каскадном удалении пользователя нарушила бы внешний ключ.
+CREATE OR REPLACE FUNCTION user_stats_on_users_insert() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO user_stats (user_id) SELECT id FROM new_rows ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Триггеры уровня оператора с таблицами переходов: пакетная вставка или COPY
+-- обновляет строку сводки каждого пользователя один раз, а не на каждую тренировку.
+-- Переезд строки между партициями при смене performed_at попадает в old_rows и new_rows обновления.
+CREATE OR REPLACE FUNCTION user_stats_on_workouts_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE user_stats s
+        SET workout_count = s.workout_count + d.workout_count, calories_burned = s.calories_burned + d.calories_burned
+        FROM (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned
+              FROM new_rows GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE user_stats s
+        SET workout_count = s.workout_count - d.workout_count, calories_burned = s.calories_burned - d.calories_burned
+        FROM (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned
+              FROM old_rows GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    ELSE
+        UPDATE user_stats s
+        SET workout_count = s.workout_count + d.workout_count, calories_burned = s.calories_burned + d.calories_burned
+        FROM (SELECT user_id, sum(sign) AS workout_count, sum(sign * calories_burned) AS calories_burned
+              FROM (SELECT user_id, 1 AS sign, calories_burned FROM new_rows
+                    UNION ALL
+                    SELECT user_id, -1, calories_burned FROM old_rows) changes
+              GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION user_stats_on_user_meals_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE user_stats s SET calories_eaten = s.calories_eaten + d.calories
+        FROM (SELECT r.user_id, sum(m.calories) AS calories
+              FROM new_rows r JOIN meals m ON m.id = r.meal_id GROUP BY r.user_id) d
+        WHERE s.user_id = d.user_id;
+    ELSE
+        UPDATE user_stats s SET calories_eaten = s.calories_eaten - d.calories
+        FROM (SELECT r.user_id, sum(m.calories) AS calories
+              FROM old_rows r JOIN meals m ON m.id = r.meal_id GROUP BY r.user_id) d
+        WHERE s.user_id = d.user_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Изменение калорийности блюда пересчитывает всех пользователей, у которых оно есть
+CREATE OR REPLACE FUNCTION user_stats_on_meals_update() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE user_stats s SET calories_eaten = s.calories_eaten + d.calories
+    FROM (SELECT um.user_id, sum(n.calories - o.calories) AS calories
+          FROM new_rows n JOIN old_rows o ON o.id = n.id JOIN user_meals um ON um.meal_id = n.id
+          WHERE n.calories <> o.calories
+          GROUP BY um.user_id) d
+    WHERE s.user_id = d.user_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Связи удаляемого блюда удаляются до самого блюда: каскад внешнего ключа сработал бы,
+-- когда строки блюда уже не видно, и калории нельзя было бы вычесть
+CREATE OR REPLACE FUNCTION user_stats_on_meals_delete() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM user_meals WHERE meal_id = OLD.id;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS user_stats_users_insert ON users;
+CREATE TRIGGER user_stats_users_insert AFTER INSERT ON users
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_users_insert();
+
+DROP TRIGGER IF EXISTS user_stats_workouts_insert ON workouts;
+CREATE TRIGGER user_stats_workouts_insert AFTER INSERT ON workouts
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_workouts_change();
+DROP TRIGGER IF EXISTS user_stats_workouts_update ON workouts;
+CREATE TRIGGER user_stats_workouts_update AFTER UPDATE ON workouts
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_workouts_change();
+DROP TRIGGER IF EXISTS user_stats_workouts_delete ON workouts;
+CREATE TRIGGER user_stats_workouts_delete AFTER DELETE ON workouts
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_workouts_change();
+
+DROP TRIGGER IF EXISTS user_stats_user_meals_insert ON user_meals;
+CREATE TRIGGER user_stats_user_meals_insert AFTER INSERT ON user_meals
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_user_meals_change();
+DROP TRIGGER IF EXISTS user_stats_user_meals_delete ON user_meals;
+CREATE TRIGGER user_stats_user_meals_delete AFTER DELETE ON user_meals
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_user_meals_change();
+
+DROP TRIGGER IF EXISTS user_stats_meals_update ON meals;
+CREATE TRIGGER user_stats_meals_update AFTER UPDATE ON meals
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION user_stats_on_meals_update();
+DROP TRIGGER IF EXISTS user_stats_meals_delete ON meals;
+CREATE TRIGGER user_stats_meals_delete BEFORE DELETE ON meals
+    FOR EACH ROW EXECUTE FUNCTION user_stats_on_meals_delete();
+
+-- Начальное заполнение по уже существующим данным
+INSERT INTO user_stats (user_id, workout_count, calories_burned, calories_eaten)
+SELECT u.id,
+       (SELECT count(*) FROM workouts w WHERE w.user_id = u.id),
+       (SELECT COALESCE(sum(w.calories_burned), 0) FROM workouts w WHERE w.user_id = u.id),
+       (SELECT COALESCE(sum(m.calories), 0) FROM user_meals um JOIN meals m ON m.id = um.meal_id WHERE um.user_id = u.id)
+FROM users u
+ON CONFLICT (user_id) DO UPDATE
+    SET workout_count = EXCLUDED.workout_count,
+        calories_burned = EXCLUDED.calories_burned,
+        calories_eaten = EXCLUDED.calories_eaten;
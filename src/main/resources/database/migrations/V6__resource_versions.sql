@@ -0,0 +1,94 @@
+-- Версии ресурсов для ETag: сервлет сверяет версию с If-None-Match до основного запроса
+-- и при совпадении отвечает 304, не читая и не сериализуя данные.
+-- Версии увеличиваются триггерами, поэтому их не обходят ни COPY, ни каскадное удаление.
+
+-- GET /users/{id}: версия строки пользователя
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+
+CREATE OR REPLACE FUNCTION users_bump_version() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_version ON users;
+CREATE TRIGGER users_version BEFORE UPDATE ON users
+    FOR EACH ROW EXECUTE FUNCTION users_bump_version();
+
+-- GET /users/{id}/workouts: версия тренировок пользователя в его строке сводки,
+-- которую триггеры тренировок и так обновляют
+ALTER TABLE user_stats ADD COLUMN IF NOT EXISTS workouts_version BIGINT NOT NULL DEFAULT 0;
+
+CREATE OR REPLACE FUNCTION user_stats_on_workouts_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE user_stats s
+        SET workout_count = s.workout_count + d.workout_count, calories_burned = s.calories_burned + d.calories_burned,
+            workouts_version = s.workouts_version + 1
+        FROM (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned
+              FROM new_rows GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE user_stats s
+        SET workout_count = s.workout_count - d.workout_count, calories_burned = s.calories_burned - d.calories_burned,
+            workouts_version = s.workouts_version + 1
+        FROM (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned
+              FROM old_rows GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    ELSE
+        UPDATE user_stats s
+        SET workout_count = s.workout_count + d.workout_count, calories_burned = s.calories_burned + d.calories_burned,
+            workouts_version = s.workouts_version + 1
+        FROM (SELECT user_id, sum(sign) AS workout_count, sum(sign * calories_burned) AS calories_burned
+              FROM (SELECT user_id, 1 AS sign, calories_burned FROM new_rows
+                    UNION ALL
+                    SELECT user_id, -1, calories_burned FROM old_rows) changes
+              GROUP BY user_id) d
+        WHERE s.user_id = d.user_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Архивация партиции убирает тренировки из списка без триггеров удаления,
+-- поэтому версия пользователей из отсоединяемой партиции увеличивается здесь
+CREATE OR REPLACE FUNCTION archive_workout_partitions(before DATE) RETURNS SETOF TEXT AS $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('workout_partitions'));
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'workouts'::regclass
+          AND c.relname ~ '^workouts_[0-9]{4}_[0-9]{2}$'
+          AND to_date(substring(c.relname FROM 10), 'YYYY_MM') + INTERVAL '1 month' <= before
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('UPDATE user_stats SET workouts_version = workouts_version + 1 '
+                       'WHERE user_id IN (SELECT DISTINCT user_id FROM %I)', partition_name);
+        EXECUTE format('ALTER TABLE workouts DETACH PARTITION %I', partition_name);
+        EXECUTE format('ALTER TABLE %I SET SCHEMA workouts_archive', partition_name);
+        RETURN NEXT partition_name;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- GET /meals: счётчик изменений каталога целиком. Одна строка на таблицу — узкое место
+-- при частой записи, но каталог блюд меняется редко, а читается постоянно
+CREATE TABLE IF NOT EXISTS resource_versions (
+    name VARCHAR(50) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0
+);
+INSERT INTO resource_versions (name) VALUES ('meals') ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION resource_versions_bump() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE resource_versions SET version = version + 1 WHERE name = TG_TABLE_NAME;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS meals_version ON meals;
+CREATE TRIGGER meals_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON meals
+    FOR EACH STATEMENT EXECUTE FUNCTION resource_versions_bump();
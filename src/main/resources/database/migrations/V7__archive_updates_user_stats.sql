@@ -0,0 +1,48 @@
+-- Сводка пользователя описывает те же тренировки, что и разбивка по типам: только рабочую таблицу.
+-- Архивация партиции раньше увеличивала лишь версию, и счётчики продолжали учитывать
+-- отсоединённые строки, так что итог в GET /users/{id}/stats?groupBy=type не сходился с суммой по типам.
+-- Теперь тренировки отсоединённой партиции вычитаются из сводки в той же транзакции.
+-- Партиция отсоединяется до подсчёта: DETACH держит её блокировку до конца транзакции,
+-- и строка, вставленная между подсчётом и отсоединением, не останется в сводке.
+CREATE OR REPLACE FUNCTION archive_workout_partitions(before DATE) RETURNS SETOF TEXT AS $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('workout_partitions'));
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'workouts'::regclass
+          AND c.relname ~ '^workouts_[0-9]{4}_[0-9]{2}$'
+          AND to_date(substring(c.relname FROM 10), 'YYYY_MM') + INTERVAL '1 month' <= before
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE workouts DETACH PARTITION %I', partition_name);
+        EXECUTE format('UPDATE user_stats s '
+                       'SET workout_count = s.workout_count - d.workout_count, '
+                       'calories_burned = s.calories_burned - d.calories_burned, '
+                       'workouts_version = s.workouts_version + 1 '
+                       'FROM (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned '
+                       'FROM %I GROUP BY user_id) d '
+                       'WHERE s.user_id = d.user_id', partition_name);
+        EXECUTE format('ALTER TABLE %I SET SCHEMA workouts_archive', partition_name);
+        RETURN NEXT partition_name;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Если партиции уже архивировались прежней функцией, сводка пересчитывается по рабочей таблице
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_tables WHERE schemaname = 'workouts_archive') THEN
+        RETURN;
+    END IF;
+
+    UPDATE user_stats s
+    SET workout_count = COALESCE(d.workout_count, 0), calories_burned = COALESCE(d.calories_burned, 0)
+    FROM user_stats s2
+    LEFT JOIN (SELECT user_id, count(*) AS workout_count, sum(calories_burned) AS calories_burned
+               FROM workouts GROUP BY user_id) d ON d.user_id = s2.user_id
+    WHERE s.user_id = s2.user_id
+      AND (s.workout_count, s.calories_burned) IS DISTINCT FROM (COALESCE(d.workout_count, 0), COALESCE(d.calories_burned, 0));
+END;
+$$;
@@ -3,17 +3,27 @@ CREATE TABLE users (
                        name VARCHAR(100) NOT NULL,
                        age INT NOT NULL,
                        weight DOUBLE PRECISION NOT NULL,
-                       height DOUBLE PRECISION NOT NULL
+                       height DOUBLE PRECISION NOT NULL,
+                       version BIGINT NOT NULL DEFAULT 1
 );
 
+-- Тренировки разбиты на месячные партиции по performed_at (UTC). Партиции на текущий и следующие месяцы,
+-- а также функции их создания и архивации создаёт миграция V4__partition_workouts_by_month.sql
 CREATE TABLE workouts (
-                          id SERIAL PRIMARY KEY,
+                          id SERIAL,
                           type VARCHAR(50) NOT NULL,
                           duration INT NOT NULL,
                           calories_burned INT NOT NULL,
                           user_id INT NOT NULL,
+                          performed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+                          PRIMARY KEY (id, performed_at),
                           FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
+) PARTITION BY RANGE (performed_at);
+
+CREATE TABLE workouts_default PARTITION OF workouts DEFAULT;
+
+-- Постраничная выборка тренировок пользователя: WHERE user_id = ? AND id > ? ORDER BY id
+CREATE INDEX idx_workouts_user_id_id ON workouts (user_id, id);
 
 CREATE TABLE meals (
                        id SERIAL PRIMARY KEY,
@@ -28,3 +38,23 @@ CREATE TABLE user_meals (
                             FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
                             FOREIGN KEY (meal_id) REFERENCES meals(id) ON DELETE CASCADE
 );
+
+-- Поиск по meal_id: первичный ключ (user_id, meal_id) для него не подходит
+CREATE INDEX idx_user_meals_meal_id ON user_meals (meal_id);
+
+-- Сводка по пользователю для GET /users/{id}/stats. Триггеры, которые её поддерживают,
+-- создаёт миграция V5__user_stats_summary.sql. Тренировки архивированных партиций из неё вычитаются (V7)
+CREATE TABLE user_stats (
+                            user_id INT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+                            workout_count INT NOT NULL DEFAULT 0,
+                            calories_burned BIGINT NOT NULL DEFAULT 0,
+                            calories_eaten BIGINT NOT NULL DEFAULT 0,
+                            workouts_version BIGINT NOT NULL DEFAULT 0
+);
+
+-- Счётчики изменений таблиц для ETag. Триггеры версий создаёт миграция V6__resource_versions.sql
+CREATE TABLE resource_versions (
+                                   name VARCHAR(50) PRIMARY KEY,
+                                   version BIGINT NOT NULL DEFAULT 0
+);
+INSERT INTO resource_versions (name) VALUES ('meals');
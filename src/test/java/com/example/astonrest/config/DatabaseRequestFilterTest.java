@@ -0,0 +1,64 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.util.DatabaseUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseRequestFilterTest {
+    @Mock
+    private ServletRequest request;
+    @Mock
+    private ServletResponse response;
+    @Mock
+    private FilterChain chain;
+
+    private MockedStatic<DatabaseUtil> mockedDatabaseUtil;
+
+    @BeforeEach
+    void setUp() {
+        mockedDatabaseUtil = mockStatic(DatabaseUtil.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockedDatabaseUtil.close();
+    }
+
+    @Test
+    void testRequestScopeWrapsChain() throws Exception {
+        doAnswer(invocation -> {
+            // Область запроса уже открыта и ещё не закрыта, пока работает сервлет
+            mockedDatabaseUtil.verify(DatabaseUtil::beginRequest);
+            mockedDatabaseUtil.verify(DatabaseUtil::endRequest, never());
+            return null;
+        }).when(chain).doFilter(request, response);
+
+        new DatabaseRequestFilter().doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        mockedDatabaseUtil.verify(DatabaseUtil::endRequest);
+    }
+
+    @Test
+    void testRequestScopeIsClosedWhenChainFails() throws Exception {
+        doThrow(new ServletException("boom")).when(chain).doFilter(request, response);
+
+        assertThrows(ServletException.class, () -> new DatabaseRequestFilter().doFilter(request, response, chain));
+
+        mockedDatabaseUtil.verify(DatabaseUtil::beginRequest);
+        mockedDatabaseUtil.verify(DatabaseUtil::endRequest);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.astonrest.config;
+
+import com.example.astonrest.util.DatabaseUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class MigrationRunnerTest {
+    private MockedStatic<DatabaseUtil> mockedDatabaseUtil;
+    private Connection connection;
+    private Statement statement;
+    private PreparedStatement preparedStatement;
+    private ResultSet history;
+    private ResultSet lockResult;
+    private ResultSet invalidIndexes;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        preparedStatement = mock(PreparedStatement.class);
+        history = mock(ResultSet.class);
+        lockResult = mock(ResultSet.class);
+        invalidIndexes = mock(ResultSet.class);
+        PreparedStatement lockStatement = mock(PreparedStatement.class);
+        PreparedStatement invalidIndexStatement = mock(PreparedStatement.class);
+
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(lockStatement);
+        when(connection.prepareStatement(contains("indisvalid"))).thenReturn(invalidIndexStatement);
+        when(preparedStatement.executeQuery()).thenReturn(history);
+        when(lockStatement.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+        when(lockResult.getBoolean(1)).thenReturn(true);
+        when(invalidIndexStatement.executeQuery()).thenReturn(invalidIndexes);
+
+        mockedDatabaseUtil = mockStatic(DatabaseUtil.class);
+        mockedDatabaseUtil.when(DatabaseUtil::getConnection).thenReturn(connection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockedDatabaseUtil.close();
+    }
+
+    @Test
+    void testSplitStatementsIgnoresSemicolonsInQuotesAndComments() {
+        String script = "-- комментарий; не команда\n"
+                + "INSERT INTO meals (name, calories) VALUES ('a;b', 1);\n"
+                + "/* блок; комментария */ UPDATE meals SET name = 'it''s;' WHERE id = 1;\n"
+                + "CREATE FUNCTION f() RETURNS trigger AS $body$ BEGIN NULL; RETURN NEW; END; $body$ LANGUAGE plpgsql;";
+
+        List<String> statements = MigrationRunner.splitStatements(script);
+
+        assertEquals(3, statements.size());
+        assertEquals("INSERT INTO meals (name, calories) VALUES ('a;b', 1)", statements.get(0));
+        assertEquals("UPDATE meals SET name = 'it''s;' WHERE id = 1", statements.get(1));
+        assertTrue(statements.get(2).contains("$body$ BEGIN NULL; RETURN NEW; END; $body$"));
+    }
+
+    @Test
+    void testSplitStatementsSkipsEmptyStatements() {
+        assertEquals(List.of("SELECT 1"), MigrationRunner.splitStatements(";;\n SELECT 1 ;\n-- конец\n"));
+    }
+
+    @Test
+    void testLoadMigrationsReadsIndexInOrder() throws IOException {
+        List<MigrationRunner.Migration> migrations = MigrationRunner.loadMigrations();
+
+        assertEquals(7, migrations.size());
+        assertEquals(1, migrations.get(0).version);
+        assertEquals("index workouts user id", migrations.get(1).description);
+        assertEquals(64, migrations.get(2).checksum.length());
+    }
+
+    @Test
+    void testMigrateAppliesOnlyPendingVersions() throws Exception {
+        String baselineChecksum = MigrationRunner.loadMigrations().get(0).checksum;
+        when(history.next()).thenReturn(true, false);
+        when(history.getInt("version")).thenReturn(1);
+        when(history.getString("checksum")).thenReturn(baselineChecksum);
+
+        new MigrationRunner(true, 1000).migrate();
+
+        verify(statement, never()).execute(contains("CREATE TABLE IF NOT EXISTS users"));
+        verify(statement).execute(contains("CONCURRENTLY IF NOT EXISTS idx_workouts_user_id_id"));
+        verify(statement).execute(contains("CONCURRENTLY IF NOT EXISTS idx_user_meals_meal_id"));
+        verify(statement).execute(contains("PARTITION BY RANGE (performed_at)"));
+        verify(preparedStatement, never()).setInt(1, 1);
+        verify(preparedStatement).setInt(1, 2);
+        verify(preparedStatement).setInt(1, 3);
+        verify(preparedStatement).setInt(1, 4);
+        verify(preparedStatement).setInt(1, 5);
+        verify(preparedStatement).setInt(1, 6);
+        verify(preparedStatement).setInt(1, 7);
+        verify(statement).execute(contains("FROM %I GROUP BY user_id) d"));
+        // Индексы строятся вне транзакции, партиционирование, сводка, версии и архивация — каждая в своей транзакции
+        verify(connection, times(4)).commit();
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void testTransactionalMigrationIsRolledBackOnError() throws Exception {
+        when(history.next()).thenReturn(false);
+        when(statement.execute(contains("CREATE TABLE IF NOT EXISTS meals"))).thenThrow(new SQLException("boom"));
+
+        assertThrows(IllegalStateException.class, () -> new MigrationRunner(true, 1000).migrate());
+
+        verify(connection).setAutoCommit(false);
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(statement, never()).execute(contains("idx_workouts_user_id_id"));
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void testConcurrentIndexNamesAreReadFromScript() {
+        assertEquals(List.of("idx_a", "idx_b"), MigrationRunner.concurrentIndexNames(
+                "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_a ON t (a);\n"
+                        + "create unique index concurrently idx_b on t (b);\nCREATE INDEX idx_c ON t (c);"));
+    }
+
+    @Test
+    void testLockIsPolledWithoutBlockingUntilOtherInstanceReleasesIt() throws Exception {
+        when(history.next()).thenReturn(false);
+        when(lockResult.getBoolean(1)).thenReturn(false, true);
+
+        new MigrationRunner(true, 5000).migrate();
+
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_lock(?)");
+        verify(connection, times(2)).prepareStatement("SELECT pg_try_advisory_lock(?)");
+        verify(preparedStatement).setInt(1, 6);
+    }
+
+    @Test
+    void testLockTimeoutStopsStartupWithoutApplyingMigrations() throws Exception {
+        when(lockResult.getBoolean(1)).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> new MigrationRunner(true, 0).migrate());
+
+        verify(statement, never()).execute(contains("CREATE TABLE IF NOT EXISTS users"));
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void testInvalidIndexAfterConcurrentBuildIsNotRecorded() throws Exception {
+        String baselineChecksum = MigrationRunner.loadMigrations().get(0).checksum;
+        when(history.next()).thenReturn(true, false);
+        when(history.getInt("version")).thenReturn(1);
+        when(history.getString("checksum")).thenReturn(baselineChecksum);
+        // Перед построением индекс исправен, после — INVALID
+        when(invalidIndexes.next()).thenReturn(false, true, false);
+        when(invalidIndexes.getString("relname")).thenReturn("idx_workouts_user_id_id");
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new MigrationRunner(true, 1000).migrate());
+
+        assertTrue(exception.getCause().getMessage().contains("idx_workouts_user_id_id"));
+        verify(preparedStatement, never()).setInt(1, 2);
+        verify(statement, never()).execute(contains("idx_user_meals_meal_id"));
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void testInvalidIndexFromInterruptedBuildIsDroppedAndRebuilt() throws Exception {
+        String baselineChecksum = MigrationRunner.loadMigrations().get(0).checksum;
+        when(history.next()).thenReturn(true, false);
+        when(history.getInt("version")).thenReturn(1);
+        when(history.getString("checksum")).thenReturn(baselineChecksum);
+        when(invalidIndexes.next()).thenReturn(true, false, false);
+        when(invalidIndexes.getString("relname")).thenReturn("idx_workouts_user_id_id");
+
+        new MigrationRunner(true, 1000).migrate();
+
+        verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_workouts_user_id_id");
+        verify(statement).execute(contains("CONCURRENTLY IF NOT EXISTS idx_workouts_user_id_id"));
+        verify(preparedStatement).setInt(1, 2);
+    }
+}
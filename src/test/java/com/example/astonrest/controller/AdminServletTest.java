@@ -0,0 +1,247 @@
+package com.example.astonrest.controller;
+
+import com.example.astonrest.dto.ImportResultDTO;
+import com.example.astonrest.dto.PartitionArchiveDTO;
+import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.service.BulkDataService;
+import com.example.astonrest.service.WorkoutPartitionService;
+import com.example.astonrest.service.WorkoutService;
+import com.google.gson.Gson;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminServletTest {
+    @Mock
+    private BulkDataService bulkDataService;
+    @Mock
+    private WorkoutPartitionService partitionService;
+    @Mock
+    private WorkoutService workoutService;
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+
+    private AdminServlet adminServlet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        adminServlet = new AdminServlet();
+
+        // Устанавливаем мок и токен в приватные поля через Рефлексию
+        setField(adminServlet, "bulkDataService", bulkDataService);
+        setField(adminServlet, "partitionService", partitionService);
+        setField(adminServlet, "workoutService", workoutService);
+        setField(adminServlet, "adminToken", "secret");
+
+        lenient().when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    }
+
+    @Test
+    void testImportWorkouts() throws Exception {
+        BufferedReader body = new BufferedReader(new StringReader("running,30,1\n"));
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/import/workouts");
+        when(request.getParameter("header")).thenReturn("true");
+        when(request.getReader()).thenReturn(body);
+        when(bulkDataService.importWorkouts(body, true)).thenReturn(new ImportResultDTO("workouts", 1));
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(bulkDataService, times(1)).importWorkouts(body, true);
+    }
+
+    @Test
+    void testArchivePartitions() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/partitions/archive");
+        when(request.getParameter("before")).thenReturn("2024-01-01");
+        when(partitionService.archivePartitionsBefore("2024-01-01"))
+                .thenReturn(new PartitionArchiveDTO(List.of("workouts_2023_11", "workouts_2023_12")));
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals("{\"archivedPartitions\":[\"workouts_2023_11\",\"workouts_2023_12\"]}", body.toString());
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testArchivePartitionsWithInvalidBoundaryReturnsBadRequest() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/partitions/archive");
+        when(request.getParameter("before")).thenReturn("2024-01-15");
+        when(partitionService.archivePartitionsBefore("2024-01-15"))
+                .thenThrow(new BadRequestException("Parameter 'before' must be the first day of a month"));
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    void testImportWithoutTokenIsForbidden() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn(null);
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_FORBIDDEN);
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testImportIsDisabledWithoutConfiguredToken() throws Exception {
+        setField(adminServlet, "adminToken", "");
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_FORBIDDEN);
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testImportIntoUnknownTable() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/import/users");
+
+        adminServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testExportWorkoutsStreamsCsv() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/export/workouts");
+        when(request.getParameter("format")).thenReturn(null);
+        when(request.getParameter("fromUserId")).thenReturn("10");
+        when(request.getParameter("toUserId")).thenReturn(null);
+        when(response.getOutputStream()).thenReturn(new TestOutputStream(body));
+        when(bulkDataService.exportWorkouts(eq(10), eq(Integer.MAX_VALUE), any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    OutputStream out = invocation.getArgument(2);
+                    out.write("id,type,duration,calories_burned,user_id\n1,running,30,360,10\n".getBytes());
+                    return 1L;
+                });
+
+        adminServlet.doGet(request, response);
+
+        verify(response).setContentType("text/csv");
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals("id,type,duration,calories_burned,user_id\n1,running,30,360,10\n", body.toString());
+    }
+
+    @Test
+    void testExportWorkoutsAsJsonStreamsArrayToOutputStream() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        List<WorkoutDTO> workouts = List.of(new WorkoutDTO("running", 30, 360, 1, "2024-01-31T10:15:30Z"),
+                new WorkoutDTO("cycling", 45, 400, 2, "2024-02-01T08:00:00Z"));
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/export/workouts");
+        when(request.getParameter("format")).thenReturn("json");
+        when(response.getOutputStream()).thenReturn(new TestOutputStream(body));
+        doAnswer(invocation -> {
+            Consumer<WorkoutDTO> consumer = invocation.getArgument(0);
+            workouts.forEach(consumer);
+            return null;
+        }).when(workoutService).exportWorkouts(any());
+
+        adminServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response, never()).getWriter();
+        WorkoutDTO[] exported = new Gson().fromJson(body.toString(StandardCharsets.UTF_8), WorkoutDTO[].class);
+        assertEquals(workouts, List.of(exported));
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testExportWorkoutsAsJsonWithoutTokenIsForbidden() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn(null);
+
+        adminServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_FORBIDDEN);
+        verifyNoInteractions(workoutService);
+    }
+
+    @Test
+    void testExportWithInvalidRangeReturnsJsonError() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/export/users");
+        when(request.getParameter("fromUserId")).thenReturn("abc");
+
+        adminServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(bulkDataService);
+    }
+
+    @Test
+    void testExportFailureBeforeCommitResetsResponse() throws Exception {
+        when(request.getHeader("X-Admin-Token")).thenReturn("secret");
+        when(request.getPathInfo()).thenReturn("/export/user_meals");
+        when(response.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+        when(response.isCommitted()).thenReturn(false);
+        when(bulkDataService.exportUserMeals(eq(0), eq(Integer.MAX_VALUE), any(OutputStream.class)))
+                .thenThrow(new RuntimeException("COPY failed"));
+
+        adminServlet.doGet(request, response);
+
+        verify(response).reset();
+        verify(response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static class TestOutputStream extends ServletOutputStream {
+        private final OutputStream target;
+
+        TestOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
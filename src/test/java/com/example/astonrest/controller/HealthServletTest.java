@@ -0,0 +1,85 @@
+package com.example.astonrest.controller;
+
+import com.example.astonrest.config.WarmupRunner;
+import com.example.astonrest.dto.WorkoutIngestStatsDTO;
+import com.example.astonrest.service.WorkoutIngestQueue;
+import com.google.gson.Gson;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HealthServletTest {
+    @Mock
+    private WarmupRunner warmupRunner;
+    @Mock
+    private WorkoutIngestQueue ingestQueue;
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+
+    private HealthServlet healthServlet;
+
+    private StringWriter body;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        healthServlet = new HealthServlet(warmupRunner, ingestQueue);
+        body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+    }
+
+    @Test
+    void testNotReadyWhileWarmingUp() throws Exception {
+        when(request.getPathInfo()).thenReturn("/ready");
+        when(warmupRunner.isReady()).thenReturn(false);
+
+        healthServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void testReadyAfterWarmup() throws Exception {
+        when(request.getPathInfo()).thenReturn("/ready");
+        when(warmupRunner.isReady()).thenReturn(true);
+
+        healthServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    void testLivenessDoesNotDependOnWarmup() throws Exception {
+        when(request.getPathInfo()).thenReturn("/live");
+
+        healthServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verifyNoInteractions(warmupRunner);
+    }
+
+    @Test
+    void testIngestReportsQueueStats() throws Exception {
+        WorkoutIngestStatsDTO stats = new WorkoutIngestStatsDTO(true, 3, 100, 0, 10, 1, 6, 1, 2, 0, 4, 9);
+        when(request.getPathInfo()).thenReturn("/ingest");
+        when(ingestQueue.getStats()).thenReturn(stats);
+
+        healthServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals(stats, new Gson().fromJson(body.toString(), WorkoutIngestStatsDTO.class));
+        verifyNoInteractions(warmupRunner);
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.astonrest.controller;
 
 import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.exception.ServiceUnavailableException;
 import com.example.astonrest.service.MealService;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -62,26 +67,69 @@ class MealServletTest {
     }
 
     @Test
-    void testGetAllMeals() throws Exception {
+    void testGetMeals() throws Exception {
         when(request.getPathInfo()).thenReturn(null);
-        when(mealService.getAllMeals()).thenReturn(EXPECTED_MEALS_DTOS);
+        when(mealService.getVersionedMeals(PageRequest.first()))
+                .thenReturn(new Versioned<>(new PageDTO<>(EXPECTED_MEALS_DTOS, null), 9L));
 
         mealServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(mealService, times(1)).getAllMeals();
+        verify(response).setHeader("ETag", "\"meals-v9\"");
+        verify(mealService, times(1)).getVersionedMeals(PageRequest.first());
+        verify(mealService, never()).getMealsETag();
+    }
+
+    @Test
+    void testFailedMealsReadHasNoETag() throws Exception {
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getHeader("If-None-Match")).thenReturn("\"meals-v8\"");
+        when(mealService.getMealsETag()).thenReturn("\"meals-v9\"");
+        when(mealService.getVersionedMeals(PageRequest.first()))
+                .thenThrow(new ServiceUnavailableException("Service is temporarily unavailable", 1, null));
+
+        mealServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(response, never()).setHeader(eq("ETag"), anyString());
+    }
+
+    @Test
+    void testGetUnchangedMealsReturnsNotModified() throws Exception {
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getHeader("If-None-Match")).thenReturn("\"meals-v9\"");
+        when(mealService.getMealsETag()).thenReturn("\"meals-v9\"");
+
+        mealServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(mealService, never()).getVersionedMeals(any());
     }
 
     @Test
     void testGetMealsByUserId() throws Exception {
         int userId = 1;
         when(request.getPathInfo()).thenReturn("/user/1");
-        when(mealService.getMealsByUserId(userId)).thenReturn(EXPECTED_MEALS_DTOS);
+        when(mealService.getMealsByUserId(userId, PageRequest.first())).thenReturn(new PageDTO<>(EXPECTED_MEALS_DTOS, null));
+
+        mealServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(mealService, times(1)).getMealsByUserId(userId, PageRequest.first());
+    }
+
+    @Test
+    void testSearchMeals() throws Exception {
+        when(request.getPathInfo()).thenReturn("/search");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("q")).thenReturn("pas");
+        when(request.getParameter("limit")).thenReturn("5");
+        when(mealService.searchMeals("pas", 5)).thenReturn(List.of(new MealSearchResultDTO(1, "Pasta", 500, 1.0)));
 
         mealServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(mealService, times(1)).getMealsByUserId(userId);
+        verify(mealService, times(1)).searchMeals("pas", 5);
     }
 
     @Test
@@ -1,11 +1,25 @@
 package com.example.astonrest.controller;
 
+import com.example.astonrest.constants.ApiConstants;
 import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealStatsDTO;
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserMealLinkResultDTO;
+import com.example.astonrest.dto.UserMealUnlinkResultDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
 import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.service.MealService;
 import com.example.astonrest.service.UserService;
 import com.example.astonrest.service.WorkoutService;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -18,8 +32,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.*;
 import java.lang.reflect.Field;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -60,40 +81,257 @@ class UserServletTest {
     @Test
     void testGetUserById() throws Exception {
         when(request.getPathInfo()).thenReturn("/1"); // Симулируем путь /users/1
-        when(userService.getUserById(1)).thenReturn(EXPECTED_USERS_DTOS.get(0));
+        when(userService.getVersionedUserById(1)).thenReturn(new Versioned<>(EXPECTED_USERS_DTOS.get(0), 4L));
 
         userServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK); // Проверяем, что статус 200
-        verify(userService, times(1)).getUserById(1); // Проверяем вызов метода сервиса
+        verify(response).setHeader("ETag", "\"user-1-v4\"");
+        verify(userService, times(1)).getVersionedUserById(1); // Проверяем вызов метода сервиса
+        verify(userService, never()).getUserETag(anyInt()); // Без If-None-Match версия отдельно не читается
     }
 
     @Test
-    void testGetAllUsers() throws Exception {
+    void testGetMissingUserHasNoETag() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-99-v1\"");
+        when(userService.getUserETag(99)).thenReturn(null);
+        when(userService.getVersionedUserById(99)).thenReturn(null);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+        verify(response, never()).setHeader(eq("ETag"), anyString());
+    }
+
+    @Test
+    void testGetUnchangedUserReturnsNotModified() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-v4\"");
+        when(userService.getUserETag(1)).thenReturn("\"user-1-v4\"");
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", "\"user-1-v4\"");
+        verify(userService, never()).getVersionedUserById(anyInt());
+    }
+
+    @Test
+    void testGetChangedUserWorkoutsReturnsBodyWithNewETag() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/workouts");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-workouts-v6\"");
+        when(workoutService.getUserWorkoutsETag(1)).thenReturn("\"user-1-workouts-v7\"");
+        when(workoutService.getVersionedWorkoutsByUserId(1, DateRange.unbounded(), PageRequest.first()))
+                .thenReturn(new Versioned<>(new PageDTO<>(List.of(), null), 7L));
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("ETag", "\"user-1-workouts-v7\"");
+    }
+
+    @Test
+    void testUserWorkoutsETagIsTakenFromVersionReadWithBody() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/workouts");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-workouts-v6\"");
+        // Версия для сравнения пришла с реплики новее той, с которой прочитано тело
+        when(workoutService.getUserWorkoutsETag(1)).thenReturn("\"user-1-workouts-v8\"");
+        when(workoutService.getVersionedWorkoutsByUserId(1, DateRange.unbounded(), PageRequest.first()))
+                .thenReturn(new Versioned<>(new PageDTO<>(List.of(), null), 7L));
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("ETag", "\"user-1-workouts-v7\"");
+        verify(response, never()).setHeader("ETag", "\"user-1-workouts-v8\"");
+    }
+
+    @Test
+    void testGetUserProfile() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/1/profile");
+        UserProfileDTO profile = new UserProfileDTO("Alice", 28, 60.0, 170,
+                List.of(new WorkoutDTO("Running", 30, 360, 1, null)), List.of(new MealDTO("Salad", 150)));
+        when(userService.getUserProfile(1)).thenReturn(profile);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(userService, never()).getUserById(anyInt());
+        verifyNoInteractions(workoutService, mealService);
+        assertEquals(profile, gson.fromJson(body.toString(), UserProfileDTO.class));
+    }
+
+    @Test
+    void testGetMissingUserProfile() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99/profile");
+        when(userService.getUserProfile(99)).thenReturn(null);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    void testGetUserStats() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/1/stats");
+        UserStatsDTO stats = new UserStatsDTO(2, 720, 450);
+        when(userService.getUserStats(1)).thenReturn(stats);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verifyNoInteractions(workoutService, mealService);
+        assertEquals(stats, gson.fromJson(body.toString(), UserStatsDTO.class));
+    }
+
+    @Test
+    void testGetUserStatsGroupedByType() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/1/stats");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("groupBy")).thenReturn("type");
+        when(userService.getUserStats(1)).thenReturn(new UserStatsDTO(2, 720, 450));
+        List<WorkoutStatsDTO> byType = List.of(new WorkoutStatsDTO("Running", 2, 60, 720, 30, 360));
+        when(workoutService.getWorkoutStatsByUserId(1)).thenReturn(byType);
+        when(mealService.getMealStatsByUserId(1)).thenReturn(new MealStatsDTO(3, 450, 150));
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals(new UserStatsDTO(2, 720, 450, byType, new MealStatsDTO(3, 450, 150)),
+                gson.fromJson(body.toString(), UserStatsDTO.class));
+    }
+
+    @Test
+    void testGetUserStatsWithUnknownGroupingIsBadRequest() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/stats");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("groupBy")).thenReturn("meal");
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testGetMissingUserStats() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99/stats");
+        when(userService.getUserStats(99)).thenReturn(null);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    void testGetUsers() throws Exception {
         when(request.getPathInfo()).thenReturn(null);
-        when(userService.getAllUsers()).thenReturn(EXPECTED_USERS_DTOS);
+        when(userService.getUsers(PageRequest.first())).thenReturn(new PageDTO<>(EXPECTED_USERS_DTOS, null));
 
         userServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getUsers(PageRequest.first());
+    }
+
+    @Test
+    void testGetUsersByIds() throws Exception {
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("ids")).thenReturn("3,1");
+        when(userService.getUsersByIds(new IdListRequest(List.of(3, 1))))
+                .thenReturn(new MultiGetDTO<>(Map.of(1, EXPECTED_USERS_DTOS.get(0)), List.of(3)));
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(userService, never()).getUsers(any());
+    }
+
+    @Test
+    void testGetUsersByTooManyIds() throws Exception {
+        String ids = IntStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("ids")).thenReturn(ids);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testGetUsersWithInvalidLimit() throws Exception {
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn("0");
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verify(userService, never()).getUsers(any());
     }
 
     @Test
     void testGetUserWorkouts() throws IOException {
         int userId = 1;
         List<WorkoutDTO> expectedWorkouts = List.of(
-                new WorkoutDTO("Running", 30, 360, userId),
-                new WorkoutDTO("Swimming", 45, 400, userId)
+                new WorkoutDTO("Running", 30, 360, userId, null),
+                new WorkoutDTO("Swimming", 45, 400, userId, null)
         );
 
         when(request.getPathInfo()).thenReturn("/1/workouts");
-        when(workoutService.getWorkoutsByUserId(userId)).thenReturn(expectedWorkouts);
+        when(workoutService.getVersionedWorkoutsByUserId(userId, DateRange.unbounded(), PageRequest.first()))
+                .thenReturn(new Versioned<>(new PageDTO<>(expectedWorkouts, null), 2L));
 
         userServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(workoutService, times(1)).getWorkoutsByUserId(userId);
+        verify(workoutService, times(1)).getVersionedWorkoutsByUserId(userId, DateRange.unbounded(), PageRequest.first());
+    }
+
+    @Test
+    void testGetUserWorkoutsForPeriod() throws IOException {
+        DateRange january = new DateRange(Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-02-01T00:00:00Z"));
+
+        when(request.getPathInfo()).thenReturn("/1/workouts");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("from")).thenReturn("2024-01-01");
+        when(request.getParameter("to")).thenReturn("2024-02-01T00:00:00Z");
+        when(workoutService.getVersionedWorkoutsByUserId(1, january, PageRequest.first()))
+                .thenReturn(Versioned.unversioned(new PageDTO<>(List.of(), null)));
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(workoutService, times(1)).getVersionedWorkoutsByUserId(1, january, PageRequest.first());
+    }
+
+    @Test
+    void testGetUserWorkoutsWithReversedPeriodReturnsBadRequest() throws IOException {
+        when(request.getPathInfo()).thenReturn("/1/workouts");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("from")).thenReturn("2024-02-01");
+        when(request.getParameter("to")).thenReturn("2024-01-01");
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(workoutService);
     }
 
     @Test
@@ -105,12 +343,12 @@ class UserServletTest {
         );
 
         when(request.getPathInfo()).thenReturn("/1/meals");
-        when(mealService.getMealsByUserId(userId)).thenReturn(expectedMeals);
+        when(mealService.getMealsByUserId(userId, PageRequest.first())).thenReturn(new PageDTO<>(expectedMeals, null));
 
         userServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(mealService, times(1)).getMealsByUserId(userId);
+        verify(mealService, times(1)).getMealsByUserId(userId, PageRequest.first());
     }
 
     @Test
@@ -126,6 +364,96 @@ class UserServletTest {
         verify(userService, times(1)).createUser(any(UserDTO.class));
     }
 
+    @Test
+    void testLinkMealsToUser() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/1/meals");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("[1, 2, 3]")));
+        UserMealLinkResultDTO result = new UserMealLinkResultDTO(1, 1, List.of(3));
+        when(mealService.linkMealsToUser(1, List.of(1, 2, 3))).thenReturn(result);
+
+        userServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals(result, gson.fromJson(body.toString(), UserMealLinkResultDTO.class));
+        verify(userService, never()).createUser(any(UserDTO.class));
+    }
+
+    @Test
+    void testLinkMealsToMissingUserReturnsNotFound() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99/meals");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("[1]")));
+        when(mealService.linkMealsToUser(99, List.of(1))).thenThrow(new NotFoundException("User not found"));
+
+        userServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    void testLinkMealsWithMalformedBodyReturnsBadRequest() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/meals");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"mealIds\": [1]}")));
+
+        userServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(mealService);
+    }
+
+    @Test
+    void testCreateUserWithMalformedBodyReportsUserPayloadError() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn(null);
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"name\": \"John\", \"age\": \"old\"}")));
+
+        userServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        assertTrue(body.toString().contains(ApiConstants.INVALID_USER_PAYLOAD));
+        assertFalse(body.toString().contains(ApiConstants.MEAL_IDS_ARE_REQUIRED));
+        verifyNoInteractions(userService, mealService);
+    }
+
+    @Test
+    void testUnlinkMealsFromUser() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/meals");
+        when(request.getParameter("ids")).thenReturn("2,5");
+        when(mealService.unlinkMealsFromUser(1, List.of(2, 5)))
+                .thenReturn(new UserMealUnlinkResultDTO(1, 1));
+
+        userServlet.doDelete(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(userService, never()).deleteUser(anyInt());
+    }
+
+    @Test
+    void testUnlinkMealsFromMissingUserReturnsNotFound() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99/meals");
+        when(request.getParameter("ids")).thenReturn("2");
+        when(mealService.unlinkMealsFromUser(99, List.of(2))).thenThrow(new NotFoundException("User not found"));
+
+        userServlet.doDelete(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    void testUnlinkMealsAcceptsMoreIdsThanMultiGet() throws Exception {
+        // Отвязка ограничена meal.linkMaxSize, как и привязка, а не лимитом multiget.maxIds
+        List<Integer> ids = IntStream.rangeClosed(1, 150).boxed().collect(Collectors.toList());
+        when(request.getPathInfo()).thenReturn("/1/meals");
+        when(request.getParameter("ids")).thenReturn(ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        when(mealService.unlinkMealsFromUser(1, ids)).thenReturn(new UserMealUnlinkResultDTO(150, 0));
+
+        userServlet.doDelete(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+    }
+
     @Test
     void testUpdateUser() throws Exception {
         UserDTO updatedUser = EXPECTED_USERS_DTOS.get(1);
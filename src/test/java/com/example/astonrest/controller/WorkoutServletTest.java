@@ -1,7 +1,18 @@
 package com.example.astonrest.controller;
 
+import com.example.astonrest.dto.BatchItemResultDTO;
+import com.example.astonrest.dto.LeaderboardDTO;
+import com.example.astonrest.dto.LeaderboardEntryDTO;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.dto.WorkoutAcceptedDTO;
 import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
+import com.example.astonrest.dto.WorkoutStatsSummaryDTO;
+import com.example.astonrest.exception.NotFoundException;
+import com.example.astonrest.exception.ServiceUnavailableException;
 import com.example.astonrest.service.WorkoutService;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.PageRequest;
 import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -16,6 +27,7 @@ import java.io.*;
 import java.lang.reflect.Field;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,8 +40,8 @@ class WorkoutServletTest {
     private HttpServletResponse response;
 
     private static final List<WorkoutDTO> EXPECTED_WORKOUTS_DTOS = List.of(
-            new WorkoutDTO("Running", 30, 360, 1),
-            new WorkoutDTO("Cycling", 45, 315, 2)
+            new WorkoutDTO("Running", 30, 360, 1, null),
+            new WorkoutDTO("Cycling", 45, 315, 2, null)
     );
     private final Gson gson = new Gson();
     private WorkoutServlet workoutServlet;
@@ -59,14 +71,38 @@ class WorkoutServletTest {
     }
 
     @Test
-    void testGetAllWorkouts() throws Exception {
-        when(workoutService.getAllWorkouts()).thenReturn(EXPECTED_WORKOUTS_DTOS);
+    void testGetWorkouts() throws Exception {
+        when(workoutService.getWorkouts(PageRequest.first())).thenReturn(new PageDTO<>(EXPECTED_WORKOUTS_DTOS, null));
         when(request.getPathInfo()).thenReturn("/");
 
         workoutServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(workoutService, times(1)).getAllWorkouts();
+        verify(workoutService, times(1)).getWorkouts(PageRequest.first());
+    }
+
+    @Test
+    void testGetWorkoutsNextPage() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn("Mg"); // курсор записи с ID 2
+        when(request.getParameter("limit")).thenReturn("5");
+        when(workoutService.getWorkouts(new PageRequest(2, 5))).thenReturn(new PageDTO<>(List.of(), null));
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(workoutService, times(1)).getWorkouts(new PageRequest(2, 5));
+    }
+
+    @Test
+    void testGetWorkoutsWithInvalidCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn("not a cursor");
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verify(workoutService, never()).getWorkouts(any());
     }
 
     @Test
@@ -75,12 +111,64 @@ class WorkoutServletTest {
         List<WorkoutDTO> expectedWorkouts = EXPECTED_WORKOUTS_DTOS;
 
         when(request.getPathInfo()).thenReturn("/users/1");
-        when(workoutService.getWorkoutsByUserId(userId)).thenReturn(expectedWorkouts);
+        when(workoutService.getWorkoutsByUserId(userId, DateRange.unbounded(), PageRequest.first())).thenReturn(new PageDTO<>(expectedWorkouts, null));
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(workoutService, times(1)).getWorkoutsByUserId(userId, DateRange.unbounded(), PageRequest.first());
+    }
+
+    @Test
+    void testGetWorkoutStatsGroupedByType() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/stats");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("from")).thenReturn(null);
+        when(request.getParameter("to")).thenReturn(null);
+        when(request.getParameter("groupBy")).thenReturn("type");
+        WorkoutStatsSummaryDTO summary = new WorkoutStatsSummaryDTO(new WorkoutStatsDTO(null, 2, 75, 675, 37.5, 337.5),
+                List.of(new WorkoutStatsDTO("Running", 1, 30, 360, 30, 360)));
+        when(workoutService.getWorkoutStats(DateRange.unbounded(), "type")).thenReturn(summary);
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertEquals(summary, gson.fromJson(body.toString(), WorkoutStatsSummaryDTO.class));
+    }
+
+    @Test
+    void testGetLeaderboardWithUserRank() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/leaderboard");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn("3");
+        when(request.getParameter("userId")).thenReturn("7");
+        LeaderboardDTO leaderboard = new LeaderboardDTO(List.of(new LeaderboardEntryDTO(1, 2, 900)),
+                new LeaderboardEntryDTO(5, 7, 120));
+        when(workoutService.getLeaderboard(3, 7)).thenReturn(leaderboard);
 
         workoutServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(workoutService, times(1)).getWorkoutsByUserId(userId);
+        assertEquals(leaderboard, gson.fromJson(body.toString(), LeaderboardDTO.class));
+    }
+
+    @Test
+    void testGetLeaderboardWithInvalidUserIdReturnsBadRequest() throws Exception {
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        when(request.getPathInfo()).thenReturn("/leaderboard");
+        when(request.getParameter("after")).thenReturn(null);
+        when(request.getParameter("limit")).thenReturn(null);
+        when(request.getParameter("userId")).thenReturn("abc");
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verifyNoInteractions(workoutService);
     }
 
     @Test
@@ -98,6 +186,56 @@ class WorkoutServletTest {
         verify(workoutService, times(1)).createWorkoutForUser(any(WorkoutDTO.class), eq(1));
     }
 
+    @Test
+    void testCreateWorkoutForUserAsyncReturnsAcceptedWithTrackingId() throws Exception {
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/users/1");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(gson.toJson(EXPECTED_WORKOUTS_DTOS.get(0)))));
+        when(workoutService.isAsyncIngestEnabled()).thenReturn(true);
+        when(workoutService.enqueueWorkoutForUser(EXPECTED_WORKOUTS_DTOS.get(0), 1)).thenReturn("tracking-1");
+
+        workoutServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_ACCEPTED);
+        verify(workoutService, never()).createWorkoutForUser(any(), anyInt());
+        assertEquals("tracking-1", gson.fromJson(body.toString(), WorkoutAcceptedDTO.class).getTrackingId());
+    }
+
+    @Test
+    void testCreateWorkoutForUserAsyncWithFullQueueReturns503() throws Exception {
+        when(request.getPathInfo()).thenReturn("/users/1");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(gson.toJson(EXPECTED_WORKOUTS_DTOS.get(0)))));
+        when(workoutService.isAsyncIngestEnabled()).thenReturn(true);
+        when(workoutService.enqueueWorkoutForUser(any(WorkoutDTO.class), eq(1)))
+                .thenThrow(new ServiceUnavailableException("overloaded", 1, null));
+
+        workoutServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(response).setHeader("Retry-After", "1");
+    }
+
+    @Test
+    void testCreateWorkoutsBatch() throws Exception {
+        String jsonRequest = gson.toJson(EXPECTED_WORKOUTS_DTOS);
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        when(request.getPathInfo()).thenReturn("/users/1/batch");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        List<BatchItemResultDTO> results = List.of(
+                BatchItemResultDTO.created(0, 10),
+                BatchItemResultDTO.failed(1, "Duration must be a positive number.")
+        );
+        when(workoutService.createWorkoutsForUser(EXPECTED_WORKOUTS_DTOS, 1)).thenReturn(results);
+
+        workoutServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_CREATED);
+        verify(workoutService, never()).createWorkoutForUser(any(), anyInt());
+        assertEquals(results, List.of(gson.fromJson(body.toString(), BatchItemResultDTO[].class)));
+    }
+
     @Test
     void testUpdateWorkout() throws Exception {
         WorkoutDTO updatedWorkout = EXPECTED_WORKOUTS_DTOS.get(1);
@@ -112,6 +250,18 @@ class WorkoutServletTest {
         verify(workoutService, times(1)).updateWorkout(eq(2), any(WorkoutDTO.class));
     }
 
+    @Test
+    void testUpdateMissingWorkoutReturnsNotFound() throws Exception {
+        when(request.getPathInfo()).thenReturn("/99");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(gson.toJson(EXPECTED_WORKOUTS_DTOS.get(0)))));
+        doThrow(new NotFoundException("Workout with ID 99 not found."))
+                .when(workoutService).updateWorkout(eq(99), any(WorkoutDTO.class));
+
+        workoutServlet.doPut(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+    }
+
     @Test
     void testDeleteWorkout() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
@@ -122,6 +272,18 @@ class WorkoutServletTest {
         verify(workoutService, times(1)).deleteWorkout(1);
     }
 
+    @Test
+    void testOverloadReturnsServiceUnavailable() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(workoutService.getWorkoutById(1))
+                .thenThrow(new ServiceUnavailableException("overloaded", 2, null));
+
+        workoutServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(response).setHeader("Retry-After", "2");
+    }
+
     // Метод для установки приватного поля через Рефлексию
     private void setField(Object target, String fieldName, Object value) throws Exception {
         Field field = target.getClass().getDeclaredField(fieldName);
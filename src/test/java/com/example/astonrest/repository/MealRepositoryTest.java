@@ -1,6 +1,9 @@
 package com.example.astonrest.repository;
 
 import com.example.astonrest.entity.Meal;
+import com.example.astonrest.entity.MealLinkResult;
+import com.example.astonrest.entity.MealStats;
+import com.example.astonrest.entity.MealUnlinkResult;
 import com.example.astonrest.util.DatabaseUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,10 +13,12 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,13 +37,16 @@ class MealRepositoryTest {
 
     private static final String SQL_INSERT_MEAL = "INSERT INTO meals (name, calories) VALUES (?, ?)";
     private static final String SQL_SELECT_MEAL_BY_ID = "SELECT * FROM meals WHERE id = ?";
-    private static final String SQL_SELECT_ALL_MEALS = "SELECT * FROM meals";
-    private static final String SQL_UPDATE_MEAL = "UPDATE meals SET name = ?, calories = ? WHERE id = ?";
-    private static final String SQL_DELETE_MEAL = "DELETE FROM meals WHERE id = ?";
+    private static final String SQL_SELECT_MEALS_PAGE = "SELECT * FROM meals WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SQL_UPDATE_MEAL = "UPDATE meals SET name = ?, calories = ? WHERE id = ? RETURNING *";
+    private static final String SQL_DELETE_MEAL = "DELETE FROM meals WHERE id = ? RETURNING id";
     private static final String SQL_SELECT_MEALS_BY_USER_ID =
             "SELECT m.* FROM meals m " +
                     "JOIN user_meals um ON m.id = um.meal_id " +
-                    "WHERE um.user_id = ?";
+                    "WHERE um.user_id = ? AND um.meal_id > ? " +
+                    "ORDER BY um.meal_id LIMIT ?";
+
+    private static final String SQL_SELECT_ALL_MEAL_NAMES = "SELECT id, name, calories FROM meals ORDER BY id";
 
     private static final List<Meal> EXPECTED_MEALS = List.of(
             new Meal(1, "Pasta", 500, List.of(1, 2)),
@@ -51,6 +59,7 @@ class MealRepositoryTest {
 
         mockedDatabaseUtil = mockStatic(DatabaseUtil.class);
         mockedDatabaseUtil.when(DatabaseUtil::getConnection).thenReturn(mockConnection);
+        mockedDatabaseUtil.when(DatabaseUtil::getReadConnection).thenReturn(mockConnection);
 
         lenient().when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
         lenient().when(mockConnection.prepareStatement(anyString(), anyInt())).thenReturn(mockPreparedStatement);
@@ -100,22 +109,24 @@ class MealRepositoryTest {
     }
 
     @Test
-    void testFindAllMeals() throws SQLException {
-        when(mockConnection.prepareStatement(SQL_SELECT_ALL_MEALS)).thenReturn(mockPreparedStatement);
+    void testFindMeals() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_MEALS_PAGE)).thenReturn(mockPreparedStatement);
         when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
         when(mockResultSet.next()).thenReturn(true, true, false);  // два результата, затем false
         when(mockResultSet.getInt("id")).thenReturn(EXPECTED_MEALS.get(0).getId(), EXPECTED_MEALS.get(1).getId());
         when(mockResultSet.getString("name")).thenReturn(EXPECTED_MEALS.get(0).getName(), EXPECTED_MEALS.get(1).getName());
         when(mockResultSet.getInt("calories")).thenReturn(EXPECTED_MEALS.get(0).getCalories(), EXPECTED_MEALS.get(1).getCalories());
 
-        List<Meal> actualMeals = mealRepository.findAllMeals();
+        List<Meal> actualMeals = mealRepository.findMeals(0, 21);
 
         assertNotNull(actualMeals);
         assertEquals(EXPECTED_MEALS.size(), actualMeals.size());
         assertEquals(EXPECTED_MEALS.get(0).getName(), actualMeals.get(0).getName());
         assertEquals(EXPECTED_MEALS.get(1).getName(), actualMeals.get(1).getName());
 
-        verify(mockConnection, times(1)).prepareStatement(SQL_SELECT_ALL_MEALS);
+        verify(mockConnection, times(1)).prepareStatement(SQL_SELECT_MEALS_PAGE);
+        verify(mockPreparedStatement, times(1)).setInt(1, 0);
+        verify(mockPreparedStatement, times(1)).setInt(2, 21);
         verify(mockPreparedStatement, times(1)).executeQuery();
     }
 
@@ -125,23 +136,88 @@ class MealRepositoryTest {
         updatedMeal.setName("Updated Pasta");
 
         when(mockConnection.prepareStatement(SQL_UPDATE_MEAL)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt("id")).thenReturn(updatedMeal.getId());
+        when(mockResultSet.getString("name")).thenReturn(updatedMeal.getName());
+        when(mockResultSet.getInt("calories")).thenReturn(updatedMeal.getCalories());
 
-        mealRepository.update(updatedMeal);
+        Meal actualMeal = mealRepository.update(updatedMeal);
 
         verify(mockPreparedStatement, times(1)).setString(1, updatedMeal.getName());
         verify(mockPreparedStatement, times(1)).setInt(2, updatedMeal.getCalories());
         verify(mockPreparedStatement, times(1)).setInt(3, updatedMeal.getId());
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
+        assertEquals("Updated Pasta", actualMeal.getName());
     }
 
     @Test
     void testDeleteMeal() throws SQLException {
         when(mockConnection.prepareStatement(SQL_DELETE_MEAL)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
 
-        mealRepository.delete(1);
+        assertTrue(mealRepository.delete(1));
 
         verify(mockPreparedStatement, times(1)).setInt(1, 1);
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void testLinkMealsToUserInOneStatement() throws SQLException {
+        Array idArray = mock(Array.class);
+        Array missingArray = mock(Array.class);
+        when(mockConnection.createArrayOf("integer", new Object[]{1, 2, 3})).thenReturn(idArray);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getBoolean("user_found")).thenReturn(true);
+        when(mockResultSet.getInt("linked")).thenReturn(2);
+        when(mockResultSet.getArray("missing_meal_ids")).thenReturn(missingArray);
+        when(missingArray.getArray()).thenReturn(new Integer[]{3});
+
+        MealLinkResult result = mealRepository.linkMealsToUser(7, List.of(1, 2, 3));
+
+        assertEquals(new MealLinkResult(true, 2, List.of(3)), result);
+        verify(mockConnection, times(1)).prepareStatement(startsWith("WITH requested AS (SELECT DISTINCT unnest(?::int[])"));
+        verify(mockPreparedStatement).setArray(1, idArray);
+        verify(mockPreparedStatement).setInt(2, 7);
+        verify(mockPreparedStatement).setInt(3, 7);
+        verify(mockPreparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void testUnlinkMealsFromUser() throws SQLException {
+        Array idArray = mock(Array.class);
+        when(mockConnection.createArrayOf("integer", new Object[]{2, 5})).thenReturn(idArray);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getBoolean("user_found")).thenReturn(true);
+        when(mockResultSet.getInt("unlinked")).thenReturn(2);
+
+        assertEquals(new MealUnlinkResult(true, 2), mealRepository.unlinkMealsFromUser(1, List.of(2, 5)));
+
+        verify(mockConnection).prepareStatement(startsWith("WITH deleted AS (DELETE FROM user_meals"));
+        verify(mockPreparedStatement).setInt(1, 1);
+        verify(mockPreparedStatement).setArray(2, idArray);
+        verify(mockPreparedStatement).setInt(3, 1);
+    }
+
+    @Test
+    void testStreamAllMealsUsesCursor() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_ALL_MEAL_NAMES)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getInt("id")).thenReturn(1);
+        when(mockResultSet.getString("name")).thenReturn("Pasta");
+        when(mockResultSet.getInt("calories")).thenReturn(500);
+
+        List<Meal> streamed = new ArrayList<>();
+        mealRepository.streamAllMeals(streamed::add);
+
+        assertEquals(List.of(new Meal(1, "Pasta", 500, List.of())), streamed);
+        verify(mockConnection).setAutoCommit(false);
+        verify(mockPreparedStatement).setFetchSize(500);
+        verify(mockConnection).setAutoCommit(true);
     }
 
     @Test
@@ -156,13 +232,30 @@ class MealRepositoryTest {
         when(mockResultSet.getString("name")).thenReturn(EXPECTED_MEALS.get(0).getName());
         when(mockResultSet.getInt("calories")).thenReturn(EXPECTED_MEALS.get(0).getCalories());
 
-        List<Meal> actualMeals = mealRepository.findMealsByUserId(userId);
+        List<Meal> actualMeals = mealRepository.findMealsByUserId(userId, 0, 21);
 
         assertNotNull(actualMeals);
         assertEquals(1, actualMeals.size());
         assertEquals(EXPECTED_MEALS.get(0).getName(), actualMeals.get(0).getName());
 
+        verify(mockPreparedStatement, times(1)).setInt(1, userId);
+        verify(mockPreparedStatement, times(1)).setInt(2, 0);
+        verify(mockPreparedStatement, times(1)).setInt(3, 21);
         verify(mockPreparedStatement, times(1)).executeQuery();
         verify(mockResultSet, times(2)).next();
     }
+
+    @Test
+    void testFindMealStatsByUserId() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong("meal_count")).thenReturn(2L);
+        when(mockResultSet.getLong("total_calories")).thenReturn(700L);
+        when(mockResultSet.getDouble("avg_calories")).thenReturn(350.0);
+
+        MealStats stats = mealRepository.findMealStatsByUserId(1);
+
+        verify(mockPreparedStatement).setInt(1, 1);
+        assertEquals(new MealStats(2, 700, 350.0), stats);
+    }
 }
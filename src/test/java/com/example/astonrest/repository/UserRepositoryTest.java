@@ -1,7 +1,10 @@
 package com.example.astonrest.repository;
 
 import com.example.astonrest.entity.User;
+import com.example.astonrest.entity.UserStats;
+import com.example.astonrest.entity.Workout;
 import com.example.astonrest.util.DatabaseUtil;
+import com.example.astonrest.util.Versioned;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,9 +36,9 @@ class UserRepositoryTest {
 
     private static final String SQL_INSERT_USER = "INSERT INTO users (name, age, weight, height) VALUES (?,?,?,?)";
     private static final String SQL_SELECT_USER_BY_ID = "SELECT * FROM users WHERE id = ?";
-    private static final String SQL_SELECT_ALL_USERS = "SELECT * FROM users";
-    private static final String SQL_UPDATE_USER = "UPDATE users SET name = ?, age = ?, weight = ?, height = ? WHERE id = ?";
-    private static final String SQL_DELETE_USER = "DELETE FROM users WHERE id = ?";
+    private static final String SQL_SELECT_USERS_PAGE = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SQL_UPDATE_USER = "UPDATE users SET name = ?, age = ?, weight = ?, height = ? WHERE id = ? RETURNING *";
+    private static final String SQL_DELETE_USER = "DELETE FROM users WHERE id = ? RETURNING id";
 
     private static final List<User> EXPECTED_USERS = List.of(
             new User(1, "Alice", 25, 60.5, 165, new ArrayList<>(), new ArrayList<>()),
@@ -49,6 +52,7 @@ class UserRepositoryTest {
         // Мокаем статический метод DatabaseUtil.getConnection()
         mockedDatabaseUtil = mockStatic(DatabaseUtil.class);
         mockedDatabaseUtil.when(DatabaseUtil::getConnection).thenReturn(mockConnection);
+        mockedDatabaseUtil.when(DatabaseUtil::getReadConnection).thenReturn(mockConnection);
 
         // Общие мокирования для всех тестов
         lenient().when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
@@ -104,8 +108,8 @@ class UserRepositoryTest {
     }
 
     @Test
-    void testFindAllUsers() throws SQLException {
-        when(mockConnection.prepareStatement(SQL_SELECT_ALL_USERS)).thenReturn(mockPreparedStatement);
+    void testFindUsers() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_USERS_PAGE)).thenReturn(mockPreparedStatement);
         when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
         when(mockResultSet.next()).thenReturn(true, true, false);
         when(mockResultSet.getInt("id")).thenReturn(EXPECTED_USERS.get(0).getId(), EXPECTED_USERS.get(1).getId());
@@ -114,7 +118,7 @@ class UserRepositoryTest {
         when(mockResultSet.getDouble("weight")).thenReturn(EXPECTED_USERS.get(0).getWeight(), EXPECTED_USERS.get(1).getWeight());
         when(mockResultSet.getDouble("height")).thenReturn(EXPECTED_USERS.get(0).getHeight(), EXPECTED_USERS.get(1).getHeight());
 
-        List<User> actualUsers = userRepository.findAllUsers();
+        List<User> actualUsers = userRepository.findUsers(0, 21);
 
         assertNotNull(actualUsers);
         assertEquals(EXPECTED_USERS.size(), actualUsers.size());
@@ -123,34 +127,120 @@ class UserRepositoryTest {
         assertEquals(EXPECTED_USERS.get(1).getName(), actualUsers.get(1).getName());
         assertEquals(EXPECTED_USERS.get(1).getAge(), actualUsers.get(1).getAge());
 
-        verify(mockConnection, times(1)).prepareStatement(SQL_SELECT_ALL_USERS);
+        verify(mockConnection, times(1)).prepareStatement(SQL_SELECT_USERS_PAGE);
+        verify(mockPreparedStatement, times(1)).setInt(1, 0);
+        verify(mockPreparedStatement, times(1)).setInt(2, 21);
         verify(mockPreparedStatement, times(1)).executeQuery();
     }
 
+    @Test
+    void testFindUserProfileById() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.getInt("id")).thenReturn(1);
+        when(mockResultSet.getString("name")).thenReturn("Alice");
+        when(mockResultSet.getInt("age")).thenReturn(25);
+        when(mockResultSet.getDouble("weight")).thenReturn(60.5);
+        when(mockResultSet.getDouble("height")).thenReturn(165.0);
+        when(mockResultSet.getString("workouts")).thenReturn(
+                "[{\"id\":3,\"type\":\"Running\",\"duration\":30,\"caloriesBurned\":360,\"userId\":1}]");
+        when(mockResultSet.getString("meals")).thenReturn("[]");
+
+        User profile = userRepository.findUserProfileById(1);
+
+        verify(mockPreparedStatement, times(1)).setInt(1, 1);
+        verify(mockPreparedStatement, times(1)).executeQuery();
+        assertEquals("Alice", profile.getName());
+        assertEquals(List.of(new Workout(3, "Running", 30, 360, 1, null)), profile.getWorkouts());
+        assertTrue(profile.getMeals().isEmpty());
+    }
+
+    @Test
+    void testFindUserStatsById() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt("user_id")).thenReturn(1);
+        when(mockResultSet.getInt("workout_count")).thenReturn(2);
+        when(mockResultSet.getLong("calories_burned")).thenReturn(720L);
+        when(mockResultSet.getLong("calories_eaten")).thenReturn(450L);
+
+        UserStats stats = userRepository.findUserStatsById(1);
+
+        verify(mockPreparedStatement, times(1)).setInt(1, 1);
+        assertEquals(new UserStats(1, 2, 720, 450), stats);
+    }
+
+    @Test
+    void testFindMissingUserStats() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        assertNull(userRepository.findUserStatsById(99));
+    }
+
+    @Test
+    void testFindUserVersion() throws SQLException {
+        when(mockConnection.prepareStatement("SELECT version FROM users WHERE id = ?")).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getLong("version")).thenReturn(4L);
+
+        assertEquals(4L, userRepository.findUserVersion(1));
+        assertNull(userRepository.findUserVersion(99));
+        verify(mockPreparedStatement).setInt(1, 99);
+    }
+
+    @Test
+    void testFindVersionedUserTakesVersionFromTheSameRow() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_USER_BY_ID)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getInt("id")).thenReturn(1);
+        when(mockResultSet.getString("name")).thenReturn("Alice");
+        when(mockResultSet.getLong("version")).thenReturn(4L);
+
+        Versioned<User> user = userRepository.findVersionedUserById(1);
+
+        assertEquals("Alice", user.getValue().getName());
+        assertEquals(4L, user.getVersion());
+        assertNull(userRepository.findVersionedUserById(99));
+        verify(mockConnection, times(2)).prepareStatement(SQL_SELECT_USER_BY_ID);
+        verify(mockConnection, never()).prepareStatement("SELECT version FROM users WHERE id = ?");
+    }
+
     @Test
     void testUpdateUser() throws SQLException {
         User expectedUser = EXPECTED_USERS.get(0);
 
         when(mockConnection.prepareStatement(SQL_UPDATE_USER)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt("id")).thenReturn(expectedUser.getId());
+        when(mockResultSet.getString("name")).thenReturn(expectedUser.getName());
+        when(mockResultSet.getInt("age")).thenReturn(expectedUser.getAge());
+        when(mockResultSet.getDouble("weight")).thenReturn(expectedUser.getWeight());
+        when(mockResultSet.getDouble("height")).thenReturn(expectedUser.getHeight());
 
-        userRepository.update(expectedUser);
+        User actualUser = userRepository.update(expectedUser);
 
         verify(mockPreparedStatement, times(1)).setString(1, expectedUser.getName());
         verify(mockPreparedStatement, times(1)).setInt(2, expectedUser.getAge());
         verify(mockPreparedStatement, times(1)).setDouble(3, expectedUser.getWeight());
         verify(mockPreparedStatement, times(1)).setDouble(4, expectedUser.getHeight());
         verify(mockPreparedStatement, times(1)).setInt(5, expectedUser.getId());
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
+        assertEquals(expectedUser.getName(), actualUser.getName());
     }
 
     @Test
     void testDeleteUser() throws SQLException {
         when(mockConnection.prepareStatement(SQL_DELETE_USER)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
 
-        userRepository.delete(1);
+        assertTrue(userRepository.delete(1));
 
         verify(mockPreparedStatement, times(1)).setInt(1, 1);
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
     }
 
     @Test
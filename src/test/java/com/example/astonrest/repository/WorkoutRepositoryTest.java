@@ -1,16 +1,24 @@
 package com.example.astonrest.repository;
 
 import com.example.astonrest.entity.Workout;
+import com.example.astonrest.entity.WorkoutStats;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.util.DatabaseUtil;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.Versioned;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.sql.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,16 +33,21 @@ class WorkoutRepositoryTest {
     private WorkoutRepository workoutRepository;
     private MockedStatic<DatabaseUtil> mockedDatabaseUtil;
 
-    private static final String SQL_INSERT_WORKOUT = "INSERT INTO workouts (type, duration, calories_burned, user_id) VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_WORKOUT =
+            "INSERT INTO workouts (type, duration, calories_burned, user_id, performed_at) VALUES (?, ?, ?, ?, COALESCE(?, now()))";
     private static final String SQL_SELECT_WORKOUT_BY_ID = "SELECT * FROM workouts WHERE id = ?";
+    private static final String SQL_SELECT_WORKOUTS_PAGE = "SELECT * FROM workouts WHERE id > ? ORDER BY id LIMIT ?";
     private static final String SQL_SELECT_ALL_WORKOUTS = "SELECT * FROM workouts";
-    private static final String SQL_UPDATE_WORKOUT = "UPDATE workouts SET type = ?, duration = ?, calories_burned = ? WHERE id = ?";
-    private static final String SQL_DELETE_WORKOUT = "DELETE FROM workouts WHERE id = ?";
-    private static final String SQL_SELECT_WORKOUTS_BY_USER_ID = "SELECT * FROM workouts WHERE user_id = ?";
+    private static final String SQL_UPDATE_WORKOUT = "WITH previous AS (SELECT * FROM workouts WHERE id = ? FOR UPDATE) " +
+            "UPDATE workouts w SET type = ?, duration = ?, calories_burned = ?, performed_at = COALESCE(?, w.performed_at) " +
+            "FROM previous WHERE w.id = previous.id AND w.performed_at = previous.performed_at RETURNING previous.*";
+    private static final String SQL_DELETE_WORKOUT = "DELETE FROM workouts WHERE id = ? RETURNING *";
+    private static final String SQL_SELECT_WORKOUTS_BY_USER_ID =
+            "SELECT * FROM workouts WHERE user_id = ? AND performed_at >= ? AND performed_at < ? AND id > ? ORDER BY id LIMIT ?";
 
     private static final List<Workout> EXPECTED_WORKOUTS = List.of(
-            new Workout(1, "Running", 30, 360, 1),
-            new Workout(2, "Cycling", 45, 315, 2)
+            new Workout(1, "Running", 30, 360, 1, null),
+            new Workout(2, "Cycling", 45, 315, 2, null)
     );
 
     @BeforeEach
@@ -43,6 +56,7 @@ class WorkoutRepositoryTest {
 
         mockedDatabaseUtil = mockStatic(DatabaseUtil.class);
         mockedDatabaseUtil.when(DatabaseUtil::getConnection).thenReturn(mockConnection);
+        mockedDatabaseUtil.when(DatabaseUtil::getReadConnection).thenReturn(mockConnection);
 
         lenient().when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
         lenient().when(mockPreparedStatement.executeUpdate()).thenReturn(1);
@@ -57,7 +71,7 @@ class WorkoutRepositoryTest {
 
     @Test
     void testSaveWorkout() throws SQLException {
-        Workout expectedWorkout = EXPECTED_WORKOUTS.get(0);
+        Workout expectedWorkout = new Workout(0, "Running", 30, 360, 1, Instant.parse("2024-01-31T10:15:30Z"));
 
         when(mockConnection.prepareStatement(SQL_INSERT_WORKOUT, Statement.RETURN_GENERATED_KEYS))
                 .thenReturn(mockPreparedStatement);
@@ -73,6 +87,7 @@ class WorkoutRepositoryTest {
         verify(mockPreparedStatement).setInt(2, expectedWorkout.getDuration());
         verify(mockPreparedStatement).setInt(3, expectedWorkout.getCaloriesBurned());
         verify(mockPreparedStatement).setInt(4, expectedWorkout.getUserId());
+        verify(mockPreparedStatement).setObject(5, OffsetDateTime.parse("2024-01-31T10:15:30Z"), Types.TIMESTAMP_WITH_TIMEZONE);
 
         verify(mockPreparedStatement, times(1)).executeUpdate();
 
@@ -83,6 +98,41 @@ class WorkoutRepositoryTest {
         assertEquals(10, expectedWorkout.getId());
     }
 
+    @Test
+    void testSaveWorkoutForMissingUserThrowsNotFound() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_INSERT_WORKOUT, Statement.RETURN_GENERATED_KEYS))
+                .thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate())
+                .thenThrow(new SQLException("insert or update violates foreign key constraint", "23503"));
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> workoutRepository.save(new Workout(0, "Running", 30, 360, 99, null)));
+
+        assertEquals("User with ID 99 does not exist.", exception.getMessage());
+    }
+
+    @Test
+    void testSaveAllWorkoutsInOneBatch() throws SQLException {
+        List<Workout> workouts = List.of(
+                new Workout(0, "Running", 30, 360, 1, null),
+                new Workout(0, "Cycling", 45, 315, 1, null)
+        );
+
+        when(mockConnection.prepareStatement(SQL_INSERT_WORKOUT, Statement.RETURN_GENERATED_KEYS))
+                .thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.getGeneratedKeys()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getInt(1)).thenReturn(10, 11);
+
+        workoutRepository.saveAll(workouts);
+
+        verify(mockPreparedStatement, times(2)).addBatch();
+        verify(mockPreparedStatement, times(1)).executeBatch();
+        verify(mockPreparedStatement, never()).executeUpdate();
+        assertEquals(10, workouts.get(0).getId());
+        assertEquals(11, workouts.get(1).getId());
+    }
+
     @Test
     void testFindWorkoutById() throws SQLException {
         Workout expectedWorkout = EXPECTED_WORKOUTS.get(0);
@@ -107,8 +157,8 @@ class WorkoutRepositoryTest {
     }
 
     @Test
-    void testFindAllWorkouts() throws SQLException {
-        when(mockConnection.prepareStatement(SQL_SELECT_ALL_WORKOUTS)).thenReturn(mockPreparedStatement);
+    void testFindWorkouts() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_WORKOUTS_PAGE)).thenReturn(mockPreparedStatement);
         when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
 
         when(mockResultSet.next()).thenReturn(true, true, false);
@@ -118,42 +168,233 @@ class WorkoutRepositoryTest {
         when(mockResultSet.getInt("calories_burned")).thenReturn(360, 315);
         when(mockResultSet.getInt("user_id")).thenReturn(1, 2);
 
-        List<Workout> actualWorkouts = workoutRepository.findAllWorkouts();
+        List<Workout> actualWorkouts = workoutRepository.findWorkouts(0, 21);
 
         assertNotNull(actualWorkouts);
         assertEquals(2, actualWorkouts.size());
         assertEquals("Running", actualWorkouts.get(0).getType());
         assertEquals("Cycling", actualWorkouts.get(1).getType());
 
+        verify(mockPreparedStatement, times(1)).setInt(1, 0);
+        verify(mockPreparedStatement, times(1)).setInt(2, 21);
         verify(mockPreparedStatement, times(1)).executeQuery();
         verify(mockResultSet, times(3)).next();
     }
 
+    @Test
+    void testStreamAllWorkouts() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_ALL_WORKOUTS)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getInt("id")).thenReturn(1, 2);
+        when(mockResultSet.getString("type")).thenReturn("Running", "Cycling");
+        when(mockResultSet.getInt("duration")).thenReturn(30, 45);
+        when(mockResultSet.getInt("calories_burned")).thenReturn(360, 315);
+        when(mockResultSet.getInt("user_id")).thenReturn(1, 2);
+
+        List<Workout> streamedWorkouts = new ArrayList<>();
+        workoutRepository.streamAllWorkouts(streamedWorkouts::add);
+
+        assertEquals(2, streamedWorkouts.size());
+        assertEquals("Running", streamedWorkouts.get(0).getType());
+        assertEquals("Cycling", streamedWorkouts.get(1).getType());
+
+        InOrder inOrder = inOrder(mockConnection, mockPreparedStatement);
+        inOrder.verify(mockConnection).setAutoCommit(false);
+        inOrder.verify(mockPreparedStatement).setFetchSize(500);
+        inOrder.verify(mockPreparedStatement).executeQuery();
+        inOrder.verify(mockConnection).setAutoCommit(true);
+        verify(mockResultSet).close();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    void testStreamAllWorkoutsPropagatesDatabaseError() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_SELECT_ALL_WORKOUTS)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenThrow(new SQLException("connection lost"));
+        when(mockResultSet.getString("type")).thenReturn("Running");
+
+        List<Workout> streamedWorkouts = new ArrayList<>();
+        assertThrows(RuntimeException.class, () -> workoutRepository.streamAllWorkouts(streamedWorkouts::add));
+
+        assertEquals(1, streamedWorkouts.size());
+        verify(mockConnection).setAutoCommit(true);
+    }
+
+    @Test
+    void testInsertAllSendsColumnArraysInOneStatement() throws SQLException {
+        Array array = mock(Array.class);
+        when(mockConnection.createArrayOf(anyString(), any(Object[].class))).thenReturn(array);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(2);
+        List<Workout> workouts = List.of(
+                new Workout(0, "Running", 30, 360, 1, Instant.parse("2024-01-31T10:15:30Z")),
+                new Workout(0, "Cycling", 45, 315, 2, Instant.parse("2024-02-01T08:00:00Z")));
+
+        assertEquals(2, workoutRepository.insertAll(workouts));
+
+        verify(mockConnection).prepareStatement("INSERT INTO workouts (type, duration, calories_burned, user_id, performed_at) " +
+                "SELECT * FROM unnest(?::varchar[], ?::int[], ?::int[], ?::int[], ?::timestamptz[])");
+        verify(mockConnection).createArrayOf("varchar", new Object[]{"Running", "Cycling"});
+        verify(mockConnection).createArrayOf("integer", new Object[]{1, 2});
+        verify(mockConnection).createArrayOf("text", new Object[]{"2024-01-31T10:15:30Z", "2024-02-01T08:00:00Z"});
+        verify(mockPreparedStatement, times(1)).executeUpdate();
+    }
+
+    @Test
+    void testInsertAllPropagatesSqlException() throws SQLException {
+        when(mockConnection.createArrayOf(anyString(), any(Object[].class))).thenReturn(mock(Array.class));
+        when(mockPreparedStatement.executeUpdate()).thenThrow(new SQLException("fk", "23503"));
+
+        assertThrows(SQLException.class,
+                () -> workoutRepository.insertAll(List.of(new Workout(0, "Running", 30, 360, 99, Instant.now()))));
+    }
+
+    @Test
+    void testFindWorkoutStatsByTypeUsesRollupInOneQuery() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getString("type")).thenReturn(null, "Running");
+        when(mockResultSet.getLong("workout_count")).thenReturn(3L, 2L);
+        when(mockResultSet.getLong("total_duration")).thenReturn(90L, 60L);
+        when(mockResultSet.getLong("total_calories")).thenReturn(1000L, 720L);
+        when(mockResultSet.getDouble("avg_duration")).thenReturn(30.0, 30.0);
+        when(mockResultSet.getDouble("avg_calories")).thenReturn(333.3, 360.0);
+
+        List<WorkoutStats> stats = workoutRepository.findWorkoutStats(DateRange.unbounded(), true);
+
+        verify(mockConnection).prepareStatement(argThat((String sql) -> sql.contains("GROUP BY ROLLUP (type)")));
+        verify(mockPreparedStatement).setObject(1, OffsetDateTime.MIN);
+        verify(mockPreparedStatement).setObject(2, OffsetDateTime.MAX);
+        assertEquals(List.of(new WorkoutStats(null, 3, 90, 1000, 30.0, 333.3),
+                new WorkoutStats("Running", 2, 60, 720, 30.0, 360.0)), stats);
+    }
+
+    @Test
+    void testFindWorkoutTotalsWithoutGrouping() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        workoutRepository.findWorkoutStats(DateRange.unbounded(), false);
+
+        verify(mockConnection).prepareStatement(argThat((String sql) -> !sql.contains("GROUP BY")));
+    }
+
+    @Test
+    void testFindWorkoutStatsByUserIdGroupsByType() throws SQLException {
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        assertTrue(workoutRepository.findWorkoutStatsByUserId(1).isEmpty());
+
+        verify(mockConnection).prepareStatement(argThat((String sql) -> sql.contains("WHERE user_id = ? GROUP BY type")));
+        verify(mockPreparedStatement).setInt(1, 1);
+    }
+
+    @Test
+    void testFindWorkoutsByIds() throws SQLException {
+        Array idArray = mock(Array.class);
+        when(mockConnection.createArrayOf("integer", new Object[]{2, 1})).thenReturn(idArray);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getInt("id")).thenReturn(1);
+        when(mockResultSet.getString("type")).thenReturn("Running");
+        when(mockResultSet.getInt("duration")).thenReturn(30);
+        when(mockResultSet.getInt("calories_burned")).thenReturn(360);
+        when(mockResultSet.getInt("user_id")).thenReturn(1);
+
+        List<Workout> actualWorkouts = workoutRepository.findWorkoutsByIds(List.of(2, 1));
+
+        verify(mockConnection).prepareStatement("SELECT * FROM workouts WHERE id = ANY(?)");
+        verify(mockPreparedStatement).setArray(1, idArray);
+        assertEquals(List.of(EXPECTED_WORKOUTS.get(0)), actualWorkouts);
+    }
+
     @Test
     void testUpdateWorkout() throws SQLException {
         Workout updatedWorkout = EXPECTED_WORKOUTS.get(0);
         updatedWorkout.setType("Running Updated");
 
         when(mockConnection.prepareStatement(SQL_UPDATE_WORKOUT)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt("id")).thenReturn(updatedWorkout.getId());
+        when(mockResultSet.getString("type")).thenReturn(updatedWorkout.getType());
+        when(mockResultSet.getInt("duration")).thenReturn(updatedWorkout.getDuration());
+        when(mockResultSet.getInt("calories_burned")).thenReturn(updatedWorkout.getCaloriesBurned());
+        when(mockResultSet.getInt("user_id")).thenReturn(updatedWorkout.getUserId());
 
-        workoutRepository.update(updatedWorkout);
+        Workout actualWorkout = workoutRepository.update(updatedWorkout);
 
-        verify(mockPreparedStatement, times(1)).setString(1, updatedWorkout.getType());
-        verify(mockPreparedStatement, times(1)).setInt(2, updatedWorkout.getDuration());
-        verify(mockPreparedStatement, times(1)).setInt(3, updatedWorkout.getCaloriesBurned());
-        verify(mockPreparedStatement, times(1)).setInt(4, updatedWorkout.getId());
+        verify(mockPreparedStatement, times(1)).setInt(1, updatedWorkout.getId());
+        verify(mockPreparedStatement, times(1)).setString(2, updatedWorkout.getType());
+        verify(mockPreparedStatement, times(1)).setInt(3, updatedWorkout.getDuration());
+        verify(mockPreparedStatement, times(1)).setInt(4, updatedWorkout.getCaloriesBurned());
+        verify(mockPreparedStatement, times(1)).setObject(5, null, Types.TIMESTAMP_WITH_TIMEZONE);
 
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
+        verify(mockPreparedStatement, never()).executeUpdate();
+        assertEquals(updatedWorkout, actualWorkout);
+    }
+
+    @Test
+    void testUpdateMissingWorkoutReturnsNull() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_UPDATE_WORKOUT)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        assertNull(workoutRepository.update(new Workout(99, "Running", 30, 360, 0, null)));
     }
 
     @Test
     void testDeleteWorkout() throws SQLException {
         when(mockConnection.prepareStatement(SQL_DELETE_WORKOUT)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt("id")).thenReturn(1);
+        when(mockResultSet.getString("type")).thenReturn("Running");
+        when(mockResultSet.getInt("duration")).thenReturn(30);
+        when(mockResultSet.getInt("calories_burned")).thenReturn(360);
+        when(mockResultSet.getInt("user_id")).thenReturn(1);
 
-        workoutRepository.delete(1);
+        assertEquals(EXPECTED_WORKOUTS.get(0), workoutRepository.delete(1));
 
         verify(mockPreparedStatement, times(1)).setInt(1, 1);
-        verify(mockPreparedStatement, times(1)).executeUpdate();
+        verify(mockPreparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void testDeleteMissingWorkoutReturnsNull() throws SQLException {
+        when(mockConnection.prepareStatement(SQL_DELETE_WORKOUT)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        assertNull(workoutRepository.delete(99));
+    }
+
+    @Test
+    void testVersionedWorkoutsReadVersionFirstOnTheSameConnection() throws SQLException {
+        PreparedStatement versionStatement = mock(PreparedStatement.class);
+        ResultSet versionResult = mock(ResultSet.class);
+        when(mockConnection.prepareStatement("SELECT workouts_version FROM user_stats WHERE user_id = ?"))
+                .thenReturn(versionStatement);
+        when(versionStatement.executeQuery()).thenReturn(versionResult);
+        when(versionResult.next()).thenReturn(true);
+        when(versionResult.getLong("workouts_version")).thenReturn(7L);
+        when(mockConnection.prepareStatement(SQL_SELECT_WORKOUTS_BY_USER_ID)).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        Versioned<List<Workout>> workouts = workoutRepository.findVersionedWorkoutsByUserId(1, DateRange.unbounded(), 0, 21);
+
+        assertEquals(7L, workouts.getVersion());
+        assertTrue(workouts.getValue().isEmpty());
+        InOrder inOrder = inOrder(versionStatement, mockPreparedStatement);
+        inOrder.verify(versionStatement).executeQuery();
+        inOrder.verify(mockPreparedStatement).executeQuery();
+        mockedDatabaseUtil.verify(DatabaseUtil::getReadConnection, times(1));
+        verify(mockConnection, times(1)).close();
     }
 
     @Test
@@ -170,12 +411,18 @@ class WorkoutRepositoryTest {
         when(mockResultSet.getInt("calories_burned")).thenReturn(EXPECTED_WORKOUTS.get(0).getCaloriesBurned());
         when(mockResultSet.getInt("user_id")).thenReturn(1);
 
-        List<Workout> actualWorkouts = workoutRepository.findWorkoutsByUserId(userId);
+        DateRange range = new DateRange(Instant.parse("2024-01-01T00:00:00Z"), null);
+        List<Workout> actualWorkouts = workoutRepository.findWorkoutsByUserId(userId, range, 5, 21);
 
         assertNotNull(actualWorkouts);
         assertEquals(1, actualWorkouts.size());
         assertEquals(EXPECTED_WORKOUTS.get(0).getType(), actualWorkouts.get(0).getType());
 
+        verify(mockPreparedStatement, times(1)).setInt(1, userId);
+        verify(mockPreparedStatement, times(1)).setObject(2, OffsetDateTime.parse("2024-01-01T00:00:00Z"));
+        verify(mockPreparedStatement, times(1)).setObject(3, OffsetDateTime.MAX);
+        verify(mockPreparedStatement, times(1)).setInt(4, 5);
+        verify(mockPreparedStatement, times(1)).setInt(5, 21);
         verify(mockPreparedStatement, times(1)).executeQuery();
         verify(mockResultSet, times(2)).next();
     }
@@ -0,0 +1,194 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.ImportResultDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.repository.CopyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkDataServiceTest {
+
+    @Mock
+    private CopyRepository copyRepository;
+
+    private BulkDataService bulkDataService;
+    private final StringWriter copied = new StringWriter();
+
+    @BeforeEach
+    void setUp() {
+        bulkDataService = new BulkDataService(copyRepository);
+    }
+
+    @Test
+    void testImportWorkoutsAddsCalories() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        ImportResultDTO result = bulkDataService.importWorkouts(new StringReader(
+                "type,duration,user_id,performed_at\n" +
+                "running,30,1,2024-01-31T10:15:30Z\n" +
+                "\n" +
+                "\"Yoga\",60,2,2024-02-01\n" +
+                "Cycling, 45 ,3,2024-03-05T12:00:00+03:00"), true);
+
+        assertEquals("running,30,360,1,2024-01-31T10:15:30Z\n" +
+                "\"Yoga\",60,240,2,2024-02-01T00:00:00Z\n" +
+                "Cycling,45,315,3,2024-03-05T09:00:00Z\n", copied.toString());
+        assertEquals("workouts", result.getTable());
+        assertEquals(3, result.getRows());
+    }
+
+    @Test
+    void testImportWorkoutsWithoutTimeGetImportStartTime() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+        Instant before = Instant.now();
+
+        bulkDataService.importWorkouts(new StringReader("running,30,1\n\"Yoga\",60,2,\n"), false);
+
+        String[] lines = copied.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("running,30,360,1,"));
+        assertTrue(lines[1].startsWith("\"Yoga\",60,240,2,"));
+        Instant importedAt = Instant.parse(lines[0].substring(lines[0].lastIndexOf(',') + 1));
+        assertFalse(importedAt.isBefore(before));
+        assertTrue(lines[1].endsWith("," + importedAt));
+    }
+
+    @Test
+    void testImportWorkoutsRejectsInvalidOrFutureTime() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        BadRequestException invalid = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("running,30,1,yesterday\n"), false));
+        BadRequestException future = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("running,30,1,2999-01-01\n"), false));
+        BadRequestException extra = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("running,30,1,2024-01-01,x\n"), false));
+
+        assertTrue(invalid.getMessage().startsWith("Invalid CSV at line 1: running,30,1,yesterday ("));
+        assertTrue(future.getMessage().startsWith("Invalid CSV at line 1: running,30,1,2999-01-01 ("));
+        assertEquals("Invalid CSV at line 1: running,30,1,2024-01-01,x", extra.getMessage());
+    }
+
+    @Test
+    void testImportWorkoutsRebuildsLeaderboard() throws Exception {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        new BulkDataService(copyRepository, leaderboard, null).importWorkouts(new StringReader("running,30,1\n"), false);
+
+        verify(leaderboard).rebuild();
+    }
+
+    @Test
+    void testImportWorkoutsRejectsMalformedLine() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("running,30,1\nrunning,thirty,1\n"), false));
+
+        assertEquals("Invalid CSV at line 2: running,thirty,1", exception.getMessage());
+    }
+
+    @Test
+    void testImportWorkoutsRejectsNonPositiveDuration() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("running,30,1\nrunning,0,1\n"), false));
+
+        assertEquals("Invalid CSV at line 2: running,0,1 (Duration must be a positive number.)", exception.getMessage());
+    }
+
+    @Test
+    void testImportWorkoutsRejectsInvalidType() throws Exception {
+        when(copyRepository.copyWorkoutsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> bulkDataService.importWorkouts(new StringReader("\"run;ning\",30,1\n"), false));
+
+        assertEquals("Invalid CSV at line 1: \"run;ning\",30,1 (Workout type must contain only letters and spaces.)",
+                exception.getMessage());
+    }
+
+    @Test
+    void testImportMealsPassesCsvThrough() throws Exception {
+        when(copyRepository.copyMealsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        ImportResultDTO result = bulkDataService.importMeals(new StringReader("name,calories\nSteak,600\n"), true);
+
+        assertEquals("Steak,600\n", copied.toString());
+        assertEquals("meals", result.getTable());
+    }
+
+    @Test
+    void testImportMealsRebuildsSearchIndex() throws Exception {
+        MealSearchIndex searchIndex = mock(MealSearchIndex.class);
+        when(copyRepository.copyMealsIn(any(Reader.class))).thenAnswer(invocation -> drain(invocation.getArgument(0)));
+
+        new BulkDataService(copyRepository, null, searchIndex).importMeals(new StringReader("Pasta,500\n"), false);
+
+        verify(searchIndex).rebuild();
+    }
+
+    @Test
+    void testConstraintViolationIsBadRequest() throws Exception {
+        when(copyRepository.copyUserMealsIn(any(Reader.class)))
+                .thenThrow(new SQLException("insert or update violates foreign key constraint", "23503"));
+
+        assertThrows(BadRequestException.class,
+                () -> bulkDataService.importUserMeals(new StringReader("1,999\n"), false));
+    }
+
+    @Test
+    void testUnexpectedDatabaseErrorIsNotBadRequest() throws Exception {
+        when(copyRepository.copyMealsIn(any(Reader.class))).thenThrow(new SQLException("disk full", "53100"));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> bulkDataService.importMeals(new StringReader("Steak,600\n"), false));
+
+        assertFalse(exception instanceof BadRequestException);
+    }
+
+    /**
+     * Читает поток так же, как COPY: порциями до конца. Возвращает количество непустых строк.
+     */
+    @Test
+    void testExportUsersWritesCopyOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(copyRepository.copyUsersOut(1, 100, out)).thenReturn(2L);
+
+        assertEquals(2L, bulkDataService.exportUsers(1, 100, out));
+    }
+
+    @Test
+    void testExportRejectsInvertedRange() {
+        assertThrows(BadRequestException.class,
+                () -> bulkDataService.exportWorkouts(100, 1, new ByteArrayOutputStream()));
+        verifyNoInteractions(copyRepository);
+    }
+
+    private long drain(Reader reader) throws IOException {
+        char[] buffer = new char[7];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            copied.write(buffer, 0, read);
+        }
+        return copied.toString().lines().count();
+    }
+}
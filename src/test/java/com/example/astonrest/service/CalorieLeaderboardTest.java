@@ -0,0 +1,130 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.LeaderboardEntryDTO;
+import com.example.astonrest.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CalorieLeaderboardTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private CalorieLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        leaderboard = new CalorieLeaderboard(userRepository);
+    }
+
+    @Test
+    void testTopIsOrderedByCaloriesThenUserId() {
+        leaderboard.add(3, 500);
+        leaderboard.add(1, 900);
+        leaderboard.add(2, 500);
+        leaderboard.add(4, 100);
+
+        List<LeaderboardEntryDTO> top = leaderboard.top(3);
+
+        assertEquals(List.of(
+                new LeaderboardEntryDTO(1, 1, 900),
+                new LeaderboardEntryDTO(2, 2, 500),
+                new LeaderboardEntryDTO(3, 3, 500)), top);
+    }
+
+    @Test
+    void testDeltasMoveUserBetweenPlaces() {
+        leaderboard.add(1, 900);
+        leaderboard.add(2, 500);
+
+        leaderboard.add(2, 600);
+
+        assertEquals(new LeaderboardEntryDTO(1, 2, 1100), leaderboard.rankOf(2));
+        assertEquals(new LeaderboardEntryDTO(2, 1, 900), leaderboard.rankOf(1));
+        assertEquals(2, leaderboard.top(10).size());
+    }
+
+    @Test
+    void testUserWithoutCaloriesLeavesLeaderboard() {
+        leaderboard.add(1, 300);
+        leaderboard.add(2, 200);
+
+        leaderboard.add(1, -300);
+        leaderboard.removeUser(2);
+
+        assertNull(leaderboard.rankOf(1));
+        assertNull(leaderboard.rankOf(2));
+        assertTrue(leaderboard.top(10).isEmpty());
+    }
+
+    @Test
+    void testRankCountsHigherBucketsAndNeighboursInOwnBucket() {
+        leaderboard = new CalorieLeaderboard(userRepository, 10, 4);
+        leaderboard.add(1, 5);    // корзина 0
+        leaderboard.add(2, 15);   // корзина 1
+        leaderboard.add(3, 12);   // корзина 1
+        leaderboard.add(4, 12);   // корзина 1, при равенстве выше меньший ID
+        leaderboard.add(5, 500);  // выше последней границы — последняя корзина
+        leaderboard.add(6, 35);   // последняя корзина
+
+        assertEquals(new LeaderboardEntryDTO(1, 5, 500), leaderboard.rankOf(5));
+        assertEquals(new LeaderboardEntryDTO(2, 6, 35), leaderboard.rankOf(6));
+        assertEquals(new LeaderboardEntryDTO(3, 2, 15), leaderboard.rankOf(2));
+        assertEquals(new LeaderboardEntryDTO(4, 3, 12), leaderboard.rankOf(3));
+        assertEquals(new LeaderboardEntryDTO(5, 4, 12), leaderboard.rankOf(4));
+        assertEquals(new LeaderboardEntryDTO(6, 1, 5), leaderboard.rankOf(1));
+
+        leaderboard.add(1, 20);
+        leaderboard.removeUser(5);
+
+        assertEquals(new LeaderboardEntryDTO(1, 6, 35), leaderboard.rankOf(6));
+        assertEquals(new LeaderboardEntryDTO(2, 1, 25), leaderboard.rankOf(1));
+        assertEquals(new LeaderboardEntryDTO(5, 4, 12), leaderboard.rankOf(4));
+    }
+
+    @Test
+    void testRankMatchesTopAfterRandomChanges() {
+        leaderboard = new CalorieLeaderboard(userRepository, 50, 16);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            leaderboard.add(1 + random.nextInt(200), random.nextInt(300) - 100);
+        }
+
+        for (LeaderboardEntryDTO entry : leaderboard.top(Integer.MAX_VALUE)) {
+            assertEquals(entry, leaderboard.rankOf(entry.getUserId()));
+        }
+    }
+
+    @Test
+    void testRebuildReplacesBoardFromDatabase() throws SQLException {
+        leaderboard.add(7, 50);
+        when(userRepository.findAllCaloriesBurned()).thenReturn(Map.of(1, 400L, 2, 800L));
+
+        leaderboard.rebuild();
+
+        assertEquals(List.of(new LeaderboardEntryDTO(1, 2, 800), new LeaderboardEntryDTO(2, 1, 400)),
+                leaderboard.top(10));
+        assertNull(leaderboard.rankOf(7));
+    }
+
+    @Test
+    void testFailedRebuildKeepsPreviousBoard() throws SQLException {
+        leaderboard.add(1, 400);
+        when(userRepository.findAllCaloriesBurned()).thenThrow(new SQLException("connection refused"));
+
+        leaderboard.rebuild();
+
+        assertEquals(new LeaderboardEntryDTO(1, 1, 400), leaderboard.rankOf(1));
+    }
+}
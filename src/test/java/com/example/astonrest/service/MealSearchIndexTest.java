@@ -0,0 +1,145 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.entity.Meal;
+import com.example.astonrest.repository.MealRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MealSearchIndexTest {
+    @Mock
+    private MealRepository mealRepository;
+
+    private MealSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new MealSearchIndex(mealRepository);
+        searchIndex.put(meal(1, "Chicken Salad", 350));
+        searchIndex.put(meal(2, "Chicken soup", 200));
+        searchIndex.put(meal(3, "Pasta", 500));
+        searchIndex.put(meal(4, "Caesar salad", 400));
+    }
+
+    @Test
+    void testPrefixMatchesComeInNameOrder() {
+        List<MealSearchResultDTO> results = searchIndex.search("  CHICKEN ", 10);
+
+        assertEquals(List.of(1, 2), ids(results.subList(0, 2)));
+        assertEquals(1.0, results.get(0).getScore());
+        assertEquals(new MealSearchResultDTO(2, "Chicken soup", 200, 1.0), results.get(1));
+    }
+
+    @Test
+    void testTypoIsFoundByTrigrams() {
+        List<MealSearchResultDTO> results = searchIndex.search("pastaa", 10);
+
+        assertEquals(List.of(3), ids(results));
+        assertTrue(results.get(0).getScore() >= MealSearchIndex.SIMILARITY_THRESHOLD);
+        assertTrue(results.get(0).getScore() < 1.0);
+    }
+
+    @Test
+    void testFuzzyMatchesFillUpAfterPrefixMatches() {
+        List<MealSearchResultDTO> results = searchIndex.search("salad", 10);
+
+        assertEquals(Set.of(1, 4), Set.copyOf(ids(results)));
+        assertEquals(2, searchIndex.search("salad", 2).size());
+        assertEquals(1, searchIndex.search("chicken", 1).size());
+    }
+
+    @Test
+    void testUpdateAndRemoveKeepIndexInSync() {
+        searchIndex.put(meal(3, "Pizza", 700));
+        searchIndex.remove(2);
+
+        assertTrue(searchIndex.search("pasta", 10).isEmpty());
+        assertEquals(List.of(new MealSearchResultDTO(3, "Pizza", 700, 1.0)), searchIndex.search("piz", 10));
+        assertEquals(List.of(1), ids(searchIndex.search("chicken", 10)));
+    }
+
+    @Test
+    void testFrequentTrigramListsStayConsistentAcrossManyChanges() {
+        // Сотни изменений одной частой триграммы проходят через слияние добавок с основным массивом
+        for (int id = 100; id < 700; id++) {
+            searchIndex.put(meal(id, "Rice bowl " + id, 300));
+        }
+        for (int id = 100; id < 700; id += 2) {
+            searchIndex.remove(id);
+        }
+        searchIndex.put(meal(100, "Rice bowl 100", 300));
+
+        Set<Integer> found = Set.copyOf(ids(searchIndex.search("rice bowl", 1000)));
+
+        assertEquals(301, found.size());
+        assertTrue(found.contains(100));
+        assertFalse(found.contains(102));
+        assertTrue(found.contains(699));
+    }
+
+    @Test
+    void testCandidateCapKeepsCandidatesWithMostSharedTrigrams() {
+        // Частое слово даёт больше кандидатов, чем проверяется, но лучший кандидат встречается в большем
+        // числе списков-источников и остаётся, хотя его ID больше всех остальных
+        for (int id = 100; id < 100 + MealSearchIndex.MAX_CANDIDATES + 500; id++) {
+            searchIndex.put(meal(id, "Soup", 100));
+        }
+        searchIndex.put(meal(9999, "Tomato soup", 150));
+
+        List<MealSearchResultDTO> results = searchIndex.search("tomatto soup", 1);
+
+        assertEquals(List.of(9999), ids(results));
+    }
+
+    @Test
+    void testTrigramsArePaddedPerWord() {
+        assertEquals(Set.of("  a", " ab", "ab ", "  c", " cd", "cd "), MealSearchIndex.trigrams("ab cd"));
+        assertEquals("chicken salad", MealSearchIndex.normalize(" Chicken\t SALAD "));
+    }
+
+    @Test
+    void testRebuildReplacesIndexFromDatabase() throws SQLException {
+        doAnswer(invocation -> {
+            Consumer<Meal> consumer = invocation.getArgument(0);
+            consumer.accept(meal(10, "Omelette", 300));
+            consumer.accept(meal(11, "Oatmeal", 150));
+            return null;
+        }).when(mealRepository).streamAllMeals(any());
+
+        searchIndex.rebuild();
+
+        assertEquals(List.of(11, 10), ids(searchIndex.search("o", 10)));
+        assertTrue(searchIndex.search("pasta", 10).isEmpty());
+    }
+
+    @Test
+    void testFailedRebuildKeepsPreviousIndex() throws SQLException {
+        doThrow(new SQLException("connection refused")).when(mealRepository).streamAllMeals(any());
+
+        searchIndex.rebuild();
+
+        assertEquals(List.of(3), ids(searchIndex.search("pasta", 10)));
+    }
+
+    private static Meal meal(int id, String name, int calories) {
+        return new Meal(id, name, calories, List.of());
+    }
+
+    private static List<Integer> ids(List<MealSearchResultDTO> results) {
+        return results.stream().map(MealSearchResultDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -1,8 +1,19 @@
 package com.example.astonrest.service;
 
 import com.example.astonrest.dto.MealDTO;
+import com.example.astonrest.dto.MealSearchResultDTO;
+import com.example.astonrest.dto.PageDTO;
+import com.example.astonrest.dto.UserMealLinkResultDTO;
+import com.example.astonrest.dto.UserMealUnlinkResultDTO;
 import com.example.astonrest.entity.Meal;
+import com.example.astonrest.entity.MealLinkResult;
+import com.example.astonrest.entity.MealUnlinkResult;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.repository.MealRepository;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
+import com.example.astonrest.util.Versioned;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -81,10 +93,10 @@ class MealServiceTest {
     }
 
     @Test
-    void testGetAllMeals() {
-        when(mealRepository.findAllMeals()).thenReturn(meals);
+    void testGetMeals() {
+        when(mealRepository.findMeals(0, 21)).thenReturn(meals);
 
-        List<MealDTO> actualMealDTOs = mealService.getAllMeals();
+        List<MealDTO> actualMealDTOs = mealService.getMeals(new PageRequest(0, 20)).getItems();
 
         assertNotNull(actualMealDTOs);
         assertEquals(mealDTOs.size(), actualMealDTOs.size());
@@ -94,38 +106,138 @@ class MealServiceTest {
         assertEquals(mealDTOs.get(1).getCalories(), actualMealDTOs.get(1).getCalories());
     }
 
+    @Test
+    void testGetVersionedMealsKeepsVersionReadWithPage() {
+        when(mealRepository.findVersionedMeals(0, 21))
+                .thenReturn(new Versioned<>(List.of(new Meal(1, "Pasta", 500, new ArrayList<>())), 12L));
+
+        Versioned<PageDTO<MealDTO>> meals = mealService.getVersionedMeals(new PageRequest(0, 20));
+
+        assertEquals(12L, meals.getVersion());
+        assertEquals(List.of(new MealDTO("Pasta", 500)), meals.getValue().getItems());
+        assertEquals("\"meals-v12\"", MealService.mealsETag(meals.getVersion()));
+        verify(mealRepository, never()).findMealsVersion();
+    }
+
+    @Test
+    void testGetMealsETag() {
+        when(mealRepository.findMealsVersion()).thenReturn(12L);
+
+        assertEquals("\"meals-v12\"", mealService.getMealsETag());
+        verify(mealRepository, never()).findMeals(anyInt(), anyInt());
+    }
+
     @Test
     void testUpdateMeal() {
         MealDTO updatedMealDTO = mealDTOs.get(0);
         Meal existingMeal = new Meal(2, updatedMealDTO.getName(),updatedMealDTO.getCalories(),new ArrayList<>());
 
-        when(mealRepository.findMealById(2)).thenReturn(existingMeal);
-        doNothing().when(mealRepository).update(existingMeal);
+        when(mealRepository.update(any(Meal.class))).thenReturn(existingMeal);
 
         mealService.updateMeal(2, updatedMealDTO);
 
-        verify(mealRepository, times(1)).update(existingMeal);
+        verify(mealRepository, times(1)).update(any(Meal.class));
+        verify(mealRepository, never()).findMealById(anyInt());
     }
 
     @Test
     void testDeleteMeal() {
-        MealDTO deletedMealDTO = mealDTOs.get(0);
-        Meal existingMeal = new Meal(1,deletedMealDTO.getName(),deletedMealDTO.getCalories(),new ArrayList<>());
-
-        when(mealRepository.findMealById(1)).thenReturn(existingMeal);
-        doNothing().when(mealRepository).delete(1);
+        when(mealRepository.delete(1)).thenReturn(true);
 
         mealService.deleteMeal(1);
 
         verify(mealRepository, times(1)).delete(1);
+        verify(mealRepository, never()).findMealById(anyInt());
+    }
+
+    @Test
+    void testMealChangesAreReflectedInSearchIndex() {
+        MealSearchIndex searchIndex = mock(MealSearchIndex.class);
+        MealService indexedService = new MealService(mealRepository, searchIndex);
+        Meal updated = new Meal(2, "Greek salad", 250, new ArrayList<>());
+        doAnswer(invocation -> {
+            invocation.<Meal>getArgument(0).setId(5);
+            return null;
+        }).when(mealRepository).save(any(Meal.class));
+        when(mealRepository.update(any(Meal.class))).thenReturn(updated);
+        when(mealRepository.delete(1)).thenReturn(true);
+
+        indexedService.createMeal(mealDTOs.get(0));
+        indexedService.updateMeal(2, new MealDTO("Greek salad", 250));
+        indexedService.deleteMeal(1);
+
+        verify(searchIndex).put(argThat(meal -> meal.getId() == 5 && "Pasta".equals(meal.getName())));
+        verify(searchIndex).put(updated);
+        verify(searchIndex).remove(1);
+    }
+
+    @Test
+    void testSearchMeals() {
+        MealSearchIndex searchIndex = mock(MealSearchIndex.class);
+        List<MealSearchResultDTO> found = List.of(new MealSearchResultDTO(1, "Pasta", 500, 1.0));
+        when(searchIndex.search("pas", 20)).thenReturn(found);
+
+        assertEquals(found, new MealService(mealRepository, searchIndex).searchMeals("pas", 20));
+        assertThrows(BadRequestException.class, () -> mealService.searchMeals(" ", 20));
+        assertTrue(mealService.searchMeals("pas", 20).isEmpty());
+    }
+
+    @Test
+    void testLinkMealsToUserSendsDistinctIdsInOneCall() {
+        when(mealRepository.linkMealsToUser(1, List.of(3, 1, 7, 9)))
+                .thenReturn(new MealLinkResult(true, 2, List.of(9)));
+
+        UserMealLinkResultDTO result = mealService.linkMealsToUser(1, List.of(3, 1, 3, 7, 9));
+
+        assertEquals(new UserMealLinkResultDTO(2, 1, List.of(9)), result);
+        verify(mealRepository, times(1)).linkMealsToUser(anyInt(), anyList());
+    }
+
+    @Test
+    void testLinkMealsToMissingUserThrowsNotFound() {
+        when(mealRepository.linkMealsToUser(99, List.of(1))).thenReturn(new MealLinkResult(false, 0, List.of()));
+
+        assertThrows(NotFoundException.class, () -> mealService.linkMealsToUser(99, List.of(1)));
+    }
+
+    @Test
+    void testLinkMealsRejectsInvalidIds() {
+        assertThrows(BadRequestException.class, () -> mealService.linkMealsToUser(1, List.of()));
+        assertThrows(BadRequestException.class, () -> mealService.linkMealsToUser(1, Arrays.asList(1, null)));
+        assertThrows(BadRequestException.class, () -> mealService.linkMealsToUser(1, List.of(1, -2)));
+        verifyNoInteractions(mealRepository);
+    }
+
+    @Test
+    void testUnlinkMealsFromUser() {
+        when(mealRepository.unlinkMealsFromUser(1, List.of(2, 5, 8))).thenReturn(new MealUnlinkResult(true, 2));
+
+        UserMealUnlinkResultDTO result = mealService.unlinkMealsFromUser(1, List.of(2, 5, 2, 8));
+
+        assertEquals(new UserMealUnlinkResultDTO(2, 1), result);
+    }
+
+    @Test
+    void testUnlinkMealsFromMissingUserThrowsNotFound() {
+        when(mealRepository.unlinkMealsFromUser(99, List.of(1))).thenReturn(new MealUnlinkResult(false, 0));
+
+        assertThrows(NotFoundException.class, () -> mealService.unlinkMealsFromUser(99, List.of(1)));
+    }
+
+    @Test
+    void testUnlinkMealsUsesLinkSizeLimit() {
+        List<Integer> tooMany = IntStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+
+        assertThrows(BadRequestException.class, () -> mealService.unlinkMealsFromUser(1, tooMany));
+        verifyNoInteractions(mealRepository);
     }
 
     @Test
     void testGetMealsByUserId() {
         int userId = 1;
-        when(mealRepository.findMealsByUserId(userId)).thenReturn(meals);
+        when(mealRepository.findMealsByUserId(userId, 0, 21)).thenReturn(meals);
 
-        List<MealDTO> actualMealDTOs = mealService.getMealsByUserId(userId);
+        List<MealDTO> actualMealDTOs = mealService.getMealsByUserId(userId, new PageRequest(0, 20)).getItems();
 
         assertNotNull(actualMealDTOs);
         assertEquals(mealDTOs.size(), actualMealDTOs.size());
@@ -1,8 +1,17 @@
 package com.example.astonrest.service;
 
+import com.example.astonrest.dto.MealDTO;
 import com.example.astonrest.dto.UserDTO;
+import com.example.astonrest.dto.UserProfileDTO;
+import com.example.astonrest.dto.UserStatsDTO;
+import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.entity.Meal;
 import com.example.astonrest.entity.User;
+import com.example.astonrest.entity.UserStats;
+import com.example.astonrest.entity.Workout;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.util.PageRequest;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -90,10 +99,10 @@ class UserServiceTest {
     }
 
     @Test
-    void testGetAllUsers() {
-        when(userRepository.findAllUsers()).thenReturn(users);
+    void testGetUsers() {
+        when(userRepository.findUsers(0, 21)).thenReturn(users);
 
-        List<UserDTO> actualUserDto = userService.getAllUsers();
+        List<UserDTO> actualUserDto = userService.getUsers(new PageRequest(0, 20)).getItems();
 
         assertNotNull(actualUserDto);
         assertEquals(userDTOs.size(), actualUserDto.size());
@@ -109,24 +118,76 @@ class UserServiceTest {
         User existingUser = new User(2, updatedUserDTO.getName(), updatedUserDTO.getAge(), updatedUserDTO.getWeight(), updatedUserDTO.getHeight(),
                 new ArrayList<>(), new ArrayList<>());
 
-        when(userRepository.findUserById(2)).thenReturn(existingUser);
-        doNothing().when(userRepository).update(existingUser);
+        when(userRepository.update(any(User.class))).thenReturn(existingUser);
 
         userService.updateUser(2, updatedUserDTO);
 
-        verify(userRepository, times(1)).update(existingUser);
+        verify(userRepository, times(1)).update(any(User.class));
+        verify(userRepository, never()).findUserById(anyInt());
     }
 
     @Test
-    void testDeleteUser() {
-        UserDTO userDTO = userDTOs.get(0);
-        User existingUser = new User(1, userDTO.getName(), userDTO.getAge(), userDTO.getWeight(), userDTO.getHeight(), new ArrayList<>(), new ArrayList<>());
+    void testGetUserProfile() {
+        User user = new User(1, "Alice", 25, 60.5, 165,
+                List.of(new Workout(3, "Running", 30, 360, 1, null)), List.of(new Meal(4, "Salad", 150, null)));
+        when(userRepository.findUserProfileById(1)).thenReturn(user);
+
+        UserProfileDTO profile = userService.getUserProfile(1);
+
+        assertEquals("Alice", profile.getName());
+        assertEquals(List.of(new WorkoutDTO("Running", 30, 360, 1, null)), profile.getWorkouts());
+        assertEquals(List.of(new MealDTO("Salad", 150)), profile.getMeals());
+        verify(userRepository, never()).findUserById(anyInt());
+    }
+
+    @Test
+    void testGetUserStats() {
+        when(userRepository.findUserStatsById(1)).thenReturn(new UserStats(1, 2, 720, 450));
+
+        assertEquals(new UserStatsDTO(2, 720, 450), userService.getUserStats(1));
+    }
+
+    @Test
+    void testGetMissingUserStats() {
+        when(userRepository.findUserStatsById(99)).thenReturn(null);
+
+        assertNull(userService.getUserStats(99));
+    }
+
+    @Test
+    void testGetUserETag() {
+        when(userRepository.findUserVersion(1)).thenReturn(3L);
+        when(userRepository.findUserVersion(99)).thenReturn(null);
 
-        when(userRepository.findUserById(1)).thenReturn(existingUser);
-        doNothing().when(userRepository).delete(1);
+        assertEquals("\"user-1-v3\"", userService.getUserETag(1));
+        assertNull(userService.getUserETag(99));
+        verify(userRepository, never()).findUserById(anyInt());
+    }
+
+    @Test
+    void testDeleteUser() {
+        when(userRepository.delete(1)).thenReturn(true);
 
         userService.deleteUser(1);
 
         verify(userRepository, times(1)).delete(1);
+        verify(userRepository, never()).findUserById(anyInt());
+    }
+
+    @Test
+    void testDeleteUserRemovesLeaderboardEntry() {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        when(userRepository.delete(1)).thenReturn(true);
+
+        new UserService(userRepository, leaderboard).deleteUser(1);
+
+        verify(leaderboard).removeUser(1);
+    }
+
+    @Test
+    void testDeleteMissingUserThrowsNotFound() {
+        when(userRepository.delete(99)).thenReturn(false);
+
+        assertThrows(NotFoundException.class, () -> userService.deleteUser(99));
     }
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.WorkoutIngestStatsDTO;
+import com.example.astonrest.entity.Workout;
+import com.example.astonrest.exception.ServiceUnavailableException;
+import com.example.astonrest.repository.WorkoutRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorkoutIngestQueueTest {
+    @Mock
+    private WorkoutRepository workoutRepository;
+    @Captor
+    private ArgumentCaptor<List<Workout>> batches;
+
+    private WorkoutIngestQueue ingestQueue;
+
+    @AfterEach
+    void tearDown() {
+        if (ingestQueue != null) {
+            ingestQueue.stop();
+        }
+    }
+
+    @Test
+    void testSubmitWhenQueueIsFullIsRejected() {
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, true, 1, 10, 50, 1000);
+
+        assertNotNull(ingestQueue.submit(workout(1)));
+        assertThrows(ServiceUnavailableException.class, () -> ingestQueue.submit(workout(2)));
+
+        WorkoutIngestStatsDTO stats = ingestQueue.getStats();
+        assertEquals(1, stats.getQueueDepth());
+        assertEquals(1, stats.getAccepted());
+        assertEquals(1, stats.getRejected());
+    }
+
+    @Test
+    void testStopDrainsQueueInOneBatch() throws SQLException {
+        when(workoutRepository.insertAll(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        // Большой интервал: без остановки пачка не записалась бы до конца теста
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, true, 100, 10, 60_000, 5000);
+        ingestQueue.start();
+        ingestQueue.submit(workout(1));
+        ingestQueue.submit(workout(2));
+        ingestQueue.submit(workout(3));
+
+        ingestQueue.stop();
+
+        verify(workoutRepository, atLeastOnce()).insertAll(batches.capture());
+        assertEquals(3, batches.getAllValues().stream().mapToInt(List::size).sum());
+        assertEquals(3, ingestQueue.getStats().getFlushed());
+        assertEquals(0, ingestQueue.getStats().getQueueDepth());
+        assertThrows(ServiceUnavailableException.class, () -> ingestQueue.submit(workout(4)));
+    }
+
+    @Test
+    void testFlushesWhenBatchIsFull() throws SQLException {
+        when(workoutRepository.insertAll(anyList())).thenReturn(2);
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, true, 100, 2, 60_000, 5000);
+        ingestQueue.start();
+        ingestQueue.submit(workout(1));
+        ingestQueue.submit(workout(2));
+
+        verify(workoutRepository, timeout(2000)).insertAll(anyList());
+        assertEquals(0, ingestQueue.getStats().getQueueDepth());
+    }
+
+    @Test
+    void testFailedBatchIsRetriedOneByOneAndMissingUserIsDropped() throws SQLException {
+        Workout valid = workout(1);
+        Workout missingUser = workout(99);
+        when(workoutRepository.insertAll(List.of(valid, missingUser))).thenThrow(new SQLException("fk", "23503"));
+        when(workoutRepository.insertAll(List.of(valid))).thenReturn(1);
+        when(workoutRepository.insertAll(List.of(missingUser))).thenThrow(new SQLException("fk", "23503"));
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, true, 100, 2, 60_000, 5000);
+        ingestQueue.submit(valid);
+        ingestQueue.submit(missingUser);
+        ingestQueue.start();
+
+        ingestQueue.stop();
+
+        WorkoutIngestStatsDTO stats = ingestQueue.getStats();
+        assertEquals(1, stats.getFlushed());
+        assertEquals(1, stats.getDropped());
+        assertEquals(1, stats.getFlushes());
+    }
+
+    @Test
+    void testBatchIsKeptAndRetriedWhileDatabaseIsUnavailable() throws SQLException {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        when(workoutRepository.insertAll(anyList()))
+                .thenThrow(new ServiceUnavailableException("Service is temporarily unavailable", 1, null))
+                .thenThrow(new SQLException("connection reset", "08006"))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, leaderboard, true, 100, 10, 10, 5000);
+        ingestQueue.submit(workout(1));
+        ingestQueue.submit(workout(2));
+        ingestQueue.start();
+
+        ingestQueue.stop();
+
+        WorkoutIngestStatsDTO stats = ingestQueue.getStats();
+        assertEquals(2, stats.getFlushed());
+        assertEquals(0, stats.getDropped());
+        assertEquals(2, stats.getRetries());
+        assertEquals(0, stats.getPendingRetry());
+        // Пачка повторяется целиком, по одной не записывается
+        verify(workoutRepository, times(3)).insertAll(argThat(batch -> batch.size() == 2));
+        verify(leaderboard).add(1, 360);
+        verify(leaderboard).add(2, 360);
+    }
+
+    @Test
+    void testWorkoutsStillUnsavedAtShutdownAreLoggedWithTrackingIds() throws SQLException {
+        when(workoutRepository.insertAll(anyList()))
+                .thenThrow(new ServiceUnavailableException("Service is temporarily unavailable", 1, null));
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, true, 100, 10, 10, 100);
+        String first = ingestQueue.submit(workout(1));
+        String second = ingestQueue.submit(workout(2));
+        ingestQueue.start();
+
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(log, true));
+        try {
+            ingestQueue.stop();
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        WorkoutIngestStatsDTO stats = ingestQueue.getStats();
+        assertEquals(0, stats.getFlushed());
+        assertEquals(2, stats.getDropped());
+        assertTrue(log.toString().contains(first));
+        assertTrue(log.toString().contains(second));
+    }
+
+    @Test
+    void testTransientErrorsAreRecognised() {
+        assertTrue(WorkoutIngestQueue.isTransient(new ServiceUnavailableException("busy", 1, null)));
+        assertTrue(WorkoutIngestQueue.isTransient(new SQLException("no connection", "08001")));
+        assertTrue(WorkoutIngestQueue.isTransient(new SQLException("too many connections", "53300")));
+        assertTrue(WorkoutIngestQueue.isTransient(new SQLException("serialization", "40001")));
+        assertFalse(WorkoutIngestQueue.isTransient(new SQLException("fk", "23503")));
+        assertFalse(WorkoutIngestQueue.isTransient(new IllegalStateException("bug")));
+    }
+
+    @Test
+    void testSavedWorkoutsAreAddedToLeaderboard() throws SQLException {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        when(workoutRepository.insertAll(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, leaderboard, true, 100, 10, 60_000, 5000);
+        ingestQueue.submit(workout(1));
+        ingestQueue.submit(workout(2));
+        ingestQueue.start();
+
+        ingestQueue.stop();
+
+        verify(leaderboard).add(1, 360);
+        verify(leaderboard).add(2, 360);
+    }
+
+    @Test
+    void testDisabledQueueDoesNotStartFlusher() {
+        ingestQueue = new WorkoutIngestQueue(workoutRepository, null, false, 10, 10, 50, 1000);
+        ingestQueue.start();
+
+        assertFalse(ingestQueue.isEnabled());
+        assertFalse(ingestQueue.getStats().isEnabled());
+        verifyNoInteractions(workoutRepository);
+    }
+
+    private static Workout workout(int userId) {
+        return new Workout(0, "Running", 30, 360, userId, Instant.parse("2024-01-31T10:15:30Z"));
+    }
+}
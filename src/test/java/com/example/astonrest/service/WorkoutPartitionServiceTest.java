@@ -0,0 +1,78 @@
+package com.example.astonrest.service;
+
+import com.example.astonrest.dto.PartitionArchiveDTO;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.repository.WorkoutPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorkoutPartitionServiceTest {
+    @Mock
+    private WorkoutPartitionRepository partitionRepository;
+
+    private WorkoutPartitionService partitionService;
+
+    @BeforeEach
+    void setUp() {
+        partitionService = new WorkoutPartitionService(partitionRepository);
+    }
+
+    @Test
+    void testEnsurePartitionsCreatesMonthsAhead() throws SQLException {
+        when(partitionRepository.ensurePartitions(3)).thenReturn(2);
+
+        assertEquals(2, partitionService.ensurePartitions());
+    }
+
+    @Test
+    void testArchivePartitionsBeforeMonth() throws SQLException {
+        when(partitionRepository.archivePartitions(LocalDate.of(2024, 1, 1))).thenReturn(List.of("workouts_2023_12"));
+
+        PartitionArchiveDTO result = partitionService.archivePartitionsBefore("2024-01-01");
+
+        assertEquals(List.of("workouts_2023_12"), result.getArchivedPartitions());
+    }
+
+    @Test
+    void testArchiveRebuildsLeaderboardOnlyWhenPartitionsWereArchived() throws SQLException {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        partitionService = new WorkoutPartitionService(partitionRepository, leaderboard);
+        when(partitionRepository.archivePartitions(LocalDate.of(2024, 1, 1))).thenReturn(List.of("workouts_2023_12"));
+        when(partitionRepository.archivePartitions(LocalDate.of(2023, 1, 1))).thenReturn(List.of());
+
+        partitionService.archivePartitionsBefore("2024-01-01");
+        partitionService.archivePartitionsBefore("2023-01-01");
+
+        verify(leaderboard, times(1)).rebuild();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2024-01-15", "2024-13-01", "january"})
+    void testArchiveWithInvalidBoundaryIsRejected(String before) throws SQLException {
+        assertThrows(BadRequestException.class, () -> partitionService.archivePartitionsBefore(before));
+        verify(partitionRepository, never()).archivePartitions(any());
+    }
+
+    @Test
+    void testCurrentMonthCannotBeArchived() throws SQLException {
+        String nextMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).plusMonths(1).toString();
+
+        assertThrows(BadRequestException.class, () -> partitionService.archivePartitionsBefore(nextMonth));
+        verify(partitionRepository, never()).archivePartitions(any());
+    }
+}
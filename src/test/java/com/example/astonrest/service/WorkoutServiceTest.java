@@ -1,9 +1,22 @@
 package com.example.astonrest.service;
 
+import com.example.astonrest.dto.BatchItemResultDTO;
+import com.example.astonrest.dto.LeaderboardDTO;
+import com.example.astonrest.dto.LeaderboardEntryDTO;
+import com.example.astonrest.dto.MultiGetDTO;
+import com.example.astonrest.dto.PageDTO;
 import com.example.astonrest.dto.WorkoutDTO;
+import com.example.astonrest.dto.WorkoutStatsDTO;
+import com.example.astonrest.dto.WorkoutStatsSummaryDTO;
 import com.example.astonrest.entity.Workout;
-import com.example.astonrest.repository.UserRepository;
+import com.example.astonrest.entity.WorkoutStats;
+import com.example.astonrest.exception.BadRequestException;
+import com.example.astonrest.exception.NotFoundException;
 import com.example.astonrest.repository.WorkoutRepository;
+import com.example.astonrest.util.CalorieCalculator;
+import com.example.astonrest.util.DateRange;
+import com.example.astonrest.util.IdListRequest;
+import com.example.astonrest.util.PageRequest;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,10 +24,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -28,9 +44,8 @@ class WorkoutServiceTest {
 
     @Mock
     private WorkoutRepository workoutRepository;
-
-    @Mock
-    private UserRepository userRepository;
+    @Captor
+    private ArgumentCaptor<List<Workout>> workoutsCaptor;
 
     @InjectMocks
     private WorkoutService workoutService;
@@ -41,27 +56,25 @@ class WorkoutServiceTest {
     @BeforeAll
     static void setUp() {
         workouts = Arrays.asList(
-                new Workout(1, "Running", 30, 360, 1),
-                new Workout(2, "Cycling", 45, 315, 2)
+                new Workout(1, "Running", 30, 360, 1, null),
+                new Workout(2, "Cycling", 45, 315, 2, null)
         );
         workoutDTOs = workouts.stream()
-                .map(workout -> new WorkoutDTO(workout.getType(), workout.getDuration(),workout.getCaloriesBurned(), workout.getUserId()))
+                .map(workout -> new WorkoutDTO(workout.getType(), workout.getDuration(),workout.getCaloriesBurned(), workout.getUserId(), null))
                 .collect(Collectors.toList());
     }
 
     @BeforeEach
     void init() {
-        workoutService = new WorkoutService(workoutRepository, userRepository);
+        workoutService = new WorkoutService(workoutRepository);
     }
 
     @Test
     void testCreateWorkoutForUser() {
         WorkoutDTO workoutDTO = workoutDTOs.get(0);
         Workout expectedWorkout = new Workout(0, workoutDTO.getType(), workoutDTO.getDuration(), workoutDTO.getCaloriesBurned(),
-                workoutDTO.getUserId());
+                workoutDTO.getUserId(), null);
 
-        // Мокаем существование пользователя
-        when(userRepository.doesUserExist(workoutDTO.getUserId())).thenReturn(true);
         // Мокаем сохранение тренировки
         doNothing().when(workoutRepository).save(any(Workout.class));
 
@@ -76,6 +89,129 @@ class WorkoutServiceTest {
         assertEquals(expectedWorkout.getCaloriesBurned(), capturedWorkout.getCaloriesBurned());
     }
 
+    @Test
+    void testCreateWorkoutKeepsPerformedAtOrDefaultsToNow() {
+        Instant before = Instant.now();
+
+        workoutService.createWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, "2024-01-31T10:15:30+03:00"), 1);
+        workoutService.createWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, null), 1);
+
+        ArgumentCaptor<Workout> workoutCaptor = ArgumentCaptor.forClass(Workout.class);
+        verify(workoutRepository, times(2)).save(workoutCaptor.capture());
+        assertEquals(Instant.parse("2024-01-31T07:15:30Z"), workoutCaptor.getAllValues().get(0).getPerformedAt());
+        assertFalse(workoutCaptor.getAllValues().get(1).getPerformedAt().isBefore(before));
+    }
+
+    @Test
+    void testEnqueueWorkoutForUserSubmitsToIngestQueue() {
+        WorkoutIngestQueue ingestQueue = mock(WorkoutIngestQueue.class);
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        when(ingestQueue.submit(any(Workout.class))).thenReturn("tracking-1");
+        WorkoutService asyncService = new WorkoutService(workoutRepository, ingestQueue, null);
+
+        assertTrue(asyncService.isAsyncIngestEnabled());
+        assertEquals("tracking-1", asyncService.enqueueWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, null), 1));
+
+        ArgumentCaptor<Workout> workoutCaptor = ArgumentCaptor.forClass(Workout.class);
+        verify(ingestQueue).submit(workoutCaptor.capture());
+        assertEquals(CalorieCalculator.calculate("Running", 30), workoutCaptor.getValue().getCaloriesBurned());
+        assertNotNull(workoutCaptor.getValue().getPerformedAt());
+        verifyNoInteractions(workoutRepository);
+    }
+
+    @Test
+    void testEnqueueInvalidWorkoutIsRejectedBeforeQueue() {
+        WorkoutIngestQueue ingestQueue = mock(WorkoutIngestQueue.class);
+        WorkoutService asyncService = new WorkoutService(workoutRepository, ingestQueue, null);
+
+        assertThrows(BadRequestException.class,
+                () -> asyncService.enqueueWorkoutForUser(new WorkoutDTO("Running", -5, 0, 1, null), 1));
+        verifyNoInteractions(ingestQueue);
+    }
+
+    @Test
+    void testGetWorkoutStatsSplitsTotalAndTypes() {
+        DateRange range = DateRange.of("2024-01-01", "2024-02-01");
+        when(workoutRepository.findWorkoutStats(range, true)).thenReturn(List.of(
+                new WorkoutStats(null, 3, 90, 1000, 30.0, 333.3),
+                new WorkoutStats("Running", 2, 60, 720, 30.0, 360.0)));
+
+        WorkoutStatsSummaryDTO summary = workoutService.getWorkoutStats(range, "type");
+
+        assertEquals(new WorkoutStatsDTO(null, 3, 90, 1000, 30.0, 333.3), summary.getTotal());
+        assertEquals(List.of(new WorkoutStatsDTO("Running", 2, 60, 720, 30.0, 360.0)), summary.getByType());
+    }
+
+    @Test
+    void testGetWorkoutStatsWithoutGroupingHasNoBreakdown() {
+        when(workoutRepository.findWorkoutStats(DateRange.unbounded(), false)).thenReturn(List.of());
+
+        WorkoutStatsSummaryDTO summary = workoutService.getWorkoutStats(DateRange.unbounded(), null);
+
+        assertEquals(0, summary.getTotal().getCount());
+        assertNull(summary.getByType());
+    }
+
+    @Test
+    void testGetWorkoutStatsRejectsUnknownGrouping() {
+        assertThrows(BadRequestException.class, () -> workoutService.getWorkoutStats(DateRange.unbounded(), "user"));
+        verifyNoInteractions(workoutRepository);
+    }
+
+    @Test
+    void testCreateWorkoutInFutureIsRejected() {
+        String nextWeek = Instant.now().plus(7, ChronoUnit.DAYS).toString();
+
+        assertThrows(BadRequestException.class,
+                () -> workoutService.createWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, nextWeek), 1));
+        verify(workoutRepository, never()).save(any());
+    }
+
+    @Test
+    void testCreateWorkoutsForUserSavesValidItemsInOneBatch() {
+        List<WorkoutDTO> batch = Arrays.asList(
+                new WorkoutDTO("Running", 30, 0, 0, null),
+                new WorkoutDTO("", 30, 0, 0, null),
+                new WorkoutDTO("Yoga", 60, 0, 0, null)
+        );
+        doAnswer(invocation -> {
+            List<Workout> saved = invocation.getArgument(0);
+            saved.get(0).setId(10);
+            saved.get(1).setId(11);
+            return null;
+        }).when(workoutRepository).saveAll(anyList());
+
+        List<BatchItemResultDTO> results = workoutService.createWorkoutsForUser(batch, 1);
+
+        verify(workoutRepository, times(1)).saveAll(workoutsCaptor.capture());
+        verify(workoutRepository, never()).save(any());
+        assertEquals(360, workoutsCaptor.getValue().get(0).getCaloriesBurned());
+        assertEquals(240, workoutsCaptor.getValue().get(1).getCaloriesBurned());
+
+        assertEquals(3, results.size());
+        assertEquals(BatchItemResultDTO.created(0, 10), results.get(0));
+        assertNull(results.get(1).getId());
+        assertEquals("Workout type cannot be empty.", results.get(1).getError());
+        assertEquals(BatchItemResultDTO.created(2, 11), results.get(2));
+    }
+
+    @Test
+    void testCreateWorkoutsForMissingUserThrowsNotFound() {
+        doThrow(new NotFoundException("User with ID 99 does not exist.")).when(workoutRepository).saveAll(anyList());
+
+        assertThrows(NotFoundException.class, () -> workoutService.createWorkoutsForUser(
+                List.of(new WorkoutDTO("Running", 30, 0, 0, null), new WorkoutDTO("Cycling", 20, 0, 0, null)), 99));
+
+        verify(workoutRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testCreateWorkoutsForUserRejectsEmptyBatch() {
+        assertThrows(BadRequestException.class, () -> workoutService.createWorkoutsForUser(List.of(), 1));
+
+        verifyNoInteractions(workoutRepository);
+    }
+
     @Test
     void testGetWorkoutById() {
         Workout expectedWorkout = workouts.get(0);
@@ -91,44 +227,128 @@ class WorkoutServiceTest {
     }
 
     @Test
-    void testGetAllWorkouts() {
-        when(workoutRepository.findAllWorkouts()).thenReturn(workouts);
+    void testGetWorkouts() {
+        when(workoutRepository.findWorkouts(0, 21)).thenReturn(workouts);
 
-        List<WorkoutDTO> actualWorkoutDTOs = workoutService.getAllWorkouts();
+        PageDTO<WorkoutDTO> page = workoutService.getWorkouts(new PageRequest(0, 20));
+        List<WorkoutDTO> actualWorkoutDTOs = page.getItems();
 
         assertEquals(workouts.size(), actualWorkoutDTOs.size());
         assertEquals(workouts.get(0).getType(), actualWorkoutDTOs.get(0).getType());
         assertEquals(workouts.get(0).getDuration(), actualWorkoutDTOs.get(0).getDuration());
         assertEquals(workouts.get(0).getCaloriesBurned(), actualWorkoutDTOs.get(0).getCaloriesBurned());
         assertEquals(workouts.get(0).getUserId(), actualWorkoutDTOs.get(0).getUserId());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetWorkoutsReturnsCursorOfLastItemWhenMoreRowsExist() {
+        when(workoutRepository.findWorkouts(0, 2)).thenReturn(workouts);
+
+        PageDTO<WorkoutDTO> page = workoutService.getWorkouts(new PageRequest(0, 1));
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(workouts.get(0).getType(), page.getItems().get(0).getType());
+        assertNotNull(page.getNextCursor());
+        assertEquals(workouts.get(0).getId(), PageRequest.of(page.getNextCursor(), null).getAfterId());
+    }
+
+    @Test
+    void testGetWorkoutsByIdsKeepsRequestOrderAndReportsMissing() {
+        when(workoutRepository.findWorkoutsByIds(List.of(2, 99, 1))).thenReturn(workouts);
+
+        MultiGetDTO<WorkoutDTO> result = workoutService.getWorkoutsByIds(IdListRequest.of("2, 99,1,2"));
 
+        assertEquals(List.of(2, 1), List.copyOf(result.getItems().keySet()));
+        assertEquals(workoutDTOs.get(1), result.getItems().get(2));
+        assertEquals(List.of(99), result.getMissingIds());
     }
 
     @Test
     void testUpdateWorkout() {
         WorkoutDTO updatedWorkoutDTO = workoutDTOs.get(1);
         Workout existingWorkout = new Workout(2, updatedWorkoutDTO.getType(),updatedWorkoutDTO.getDuration(), updatedWorkoutDTO.getCaloriesBurned(),
-                updatedWorkoutDTO.getUserId());
+                updatedWorkoutDTO.getUserId(), null);
 
-        when(workoutRepository.findWorkoutById(2)).thenReturn(existingWorkout);
-        doNothing().when(workoutRepository).update(existingWorkout);
+        when(workoutRepository.update(any(Workout.class))).thenReturn(existingWorkout);
 
         workoutService.updateWorkout(2, updatedWorkoutDTO);
 
-        verify(workoutRepository, times(1)).update(existingWorkout);
+        ArgumentCaptor<Workout> captor = ArgumentCaptor.forClass(Workout.class);
+        verify(workoutRepository, times(1)).update(captor.capture());
+        verify(workoutRepository, never()).findWorkoutById(anyInt());
+        assertEquals(2, captor.getValue().getId());
+        assertEquals(CalorieCalculator.calculate(updatedWorkoutDTO.getType(), updatedWorkoutDTO.getDuration()),
+                captor.getValue().getCaloriesBurned());
     }
 
     @Test
-    void testDeleteWorkout() {
-        WorkoutDTO workoutDTO = workoutDTOs.get(0);
-        Workout existingWorkout = new Workout(1, workoutDTO.getType(), workoutDTO.getDuration(), workoutDTO.getCaloriesBurned(), workoutDTO.getUserId());
+    void testUpdateMissingWorkoutThrowsNotFound() {
+        when(workoutRepository.update(any(Workout.class))).thenReturn(null);
+
+        assertThrows(NotFoundException.class, () -> workoutService.updateWorkout(99, workoutDTOs.get(0)));
+    }
 
-        when(workoutRepository.findWorkoutById(1)).thenReturn(existingWorkout);
-        doNothing().when(workoutRepository).delete(1); // Мокаем удаление
+    @Test
+    void testDeleteWorkout() {
+        when(workoutRepository.delete(1)).thenReturn(workouts.get(0)); // Мокаем удаление
 
         workoutService.deleteWorkout(1);
 
         verify(workoutRepository, times(1)).delete(1);
+        verify(workoutRepository, never()).findWorkoutById(anyInt());
+    }
+
+    @Test
+    void testGetUserWorkoutsETagReadsOnlyVersion() {
+        when(workoutRepository.findWorkoutsVersionByUserId(1)).thenReturn(7L);
+
+        assertEquals("\"user-1-workouts-v7\"", workoutService.getUserWorkoutsETag(1));
+        verify(workoutRepository, never()).findWorkoutsByUserId(anyInt(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testWorkoutChangesMoveLeaderboardByCalorieDelta() {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        WorkoutService rankedService = new WorkoutService(workoutRepository, null, leaderboard);
+        int running30 = CalorieCalculator.calculate("Running", 30);
+        int running45 = CalorieCalculator.calculate("Running", 45);
+        doAnswer(invocation -> {
+            invocation.<Workout>getArgument(0).setId(5);
+            return null;
+        }).when(workoutRepository).save(any(Workout.class));
+        when(workoutRepository.update(any(Workout.class))).thenReturn(new Workout(5, "Running", 30, running30, 1, null));
+        when(workoutRepository.delete(5)).thenReturn(new Workout(5, "Running", 45, running45, 1, null));
+
+        rankedService.createWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, null), 1);
+        rankedService.updateWorkout(5, new WorkoutDTO("Running", 45, 0, 1, null));
+        rankedService.deleteWorkout(5);
+
+        verify(leaderboard).add(1, running30);
+        verify(leaderboard).add(1, running45 - running30);
+        verify(leaderboard).add(1, -running45);
+    }
+
+    @Test
+    void testUnsavedWorkoutDoesNotChangeLeaderboard() {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        WorkoutService rankedService = new WorkoutService(workoutRepository, null, leaderboard);
+
+        rankedService.createWorkoutForUser(new WorkoutDTO("Running", 30, 0, 1, null), 1);
+
+        verifyNoInteractions(leaderboard);
+    }
+
+    @Test
+    void testGetLeaderboardWithUserRank() {
+        CalorieLeaderboard leaderboard = mock(CalorieLeaderboard.class);
+        List<LeaderboardEntryDTO> top = List.of(new LeaderboardEntryDTO(1, 2, 900));
+        when(leaderboard.top(1)).thenReturn(top);
+        when(leaderboard.rankOf(1)).thenReturn(new LeaderboardEntryDTO(4, 1, 360));
+
+        LeaderboardDTO result = new WorkoutService(workoutRepository, null, leaderboard).getLeaderboard(1, 1);
+
+        assertEquals(new LeaderboardDTO(top, new LeaderboardEntryDTO(4, 1, 360)), result);
     }
 
     @ParameterizedTest
@@ -137,12 +357,13 @@ class WorkoutServiceTest {
             "2, Cycling, 45, 315"
     })
     void testGetWorkoutsByUserId(int userId, String type, int duration, int caloriesBurned) {
-        Workout workout = new Workout(0, type, duration, caloriesBurned, userId);
+        Workout workout = new Workout(0, type, duration, caloriesBurned, userId, null);
         List<Workout> userWorkouts = Arrays.asList(workout);
 
-        when(workoutRepository.findWorkoutsByUserId(userId)).thenReturn(userWorkouts);
+        when(workoutRepository.findWorkoutsByUserId(userId, DateRange.unbounded(), 0, 21)).thenReturn(userWorkouts);
 
-        List<WorkoutDTO> actualWorkoutsDTO = workoutService.getWorkoutsByUserId(userId);
+        List<WorkoutDTO> actualWorkoutsDTO = workoutService.getWorkoutsByUserId(userId, DateRange.unbounded(), new PageRequest(0, 20))
+                .getItems();
 
         assertNotNull(actualWorkoutsDTO);
         assertEquals(userWorkouts.size(), actualWorkoutsDTO.size());
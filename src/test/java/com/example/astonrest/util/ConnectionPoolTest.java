@@ -0,0 +1,246 @@
+package com.example.astonrest.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTest {
+    private final List<Connection> physicalConnections = new ArrayList<>();
+    private ConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testCloseReturnsConnectionToPool() throws SQLException {
+        pool = createPool(0, 2, 100);
+
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+
+        assertEquals(1, physicalConnections.size());
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getActiveConnections());
+        verify(physicalConnections.get(0), never()).close();
+        second.close();
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    void testPoolIsBoundedByMaxSize() throws SQLException {
+        pool = createPool(0, 2, 50);
+
+        pool.getConnection();
+        pool.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+        assertEquals(2, physicalConnections.size());
+    }
+
+    @Test
+    void testZeroTimeoutDoesNotWaitForBusyPool() throws SQLException {
+        pool = createPool(0, 1, 10_000);
+
+        pool.getConnection();
+
+        long start = System.currentTimeMillis();
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection(0));
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        assertEquals(0, pool.getWaitingThreads());
+    }
+
+    @Test
+    void testFullWaitQueueRejectsImmediately() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("pool.maxWaiters", "0");
+        pool = createPool(0, 1, 10_000, properties);
+
+        pool.getConnection();
+
+        long start = System.currentTimeMillis();
+        assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        assertEquals(0, pool.getWaitingThreads());
+    }
+
+    @Test
+    void testPoolIsFilledToMinSize() {
+        pool = createPool(2, 4, 100);
+
+        assertEquals(2, pool.getTotalConnections());
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    void testClosedHandleCannotBeReused() throws SQLException {
+        pool = createPool(0, 1, 100);
+
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    void testOpenTransactionIsRolledBackOnRelease() throws SQLException {
+        pool = createPool(0, 1, 100);
+
+        Connection connection = pool.getConnection();
+        Connection physical = physicalConnections.get(0);
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+
+    @Test
+    void testBrokenConnectionIsDiscarded() throws SQLException {
+        pool = createPool(0, 1, 100);
+
+        Connection connection = pool.getConnection();
+        when(physicalConnections.get(0).isClosed()).thenReturn(true);
+        connection.close();
+
+        assertEquals(0, pool.getTotalConnections());
+        pool.getConnection();
+        assertEquals(2, physicalConnections.size());
+    }
+
+    @Test
+    void testPreparedStatementIsReusedFromCache() throws SQLException {
+        pool = createPool(0, 1, 100);
+        String sql = "SELECT * FROM workouts WHERE id = ?";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, 1);
+        }
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, 2);
+        }
+
+        Connection physical = physicalConnections.get(0);
+        verify(physical, times(1)).prepareStatement(sql);
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(1, pool.getStatementCacheMisses());
+    }
+
+    @Test
+    void testStatementInUseIsNotSharedAndLeastRecentlyUsedIsEvicted() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("pool.statementCacheSize", "1");
+        pool = createPool(0, 1, 100, properties);
+
+        Connection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("SELECT 1");
+        PreparedStatement second = connection.prepareStatement("SELECT 1");
+        assertNotSame(first, second);
+        second.close();
+        first.close();
+
+        connection.prepareStatement("SELECT 2").close();
+        connection.prepareStatement("SELECT 1").close();
+
+        Connection physical = physicalConnections.get(0);
+        verify(physical, times(3)).prepareStatement("SELECT 1");
+        assertEquals(0, pool.getStatementCacheHits());
+    }
+
+    @Test
+    void testStatementThatFailsResetIsRemovedFromCache() throws SQLException {
+        pool = createPool(0, 1, 100);
+        String sql = "SELECT * FROM workouts WHERE id = ?";
+        Connection connection = pool.getConnection();
+        Connection physical = physicalConnections.get(0);
+        PreparedStatement broken = mock(PreparedStatement.class);
+        doThrow(new SQLException("reset failed")).when(broken).clearParameters();
+        when(physical.prepareStatement(sql)).thenReturn(broken).thenAnswer(invocation -> mock(PreparedStatement.class));
+
+        connection.prepareStatement(sql).close();
+        PreparedStatement next = connection.prepareStatement(sql);
+        next.setInt(1, 1);
+
+        verify(broken).close();
+        verify(broken, never()).setInt(1, 1);
+        verify(physical, times(2)).prepareStatement(sql);
+        assertEquals(0, pool.getStatementCacheHits());
+    }
+
+    @Test
+    void testClosedStatementCannotBeUsedAfterReturnToCache() throws SQLException {
+        pool = createPool(0, 1, 100);
+        Connection connection = pool.getConnection();
+
+        PreparedStatement first = connection.prepareStatement("SELECT 1");
+        first.close();
+        PreparedStatement second = connection.prepareStatement("SELECT 1");
+
+        assertNotSame(first, second);
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        assertThrows(SQLException.class, first::executeQuery);
+        assertEquals(1, pool.getStatementCacheHits());
+    }
+
+    @Test
+    void testWarmUpExecutesStatementsWithNullParameters() throws SQLException {
+        pool = createPool(1, 1, 100);
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ParameterMetaData metaData = mock(ParameterMetaData.class);
+        when(metaData.getParameterCount()).thenReturn(2);
+        when(statement.getParameterMetaData()).thenReturn(metaData);
+        when(physicalConnections.get(0).prepareStatement(sql)).thenReturn(statement);
+
+        pool.warmUp(List.of(sql));
+
+        verify(statement).setNull(1, Types.OTHER);
+        verify(statement).setNull(2, Types.OTHER);
+        verify(statement).execute();
+        verify(statement, never()).close();
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, long timeoutMs) {
+        return createPool(minSize, maxSize, timeoutMs, new Properties());
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, long timeoutMs, Properties properties) {
+        properties.setProperty("pool.minSize", String.valueOf(minSize));
+        properties.setProperty("pool.maxSize", String.valueOf(maxSize));
+        properties.setProperty("pool.connectionTimeoutMs", String.valueOf(timeoutMs));
+        properties.setProperty("pool.validationIdleMs", "60000");
+
+        return new ConnectionPool("test", new PoolConfig(properties), () -> {
+            Connection connection = mock(Connection.class);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+            physicalConnections.add(connection);
+            return connection;
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.astonrest.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ETagsTest {
+    @Mock private HttpServletRequest request;
+    @Mock private HttpServletResponse response;
+
+    @Test
+    void testETagIsBuiltFromResourceAndVersion() {
+        assertEquals("\"meals-v42\"", ETags.of("meals", 42L));
+        assertNull(ETags.of("meals", null));
+    }
+
+    @Test
+    void testMatchingIfNoneMatchSendsNotModified() {
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-v2\", W/\"user-1-v3\"");
+
+        assertTrue(ETags.notModified(request, response, () -> "\"user-1-v3\""));
+
+        verify(response).setHeader("ETag", "\"user-1-v3\"");
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void testStaleIfNoneMatchSetsNoHeaders() {
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-v2\"");
+
+        assertFalse(ETags.notModified(request, response, () -> "\"user-1-v3\""));
+
+        verifyNoInteractions(response);
+    }
+
+    @Test
+    void testVersionIsNotReadWithoutIfNoneMatch() {
+        Supplier<String> etag = () -> {
+            throw new AssertionError("версия не должна читаться");
+        };
+
+        assertFalse(ETags.notModified(request, response, etag));
+
+        verifyNoInteractions(response);
+    }
+
+    @Test
+    void testMissingVersionSkipsConditionalRequest() {
+        when(request.getHeader("If-None-Match")).thenReturn("*");
+
+        assertFalse(ETags.notModified(request, response, () -> null));
+
+        verifyNoInteractions(response);
+    }
+
+    @Test
+    void testSetSkipsMissingETag() {
+        ETags.set(response, null);
+        ETags.set(response, "\"meals-v1\"");
+
+        verify(response, times(1)).setHeader("ETag", "\"meals-v1\"");
+    }
+
+    @Test
+    void testWildcardMatchesAnyETag() {
+        assertTrue(ETags.matches("*", "\"meals-v1\""));
+        assertFalse(ETags.matches(null, "\"meals-v1\""));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.astonrest.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRouterTest {
+    @Mock private ConnectionPool firstReplica;
+    @Mock private ConnectionPool secondReplica;
+    @Mock private Connection firstConnection;
+    @Mock private Connection secondConnection;
+
+    @Test
+    void testRoundRobinAlternatesReplicas() throws SQLException {
+        when(firstReplica.getConnection(0)).thenReturn(firstConnection);
+        when(secondReplica.getConnection(0)).thenReturn(secondConnection);
+        ReplicaRouter router = new ReplicaRouter(List.of(firstReplica, secondReplica), ReplicaRouter.Balancing.ROUND_ROBIN);
+
+        assertSame(firstConnection, router.getConnection(100));
+        assertSame(secondConnection, router.getConnection(100));
+        assertSame(firstConnection, router.getConnection(100));
+    }
+
+    @Test
+    void testLeastOutstandingPicksLeastBusyReplica() throws SQLException {
+        when(firstReplica.getActiveConnections()).thenReturn(5);
+        when(secondReplica.getActiveConnections()).thenReturn(1);
+        when(secondReplica.getConnection(0)).thenReturn(secondConnection);
+        ReplicaRouter router = new ReplicaRouter(List.of(firstReplica, secondReplica),
+                ReplicaRouter.Balancing.fromProperty("least-outstanding"));
+
+        assertSame(secondConnection, router.getConnection(100));
+        verify(firstReplica, never()).getConnection(anyLong());
+    }
+
+    @Test
+    void testFailedReplicaIsSkipped() throws SQLException {
+        when(firstReplica.getConnection(0)).thenThrow(new SQLException("replica down"));
+        when(secondReplica.getConnection(0)).thenReturn(secondConnection);
+        ReplicaRouter router = new ReplicaRouter(List.of(firstReplica, secondReplica), ReplicaRouter.Balancing.ROUND_ROBIN);
+
+        assertSame(secondConnection, router.getConnection(100));
+    }
+
+    @Test
+    void testBusyReplicasWaitOnlyForSelectedReplicaWithinSharedTimeout() throws SQLException {
+        when(firstReplica.getConnection(0)).thenThrow(new SQLTimeoutException("busy"));
+        when(secondReplica.getConnection(0)).thenThrow(new SQLTimeoutException("busy"));
+        doReturn(firstConnection).when(firstReplica).getConnection(longThat(timeout -> timeout > 0 && timeout <= 100));
+        ReplicaRouter router = new ReplicaRouter(List.of(firstReplica, secondReplica), ReplicaRouter.Balancing.ROUND_ROBIN);
+
+        assertSame(firstConnection, router.getConnection(100));
+        verify(secondReplica, never()).getConnection(longThat(timeout -> timeout > 0));
+    }
+
+    @Test
+    void testZeroTimeoutDoesNotWaitForBusyReplicas() throws SQLException {
+        when(firstReplica.getConnection(0)).thenThrow(new SQLTimeoutException("busy"));
+        when(secondReplica.getConnection(0)).thenThrow(new SQLTimeoutException("busy"));
+        ReplicaRouter router = new ReplicaRouter(List.of(firstReplica, secondReplica), ReplicaRouter.Balancing.ROUND_ROBIN);
+
+        assertThrows(SQLTimeoutException.class, () -> router.getConnection(0));
+        verify(firstReplica, times(1)).getConnection(anyLong());
+    }
+}